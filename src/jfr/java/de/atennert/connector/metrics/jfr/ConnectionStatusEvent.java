@@ -0,0 +1,23 @@
+package de.atennert.connector.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The status of the connection to the transceiver changed.
+ */
+@Name( "de.atennert.connector.ConnectionStatus" )
+@Label( "Connection Status" )
+@Category( { "EnOcean Connector", "Connection" } )
+@Description( "The connection to the EnOcean transceiver was opened, closed, lost or restored" )
+public class ConnectionStatusEvent extends Event {
+
+    @Label( "Port" )
+    String port;
+
+    @Label( "Status" )
+    String status;
+}
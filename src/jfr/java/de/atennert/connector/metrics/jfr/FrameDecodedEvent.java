@@ -0,0 +1,31 @@
+package de.atennert.connector.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A frame was decoded. The duration covers the time from the sync byte until
+ * the frame was complete.
+ */
+@Name( "de.atennert.connector.FrameDecoded" )
+@Label( "Frame Decoded" )
+@Category( { "EnOcean Connector", "Receive" } )
+@StackTrace( false )
+@Description( "An ESP3 frame was read from the receive queue" )
+public class FrameDecodedEvent extends Event {
+
+    @Label( "Packet Type" )
+    int packetType;
+
+    @Label( "Length" )
+    @Description( "Number of data and optional bytes" )
+    int length;
+
+    @Label( "Valid" )
+    @Description( "The payload checksum was correct" )
+    boolean valid;
+}
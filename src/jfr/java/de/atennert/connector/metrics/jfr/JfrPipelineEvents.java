@@ -0,0 +1,96 @@
+package de.atennert.connector.metrics.jfr;
+
+/**
+ * Emits the JFR events of the packet pipeline. It is created by
+ * {@link JfrSupport}, if the events are switched on and the JDK supports JFR.
+ * The events of the packets are always emitted from the same place, so they
+ * are recorded without stack trace.
+ */
+public final class JfrPipelineEvents implements IPipelineEvents {
+
+    @Override
+    public Object beginFrame() {
+        final FrameDecodedEvent event = new FrameDecodedEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitFrame( Object frame, int packetType, int length, boolean valid ) {
+        if (frame == null) {
+            return;
+        }
+        final FrameDecodedEvent event = (FrameDecodedEvent) frame;
+        event.end();
+        if (event.shouldCommit()) {
+            event.packetType = packetType;
+            event.length = length;
+            event.valid = valid;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginListener() {
+        final ListenerInvocationEvent event = new ListenerInvocationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitListener( Object invocation, String listener, int packetType, boolean failed ) {
+        if (invocation == null) {
+            return;
+        }
+        final ListenerInvocationEvent event = (ListenerInvocationEvent) invocation;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listener = listener;
+            event.packetType = packetType;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginWrite() {
+        final PacketWrittenEvent event = new PacketWrittenEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitWrite( Object write, int packetType, int length, long queueWait, boolean success ) {
+        if (write == null) {
+            return;
+        }
+        final PacketWrittenEvent event = (PacketWrittenEvent) write;
+        event.end();
+        if (event.shouldCommit()) {
+            event.packetType = packetType;
+            event.length = length;
+            event.queueWait = queueWait;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void connectionStatus( String port, String status ) {
+        final ConnectionStatusEvent event = new ConnectionStatusEvent();
+        if (event.shouldCommit()) {
+            event.port = port;
+            event.status = status;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package de.atennert.connector.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A packet listener was called. The duration is the time spent in the
+ * listener.
+ */
+@Name( "de.atennert.connector.ListenerInvocation" )
+@Label( "Listener Invocation" )
+@Category( { "EnOcean Connector", "Receive" } )
+@StackTrace( false )
+@Description( "A packet was distributed to a packet listener" )
+public class ListenerInvocationEvent extends Event {
+
+    @Label( "Listener" )
+    String listener;
+
+    @Label( "Packet Type" )
+    int packetType;
+
+    @Label( "Failed" )
+    @Description( "The listener threw an exception" )
+    boolean failed;
+}
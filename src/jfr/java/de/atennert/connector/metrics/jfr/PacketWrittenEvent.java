@@ -0,0 +1,35 @@
+package de.atennert.connector.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A packet was written to the serial port. The duration is the write time.
+ */
+@Name( "de.atennert.connector.PacketWritten" )
+@Label( "Packet Written" )
+@Category( { "EnOcean Connector", "Send" } )
+@StackTrace( false )
+@Description( "A packet was written to the EnOcean transceiver" )
+public class PacketWrittenEvent extends Event {
+
+    @Label( "Packet Type" )
+    int packetType;
+
+    @Label( "Length" )
+    @Description( "Number of bytes of the frame" )
+    int length;
+
+    @Label( "Queue Wait" )
+    @Description( "Time between sending the packet and taking it from the send queue" )
+    @Timespan( Timespan.NANOSECONDS )
+    long queueWait;
+
+    @Label( "Success" )
+    boolean success;
+}
@@ -0,0 +1,72 @@
+package de.atennert.connector.devices;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the update of a device in the {@link DeviceRegistry} compared to a
+ * <code>HashMap</code> with boxed sender IDs and record objects, which is what
+ * applications used before. Run with <code>-prof gc</code> to see, that the
+ * registry doesn't allocate.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DeviceRegistryBenchmark {
+
+    private static final int BASE_ID = 0x01800000;
+
+    /** number of known devices */
+    @Param( { "1000", "100000" } )
+    public int devices;
+
+    private DeviceRegistry registry;
+    private Map< Integer, DeviceRecord > map;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        registry = new DeviceRegistry( devices );
+        map = new HashMap<>();
+        for (int i = 0; i < devices; i++) {
+            registry.update( BASE_ID + i, 0xA5, 0, i, -50 );
+            map.put( BASE_ID + i, new DeviceRecord() );
+        }
+    }
+
+    @Benchmark
+    public void registry() {
+        registry.update( nextSender(), 0xA5, 0, next, -50 );
+    }
+
+    @Benchmark
+    public DeviceRecord hashMap() {
+        final DeviceRecord record = map.get( nextSender() );
+        record.rOrg = 0xA5;
+        record.lastSeen = next;
+        record.telegramCount++;
+        record.rssi = -50;
+        return record;
+    }
+
+    private int nextSender() {
+        next = next + 7919 < devices ? next + 7919 : (next + 7919) % devices;
+        return BASE_ID + next;
+    }
+}
@@ -0,0 +1,111 @@
+package de.atennert.connector.distribution;
+
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fan-out of {@link PacketDistributor} to 1, 10 and 100
+ * listeners. The listeners are called on the benchmark thread, so only the
+ * routing and the listener calls are measured and not the thread pool.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PacketDistributorBenchmark {
+
+    @Param( { "1", "10", "100" } )
+    public int listeners;
+
+    private PacketDistributor distributor;
+
+    private Packet packet;
+
+    @Setup
+    public void setup( final Blackhole blackhole ) {
+        distributor = new PacketDistributor( new DirectExecutorService(),
+                new PipelineMetrics( new MetricsRegistry(), 0 ) );
+        for (int i = 0; i < listeners; i++) {
+            // half of the listeners is subscribed to a single type
+            final int type = i % 2 == 0 ? IPacketConstants.TYPE_ANY : IPacketConstants.TYPE_RADIO;
+            distributor.addListener( "listener" + i, new IPacketListener() {
+                @Override
+                public void receivePacket( Packet packet ) {
+                    blackhole.consume( packet );
+                }
+
+                @Override
+                public int[] getSupportedPackets() {
+                    return new int[] { type };
+                }
+            } );
+        }
+        packet = new Packet( IPacketConstants.TYPE_RADIO, new int[] { 0xF6, 0x50, 0, 0, 0, 1, 0x30 }, new int[0],
+                new Date(), true );
+    }
+
+    @Benchmark
+    public void distributePacket() {
+        distributor.distributePacket( packet );
+    }
+
+    /**
+     * Executor, that runs every task immediately on the calling thread.
+     */
+    private static class DirectExecutorService extends AbstractExecutorService {
+        private volatile boolean shutdown = false;
+
+        @Override
+        public void execute( Runnable command ) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List< Runnable > shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination( long timeout, TimeUnit unit ) {
+            return shutdown;
+        }
+    }
+}
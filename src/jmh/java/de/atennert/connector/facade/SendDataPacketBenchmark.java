@@ -0,0 +1,90 @@
+package de.atennert.connector.facade;
+
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link ConnectorFacade#sendDataPacket(Packet)}
+ * with concurrent senders. The send queue drops the packets, so only the
+ * facade is measured and not the queue.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SendDataPacketBenchmark {
+
+    private ConnectorFacade facade;
+
+    private Packet packet;
+
+    @Setup
+    public void setup() {
+        facade = new ConnectorFacade( new PacketFactory(), new PacketDistributor(), null, null,
+                new LinkedBlockingQueue< Packet >() {
+                    @Override
+                    public boolean offer( Packet packet ) {
+                        return true;
+                    }
+                } );
+        // skip opening the serial port
+        facade.setState( FacadeSM.State.RUNNING );
+        packet = new Packet( IPacketConstants.TYPE_RADIO, new int[] { 0xF6, 0x50, 0, 0, 0, 1, 0x30 },
+                new int[0], new Date(), true );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public void send1Thread() {
+        facade.sendDataPacket( packet );
+    }
+
+    @Benchmark
+    @Threads( 2 )
+    public void send2Threads() {
+        facade.sendDataPacket( packet );
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public void send4Threads() {
+        facade.sendDataPacket( packet );
+    }
+
+    @Benchmark
+    @Threads( 8 )
+    public void send8Threads() {
+        facade.sendDataPacket( packet );
+    }
+
+    @Benchmark
+    @Threads( 16 )
+    public void send16Threads() {
+        facade.sendDataPacket( packet );
+    }
+
+    @Benchmark
+    @Threads( 32 )
+    public void send32Threads() {
+        facade.sendDataPacket( packet );
+    }
+}
@@ -0,0 +1,92 @@
+package de.atennert.connector.journal;
+
+import de.atennert.connector.reader.PacketEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading an archive of {@link #RECORDS} 4BS telegrams from
+ * {@link #SENDERS} sensors with slowly changing values and receive times in
+ * milliseconds, with and without deflate. The score is in records per second,
+ * the size of the archive compared to a journal segment is printed in the
+ * setup.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArchiveBenchmark {
+
+    private static final int RECORDS = 1000000;
+    private static final int SENDERS = 500;
+
+    @Param( { "true", "false" } )
+    public boolean deflate;
+
+    private byte[] archive;
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException {
+        final Random random = new Random( 42 );
+        final int[] values = new int[SENDERS];
+        final ByteBuffer frame = ByteBuffer.allocate( 24 );
+        frame.put( new byte[] { 0x55, 0x00, 0x0A, 0x07, 0x01, (byte) 0xEB, (byte) 0xA5, 0x00, 0x00, 0x00, 0x08,
+                0x01, (byte) 0x80, 0x00, 0x00, 0x00, 0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                0x40, 0x00, 0x00 } );
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ArchiveWriter writer = new ArchiveWriter( Channels.newChannel( output ),
+                ArchiveWriter.DEFAULT_BLOCK_RECORDS, deflate )) {
+            for (int i = 0; i < RECORDS; i++) {
+                final int sensor = i % SENDERS;
+                if (random.nextInt( 10 ) == 0) {
+                    values[sensor] += random.nextInt( 3 ) - 1;
+                }
+                frame.put( 9, (byte) values[sensor] );
+                frame.putShort( 13, (short) sensor );
+                frame.put( 21, (byte) (0x40 + random.nextInt( 3 )) );
+                frame.put( 23, (byte) PacketEncoder.checksum( frame, 6, 17 ) );
+                ((Buffer) frame).rewind();
+                writer.append( frame, 1000000L * (120L * i + random.nextInt( 1000 )), 1 );
+            }
+        }
+        archive = output.toByteArray();
+        final long segmentBytes = (long) RECORDS * (JournalFormat.RECORD_HEADER_LENGTH + frame.capacity());
+        System.out.printf( "%nArchive: %d bytes, %.1f times smaller than the segment%n", archive.length,
+                (double) segmentBytes / archive.length );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( RECORDS )
+    public long read() throws IOException {
+        long bytes = 0;
+        try (ArchiveReader reader = new ArchiveReader( Channels.newChannel( new ByteArrayInputStream(
+                archive ) ) )) {
+            while (reader.next()) {
+                bytes += reader.getFrame().remaining();
+            }
+        }
+        return bytes;
+    }
+}
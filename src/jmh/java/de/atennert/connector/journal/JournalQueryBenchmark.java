@@ -0,0 +1,107 @@
+package de.atennert.connector.journal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JournalQuery}s over a journal with one frame per millisecond
+ * from {@link #SENDERS} senders and a rare sender with one frame in the middle
+ * of the journal. The journal is written once per trial, with 100 million
+ * frames it takes about 4 GB of disk space, so the large size has to be
+ * selected explicitly, for instance with <code>-p frames=100000000</code>.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class JournalQueryBenchmark {
+
+    private static final int SENDERS = 1000;
+    private static final int RARE_SENDER = 0xDEADBEEF;
+    private static final long MILLI = 1000000L;
+    /** length of the queried time windows: one minute */
+    private static final long WINDOW = 60000 * MILLI;
+
+    /** number of frames in the journal */
+    @Param( { "1000000" } )
+    public int frames;
+
+    private Path directory;
+    private JournalQuery query;
+    private final Random random = new Random( 42 );
+    private final IRecordVisitor visitor = new IRecordVisitor() {
+        @Override
+        public boolean visit( ByteBuffer frame, long receiveNanos, int gateway ) {
+            return true;
+        }
+    };
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "journal" );
+        final ByteBuffer frame = ByteBuffer.allocate( 16 );
+        frame.put( new byte[] { 0x55, 0x00, 0x07, 0x00, 0x01, 0x11, (byte) 0xF6, 0x50, 0, 0, 0, 0, 0x30, 0x00,
+                0x00, 0x00 } );
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).syncPolicy( SyncPolicy.NEVER, 1 )
+                .build()) {
+            for (int i = 0; i < frames; i++) {
+                frame.putInt( 8, i == frames / 2 ? RARE_SENDER : i % SENDERS );
+                ((Buffer) frame).rewind();
+                journal.append( frame, i * MILLI, 0 );
+            }
+        }
+        query = new JournalQuery( directory );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws IOException {
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    /** one sender in a random minute: 60 of 60000 frames */
+    @Benchmark
+    public long senderInWindow() throws IOException {
+        final long from = (long) (random.nextDouble() * (frames * MILLI - WINDOW));
+        return query.query( random.nextInt( SENDERS ), from, from + WINDOW, visitor );
+    }
+
+    /** all frames in a random minute */
+    @Benchmark
+    public long window() throws IOException {
+        final long from = (long) (random.nextDouble() * (frames * MILLI - WINDOW));
+        return query.query( from, from + WINDOW, visitor );
+    }
+
+    /** the sender with one frame in the whole journal */
+    @Benchmark
+    public long rareSender() throws IOException {
+        return query.query( RARE_SENDER, 0, Long.MAX_VALUE, visitor );
+    }
+}
@@ -0,0 +1,80 @@
+package de.atennert.connector.journal;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.reader.PacketEncoder;
+import de.atennert.connector.reader.SystemReceiveClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of appending radio frames to a
+ * {@link TelegramJournal}. A transceiver with 57600 baud delivers at most
+ * about 200 frames of this size per second, so the journal should be several
+ * orders of magnitude faster. Run with <code>-prof gc</code> to see, that an
+ * append doesn't allocate.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TelegramJournalBenchmark {
+
+    /** how the segments are forced to the storage device */
+    @Param( { "NEVER", "ON_ROLL", "PERIODIC" } )
+    public SyncPolicy syncPolicy;
+
+    private Path directory;
+    private TelegramJournal journal;
+    private ByteBuffer frame;
+
+    @Setup( Level.Iteration )
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "journal" );
+        journal = TelegramJournal.builder( directory ).syncPolicy( syncPolicy, 100 ).build();
+        final Packet packet = new RadioPacket( new int[] { 0xA5, 0x00, 0x7D, 0x80, 0x08, 0x01, 0x80, 0x00, 0x01,
+                0x00 }, new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 }, new Date(), true );
+        frame = ByteBuffer.wrap( PacketEncoder.encodePacket( packet ) ).asReadOnlyBuffer();
+    }
+
+    @TearDown( Level.Iteration )
+    public void tearDown() throws IOException {
+        journal.close();
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Benchmark
+    public void append() {
+        // called through Buffer, ByteBuffer overrides the method since Java 9
+        ((Buffer) frame).rewind();
+        final long receiveNanos = SystemReceiveClock.INSTANCE.currentTimeNanos();
+        journal.receiveFrame( frame, TimeUnit.NANOSECONDS.toMillis( receiveNanos ), receiveNanos );
+    }
+}
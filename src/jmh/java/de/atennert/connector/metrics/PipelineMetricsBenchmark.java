@@ -0,0 +1,84 @@
+package de.atennert.connector.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of all metric updates, that happen for one received
+ * packet on its way through the pipeline. Compare it with the time per packet
+ * of the decoder and distributor benchmarks to get the overhead of the
+ * metrics. {@link #tracedPacket()} adds the latency tracing of a sampled
+ * packet.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PipelineMetricsBenchmark {
+
+    private PipelineMetrics metrics;
+
+    private ListenerMetrics listener;
+
+    private PipelineMetrics tracedMetrics;
+
+    private ListenerMetrics tracedListener;
+
+    private long frameStart = 0;
+
+    @Setup
+    public void setup() {
+        metrics = new PipelineMetrics();
+        listener = metrics.listener( "benchmark" );
+        tracedMetrics = new PipelineMetrics( new MetricsRegistry(), 1 );
+        tracedListener = tracedMetrics.listener( "benchmark" );
+    }
+
+    @Benchmark
+    public void metricsPerPacket() {
+        metrics.onBytesRead( 21 );
+        metrics.onFrameDecoded( true );
+        metrics.onPacketCreated( 0x01 );
+        metrics.onDispatchQueued();
+        metrics.onDispatchStarted( null );
+        final long start = System.nanoTime();
+        listener.onInvocation( System.nanoTime() - start );
+    }
+
+    @Benchmark
+    public void tracedPacket() {
+        tracedMetrics.onBytesRead( 21 );
+        tracedMetrics.onBytesQueued( 21 );
+        tracedMetrics.onFrameDecoded( true );
+        final PacketTrace trace = tracedMetrics.onFrameComplete( frameStart );
+        frameStart += 21;
+        tracedMetrics.onPacketCreated( 0x01 );
+        tracedMetrics.onPacketBuilt( trace );
+        tracedMetrics.onDispatchQueued();
+        tracedMetrics.onDispatchStarted( trace );
+        final long start = System.nanoTime();
+        final long end = System.nanoTime();
+        tracedListener.onInvocation( end - start );
+        tracedListener.onReturned( trace, end );
+        tracedMetrics.onDispatchCompleted( trace );
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public void metricsPerPacket4Threads() {
+        metricsPerPacket();
+    }
+}
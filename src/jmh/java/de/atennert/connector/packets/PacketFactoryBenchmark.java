@@ -0,0 +1,95 @@
+package de.atennert.connector.packets;
+
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PacketFactory#createPacket(int, int[], int[], Date, boolean)}
+ * for every EnOcean packet type, for a type that is created by an extension
+ * factory and for a type, that falls back to {@link Packet}. The other
+ * extension factories either declare other types or, like factories without
+ * declared types, support any type and are asked for every extension type.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PacketFactoryBenchmark {
+
+    /** type, that is created by the extension factory */
+    private static final int TYPE_EXTENSION = 0x80;
+
+    /** the EnOcean types, 128 for the extension factory and 129 for the fallback */
+    @Param( { "1", "2", "3", "4", "5", "6", "7", "10", "128", "129" } )
+    public int type;
+
+    /** number of extension factories, that don't create the packet */
+    @Param( { "3" } )
+    public int otherFactories;
+
+    /** whether the other extension factories declare their packet types */
+    @Param( { "true", "false" } )
+    public boolean declaredTypes;
+
+    private PacketFactory factory;
+
+    private int[] data;
+    private int[] optional;
+    private Date timestamp;
+
+    @Setup
+    public void setup() {
+        factory = new PacketFactory( new PipelineMetrics( new MetricsRegistry(), 0 ) );
+        for (int i = 0; i < otherFactories; i++) {
+            final int otherType = TYPE_EXTENSION + 0x10 + i;
+            factory.addFactory( new IPacketFactory() {
+                @Override
+                public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+                    return null;
+                }
+
+                @Override
+                public int[] getSupportedTypes() {
+                    return new int[] { declaredTypes ? otherType : IPacketConstants.TYPE_ANY };
+                }
+            } );
+        }
+        factory.addFactory( new IPacketFactory() {
+            @Override
+            public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+                return type == TYPE_EXTENSION ? new Packet( type, data, optional, timestamp, isValid ) : null;
+            }
+
+            @Override
+            public int[] getSupportedTypes() {
+                return new int[] { TYPE_EXTENSION };
+            }
+        } );
+
+        // long enough for the fixed fields of all packet types
+        data = new int[] { 0xA5, 0x00, 0x00, 0x7F, 0x08, 0xFE, 0xF1, 0x23, 0x45, 0x00, 0x00, 0x00, 0x00, 0x00 };
+        optional = new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 };
+        timestamp = new Date();
+    }
+
+    @Benchmark
+    public Packet createPacket() {
+        return factory.createPacket( type, data, optional, timestamp, true );
+    }
+}
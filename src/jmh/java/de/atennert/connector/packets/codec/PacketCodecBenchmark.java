@@ -0,0 +1,156 @@
+package de.atennert.connector.packets.codec;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding a radio packet with {@link PacketCodec}, Java
+ * serialization of the packet fields and JSON. The project has no JSON
+ * library, so the JSON is written and parsed by hand for exactly this
+ * structure, which is a lower bound for a JSON library.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PacketCodecBenchmark {
+
+    private final PacketFactory factory = new PacketFactory();
+    private final PacketRecord record = new PacketRecord();
+    private final ByteBuffer buffer = ByteBuffer.allocate( 256 );
+
+    private Packet packet;
+    private ByteBuffer encoded;
+    private byte[] serialized;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        packet = new RadioPacket( new int[] { 0xA5, 0x00, 0x7D, 0x80, 0x08, 0x01, 0x80, 0x00, 0x01, 0x00 },
+                new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 }, new Date(), true );
+        encoded = ByteBuffer.allocate( 256 );
+        PacketCodec.encode( packet, 1, packet.timestamp.getTime() - 1000, encoded );
+        ((Buffer) encoded).flip();
+        serialized = javaSerializationEncode();
+        json = jsonEncode();
+    }
+
+    @Benchmark
+    public ByteBuffer codecEncode() {
+        ((Buffer) buffer).clear();
+        PacketCodec.encode( packet, 1, packet.timestamp.getTime() - 1000, buffer );
+        return buffer;
+    }
+
+    @Benchmark
+    public Packet codecDecode() {
+        ((Buffer) encoded).rewind();
+        record.read( encoded, packet.timestamp.getTime() - 1000 );
+        return record.toPacket( factory );
+    }
+
+    @Benchmark
+    public byte[] javaSerializationEncode() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream( 512 );
+        try (ObjectOutputStream output = new ObjectOutputStream( bytes )) {
+            output.writeObject( new Object[] { packet.type, packet.getData(), packet.getOptional(), packet.timestamp,
+                    packet.isValid, 1 } );
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Packet javaSerializationDecode() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream( new ByteArrayInputStream( serialized ) )) {
+            final Object[] fields = (Object[]) input.readObject();
+            return factory.createPacket( (Integer) fields[0], (int[]) fields[1], (int[]) fields[2],
+                    (Date) fields[3], (Boolean) fields[4] );
+        }
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        final StringBuilder builder = new StringBuilder( 160 );
+        builder.append( "{\"type\":" ).append( packet.type ).append( ",\"timestamp\":" )
+                .append( packet.timestamp.getTime() ).append( ",\"valid\":" ).append( packet.isValid )
+                .append( ",\"gateway\":" ).append( 1 ).append( ",\"data\":" );
+        appendArray( builder, packet.getData() );
+        builder.append( ",\"optional\":" );
+        appendArray( builder, packet.getOptional() );
+        return builder.append( '}' ).toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    @Benchmark
+    public Packet jsonDecode() {
+        final String text = new String( json, StandardCharsets.UTF_8 );
+        final int[] position = { 0 };
+        final int type = (int) parseNumber( text, position, "\"type\":" );
+        final long timestamp = parseNumber( text, position, "\"timestamp\":" );
+        position[0] = text.indexOf( "\"valid\":", position[0] ) + 8;
+        final boolean valid = text.startsWith( "true", position[0] );
+        parseNumber( text, position, "\"gateway\":" );
+        final int[] data = parseArray( text, position, "\"data\":" );
+        final int[] optional = parseArray( text, position, "\"optional\":" );
+        return factory.createPacket( type, data, optional, new Date( timestamp ), valid );
+    }
+
+    private static void appendArray( StringBuilder builder, int[] values ) {
+        builder.append( '[' );
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append( ',' );
+            }
+            builder.append( values[i] );
+        }
+        builder.append( ']' );
+    }
+
+    private static long parseNumber( String text, int[] position, String key ) {
+        int i = text.indexOf( key, position[0] ) + key.length();
+        final int start = i;
+        while (i < text.length() && (Character.isDigit( text.charAt( i ) ) || text.charAt( i ) == '-')) {
+            i++;
+        }
+        position[0] = i;
+        return Long.parseLong( text.substring( start, i ) );
+    }
+
+    private static int[] parseArray( String text, int[] position, String key ) {
+        final int start = text.indexOf( key, position[0] ) + key.length() + 1;
+        final int end = text.indexOf( ']', start );
+        position[0] = end + 1;
+        if (end == start) {
+            return new int[0];
+        }
+        final String[] values = text.substring( start, end ).split( "," );
+        final int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Integer.parseInt( values[i] );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+package de.atennert.connector.packets.eep;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decoding of radio packets with {@link EepDecoder}, which looks
+ * up the profile of the sender and applies its extraction plan, compared to
+ * decoding the same fields by hand from a copy of the data, like the packet
+ * listeners did before.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EepDecoderBenchmark {
+
+    private static final int BASE_ID = 0x01800000;
+
+    /** profile of the decoded packets */
+    @Param( { "F6-02-01", "A5-02-05", "A5-04-01" } )
+    public String profile;
+
+    /** number of mapped devices */
+    @Param( { "1000" } )
+    public int devices;
+
+    private EepDecoder decoder;
+    private Packet packet;
+    private final double[] values = new double[8];
+
+    @Setup
+    public void setup() {
+        final EepProfile eep = EepProfiles.get( profile );
+        decoder = new EepDecoder();
+        for (int i = 0; i < devices; i++) {
+            decoder.map( BASE_ID + i, eep );
+        }
+        final int sender = BASE_ID + devices / 2;
+        final int[] userData = eep.getROrg() == EepProfiles.RORG_RPS ? new int[] { 0x50 }
+                : new int[] { 0x00, 0x7D, 0x80, 0x08 };
+        final int[] data = new int[userData.length + 6];
+        data[0] = eep.getROrg();
+        System.arraycopy( userData, 0, data, 1, userData.length );
+        data[data.length - 5] = sender >>> 24;
+        data[data.length - 4] = (sender >>> 16) & 0xFF;
+        data[data.length - 3] = (sender >>> 8) & 0xFF;
+        data[data.length - 2] = sender & 0xFF;
+        data[data.length - 1] = 0x30;
+        packet = new RadioPacket( data, new Date(), true );
+    }
+
+    @Benchmark
+    public EepProfile profileEngine() {
+        return decoder.decode( packet, values );
+    }
+
+    @Benchmark
+    public void handDecoded( Blackhole blackhole ) {
+        final int[] data = packet.getData();
+        switch (profile) {
+            case "F6-02-01":
+                blackhole.consume( data[1] >> 5 );
+                blackhole.consume( (data[1] >> 4) & 0x01 );
+                blackhole.consume( (data[1] >> 1) & 0x07 );
+                blackhole.consume( data[1] & 0x01 );
+                break;
+            case "A5-02-05":
+                blackhole.consume( (255 - data[3]) * 40.0 / 255 );
+                blackhole.consume( (data[4] >> 3) & 0x01 );
+                break;
+            default:
+                blackhole.consume( data[2] * 100.0 / 250 );
+                blackhole.consume( data[3] * 40.0 / 250 );
+                blackhole.consume( (data[4] >> 3) & 0x01 );
+                blackhole.consume( (data[4] >> 1) & 0x01 );
+                break;
+        }
+    }
+}
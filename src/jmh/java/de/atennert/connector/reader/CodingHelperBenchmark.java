@@ -0,0 +1,60 @@
+package de.atennert.connector.reader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CRC8 calculation of {@link CodingHelper} for the header and
+ * for payloads of different sizes.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CodingHelperBenchmark {
+
+    /** number of data bytes, the optional part has 7 bytes */
+    @Param( { "7", "14", "64" } )
+    public int dataLength;
+
+    private int[] header;
+    private int[] data;
+    private int[] optional;
+
+    @Setup
+    public void setup() {
+        data = new int[dataLength];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 31) & 0xFF;
+        }
+        optional = new int[] { 0x03, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x00 };
+        header = new int[] { 0x00, dataLength, optional.length, 0x01 };
+    }
+
+    @Benchmark
+    public int headerChecksum() {
+        int checksum = 0;
+        for (final int value : header) {
+            checksum = CodingHelper.processCRC8( checksum, value );
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public int payloadChecksum() {
+        return CodingHelper.calculatePayloadChecksum( data, optional );
+    }
+}
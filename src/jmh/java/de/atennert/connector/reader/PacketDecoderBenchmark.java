@@ -0,0 +1,148 @@
+package de.atennert.connector.reader;
+
+import de.atennert.connector.distribution.IRawFrameListener;
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the framing of {@link PacketDecoder} over a synthetic ESP3 byte
+ * stream with {@value #FRAMES} frames. With a packet listener, the packets
+ * are created, but the distribution is skipped. A raw frame listener gets the
+ * frames without packets. Without a listener, the decoder skips the frames
+ * after the header check.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PacketDecoderBenchmark {
+
+    static final int FRAMES = 100;
+
+    /**
+     * RPS: rocker switch telegram, 4BS: sensor telegram, VLD: variable length
+     * telegram with 14 data bytes, NOISE: 4BS telegrams with a garbage byte
+     * before each sync byte
+     */
+    @Param( { "RPS", "4BS", "VLD", "NOISE" } )
+    public String telegram;
+
+    /** PACKET: packet listener, RAW: raw frame listener, NONE: no listener */
+    @Param( { "PACKET", "RAW", "NONE" } )
+    public String listener;
+
+    private PacketDecoder decoder;
+
+    @Setup
+    public void setup( final Blackhole blackhole ) {
+        final int[] data;
+        switch( telegram ) {
+            case "RPS":
+                data = new int[] { 0xF6, 0x50, 0xFE, 0xF1, 0x23, 0x45, 0x30 };
+                break;
+            case "VLD":
+                data = new int[] { 0xD2, 1, 2, 3, 4, 5, 6, 7, 8, 0xFE, 0xF1, 0x23, 0x45, 0x00 };
+                break;
+            default:
+                data = new int[] { 0xA5, 0x00, 0x00, 0x7F, 0x08, 0xFE, 0xF1, 0x23, 0x45, 0x00 };
+                break;
+        }
+        final int[] optional = { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 };
+        final byte[] frame = PacketEncoder.encodePacket(
+                new Packet( IPacketConstants.TYPE_RADIO, data, optional, new Date(), true ) );
+        final int gap = "NOISE".equals( telegram ) ? 1 : 0;
+
+        final Integer[] stream = new Integer[FRAMES * (frame.length + gap)];
+        int position = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            if (gap > 0) {
+                stream[position++] = 0x33;
+            }
+            for (final byte value : frame) {
+                stream[position++] = value & 0xFF;
+            }
+        }
+
+        final PipelineMetrics metrics = new PipelineMetrics( new MetricsRegistry(), 0 );
+        final PacketDistributor distributor = new PacketDistributor() {
+            @Override
+            public boolean hasListeners( int type ) {
+                return "PACKET".equals( listener );
+            }
+
+            @Override
+            public void distributePacket( Packet packet ) {
+                // measure the decoder only
+            }
+        };
+        decoder = new PacketDecoder( new StreamQueue( stream ), distributor, new PacketFactory( metrics ),
+                null, WaitStrategy.SLEEPING, PacketDecoder.DEFAULT_WAIT_TIME, metrics );
+        if ("RAW".equals( listener )) {
+            decoder.addRawFrameListener( new IRawFrameListener() {
+                @Override
+                public void receiveFrame( ByteBuffer frame, long timestamp ) {
+                    blackhole.consume( frame );
+                }
+            } );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( FRAMES )
+    public void decodeFrames() {
+        decoder.decodeAvailableData();
+    }
+
+    /**
+     * Queue, that returns the same bytes on every pass. It is empty once at the
+     * end of each pass, so the decoder stops there.
+     */
+    private static class StreamQueue extends LinkedBlockingQueue< Integer > {
+        private static final long serialVersionUID = 1L;
+
+        private final Integer[] stream;
+        private int position = 0;
+
+        private StreamQueue( Integer[] stream ) {
+            this.stream = stream;
+        }
+
+        @Override
+        public Integer poll() {
+            if (position == stream.length) {
+                position = 0;
+                return null;
+            }
+            return stream[position++];
+        }
+
+        @Override
+        public Integer poll( long timeout, TimeUnit unit ) {
+            return poll();
+        }
+    }
+}
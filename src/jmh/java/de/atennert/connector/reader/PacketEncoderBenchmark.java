@@ -0,0 +1,52 @@
+package de.atennert.connector.reader;
+
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PacketEncoder#encodePacket(Packet)} for packets with
+ * different payload sizes.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PacketEncoderBenchmark {
+
+    /** number of data bytes, the optional part has 7 bytes */
+    @Param( { "7", "14", "64" } )
+    public int dataLength;
+
+    private Packet packet;
+
+    @Setup
+    public void setup() {
+        final int[] data = new int[dataLength];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 31) & 0xFF;
+        }
+        packet = new Packet( IPacketConstants.TYPE_RADIO, data, new int[] { 0x03, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x00 },
+                new Date(), true );
+    }
+
+    @Benchmark
+    public byte[] encodePacket() {
+        return PacketEncoder.encodePacket( packet );
+    }
+}
@@ -0,0 +1,86 @@
+package de.atennert.connector.security;
+
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating packets from VAES encrypted 4BS telegrams with 4 byte
+ * CMAC of {@link #DEVICES} devices. The rolling codes are reset before every
+ * batch of telegrams. Without transmitted rolling code, every telegram
+ * follows a lost one, so the receiver calculates two CMACs per telegram.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SecureTelegramBenchmark {
+
+    private static final int DEVICES = 1000;
+    private static final int TELEGRAMS_PER_DEVICE = 16;
+    private static final int TELEGRAMS = DEVICES * TELEGRAMS_PER_DEVICE;
+
+    /** <code>true</code> if the rolling code is transmitted */
+    @Param( { "true", "false" } )
+    public boolean rollingCodeTransmitted;
+
+    private final SecurityKeyStore keys = new SecurityKeyStore();
+    private final SecureTelegramFactory factory = new SecureTelegramFactory( new PacketFactory(), keys );
+    private final int[] optional = { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 };
+    private final Date timestamp = new Date();
+    private final int[][] telegrams = new int[TELEGRAMS][];
+
+    @Setup
+    public void setup() {
+        final int slf = SecurityKeyStore.SLF_RLC_24 | SecurityKeyStore.SLF_MAC_4 | SecurityKeyStore.SLF_ENC_VAES
+                | (rollingCodeTransmitted ? SecurityKeyStore.SLF_RLC_TX : 0);
+        final Random random = new Random( 42 );
+        for (int d = 0; d < DEVICES; d++) {
+            final byte[] key = new byte[16];
+            random.nextBytes( key );
+            final int sender = 0x01800000 + d;
+            keys.addDevice( sender, key, slf, 0 );
+            final SecureDevice device = new SecureDevice( key, slf, 0, 1 );
+            for (int t = 0; t < TELEGRAMS_PER_DEVICE; t++) {
+                final int[] data = { 0xA5, 0x00, 0x00, random.nextInt( 256 ), 0x08, sender >>> 24,
+                        sender >>> 16 & 0xFF, sender >>> 8 & 0xFF, sender & 0xFF, 0x00 };
+                telegrams[t * DEVICES + d] = device.encode( data, 2 * t + 2, true );
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( TELEGRAMS )
+    public int decrypt() {
+        for (int d = 0; d < DEVICES; d++) {
+            keys.setRollingCode( 0x01800000 + d, 0 );
+        }
+        int valid = 0;
+        for (final int[] telegram : telegrams) {
+            final Packet packet = factory.createPacket( IPacketConstants.TYPE_RADIO, telegram, optional, timestamp,
+                    true );
+            if (packet.isValid) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
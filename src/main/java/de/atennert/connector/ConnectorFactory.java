@@ -1,39 +1,411 @@
 package de.atennert.connector;
 
+import de.atennert.connector.devices.DeviceRegistry;
+import de.atennert.connector.devices.DeviceStateCache;
+import de.atennert.connector.devices.TimeSeriesStore;
+import de.atennert.connector.discovery.ExtensionDiscovery;
 import de.atennert.connector.distribution.PacketDistributor;
 import de.atennert.connector.facade.ConnectorFacade;
+import de.atennert.connector.health.PipelineWatchdog;
+import de.atennert.connector.journal.TelegramJournal;
+import de.atennert.connector.metrics.IMetricsExporter;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketFactory;
 import de.atennert.connector.packets.Packet;
 import de.atennert.connector.packets.PacketFactory;
 import de.atennert.connector.reader.ComConnector;
 import de.atennert.connector.reader.PacketDecoder;
+import de.atennert.connector.reader.PortDiscovery;
+import de.atennert.connector.reader.SendBuffer;
+import de.atennert.connector.reader.WaitStrategy;
+import de.atennert.connector.security.SecureTelegramFactory;
+import de.atennert.connector.security.SecurityKeyStore;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Factory for creating an IEnOceanConnector instance, through which the
- * EnOceanConnector library should be accessed.
+ * EnOceanConnector library should be accessed.<br>
+ * <br>
+ * {@link #createConnector()} always returns the same instance. Independent
+ * instances, for instance one per transceiver, can be created with a
+ * {@link Builder}, which is returned by {@link #builder()}.
  */
 public final class ConnectorFactory {
 
     private static IEnOceanConnector connectorInstance = null;
 
+    /** port discovery of all instances, that are built without one */
+    private static PortDiscovery sharedPortDiscovery = null;
+
     public static synchronized IEnOceanConnector createConnector() {
         if (connectorInstance == null) {
-            final BlockingQueue<Integer> receiveByteQueue = new LinkedBlockingQueue<>();
-            final BlockingQueue<Packet> sendPacketQueue = new LinkedBlockingQueue<>();
-            final PacketFactory packetFactory = new PacketFactory();
-            final PacketDistributor packetDistributor = new PacketDistributor();
-
-            connectorInstance = new ConnectorFacade( packetFactory,
-                    packetDistributor,
-                    new ComConnector( receiveByteQueue, sendPacketQueue ),
-                    new PacketDecoder( receiveByteQueue, packetDistributor, packetFactory ),
-                    sendPacketQueue);
+            connectorInstance = builder().build();
         }
         return connectorInstance;
     }
 
+    /**
+     * @return a new builder for creating independent connector instances
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static synchronized PortDiscovery getSharedPortDiscovery() {
+        if (sharedPortDiscovery == null) {
+            sharedPortDiscovery = new PortDiscovery();
+        }
+        return sharedPortDiscovery;
+    }
+
     // Don't allow creating an instance
     private ConnectorFactory() {}
+
+    /**
+     * Builder for {@link IEnOceanConnector} instances. Every call of
+     * {@link #build()} creates a new instance with its own queues, factory,
+     * distributor and serial port connection. The thread pools for packet
+     * distribution and decoding and the scheduler of the watchdogs can be
+     * shared between instances by setting the same executors in multiple
+     * builders. Executors, that are set in a builder, are not shut down by the
+     * connectors, also not by {@link IEnOceanConnector#close()}.
+     */
+    public static final class Builder {
+
+        private ExecutorService dispatchExecutor = null;
+        private int dispatchThreads = PacketDistributor.DEFAULT_THREADS;
+        private ScheduledExecutorService decoderExecutor = null;
+        private int receiveQueueCapacity = Integer.MAX_VALUE;
+        private int sendQueueCapacity = Integer.MAX_VALUE;
+        private WaitStrategy waitStrategy = WaitStrategy.SLEEPING;
+        private long waitTime = PacketDecoder.DEFAULT_WAIT_TIME;
+        private PortDiscovery portDiscovery = null;
+        private int sendBufferCapacity = SendBuffer.DEFAULT_CAPACITY;
+        private long sendBufferTimeToLive = SendBuffer.DEFAULT_TIME_TO_LIVE;
+        private final List<IMetricsExporter> metricsExporters = new ArrayList<>();
+        private int latencySampling = PipelineMetrics.DEFAULT_SAMPLING;
+        private PipelineWatchdog.Builder watchdog = PipelineWatchdog.builder();
+        private ScheduledExecutorService watchdogExecutor = null;
+        private boolean discoverExtensions = true;
+        private ClassLoader extensionLoader = null;
+        private DeviceRegistry deviceRegistry = null;
+        private int gateway = 0;
+        private DeviceStateCache deviceStates = null;
+        private TimeSeriesStore timeSeries = null;
+        private TelegramJournal journal = null;
+        private int journalGateway = 0;
+        private SecurityKeyStore securityKeys = null;
+
+        private Builder() {}
+
+        /**
+         * @param executor executor for calling packet listeners, it may be
+         *            shared with other connector instances
+         * @return this builder
+         */
+        public Builder dispatchExecutor( ExecutorService executor ) {
+            this.dispatchExecutor = executor;
+            return this;
+        }
+
+        /**
+         * @param threads number of threads for calling packet listeners, if no
+         *            dispatch executor is set
+         * @return this builder
+         */
+        public Builder dispatchThreads( int threads ) {
+            if (threads < 1) {
+                throw new IllegalArgumentException( "At least one dispatch thread is required!" );
+            }
+            this.dispatchThreads = threads;
+            return this;
+        }
+
+        /**
+         * @param executor executor for decoding received data, it may be
+         *            shared with other connector instances
+         * @return this builder
+         */
+        public Builder decoderExecutor( ScheduledExecutorService executor ) {
+            this.decoderExecutor = executor;
+            return this;
+        }
+
+        /**
+         * @param capacity maximum number of received bytes, that wait for
+         *            decoding
+         * @return this builder
+         */
+        public Builder receiveQueueCapacity( int capacity ) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException( "The receive queue capacity must be positive!" );
+            }
+            this.receiveQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param capacity maximum number of packets, that wait for sending
+         * @return this builder
+         */
+        public Builder sendQueueCapacity( int capacity ) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException( "The send queue capacity must be positive!" );
+            }
+            this.sendQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param waitStrategy how the decoder and the writer wait for new data
+         * @param waitTime time in milliseconds to wait for new data
+         * @return this builder
+         */
+        public Builder waitStrategy( WaitStrategy waitStrategy, long waitTime ) {
+            if (waitStrategy == null || waitTime < 1) {
+                throw new IllegalArgumentException( "A wait strategy and a positive wait time are required!" );
+            }
+            this.waitStrategy = waitStrategy;
+            this.waitTime = waitTime;
+            return this;
+        }
+
+        /**
+         * @param portDiscovery discovery of serial ports, it may be shared with
+         *            other connector instances, by default all instances
+         *            share one discovery
+         * @return this builder
+         */
+        public Builder portDiscovery( PortDiscovery portDiscovery ) {
+            this.portDiscovery = portDiscovery;
+            return this;
+        }
+
+        /**
+         * @param capacity maximum number of packets, that are kept while the
+         *            connection to the transceiver is lost
+         * @param timeToLive time in milliseconds after which a kept packet is
+         *            dropped instead of being sent
+         * @return this builder
+         */
+        public Builder sendBuffer( int capacity, long timeToLive ) {
+            if (capacity < 1 || timeToLive < 1) {
+                throw new IllegalArgumentException( "Capacity and time to live of the send buffer must be positive!" );
+            }
+            this.sendBufferCapacity = capacity;
+            this.sendBufferTimeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * @param exporter exporter for the metrics of the new instance, an
+         *            exporter must not be used for more than one instance
+         * @return this builder
+         */
+        public Builder metricsExporter( IMetricsExporter exporter ) {
+            metricsExporters.add( exporter );
+            return this;
+        }
+
+        /**
+         * @param sampling trace the latency of every n-th received packet, 1
+         *            traces all packets, 0 disables the tracing
+         * @return this builder
+         */
+        public Builder latencySampling( int sampling ) {
+            if (sampling < 0) {
+                throw new IllegalArgumentException( "The sampling must not be negative!" );
+            }
+            this.latencySampling = sampling;
+            return this;
+        }
+
+        /**
+         * @param watchdog builder for the watchdog of the new instance, which
+         *            sets the check interval, stall timeout and queue
+         *            thresholds
+         * @return this builder
+         */
+        public Builder watchdog( PipelineWatchdog.Builder watchdog ) {
+            if (watchdog == null) {
+                throw new IllegalArgumentException( "A watchdog builder is required!" );
+            }
+            this.watchdog = watchdog;
+            return this;
+        }
+
+        /**
+         * @param executor executor for the checks of the watchdog, it may be
+         *            shared with other connector instances, by default every
+         *            watchdog has its own thread
+         * @return this builder
+         */
+        public Builder watchdogExecutor( ScheduledExecutorService executor ) {
+            this.watchdogExecutor = executor;
+            return this;
+        }
+
+        /**
+         * @param discover <code>true</code> to register the packet factories
+         *            and packet listeners, that are listed in
+         *            <code>META-INF/services</code> files, with the new
+         *            instance (default), <code>false</code> otherwise
+         * @return this builder
+         * @see ExtensionDiscovery
+         */
+        public Builder discoverExtensions( boolean discover ) {
+            this.discoverExtensions = discover;
+            return this;
+        }
+
+        /**
+         * @param loader class loader for discovering extensions, by default
+         *            the context class loader of the building thread
+         * @return this builder
+         */
+        public Builder extensionClassLoader( ClassLoader loader ) {
+            this.extensionLoader = loader;
+            return this;
+        }
+
+        /**
+         * @param registry device registry for the new instance, that may be
+         *            shared with other instances, by default there is no
+         *            registry, so the decoder doesn't copy the frames for it
+         * @param gateway ID of the new instance in the registry, for instance
+         *            the base ID of its transceiver
+         * @return this builder
+         */
+        public Builder deviceRegistry( DeviceRegistry registry, int gateway ) {
+            if (registry == null) {
+                throw new IllegalArgumentException( "A device registry is required!" );
+            }
+            this.deviceRegistry = registry;
+            this.gateway = gateway;
+            return this;
+        }
+
+        /**
+         * @param cache cache for the latest telegrams of the devices, that
+         *            may be shared with other instances, by default there is
+         *            no cache, so radio packets are only created for other
+         *            listeners
+         * @return this builder
+         */
+        public Builder deviceStates( DeviceStateCache cache ) {
+            this.deviceStates = cache;
+            return this;
+        }
+
+        /**
+         * @param store store for the history of the field values of the
+         *            devices, which may be shared with other instances, by
+         *            default there is no history
+         * @return this builder
+         */
+        public Builder timeSeries( TimeSeriesStore store ) {
+            this.timeSeries = store;
+            return this;
+        }
+
+        /**
+         * @param journal journal for all received frames, which may be shared
+         *            with other instances, by default there is no journal,
+         *            the journal isn't closed by the connector
+         * @param gateway ID of the new instance in the journal, for instance
+         *            the base ID of its transceiver
+         * @return this builder
+         */
+        public Builder journal( TelegramJournal journal, int gateway ) {
+            this.journal = journal;
+            this.journalGateway = gateway;
+            return this;
+        }
+
+        /**
+         * @param keys keys of the secure devices, which may be shared with
+         *            other instances, secure telegrams of these devices are
+         *            verified and decrypted before they are distributed, by
+         *            default secure telegrams are distributed as received
+         * @return this builder
+         * @see SecureTelegramFactory
+         */
+        public Builder securityKeys( SecurityKeyStore keys ) {
+            this.securityKeys = keys;
+            return this;
+        }
+
+        /**
+         * @return a new connector instance
+         */
+        public IEnOceanConnector build() {
+            final MetricsRegistry registry = new MetricsRegistry();
+            final PipelineMetrics metrics = new PipelineMetrics( registry, latencySampling );
+            final BlockingQueue<Integer> receiveByteQueue = new LinkedBlockingQueue<>( receiveQueueCapacity );
+            final BlockingQueue<Packet> sendPacketQueue = new LinkedBlockingQueue<>( sendQueueCapacity );
+            final PacketFactory packetFactory = new PacketFactory( metrics );
+            final PacketDistributor packetDistributor = dispatchExecutor != null
+                    ? new PacketDistributor( dispatchExecutor, metrics )
+                    : new PacketDistributor( dispatchThreads, metrics );
+            if (discoverExtensions) {
+                final ClassLoader loader = getExtensionLoader();
+                packetFactory.addFactories( ExtensionDiscovery.discoverFactories( loader ) );
+                packetDistributor.addListeners( ExtensionDiscovery.discoverListeners( loader ) );
+            }
+
+            final PipelineWatchdog pipelineWatchdog = watchdog.build( registry );
+            if (deviceStates != null) {
+                packetDistributor.addListener( DeviceStateCache.LISTENER_ID, deviceStates );
+            }
+            if (timeSeries != null) {
+                packetDistributor.addListener( TimeSeriesStore.LISTENER_ID, timeSeries );
+            }
+            final IPacketFactory decoderFactory = securityKeys == null ? packetFactory
+                    : new SecureTelegramFactory( packetFactory, securityKeys, registry );
+            final PacketDecoder packetDecoder = new PacketDecoder( receiveByteQueue, packetDistributor, decoderFactory,
+                    decoderExecutor, waitStrategy, waitTime, metrics );
+            if (deviceRegistry != null) {
+                packetDecoder.addRawFrameListener( deviceRegistry.frameListener( gateway ) );
+            }
+            if (journal != null) {
+                packetDecoder.addRawFrameListener( journal.frameListener( journalGateway ) );
+            }
+            final IEnOceanConnector connector = new ConnectorFacade( packetFactory,
+                    packetDistributor,
+                    new ComConnector( receiveByteQueue, sendPacketQueue, waitStrategy, waitTime,
+                            portDiscovery != null ? portDiscovery : getSharedPortDiscovery(),
+                            new SendBuffer( sendBufferCapacity, sendBufferTimeToLive ), metrics ),
+                    packetDecoder,
+                    sendPacketQueue,
+                    registry,
+                    pipelineWatchdog,
+                    deviceRegistry,
+                    deviceStates );
+
+            for (final IMetricsExporter exporter : metricsExporters) {
+                registry.addExporter( exporter );
+            }
+            if (watchdogExecutor != null) {
+                pipelineWatchdog.start( watchdogExecutor );
+            } else {
+                pipelineWatchdog.start();
+            }
+            return connector;
+        }
+
+        private ClassLoader getExtensionLoader() {
+            if (extensionLoader != null) {
+                return extensionLoader;
+            }
+            final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+            return contextLoader != null ? contextLoader : ConnectorFactory.class.getClassLoader();
+        }
+    }
 }
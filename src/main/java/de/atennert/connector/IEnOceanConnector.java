@@ -1,7 +1,12 @@
 package de.atennert.connector;
 
+import de.atennert.connector.devices.DeviceRegistry;
+import de.atennert.connector.devices.DeviceStateCache;
 import de.atennert.connector.distribution.IEventListener;
 import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.IRawFrameListener;
+import de.atennert.connector.health.PipelineWatchdog;
+import de.atennert.connector.metrics.MetricsRegistry;
 import de.atennert.connector.packets.IPacketFactory;
 import de.atennert.connector.packets.Packet;
 import de.atennert.connector.reader.ComConnector;
@@ -11,7 +16,7 @@ import java.util.List;
 /**
  * Interface for accessing the functions of the EnOceanConnector.
  */
-public interface IEnOceanConnector
+public interface IEnOceanConnector extends AutoCloseable
 {
     /**
      * Start to read EnOcean messages and distribute them to packet listeners
@@ -24,9 +29,21 @@ public interface IEnOceanConnector
      */
     void stopDataAcquisition();
 
+    /**
+     * Release the connector: stop the data acquisition, the watchdog and the
+     * metrics exporters, which unregisters the MBeans of JMX exporters, and
+     * shut down the thread pools, that were created for the connector.
+     * Executors, that were given to the
+     * {@link ConnectorFactory.Builder}, may be shared, so they are not shut
+     * down. A closed connector can't be used anymore.
+     */
+    @Override
+    void close();
+
     /**
      * Add a packet listener to the distributor. This listener will receive
-     * EnOcean data packets.
+     * EnOcean data packets. Packet listeners can also be added while the data
+     * acquisition is running.
      *
      * @param packetListener the packet listener to add
      */
@@ -34,16 +51,34 @@ public interface IEnOceanConnector
 
 
     /**
-     * Remove a packet listener from the distributor.
+     * Remove a packet listener from the distributor. Packet listeners can also
+     * be removed while the data acquisition is running.
      *
      * @param packetListener the packet listener to remove
      */
     void removePacketListener( IPacketListener packetListener );
 
     /**
-     * Add a port listener to the connector. This listener will repeatedly
-     * receive updates for available serial ports (names in form of strings)
-     * whenever the data acquisition is <em>NOT</em> active.
+     * Add a raw frame listener. It receives the ESP3 frames with valid
+     * checksums directly from the decoder, without creating packets. Raw
+     * frame listeners can also be added while the data acquisition is
+     * running.
+     *
+     * @param frameListener the raw frame listener to add
+     */
+    void addRawFrameListener( IRawFrameListener frameListener );
+
+    /**
+     * Remove a raw frame listener.
+     *
+     * @param frameListener the raw frame listener to remove
+     */
+    void removeRawFrameListener( IRawFrameListener frameListener );
+
+    /**
+     * Add a port listener to the connector. This listener will receive
+     * updates for available serial ports (names in form of strings) whenever
+     * a serial device appears or disappears.
      *
      * @param portListener The port listener to add
      */
@@ -87,6 +122,8 @@ public interface IEnOceanConnector
      * messages are covered by the main factory.
      *
      * @param factory the factory to add to the main factory.
+     * @throws IllegalArgumentException if the factory returns
+     *             <code>null</code> as supported types
      */
     void addPacketFactory( IPacketFactory factory );
 
@@ -102,4 +139,54 @@ public interface IEnOceanConnector
      * @param packet The data packet
      */
     void sendDataPacket( Packet packet);
+
+    /**
+     * Get the metrics of the connector, for instance the number of read bytes,
+     * decoded frames, distributed packets and the sizes of the queues.
+     * Exporters can be added to the registry to publish the metrics.
+     *
+     * @return the metrics registry of this connector
+     */
+    MetricsRegistry getMetrics();
+
+    /**
+     * Get the watchdog of the connector, which checks the progress of the
+     * reader, decoder, distributor and writer. Health listeners can be added
+     * to the watchdog to be informed when a stage stalls or degrades.
+     *
+     * @return the pipeline watchdog of this connector
+     */
+    PipelineWatchdog getWatchdog();
+
+    /**
+     * Get the registry of the devices, that sent telegrams to the connector.
+     * It is updated by the decoder for every received radio telegram and may
+     * be shared with other connectors.
+     *
+     * @return the device registry of this connector or <code>null</code> if
+     *         none was set when the connector was built
+     */
+    DeviceRegistry getDeviceRegistry();
+
+    /**
+     * Get the cache with the latest telegram of every device. It can be
+     * queried and iterated by any number of threads without locks, while the
+     * connector updates it.
+     *
+     * @return the device state cache of this connector or <code>null</code>
+     *         if none was set when the connector was built
+     */
+    DeviceStateCache getDeviceStates();
+
+    /**
+     * Get the factory, that creates the packets of the received frames. It
+     * uses the added and discovered extension factories and, if the connector
+     * was built with security keys, verifies and decrypts secure telegrams.
+     * It can be given to a
+     * {@link de.atennert.connector.simulation.ReplayEngine}, to replay
+     * recorded frames like the connector processes them.
+     *
+     * @return the packet factory of the decoder
+     */
+    IPacketFactory getPacketFactory();
 }
@@ -0,0 +1,85 @@
+package de.atennert.connector.devices;
+
+import java.util.Locale;
+
+import de.atennert.connector.packets.eep.EepProfile;
+
+/**
+ * The state of a device in the {@link DeviceRegistry}. Records are filled by
+ * {@link DeviceRegistry#get(int, DeviceRecord)}, so a reader can reuse one
+ * record for many lookups without allocating anything.
+ */
+public final class DeviceRecord {
+
+    int senderId;
+    int rOrg;
+    EepProfile profile;
+    int gateway;
+    long firstSeen;
+    long lastSeen;
+    long telegramCount;
+    int rssi;
+
+    /**
+     * @return the ID of the device
+     */
+    public int getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * @return the R-ORG of the last telegram of the device
+     */
+    public int getROrg() {
+        return rOrg;
+    }
+
+    /**
+     * @return the profile of the device or <code>null</code> if it is unknown
+     */
+    public EepProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the gateway, that received the last telegram of the device
+     */
+    public int getGateway() {
+        return gateway;
+    }
+
+    /**
+     * @return the time of the first telegram in milliseconds since the epoch
+     */
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    /**
+     * @return the time of the last telegram in milliseconds since the epoch
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * @return the number of received telegrams
+     */
+    public long getTelegramCount() {
+        return telegramCount;
+    }
+
+    /**
+     * @return the signal strength of the last telegram in dBm or
+     *         {@link DeviceRegistry#NO_RSSI} if it is unknown
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( Locale.ROOT, "%08X {rOrg=%02X, profile=%s, gateway=%d, telegrams=%d, rssi=%d}",
+                senderId, rOrg, profile != null ? profile.getId() : "-", gateway, telegramCount, rssi );
+    }
+}
@@ -0,0 +1,374 @@
+package de.atennert.connector.devices;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.atennert.connector.distribution.IRawFrameListener;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.eep.EepProfile;
+
+/**
+ * Registry of the devices, that sent telegrams to one or more connectors. A
+ * device is identified by its 32 bit sender ID. For every device the registry
+ * keeps the R-ORG of its telegrams, the profile (if set), the gateway, that
+ * received the last telegram, the times of the first and the last telegram,
+ * the number of telegrams and the signal strength of the last telegram.<br>
+ * <br>
+ * The devices are stored in an open addressing hash table with linear
+ * probing. The keys and the values are kept in primitive arrays, one per
+ * property, so neither lookups nor updates allocate anything and both take
+ * constant time, also for installations with a lot of devices. The table only
+ * grows when it becomes half full.<br>
+ * <br>
+ * The registry is updated on the decoder thread by the listener of
+ * {@link #frameListener(int)}, directly from the received frames and without
+ * creating packets. All methods are synchronized, the lock is uncontended
+ * unless a reader queries the registry at the same time.
+ */
+public final class DeviceRegistry {
+
+    /** default number of devices, that fit into the table without growing it */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    /** signal strength of devices, for which it is unknown */
+    public static final int NO_RSSI = Integer.MIN_VALUE;
+
+    /** offset of the data in an ESP3 frame: sync byte, header and header checksum */
+    private static final int FRAME_DATA_OFFSET = 6;
+    /** index of the signal strength in the optional data of radio telegrams */
+    private static final int OPTIONAL_DBM = 5;
+
+    private boolean[] used;
+    private int[] senderIds;
+    private int[] rOrgs;
+    private EepProfile[] profiles;
+    private int[] gateways;
+    private long[] firstSeen;
+    private long[] lastSeen;
+    private long[] telegramCounts;
+    private int[] rssis;
+
+    private int mask;
+    private int size = 0;
+
+    /**
+     * Create a registry with the default capacity.
+     */
+    public DeviceRegistry() {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param capacity number of devices, that fit into the registry before
+     *            its table grows
+     */
+    public DeviceRegistry( int capacity ) {
+        if (capacity < 1 || capacity > 1 << 29) {
+            throw new IllegalArgumentException( "The capacity must be between 1 and 2^29!" );
+        }
+        allocate( Integer.highestOneBit( capacity * 2 - 1 ) << 1 );
+    }
+
+    /**
+     * Record a telegram of a device. Unknown devices are added.
+     *
+     * @param senderId the ID of the device
+     * @param rOrg the R-ORG of the telegram
+     * @param gateway the gateway, that received the telegram
+     * @param timestamp time of reception in milliseconds since the epoch
+     * @param rssi signal strength in dBm or {@link #NO_RSSI}
+     */
+    public synchronized void update( int senderId, int rOrg, int gateway, long timestamp, int rssi ) {
+        int index = indexOf( senderId );
+        if (index < 0) {
+            index = insert( senderId );
+            firstSeen[index] = timestamp;
+        }
+        rOrgs[index] = rOrg;
+        gateways[index] = gateway;
+        lastSeen[index] = timestamp;
+        telegramCounts[index]++;
+        rssis[index] = rssi;
+    }
+
+    /**
+     * Set the profile of a device, for instance after the teach-in. Unknown
+     * devices are added without telegrams.
+     *
+     * @param senderId the ID of the device
+     * @param profile the profile of the device or <code>null</code> to reset
+     *            it
+     */
+    public synchronized void setProfile( int senderId, EepProfile profile ) {
+        int index = indexOf( senderId );
+        if (index < 0) {
+            if (profile == null) {
+                return;
+            }
+            index = insert( senderId );
+            rOrgs[index] = profile.getROrg();
+        }
+        profiles[index] = profile;
+    }
+
+    /**
+     * Read the state of a device into a record. The record can be reused for
+     * many lookups, so this doesn't allocate anything.
+     *
+     * @param senderId the ID of the device
+     * @param record the record for the state of the device
+     * @return <code>true</code> if the device is known and the record was
+     *         filled, <code>false</code> otherwise
+     */
+    public synchronized boolean get( int senderId, DeviceRecord record ) {
+        final int index = indexOf( senderId );
+        if (index < 0) {
+            return false;
+        }
+        record.senderId = senderId;
+        record.rOrg = rOrgs[index];
+        record.profile = profiles[index];
+        record.gateway = gateways[index];
+        record.firstSeen = firstSeen[index];
+        record.lastSeen = lastSeen[index];
+        record.telegramCount = telegramCounts[index];
+        record.rssi = rssis[index];
+        return true;
+    }
+
+    /**
+     * @param senderId the ID of the device
+     * @return a new record with the state of the device or <code>null</code>
+     *         if the device is unknown
+     */
+    public DeviceRecord get( int senderId ) {
+        final DeviceRecord record = new DeviceRecord();
+        return get( senderId, record ) ? record : null;
+    }
+
+    /**
+     * @param senderId the ID of the device
+     * @return <code>true</code> if the device is known
+     */
+    public synchronized boolean contains( int senderId ) {
+        return indexOf( senderId ) >= 0;
+    }
+
+    /**
+     * @param senderId the ID of the device
+     * @return the number of telegrams of the device, 0 for unknown devices
+     */
+    public synchronized long getTelegramCount( int senderId ) {
+        final int index = indexOf( senderId );
+        return index < 0 ? 0 : telegramCounts[index];
+    }
+
+    /**
+     * @return the number of known devices
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the IDs of all known devices, in no particular order
+     */
+    public synchronized int[] getSenderIds() {
+        final int[] ids = new int[size];
+        int count = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                ids[count++] = senderIds[i];
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Remove a device from the registry.
+     *
+     * @param senderId the ID of the device
+     * @return <code>true</code> if the device was removed,
+     *         <code>false</code> if it was unknown
+     */
+    public synchronized boolean remove( int senderId ) {
+        int index = indexOf( senderId );
+        if (index < 0) {
+            return false;
+        }
+        // move the following entries of the probe sequence into the gap
+        int next = (index + 1) & mask;
+        while (used[next]) {
+            final int home = hash( senderIds[next] ) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                move( next, index );
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        clearEntry( index );
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove all devices, the capacity of the registry is kept.
+     */
+    public synchronized void clear() {
+        Arrays.fill( used, false );
+        Arrays.fill( profiles, null );
+        size = 0;
+    }
+
+    /**
+     * Create a listener, that updates the registry with the radio telegrams
+     * of a connector. It is added to the connector with
+     * {@link de.atennert.connector.IEnOceanConnector#addRawFrameListener(IRawFrameListener)}
+     * and reads the sender ID, R-ORG and signal strength directly from the
+     * frames.
+     *
+     * @param gateway ID of the gateway (connector), for instance the base ID
+     *            of its transceiver
+     * @return the listener for the connector
+     */
+    public IRawFrameListener frameListener( final int gateway ) {
+        return new IRawFrameListener() {
+            @Override
+            public void receiveFrame( ByteBuffer frame, long timestamp ) {
+                update( frame, gateway, timestamp );
+            }
+        };
+    }
+
+    /**
+     * Record a radio telegram from an ESP3 frame. Other packet types and
+     * frames, that are too short, are ignored.
+     */
+    void update( ByteBuffer frame, int gateway, long timestamp ) {
+        if (frame.limit() < FRAME_DATA_OFFSET || frame.get( 4 ) != IPacketConstants.TYPE_RADIO) {
+            return;
+        }
+        final int dataLength = (frame.get( 1 ) & 0xFF) << 8 | frame.get( 2 ) & 0xFF;
+        final int optionalLength = frame.get( 3 ) & 0xFF;
+        if (dataLength < 6 || frame.limit() < FRAME_DATA_OFFSET + dataLength + optionalLength) {
+            return;
+        }
+        final int sender = frame.getInt( FRAME_DATA_OFFSET + dataLength - 5 );
+        int rssi = NO_RSSI;
+        if (optionalLength > OPTIONAL_DBM) {
+            final int dBm = frame.get( FRAME_DATA_OFFSET + dataLength + OPTIONAL_DBM ) & 0xFF;
+            // 0xFF is used for sent telegrams
+            rssi = dBm == 0xFF ? NO_RSSI : -dBm;
+        }
+        update( sender, frame.get( FRAME_DATA_OFFSET ) & 0xFF, gateway, timestamp, rssi );
+    }
+
+    /**
+     * @return the index of the device or -1 if it is unknown
+     */
+    private int indexOf( int senderId ) {
+        int index = hash( senderId ) & mask;
+        while (used[index]) {
+            if (senderIds[index] == senderId) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add an unknown device, the table grows if it becomes half full.
+     *
+     * @return the index of the new entry
+     */
+    private int insert( int senderId ) {
+        if (2 * (size + 1) > used.length) {
+            grow();
+        }
+        int index = hash( senderId ) & mask;
+        while (used[index]) {
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        senderIds[index] = senderId;
+        rOrgs[index] = 0;
+        profiles[index] = null;
+        gateways[index] = 0;
+        firstSeen[index] = 0;
+        lastSeen[index] = 0;
+        telegramCounts[index] = 0;
+        rssis[index] = NO_RSSI;
+        size++;
+        return index;
+    }
+
+    private void grow() {
+        final boolean[] oldUsed = used;
+        final int[] oldSenderIds = senderIds;
+        final int[] oldROrgs = rOrgs;
+        final EepProfile[] oldProfiles = profiles;
+        final int[] oldGateways = gateways;
+        final long[] oldFirstSeen = firstSeen;
+        final long[] oldLastSeen = lastSeen;
+        final long[] oldTelegramCounts = telegramCounts;
+        final int[] oldRssis = rssis;
+        allocate( 2 * oldUsed.length );
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int index = hash( oldSenderIds[i] ) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                senderIds[index] = oldSenderIds[i];
+                rOrgs[index] = oldROrgs[i];
+                profiles[index] = oldProfiles[i];
+                gateways[index] = oldGateways[i];
+                firstSeen[index] = oldFirstSeen[i];
+                lastSeen[index] = oldLastSeen[i];
+                telegramCounts[index] = oldTelegramCounts[i];
+                rssis[index] = oldRssis[i];
+            }
+        }
+    }
+
+    private void allocate( int tableSize ) {
+        used = new boolean[tableSize];
+        senderIds = new int[tableSize];
+        rOrgs = new int[tableSize];
+        profiles = new EepProfile[tableSize];
+        gateways = new int[tableSize];
+        firstSeen = new long[tableSize];
+        lastSeen = new long[tableSize];
+        telegramCounts = new long[tableSize];
+        rssis = new int[tableSize];
+        mask = tableSize - 1;
+    }
+
+    private void move( int from, int to ) {
+        used[to] = true;
+        senderIds[to] = senderIds[from];
+        rOrgs[to] = rOrgs[from];
+        profiles[to] = profiles[from];
+        gateways[to] = gateways[from];
+        firstSeen[to] = firstSeen[from];
+        lastSeen[to] = lastSeen[from];
+        telegramCounts[to] = telegramCounts[from];
+        rssis[to] = rssis[from];
+    }
+
+    private void clearEntry( int index ) {
+        used[index] = false;
+        profiles[index] = null;
+    }
+
+    /**
+     * Spread the bits of the sender ID, IDs of one installation often only
+     * differ in the lowest bits.
+     */
+    private static int hash( int senderId ) {
+        int h = senderId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
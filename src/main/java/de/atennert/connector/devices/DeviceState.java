@@ -0,0 +1,75 @@
+package de.atennert.connector.devices;
+
+import java.util.Locale;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.eep.EepDecoder;
+import de.atennert.connector.packets.eep.EepValues;
+
+/**
+ * The latest telegram of a device in the {@link DeviceStateCache}. States are
+ * immutable, a new telegram of the device replaces the whole state, so readers
+ * always see a consistent state without locking.
+ */
+public final class DeviceState {
+
+    private final int senderId;
+    private final long timestamp;
+    private final Packet packet;
+    private final EepDecoder decoder;
+
+    DeviceState( int senderId, long timestamp, Packet packet, EepDecoder decoder ) {
+        this.senderId = senderId;
+        this.timestamp = timestamp;
+        this.packet = packet;
+        this.decoder = decoder;
+    }
+
+    /**
+     * @return the ID of the device
+     */
+    public int getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * @return the time of the telegram in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the latest radio packet of the device
+     */
+    public Packet getPacket() {
+        return packet;
+    }
+
+    /**
+     * Get the field values of the telegram. They are decoded on the first call
+     * and cached in the packet.
+     *
+     * @return the values or <code>null</code> if the profile of the device is
+     *         unknown
+     */
+    public EepValues getValues() {
+        return packet.getEepValues( decoder );
+    }
+
+    /**
+     * @param name short name of a field of the profile of the device
+     * @return the value of the field or {@link Double#NaN} if the profile is
+     *         unknown or has no such field
+     */
+    public double getValue( String name ) {
+        final EepValues values = getValues();
+        return values != null ? values.get( name ) : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        final EepValues values = getValues();
+        return String.format( Locale.ROOT, "%08X@%d %s", senderId, timestamp, values != null ? values : packet );
+    }
+}
@@ -0,0 +1,154 @@
+package de.atennert.connector.devices;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.eep.EepDecoder;
+
+/**
+ * Cache of the latest radio telegram of every device, so applications can
+ * query the current value of a sensor instead of keeping their own maps in
+ * packet listeners. The cache is a packet listener for radio packets, which is
+ * registered by the connector.<br>
+ * <br>
+ * Every device has an immutable {@link DeviceState}, which is replaced by the
+ * next telegram of the device. The states are kept in a concurrent map, so
+ * any number of readers can query and iterate the cache without locks and
+ * without slowing down the distribution. The field values of a state are only
+ * decoded when a reader asks for them, with the profiles of the
+ * {@link EepDecoder} of the cache.
+ */
+public class DeviceStateCache implements IPacketListener {
+
+    /** name (ID) of the cache as packet listener */
+    public static final String LISTENER_ID = "deviceStates";
+
+    private final ConcurrentMap< Integer, DeviceState > states = new ConcurrentHashMap<>();
+    private final EepDecoder decoder;
+
+    /**
+     * Create a cache with its own EEP decoder.
+     */
+    public DeviceStateCache() {
+        this( new EepDecoder() );
+    }
+
+    /**
+     * @param decoder the EEP decoder with the profiles of the devices
+     */
+    public DeviceStateCache( EepDecoder decoder ) {
+        if (decoder == null) {
+            throw new IllegalArgumentException( "An EEP decoder is required!" );
+        }
+        this.decoder = decoder;
+    }
+
+    /**
+     * @return the EEP decoder, which maps the devices to their profiles
+     */
+    public EepDecoder getEepDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public int[] getSupportedPackets() {
+        return new int[] { IPacketConstants.TYPE_RADIO };
+    }
+
+    /**
+     * Replace the state of the sender of the packet. Packets are distributed
+     * by several threads, so an older packet, that arrives late, doesn't
+     * replace a newer state.
+     */
+    @Override
+    public void receivePacket( Packet packet ) {
+        if (!packet.isValid || packet.getDataLength() < 6) {
+            return;
+        }
+        final int senderId = EepDecoder.getSenderId( packet );
+        final long timestamp = packet.timestamp.getTime();
+        final DeviceState state = new DeviceState( senderId, timestamp, packet, decoder );
+        final Integer key = senderId;
+        DeviceState current = states.putIfAbsent( key, state );
+        while (current != null && current.getTimestamp() <= timestamp) {
+            if (states.replace( key, current, state )) {
+                return;
+            }
+            current = states.putIfAbsent( key, state );
+        }
+    }
+
+    /**
+     * @param senderId the ID of a device
+     * @return the latest state of the device or <code>null</code> if it
+     *         didn't send a telegram yet
+     */
+    public DeviceState get( int senderId ) {
+        return states.get( senderId );
+    }
+
+    /**
+     * @return the number of devices in the cache
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Get a live view of all states for iterating them without copying. The
+     * iteration doesn't block the updates, it sees every device once, but
+     * may or may not see updates, that happen during the iteration.
+     *
+     * @return the states of all devices in no particular order
+     */
+    public Collection< DeviceState > getStates() {
+        return Collections.unmodifiableCollection( states.values() );
+    }
+
+    /**
+     * @return a copy of the current states by sender ID
+     */
+    public Map< Integer, DeviceState > snapshot() {
+        return new HashMap<>( states );
+    }
+
+    /**
+     * @param senderIds the IDs of the requested devices
+     * @return the states of the requested devices in the given order, devices
+     *         without state are skipped
+     */
+    public List< DeviceState > getAll( int... senderIds ) {
+        final List< DeviceState > result = new ArrayList<>( senderIds.length );
+        for (final int senderId : senderIds) {
+            final DeviceState state = states.get( senderId );
+            if (state != null) {
+                result.add( state );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param senderId the ID of a device
+     * @return <code>true</code> if the state of the device was removed
+     */
+    public boolean remove( int senderId ) {
+        return states.remove( senderId ) != null;
+    }
+
+    /**
+     * Remove all states.
+     */
+    public void clear() {
+        states.clear();
+    }
+}
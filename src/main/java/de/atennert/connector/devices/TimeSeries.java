@@ -0,0 +1,275 @@
+package de.atennert.connector.devices;
+
+import java.util.Arrays;
+
+import de.atennert.connector.packets.eep.EepProfile;
+import de.atennert.connector.packets.eep.EepValues;
+
+/**
+ * History of the field values of one device. The latest points are kept in a
+ * ring buffer of primitive arrays: one array with the timestamps and one with
+ * the values of all fields, point after point. When the ring is full, the
+ * oldest point is folded into a second ring of buckets with minimum, maximum,
+ * sum and count per field. So the memory of a series is allocated once, when
+ * the series is created, and adding a point doesn't allocate anything.<br>
+ * <br>
+ * Points must arrive in ascending order of time, older points are dropped.
+ * All methods are synchronized, the lock is held only for copying values.
+ */
+public final class TimeSeries {
+
+    private final int senderId;
+    private final EepProfile profile;
+    private final int fieldCount;
+    private final long bucketWidth;
+
+    // ring of raw points
+    private final long[] times;
+    private final double[] values;
+    private int head = 0;
+    private int size = 0;
+
+    // ring of buckets
+    private final long[] bucketStarts;
+    private final double[] minimums;
+    private final double[] maximums;
+    private final double[] sums;
+    private final int[] counts;
+    private int bucketHead = 0;
+    private int bucketSize = 0;
+
+    TimeSeries( int senderId, EepProfile profile, TimeSeriesConfig config ) {
+        this.senderId = senderId;
+        this.profile = profile;
+        this.fieldCount = profile.getFieldCount();
+        this.bucketWidth = config.getBucketWidth();
+        times = new long[config.getRawCapacity()];
+        values = new double[config.getRawCapacity() * fieldCount];
+        bucketStarts = new long[config.getBucketCapacity()];
+        minimums = new double[config.getBucketCapacity() * fieldCount];
+        maximums = new double[config.getBucketCapacity() * fieldCount];
+        sums = new double[config.getBucketCapacity() * fieldCount];
+        counts = new int[config.getBucketCapacity()];
+    }
+
+    /**
+     * @return the ID of the device
+     */
+    public int getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * @return the profile of the device, which defines the fields
+     */
+    public EepProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the number of raw points
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public synchronized int getBucketCount() {
+        return bucketSize;
+    }
+
+    /**
+     * Add the values of a telegram. Older points than the newest point are
+     * dropped.
+     *
+     * @param timestamp time of the telegram in milliseconds since the epoch
+     * @param fieldValues the values of all fields of the profile
+     * @return <code>true</code> if the point was added
+     */
+    synchronized boolean add( long timestamp, EepValues fieldValues ) {
+        if (size > 0 && timestamp < times[index( size - 1 )]) {
+            return false;
+        }
+        if (size == times.length) {
+            downsample( head );
+            head = (head + 1) % times.length;
+            size--;
+        }
+        final int index = index( size );
+        times[index] = timestamp;
+        for (int field = 0; field < fieldCount; field++) {
+            values[index * fieldCount + field] = fieldValues.get( field );
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Read the raw points of a field in a time range into the given arrays.
+     * This doesn't allocate anything.
+     *
+     * @param field index of the field
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param pointTimes array for the times of the points
+     * @param pointValues array for the values of the points
+     * @return the number of points, at most the length of the arrays
+     */
+    public synchronized int queryRaw( int field, long from, long to, long[] pointTimes, double[] pointValues ) {
+        checkField( field );
+        int count = 0;
+        for (int i = firstRaw( from ); i < size && count < pointTimes.length; i++) {
+            final int index = index( i );
+            if (times[index] >= to) {
+                break;
+            }
+            pointTimes[count] = times[index];
+            pointValues[count] = values[index * fieldCount + field];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Read the buckets of a field, that start in a time range, into the given
+     * arrays. This doesn't allocate anything.
+     *
+     * @param field index of the field
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param starts array for the starts of the buckets
+     * @param bucketMinimums array for the minimums
+     * @param bucketMaximums array for the maximums
+     * @param bucketAverages array for the averages
+     * @return the number of buckets, at most the length of the arrays
+     */
+    public synchronized int queryBuckets( int field, long from, long to, long[] starts, double[] bucketMinimums,
+            double[] bucketMaximums, double[] bucketAverages ) {
+        checkField( field );
+        int count = 0;
+        for (int i = firstBucket( from ); i < bucketSize && count < starts.length; i++) {
+            final int bucket = bucketIndex( i );
+            if (bucketStarts[bucket] >= to) {
+                break;
+            }
+            final int value = bucket * fieldCount + field;
+            starts[count] = bucketStarts[bucket];
+            bucketMinimums[count] = minimums[value];
+            bucketMaximums[count] = maximums[value];
+            bucketAverages[count] = sums[value] / counts[bucket];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Query the buckets and raw points of a field in a time range.
+     *
+     * @param name short name of the field
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the buckets and points in the range
+     */
+    public synchronized TimeSeriesRange query( String name, long from, long to ) {
+        final int field = profile.indexOf( name );
+        if (field < 0) {
+            throw new IllegalArgumentException( "Unknown field " + name + " of profile " + profile.getId() + "!" );
+        }
+        final long[] pointTimes = new long[size];
+        final double[] pointValues = new double[size];
+        final int points = queryRaw( field, from, to, pointTimes, pointValues );
+        final long[] starts = new long[bucketSize];
+        final double[] bucketMinimums = new double[bucketSize];
+        final double[] bucketMaximums = new double[bucketSize];
+        final double[] bucketAverages = new double[bucketSize];
+        final int buckets = queryBuckets( field, from, to, starts, bucketMinimums, bucketMaximums, bucketAverages );
+        return new TimeSeriesRange( Arrays.copyOf( pointTimes, points ), Arrays.copyOf( pointValues, points ),
+                Arrays.copyOf( starts, buckets ), Arrays.copyOf( bucketMinimums, buckets ),
+                Arrays.copyOf( bucketMaximums, buckets ), Arrays.copyOf( bucketAverages, buckets ) );
+    }
+
+    /**
+     * Fold a raw point into the bucket of its time.
+     */
+    private void downsample( int index ) {
+        if (bucketStarts.length == 0) {
+            return;
+        }
+        final long start = times[index] - Math.floorMod( times[index], bucketWidth );
+        int bucket;
+        if (bucketSize > 0 && bucketStarts[bucketIndex( bucketSize - 1 )] == start) {
+            bucket = bucketIndex( bucketSize - 1 );
+        } else {
+            if (bucketSize == bucketStarts.length) {
+                bucketHead = (bucketHead + 1) % bucketStarts.length;
+                bucketSize--;
+            }
+            bucket = bucketIndex( bucketSize );
+            bucketSize++;
+            bucketStarts[bucket] = start;
+            counts[bucket] = 0;
+            Arrays.fill( minimums, bucket * fieldCount, (bucket + 1) * fieldCount, Double.POSITIVE_INFINITY );
+            Arrays.fill( maximums, bucket * fieldCount, (bucket + 1) * fieldCount, Double.NEGATIVE_INFINITY );
+            Arrays.fill( sums, bucket * fieldCount, (bucket + 1) * fieldCount, 0 );
+        }
+        counts[bucket]++;
+        for (int field = 0; field < fieldCount; field++) {
+            final double value = values[index * fieldCount + field];
+            final int target = bucket * fieldCount + field;
+            minimums[target] = Math.min( minimums[target], value );
+            maximums[target] = Math.max( maximums[target], value );
+            sums[target] += value;
+        }
+    }
+
+    /**
+     * @return the logical index of the first raw point at or after the time
+     */
+    private int firstRaw( long from ) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (times[index( middle )] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the logical index of the first bucket, that starts at or after
+     *         the time
+     */
+    private int firstBucket( long from ) {
+        int low = 0;
+        int high = bucketSize;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (bucketStarts[bucketIndex( middle )] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int index( int logical ) {
+        return (head + logical) % times.length;
+    }
+
+    private int bucketIndex( int logical ) {
+        return (bucketHead + logical) % bucketStarts.length;
+    }
+
+    private void checkField( int field ) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IllegalArgumentException( "Invalid field index " + field + "!" );
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.atennert.connector.devices;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size of the history of a device in the {@link TimeSeriesStore}. The latest
+ * values are kept as raw points, older points are downsampled into buckets of
+ * a fixed width with minimum, maximum and average. The memory of a device is
+ * fixed by the configuration: about
+ * <code>rawCapacity * (8 + 8 * fields) + bucketCapacity * (12 + 24 * fields)</code>
+ * bytes.
+ */
+public final class TimeSeriesConfig {
+
+    /** 1024 raw points and 5 minute buckets for 24 hours */
+    public static final TimeSeriesConfig DEFAULT = new TimeSeriesConfig( 1024, TimeUnit.MINUTES.toMillis( 5 ), 288 );
+
+    private final int rawCapacity;
+    private final long bucketWidth;
+    private final int bucketCapacity;
+
+    /**
+     * @param rawCapacity number of raw points per device
+     * @param bucketWidth time span of a bucket in milliseconds
+     * @param bucketCapacity number of buckets per device, 0 disables the
+     *            downsampling
+     */
+    public TimeSeriesConfig( int rawCapacity, long bucketWidth, int bucketCapacity ) {
+        if (rawCapacity < 1 || bucketWidth < 1 || bucketCapacity < 0) {
+            throw new IllegalArgumentException( "Invalid time series configuration!" );
+        }
+        this.rawCapacity = rawCapacity;
+        this.bucketWidth = bucketWidth;
+        this.bucketCapacity = bucketCapacity;
+    }
+
+    /**
+     * @return the number of raw points per device
+     */
+    public int getRawCapacity() {
+        return rawCapacity;
+    }
+
+    /**
+     * @return the time span of a bucket in milliseconds
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * @return the number of buckets per device
+     */
+    public int getBucketCapacity() {
+        return bucketCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return rawCapacity + " points, " + bucketCapacity + " x " + bucketWidth + " ms";
+    }
+}
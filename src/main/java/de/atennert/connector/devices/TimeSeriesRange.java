@@ -0,0 +1,88 @@
+package de.atennert.connector.devices;
+
+/**
+ * Result of a range query of one field of a {@link TimeSeries}: the
+ * downsampled buckets of the older part of the range and the raw points of
+ * the newer part, both in ascending order of time.
+ */
+public final class TimeSeriesRange {
+
+    private final long[] times;
+    private final double[] values;
+    private final long[] bucketStarts;
+    private final double[] minimums;
+    private final double[] maximums;
+    private final double[] averages;
+
+    TimeSeriesRange( long[] times, double[] values, long[] bucketStarts, double[] minimums, double[] maximums,
+            double[] averages ) {
+        this.times = times;
+        this.values = values;
+        this.bucketStarts = bucketStarts;
+        this.minimums = minimums;
+        this.maximums = maximums;
+        this.averages = averages;
+    }
+
+    /**
+     * @return the number of raw points
+     */
+    public int getPointCount() {
+        return times.length;
+    }
+
+    /**
+     * @param index index of a raw point
+     * @return the time of the point in milliseconds since the epoch
+     */
+    public long getTime( int index ) {
+        return times[index];
+    }
+
+    /**
+     * @param index index of a raw point
+     * @return the value of the point
+     */
+    public double getValue( int index ) {
+        return values[index];
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return bucketStarts.length;
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return the start of the bucket in milliseconds since the epoch
+     */
+    public long getBucketStart( int index ) {
+        return bucketStarts[index];
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return the minimum of the bucket
+     */
+    public double getMinimum( int index ) {
+        return minimums[index];
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return the maximum of the bucket
+     */
+    public double getMaximum( int index ) {
+        return maximums[index];
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return the average of the bucket
+     */
+    public double getAverage( int index ) {
+        return averages[index];
+    }
+}
@@ -0,0 +1,139 @@
+package de.atennert.connector.devices;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.eep.EepDecoder;
+import de.atennert.connector.packets.eep.EepProfile;
+import de.atennert.connector.packets.eep.EepValues;
+
+/**
+ * In-memory history of the field values of the devices, for instance of the
+ * last 24 hours, without an external database. The store is a packet listener
+ * for radio packets. It decodes the packets of devices with a known profile
+ * with its {@link EepDecoder} and adds the values to the {@link TimeSeries} of
+ * the device, which is created with the first telegram.<br>
+ * <br>
+ * The size of a series is set by a {@link TimeSeriesConfig}, which can be
+ * configured per profile, so the memory of the store only depends on the
+ * number of devices and their profiles. The store can be added to a connector
+ * with <code>ConnectorFactory.builder().timeSeries( store )</code>.
+ */
+public class TimeSeriesStore implements IPacketListener {
+
+    /** name (ID) of the store as packet listener */
+    public static final String LISTENER_ID = "timeSeries";
+
+    private final ConcurrentMap< Integer, TimeSeries > series = new ConcurrentHashMap<>();
+    private final ConcurrentMap< String, TimeSeriesConfig > configs = new ConcurrentHashMap<>();
+    private final EepDecoder decoder;
+    private final TimeSeriesConfig defaultConfig;
+
+    /**
+     * @param decoder the EEP decoder with the profiles of the devices
+     * @param defaultConfig size of the series of devices, whose profile isn't
+     *            configured
+     */
+    public TimeSeriesStore( EepDecoder decoder, TimeSeriesConfig defaultConfig ) {
+        if (decoder == null || defaultConfig == null) {
+            throw new IllegalArgumentException( "An EEP decoder and a configuration are required!" );
+        }
+        this.decoder = decoder;
+        this.defaultConfig = defaultConfig;
+    }
+
+    /**
+     * Set the size of the series of the devices with a profile. It applies to
+     * series, that are created afterwards.
+     *
+     * @param profile the profile of the devices
+     * @param config the size of their series
+     */
+    public void configure( EepProfile profile, TimeSeriesConfig config ) {
+        configs.put( profile.getId(), config );
+    }
+
+    /**
+     * @param profile a profile
+     * @return the size of the series of devices with the profile
+     */
+    public TimeSeriesConfig getConfig( EepProfile profile ) {
+        final TimeSeriesConfig config = configs.get( profile.getId() );
+        return config != null ? config : defaultConfig;
+    }
+
+    @Override
+    public int[] getSupportedPackets() {
+        return new int[] { IPacketConstants.TYPE_RADIO };
+    }
+
+    @Override
+    public void receivePacket( Packet packet ) {
+        if (!packet.isValid) {
+            return;
+        }
+        final EepValues values = packet.getEepValues( decoder );
+        if (values == null) {
+            return;
+        }
+        final int senderId = EepDecoder.getSenderId( packet );
+        final EepProfile profile = values.getProfile();
+        TimeSeries deviceSeries = series.get( senderId );
+        if (deviceSeries == null || deviceSeries.getProfile() != profile) {
+            // new device or new profile, the fields of the old series don't fit anymore
+            final TimeSeries newSeries = new TimeSeries( senderId, profile, getConfig( profile ) );
+            if (deviceSeries == null ? series.putIfAbsent( senderId, newSeries ) == null
+                    : series.replace( senderId, deviceSeries, newSeries )) {
+                deviceSeries = newSeries;
+            } else {
+                deviceSeries = series.get( senderId );
+            }
+        }
+        if (deviceSeries != null && deviceSeries.getProfile() == profile) {
+            deviceSeries.add( packet.timestamp.getTime(), values );
+        }
+    }
+
+    /**
+     * @param senderId the ID of a device
+     * @return the series of the device or <code>null</code> if there is none
+     */
+    public TimeSeries get( int senderId ) {
+        return series.get( senderId );
+    }
+
+    /**
+     * Query a field of a device in a time range.
+     *
+     * @param senderId the ID of a device
+     * @param name short name of a field of the profile of the device
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the buckets and points in the range or <code>null</code> if the
+     *         device has no series
+     */
+    public TimeSeriesRange query( int senderId, String name, long from, long to ) {
+        final TimeSeries deviceSeries = series.get( senderId );
+        return deviceSeries != null ? deviceSeries.query( name, from, to ) : null;
+    }
+
+    /**
+     * @return a live view of the series by sender ID
+     */
+    public Map< Integer, TimeSeries > getSeries() {
+        return Collections.unmodifiableMap( series );
+    }
+
+    /**
+     * @param senderId the ID of a device
+     * @return <code>true</code> if the series of the device was removed
+     */
+    public boolean remove( int senderId ) {
+        return series.remove( senderId ) != null;
+    }
+}
@@ -0,0 +1,229 @@
+package de.atennert.connector.discovery;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.packets.IPacketFactory;
+import de.atennert.connector.packets.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discovery of extension packet factories and packet listeners on the class
+ * path. Extensions are registered like {@link java.util.ServiceLoader}
+ * providers: a file <code>META-INF/services/&lt;interface name&gt;</code>
+ * lists the implementing classes, one per line. The classes need a public
+ * constructor without parameters.<br>
+ * <br>
+ * The metadata of an extension is read from its {@link ExtensionInfo}
+ * annotation. The class is loaded without initialization for that, and the
+ * extension is only instantiated when the first packet of one of its types
+ * occurs. The discovered extensions are sorted by priority, so a connector can
+ * build its factory index and routing table once at startup.
+ */
+public final class ExtensionDiscovery {
+
+    private static final Logger log = LoggerFactory.getLogger( ExtensionDiscovery.class );
+
+    private static final String SERVICES = "META-INF/services/";
+
+    // Don't allow creating an instance
+    private ExtensionDiscovery() {}
+
+    /**
+     * @param loader class loader for finding the extensions
+     * @return the discovered packet factories, ordered by priority
+     */
+    public static List< IPacketFactory > discoverFactories( ClassLoader loader ) {
+        final List< IPacketFactory > factories = new ArrayList<>();
+        for (final Extension< IPacketFactory > extension : discover( IPacketFactory.class, loader )) {
+            factories.add( extension.info != null ? new LazyPacketFactory( extension ) : extension.instance() );
+        }
+        return factories;
+    }
+
+    /**
+     * @param loader class loader for finding the extensions
+     * @return the discovered packet listeners by name (class name), ordered
+     *         by priority
+     */
+    public static Map< String, IPacketListener > discoverListeners( ClassLoader loader ) {
+        final Map< String, IPacketListener > listeners = new LinkedHashMap<>();
+        for (final Extension< IPacketListener > extension : discover( IPacketListener.class, loader )) {
+            listeners.put( extension.type.getName(),
+                    extension.info != null ? new LazyPacketListener( extension ) : extension.instance() );
+        }
+        return listeners;
+    }
+
+    private static < T > List< Extension< T > > discover( Class< T > service, ClassLoader loader ) {
+        final List< Extension< T > > extensions = new ArrayList<>();
+        for (final String name : readProviderNames( service, loader )) {
+            try {
+                final Class< ? > type = Class.forName( name, false, loader );
+                if (!service.isAssignableFrom( type )) {
+                    log.error( "Extension " + name + " doesn't implement " + service.getName() + "!" );
+                    continue;
+                }
+                final Extension< T > extension = new Extension<>( type.asSubclass( service ),
+                        type.getAnnotation( ExtensionInfo.class ) );
+                // extensions without metadata are created now
+                if (extension.info != null || extension.instance() != null) {
+                    extensions.add( extension );
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.error( "Unable to load extension " + name + "!", e );
+            }
+        }
+        Collections.sort( extensions, new Comparator< Extension< T > >() {
+            @Override
+            public int compare( Extension< T > left, Extension< T > right ) {
+                return Integer.compare( right.getPriority(), left.getPriority() );
+            }
+        } );
+        log.debug( "Discovered " + extensions.size() + " extensions of " + service.getName() );
+        return extensions;
+    }
+
+    /**
+     * Read the class names from all provider configuration files of a
+     * service, ignoring comments and duplicates.
+     */
+    private static Set< String > readProviderNames( Class< ? > service, ClassLoader loader ) {
+        final Set< String > names = new LinkedHashSet<>();
+        try {
+            final Enumeration< URL > files = loader.getResources( SERVICES + service.getName() );
+            while (files.hasMoreElements()) {
+                final URL file = files.nextElement();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader( file.openStream(), StandardCharsets.UTF_8 ) )) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final int comment = line.indexOf( '#' );
+                        final String name = (comment >= 0 ? line.substring( 0, comment ) : line).trim();
+                        if (!name.isEmpty()) {
+                            names.add( name );
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error( "Unable to read the extensions of " + service.getName() + "!", e );
+        }
+        return names;
+    }
+
+    /**
+     * A discovered extension, which is instantiated on the first use.
+     */
+    private static final class Extension< T > {
+        private final Class< ? extends T > type;
+        private final ExtensionInfo info;
+
+        private volatile T instance;
+        private volatile boolean failed = false;
+
+        private Extension( Class< ? extends T > type, ExtensionInfo info ) {
+            this.type = type;
+            this.info = info;
+        }
+
+        private int getPriority() {
+            return info != null ? info.priority() : 0;
+        }
+
+        /**
+         * @return the instance or <code>null</code> if it can't be created
+         */
+        private T instance() {
+            T current = instance;
+            if (current == null && !failed) {
+                synchronized (this) {
+                    current = instance;
+                    if (current == null && !failed) {
+                        try {
+                            current = type.getConstructor().newInstance();
+                            instance = current;
+                        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                            failed = true;
+                            log.error( "Unable to create extension " + type.getName() + "!", e );
+                        }
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Packet factory, that creates the discovered factory with the first
+     * packet of its types.
+     */
+    private static final class LazyPacketFactory implements IPacketFactory {
+        private final Extension< IPacketFactory > extension;
+
+        private LazyPacketFactory( Extension< IPacketFactory > extension ) {
+            this.extension = extension;
+        }
+
+        @Override
+        public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+            final IPacketFactory factory = extension.instance();
+            return factory != null ? factory.createPacket( type, data, optional, timestamp, isValid ) : null;
+        }
+
+        @Override
+        public int[] getSupportedTypes() {
+            return extension.info.types().clone();
+        }
+
+        @Override
+        public String toString() {
+            return extension.type.getName();
+        }
+    }
+
+    /**
+     * Packet listener, that creates the discovered listener with the first
+     * packet of its types.
+     */
+    private static final class LazyPacketListener implements IPacketListener {
+        private final Extension< IPacketListener > extension;
+
+        private LazyPacketListener( Extension< IPacketListener > extension ) {
+            this.extension = extension;
+        }
+
+        @Override
+        public void receivePacket( Packet packet ) {
+            final IPacketListener listener = extension.instance();
+            if (listener != null) {
+                listener.receivePacket( packet );
+            }
+        }
+
+        @Override
+        public int[] getSupportedPackets() {
+            return extension.info.types().clone();
+        }
+
+        @Override
+        public String toString() {
+            return extension.type.getName();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package de.atennert.connector.discovery;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import de.atennert.connector.packets.IPacketConstants;
+
+/**
+ * Metadata of a discovered packet factory or packet listener. The
+ * {@link ExtensionDiscovery} reads it without creating an instance, so the
+ * extension is only instantiated when a packet of one of its types occurs.
+ * Extensions without this annotation are instantiated during the discovery
+ * and asked for their types.
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface ExtensionInfo {
+
+    /**
+     * @return the packet types, that the extension creates or receives, or
+     *         {@link IPacketConstants#TYPE_ANY} for all types
+     */
+    int[] types() default { IPacketConstants.TYPE_ANY };
+
+    /**
+     * @return the priority of the extension, extensions with a higher
+     *         priority are asked or called first
+     */
+    int priority() default 0;
+}
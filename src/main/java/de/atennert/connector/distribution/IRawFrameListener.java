@@ -0,0 +1,42 @@
+package de.atennert.connector.distribution;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for listeners, that receive the raw ESP3 frames instead of
+ * {@link de.atennert.connector.packets.Packet}s, for instance for forwarding
+ * or archiving the received data. The listeners are called by the decoder for
+ * every frame with valid header and payload checksums, before any packet is
+ * created. Packets are only created for packet types with packet listeners.
+ */
+public interface IRawFrameListener {
+
+    /**
+     * Receive a new frame. The frame contains the sync byte, the header with
+     * its checksum, the data, the optional data and the payload checksum. The
+     * buffer is read-only and only valid during the call, because the decoder
+     * reuses it for the next frame. Listeners, that keep the frame, have to
+     * copy it.<br>
+     * <br>
+     * The method is called on the decoder thread, so it must return quickly.
+     *
+     * @param frame read-only view of the frame from position 0 to the limit
+     * @param timestamp time of reception in milliseconds since the epoch
+     */
+    void receiveFrame( ByteBuffer frame, long timestamp );
+
+    /**
+     * Receive a new frame with the time of reception in nanoseconds. The
+     * decoder calls this method, which calls
+     * {@link #receiveFrame(ByteBuffer, long)} by default. Listeners, that need
+     * a finer resolution than milliseconds, override it.
+     *
+     * @param frame read-only view of the frame from position 0 to the limit
+     * @param timestamp time of reception in milliseconds since the epoch
+     * @param receiveNanos time of reception in nanoseconds since the epoch,
+     *            it doesn't go backwards, when the system time is set back
+     */
+    default void receiveFrame( ByteBuffer frame, long timestamp, long receiveNanos ) {
+        receiveFrame( frame, timestamp );
+    }
+}
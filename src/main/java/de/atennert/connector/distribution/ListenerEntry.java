@@ -0,0 +1,19 @@
+package de.atennert.connector.distribution;
+
+import de.atennert.connector.metrics.ListenerMetrics;
+
+/**
+ * Entry of the {@link RoutingTable}. It holds a packet listener together with
+ * its name (ID) and its metrics.
+ */
+final class ListenerEntry {
+    final String id;
+    final IPacketListener listener;
+    final ListenerMetrics metrics;
+
+    ListenerEntry( String id, IPacketListener listener, ListenerMetrics metrics ) {
+        this.id = id;
+        this.listener = listener;
+        this.metrics = metrics;
+    }
+}
@@ -1,26 +1,28 @@
 package de.atennert.connector.distribution;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import de.atennert.connector.distribution.PacketListenerObservable.ListenerActions;
-import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.metrics.PacketTrace;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.metrics.jfr.JfrSupport;
+import de.atennert.connector.metrics.jfr.PipelineEvents;
 import de.atennert.connector.packets.Packet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Handles the distribution of packets to packet listeners. It owns a list of
- * packet listeners, that are selected for use, as well as their properties. The
- * listeners will be initialized on activation and then receive packets. When
- * the evaluation of packets stops, the listeners will be closed, but remain
- * selected.
+ * Handles the distribution of packets to packet listeners. It owns a routing
+ * table with the selected packet listeners, which maps packet types to the
+ * listeners that receive them.<br>
+ * <br>
+ * Listeners can be added and removed at any time, also while the data
+ * acquisition is running. The routing table is copied on every change and
+ * published as a whole, so the distribution of a packet never takes a lock and
+ * always uses either the old or the new set of listeners.
  * 
  * @author Andreas Tennert
  */
@@ -29,61 +31,160 @@ public class PacketDistributor {
     private static final Logger log = LoggerFactory.getLogger( PacketDistributor.class );
 
     /**
-     * Map with selected packet listeners. They will be initialized and receive
-     * packets.
+     * Routing table with the selected packet listeners. It is replaced on every
+     * change and never modified.
      */
-    private final Map< String, IPacketListener > selectedListeners = new HashMap<>();
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
+
+    /** default number of threads for distributing packets */
+    public static final int DEFAULT_THREADS = 3;
+
+    private final ExecutorService executor;
+
+    /** <code>true</code> if the executor was created by the distributor */
+    private final boolean ownExecutor;
+
+    private final PipelineMetrics metrics;
+
+    /**
+     * Create a distributor with its own thread pool.
+     */
+    public PacketDistributor() {
+        this( DEFAULT_THREADS, new PipelineMetrics() );
+    }
+
+    /**
+     * Create a distributor with its own thread pool, that records the
+     * distribution in the given metrics. The pool is shut down by
+     * {@link #shutdown()}.
+     * 
+     * @param threads number of threads for calling the listeners
+     * @param metrics the metrics of the connector
+     */
+    public PacketDistributor( int threads, PipelineMetrics metrics ) {
+        this( Executors.newFixedThreadPool( threads ), true, metrics );
+    }
+
+    /**
+     * Create a distributor that uses the given executor to call the listeners.
+     * The executor may be shared with other distributors.
+     * 
+     * @param executor the executor for the distribution of packets
+     */
+    public PacketDistributor( ExecutorService executor ) {
+        this( executor, new PipelineMetrics() );
+    }
 
     /**
-     * This flag contains if the packet evaluation is running or not which is
-     * mapped to listeners being activated or not. It secures that a
-     * deactivation follows every activation and the other way around.
+     * Create a distributor that uses the given executor to call the listeners
+     * and records the distribution in the given metrics.
+     * 
+     * @param executor the executor for the distribution of packets
+     * @param metrics the metrics of the connector
      */
-    private boolean active = false;
+    public PacketDistributor( ExecutorService executor, PipelineMetrics metrics ) {
+        this( executor, false, metrics );
+    }
 
-    private final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+    private PacketDistributor( ExecutorService executor, boolean ownExecutor, PipelineMetrics metrics ) {
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.metrics = metrics;
+    }
 
     /**
-     * Distribute a packet to all active listeners.
+     * Distribute a packet to all listeners, that support the packet type.
      * 
      * @param packet
      */
-    public synchronized void distributePacket( Packet packet ) {
-        if( active && !selectedListeners.isEmpty() ) {
-            executor.execute( new DistributionHandler( packet, new HashSet<>( selectedListeners
-                    .values() ) ) );
+    public void distributePacket( Packet packet ) {
+        final ListenerEntry[] listeners = routingTable.getListeners( packet.type );
+        if( listeners.length > 0 ) {
+            metrics.onDispatchQueued();
+            executor.execute( new DistributionHandler( packet, listeners, metrics ) );
         }
     }
 
     /**
-     * Adds a packet listener to the list of active listeners.
+     * @param type a packet type
+     * @return <code>true</code> if there is at least one listener for packets
+     *         of the given type
+     */
+    public boolean hasListeners( int type ) {
+        return routingTable.hasListeners( type );
+    }
+
+    /**
+     * Adds a packet listener to the routing table. A listener with the same
+     * name (ID) is replaced. The change takes effect with the next distributed
+     * packet.
      * 
      * @param id name (ID) of the packet listener
      * @param listener the packet listener to add
      */
     public synchronized void addListener( String id, IPacketListener listener ) {
-        if( !active ) {
-            selectedListeners.put( id, listener );
+        if( listener.getSupportedPackets() == null ) {
+            log.warn( "Packet listener " + id + " does not provide supported packet types!" );
+            return;
+        }
+        routingTable = routingTable.with( new ListenerEntry( id, listener, metrics.listener( id ) ) );
+    }
+
+    /**
+     * Adds several packet listeners to the routing table. The table is only
+     * rebuilt once, so this is preferred for registering many listeners, for
+     * instance after a discovery. Listeners with the same name (ID) are
+     * replaced.
+     * 
+     * @param listeners the packet listeners by name (ID)
+     */
+    public synchronized void addListeners( Map< String, ? extends IPacketListener > listeners ) {
+        final List< ListenerEntry > entries = new ArrayList<>( listeners.size() );
+        for( final Map.Entry< String, ? extends IPacketListener > listener : listeners.entrySet() ) {
+            if( listener.getValue().getSupportedPackets() == null ) {
+                log.warn( "Packet listener " + listener.getKey() + " does not provide supported packet types!" );
+                continue;
+            }
+            entries.add( new ListenerEntry( listener.getKey(), listener.getValue(),
+                    metrics.listener( listener.getKey() ) ) );
         }
+        routingTable = routingTable.with( entries );
     }
 
     /**
-     * Remove a packet listener from the list of active listeners.
+     * Remove a packet listener from the routing table. The change takes effect
+     * with the next distributed packet. The metrics of the listener are
+     * removed as well.
      * 
      * @param id name (ID) of the packet listener
      */
     public synchronized void removeListener( String id ) {
-        if( !active ) {
-            selectedListeners.remove( id );
+        final RoutingTable table = routingTable.without( id );
+        if( table != routingTable ) {
+            routingTable = table;
+            metrics.removeListener( id );
         }
     }
 
     /**
-     * Remove all packet listeners from the list of active listeners and remove
-     * their properties.
+     * Remove all packet listeners and their metrics from the routing table.
      */
     public synchronized void clear() {
-        selectedListeners.clear();
+        for( final String id : routingTable.getIds() ) {
+            metrics.removeListener( id );
+        }
+        routingTable = RoutingTable.EMPTY;
+    }
+
+    /**
+     * Shut down the thread pool of the distributor, if the distributor created
+     * it. A given executor may be shared, so it isn't shut down. Packets, that
+     * are already queued, are still delivered.
+     */
+    public void shutdown() {
+        if( ownExecutor ) {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -91,35 +192,44 @@ public class PacketDistributor {
      * of it will be created for each incoming packet and it is given to an
      * ExecutorService for execution.
      */
-    private class DistributionHandler implements Runnable {
+    private static class DistributionHandler implements Runnable {
         private final Packet packet;
-        private final Set< IPacketListener > listeners;
+        private final ListenerEntry[] listeners;
+        private final PipelineMetrics metrics;
 
-        private DistributionHandler( Packet packet, Set< IPacketListener > listeners ) {
+        private DistributionHandler( Packet packet, ListenerEntry[] listeners, PipelineMetrics metrics ) {
             this.packet = packet;
             this.listeners = listeners;
+            this.metrics = metrics;
         }
 
         @Override
         public void run() {
-            for( final IPacketListener listener : listeners ) {
+            final PacketTrace trace = packet.getTrace();
+            metrics.onDispatchStarted( trace );
+            for( final ListenerEntry entry : listeners ) {
+                final Object event = JfrSupport.ENABLED ? PipelineEvents.beginListener() : null;
+                final long start = System.nanoTime();
+                boolean failed = false;
                 try {
-                    for( final int packetType : listener.getSupportedPackets() ) {
-                        if( packetType == IPacketConstants.TYPE_ANY || packetType == packet.type ) {
-                            listener.receivePacket( packet );
-                            break;
-                        }
-                    }
+                    entry.listener.receivePacket( packet );
                 }
                 catch( final Exception e ) {
-                    /*
-                     * This may for instance happen if getSupportedPackets()
-                     * returns null.
-                     */
+                    failed = true;
+                    entry.metrics.onError();
                     log.warn( "Failed to distribute a packet to a listener!" );
                     e.printStackTrace();
                 }
+                final long end = System.nanoTime();
+                if( JfrSupport.ENABLED ) {
+                    PipelineEvents.commitListener( event, entry.id, packet.type, failed );
+                }
+                entry.metrics.onInvocation( end - start );
+                if( trace != null ) {
+                    entry.metrics.onReturned( trace, end );
+                }
             }
+            metrics.onDispatchCompleted( trace );
         }
     }
 }
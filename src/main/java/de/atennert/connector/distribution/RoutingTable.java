@@ -0,0 +1,148 @@
+package de.atennert.connector.distribution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.atennert.connector.packets.IPacketConstants;
+
+/**
+ * Immutable routing table of the {@link PacketDistributor}. It maps every
+ * packet type to the array of listeners, that want to receive packets of this
+ * type. Listeners for {@link IPacketConstants#TYPE_ANY} are part of every
+ * entry.<br>
+ * <br>
+ * The table is never changed after creation. Adding or removing a listener
+ * creates a new table, which is then published by the distributor. That way
+ * the dispatch path can read the table without any lock and always sees a
+ * consistent set of listeners.
+ */
+final class RoutingTable {
+
+    /** number of possible ESP3 packet types (1 byte) */
+    static final int TYPE_COUNT = 256;
+
+    private static final ListenerEntry[] NO_LISTENERS = new ListenerEntry[0];
+
+    /** routing table without any listeners */
+    static final RoutingTable EMPTY = new RoutingTable( Collections.< String, ListenerEntry > emptyMap() );
+
+    /** listeners by name (ID) in order of addition */
+    private final Map< String, ListenerEntry > listeners;
+
+    /** listeners per packet type, indexed by the packet type */
+    private final ListenerEntry[][] routes = new ListenerEntry[TYPE_COUNT][];
+
+    private RoutingTable( Map< String, ListenerEntry > listeners ) {
+        this.listeners = listeners;
+
+        final List< List< ListenerEntry > > lists = new ArrayList<>( Collections.nCopies( TYPE_COUNT,
+                (List< ListenerEntry >) null ) );
+        for( final ListenerEntry entry : listeners.values() ) {
+            final int[] types = entry.listener.getSupportedPackets();
+            if( types == null ) {
+                continue;
+            }
+            for( int type = 0; type < TYPE_COUNT; type++ ) {
+                if( supports( types, type ) ) {
+                    if( lists.get( type ) == null ) {
+                        lists.set( type, new ArrayList<>() );
+                    }
+                    lists.get( type ).add( entry );
+                }
+            }
+        }
+        for( int type = 0; type < TYPE_COUNT; type++ ) {
+            final List< ListenerEntry > list = lists.get( type );
+            routes[type] = list == null ? NO_LISTENERS : list.toArray( NO_LISTENERS );
+        }
+    }
+
+    private static boolean supports( int[] types, int type ) {
+        for( final int t : types ) {
+            if( t == IPacketConstants.TYPE_ANY || t == type ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param type the packet type
+     * @return the listener entries for the given packet type, the array must
+     *         not be modified
+     */
+    ListenerEntry[] getListeners( int type ) {
+        if( type < 0 || type >= TYPE_COUNT ) {
+            return NO_LISTENERS;
+        }
+        return routes[type];
+    }
+
+    /**
+     * @param type the packet type
+     * @return <code>true</code> if at least one listener receives packets of
+     *         the given type
+     */
+    boolean hasListeners( int type ) {
+        return getListeners( type ).length > 0;
+    }
+
+    /**
+     * @return the names (IDs) of the listeners in order of addition
+     */
+    Collection< String > getIds() {
+        return Collections.unmodifiableSet( listeners.keySet() );
+    }
+
+    /**
+     * Create a new table that contains the listeners of this table and the
+     * given listener. A listener with the same name (ID) is replaced.
+     *
+     * @param entry the entry of the packet listener to add
+     * @return the new routing table
+     */
+    RoutingTable with( ListenerEntry entry ) {
+        final Map< String, ListenerEntry > newListeners = new LinkedHashMap<>( listeners );
+        newListeners.put( entry.id, entry );
+        return new RoutingTable( newListeners );
+    }
+
+    /**
+     * Create a new table that contains the listeners of this table and all
+     * given listeners. Listeners with the same name (ID) are replaced.
+     *
+     * @param entries the entries of the packet listeners to add
+     * @return the new routing table
+     */
+    RoutingTable with( Collection< ListenerEntry > entries ) {
+        if( entries.isEmpty() ) {
+            return this;
+        }
+        final Map< String, ListenerEntry > newListeners = new LinkedHashMap<>( listeners );
+        for( final ListenerEntry entry : entries ) {
+            newListeners.put( entry.id, entry );
+        }
+        return new RoutingTable( newListeners );
+    }
+
+    /**
+     * Create a new table that contains the listeners of this table without
+     * the listener with the given name (ID).
+     *
+     * @param id name (ID) of the packet listener to remove
+     * @return the new routing table or this table if there is no listener
+     *         with the given ID
+     */
+    RoutingTable without( String id ) {
+        if( !listeners.containsKey( id ) ) {
+            return this;
+        }
+        final Map< String, ListenerEntry > newListeners = new LinkedHashMap<>( listeners );
+        newListeners.remove( id );
+        return newListeners.isEmpty() ? EMPTY : new RoutingTable( newListeners );
+    }
+}
@@ -0,0 +1,37 @@
+package de.atennert.connector.facade;
+
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.health.PipelineWatchdog;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.reader.ComConnector;
+import de.atennert.connector.reader.PacketDecoder;
+
+/**
+ * This model is used to release the resources of the EOC.
+ */
+class CloseModel extends AbstractTransitionModel {
+
+    final ComConnector connector;
+    final PacketDecoder consumer;
+    final PacketDistributor distributor;
+    final PipelineWatchdog watchdog;
+    final MetricsRegistry metrics;
+
+    /**
+     * @param facade the application facade
+     * @param connector the connector to interact with the EnOcean transceiver
+     * @param consumer the message byte code consumer
+     * @param distributor the packet distributor
+     * @param watchdog the watchdog of the pipeline or <code>null</code>
+     * @param metrics the metrics with the exporters to stop
+     */
+    CloseModel( ConnectorFacade facade, ComConnector connector, PacketDecoder consumer,
+            PacketDistributor distributor, PipelineWatchdog watchdog, MetricsRegistry metrics ) {
+        super( facade );
+        this.connector = connector;
+        this.consumer = consumer;
+        this.distributor = distributor;
+        this.watchdog = watchdog;
+        this.metrics = metrics;
+    }
+}
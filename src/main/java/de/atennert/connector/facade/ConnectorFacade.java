@@ -1,10 +1,16 @@
 package de.atennert.connector.facade;
 
 import de.atennert.connector.IEnOceanConnector;
+import de.atennert.connector.devices.DeviceRegistry;
+import de.atennert.connector.devices.DeviceStateCache;
 import de.atennert.connector.distribution.IEventListener;
 import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.IRawFrameListener;
 import de.atennert.connector.distribution.PacketDistributor;
 import de.atennert.connector.facade.FacadeSM.State;
+import de.atennert.connector.health.PipelineWatchdog;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.jfr.JfrSupport;
 import de.atennert.connector.packets.IPacketFactory;
 import de.atennert.connector.packets.Packet;
 import de.atennert.connector.packets.PacketFactory;
@@ -29,13 +35,18 @@ import java.util.concurrent.BlockingQueue;
 public class ConnectorFacade implements IEnOceanConnector {
 
     private static final Logger log = LoggerFactory.getLogger( ConnectorFacade.class );
-    private FacadeSM.State state;
+    /** the current state, it is read without lock by {@link #sendDataPacket(Packet)} */
+    private volatile FacadeSM.State state;
 
     private final ComConnector comConnector;
     private final PacketDecoder packetDecoder;
     private final PacketFactory packetFactory;
     private final PacketDistributor packetDistributor;
     private final BlockingQueue<Packet> sendPacketQueue;
+    private final MetricsRegistry metrics;
+    private final PipelineWatchdog watchdog;
+    private final DeviceRegistry deviceRegistry;
+    private final DeviceStateCache deviceStates;
 
     /**
      * Initialize the EnOcean framework. This will set up the message queues,
@@ -47,6 +58,60 @@ public class ConnectorFacade implements IEnOceanConnector {
                             final ComConnector comConnector,
                             final PacketDecoder packetDecoder,
                             final BlockingQueue<Packet> sendPacketQueue ) {
+        this( packetFactory, packetDistributor, comConnector, packetDecoder, sendPacketQueue, new MetricsRegistry() );
+    }
+
+    /**
+     * Initialize the EnOcean framework with the registry that contains the
+     * metrics of the given components.
+     */
+    public ConnectorFacade( final PacketFactory packetFactory,
+                            final PacketDistributor packetDistributor,
+                            final ComConnector comConnector,
+                            final PacketDecoder packetDecoder,
+                            final BlockingQueue<Packet> sendPacketQueue,
+                            final MetricsRegistry metrics ) {
+        this( packetFactory, packetDistributor, comConnector, packetDecoder, sendPacketQueue, metrics,
+                PipelineWatchdog.builder().build( metrics ) );
+    }
+
+    /**
+     * Initialize the EnOcean framework with the registry that contains the
+     * metrics of the given components and a watchdog, that checks them. The
+     * connector has no device registry and no device state cache.
+     */
+    public ConnectorFacade( final PacketFactory packetFactory,
+                            final PacketDistributor packetDistributor,
+                            final ComConnector comConnector,
+                            final PacketDecoder packetDecoder,
+                            final BlockingQueue<Packet> sendPacketQueue,
+                            final MetricsRegistry metrics,
+                            final PipelineWatchdog watchdog ) {
+        this( packetFactory, packetDistributor, comConnector, packetDecoder, sendPacketQueue, metrics, watchdog,
+                null, null );
+    }
+
+    /**
+     * Initialize the EnOcean framework with the registry that contains the
+     * metrics of the given components, a watchdog, that checks them, and the
+     * device registry and state cache. The registry must already be updated
+     * by a frame listener of the given decoder, see
+     * {@link DeviceRegistry#frameListener(int)}, and the cache must already be
+     * a listener of the given distributor. Both may be <code>null</code>.
+     */
+    public ConnectorFacade( final PacketFactory packetFactory,
+                            final PacketDistributor packetDistributor,
+                            final ComConnector comConnector,
+                            final PacketDecoder packetDecoder,
+                            final BlockingQueue<Packet> sendPacketQueue,
+                            final MetricsRegistry metrics,
+                            final PipelineWatchdog watchdog,
+                            final DeviceRegistry deviceRegistry,
+                            final DeviceStateCache deviceStates ) {
+        this.metrics = metrics;
+        this.watchdog = watchdog;
+        this.deviceRegistry = deviceRegistry;
+        this.deviceStates = deviceStates;
         this.packetFactory = packetFactory;
         this.packetDistributor = packetDistributor;
         this.comConnector = comConnector;
@@ -87,6 +152,11 @@ public class ConnectorFacade implements IEnOceanConnector {
         makeTransition( new AcquisitionModel( this, comConnector, packetDecoder, packetDistributor, AcquisitionModel.STOP ) );
     }
 
+    @Override
+    public void close() {
+        makeTransition( new CloseModel( this, comConnector, packetDecoder, packetDistributor, watchdog, metrics ) );
+    }
+
     @Override
     public void addPacketListener( IPacketListener packetListener ) {
         makeTransition( new PacketListenerModel( this, packetDistributor, packetListener.toString(), packetListener,
@@ -99,6 +169,20 @@ public class ConnectorFacade implements IEnOceanConnector {
                 PacketListenerModel.REMOVE ) );
     }
 
+    /**
+     * Raw frame listeners are kept by the decoder, which can change them at
+     * any time, so they don't need a transition.
+     */
+    @Override
+    public void addRawFrameListener( IRawFrameListener frameListener ) {
+        packetDecoder.addRawFrameListener( frameListener );
+    }
+
+    @Override
+    public void removeRawFrameListener( IRawFrameListener frameListener ) {
+        packetDecoder.removeRawFrameListener( frameListener );
+    }
+
     @Override
     public void addPortListener( IEventListener<List<String>> portListener ) {
         makeTransition( new PortListenerModel( this, comConnector.getPortUpdater(), portListener, PortListenerModel.ADD
@@ -136,8 +220,48 @@ public class ConnectorFacade implements IEnOceanConnector {
         makeTransition( new PacketFactoryModel( this, packetFactory, factory, PacketFactoryModel.REMOVE ) );
     }
 
+    @Override
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public PipelineWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    @Override
+    public DeviceRegistry getDeviceRegistry() {
+        return deviceRegistry;
+    }
+
+    @Override
+    public DeviceStateCache getDeviceStates() {
+        return deviceStates;
+    }
+
+    @Override
+    public IPacketFactory getPacketFactory() {
+        return packetDecoder.getPacketFactory();
+    }
+
+    /**
+     * Sending a packet doesn't change the state of the facade. So instead of
+     * making a transition, it only checks the current state and puts the
+     * packet directly into the send queue. This way concurrent senders don't
+     * block each other or any other action of the facade.
+     */
     @Override
     public void sendDataPacket( Packet packet ) {
-        makeTransition( new SendMessageModel( this, sendPacketQueue, packet ) );
+        if (state.isSendingPossible()) {
+            if (JfrSupport.ENABLED) {
+                packet.setQueuedTime( System.nanoTime() );
+            }
+            if (!sendPacketQueue.offer( packet )) {
+                log.warn( "Unable to send packet, send queue is full!" );
+            }
+        } else {
+            log.warn( "Unable to send packet, data acquisition is not running!" );
+        }
     }
 }
@@ -30,6 +30,16 @@ final class FacadeSM {
          * otherwise.
          */
         boolean handle( AbstractTransitionModel model );
+
+        /**
+         * This is used for sending packets without a transition. Sending
+         * packets doesn't change the state, so it is not necessary to
+         * synchronize it with other transitions.
+         *
+         * @return <code>true</code> if packets can be sent in this state,
+         * <code>false</code> otherwise
+         */
+        boolean isSendingPossible();
     }
 
     /**
@@ -58,8 +68,6 @@ final class FacadeSM {
          * acquisition can started.
          */
         INITIALIZED {
-            private String port = null;
-
             @Override
             public boolean handle( AbstractTransitionModel model ) {
 
@@ -67,28 +75,18 @@ final class FacadeSM {
                     /*
                      * re-check if port is still valid
                      */
-                    if (((AcquisitionModel) model).connector.setSerialPort( port )) {
+                    final AcquisitionModel am = (AcquisitionModel) model;
+                    if (am.connector.setSerialPort( am.connector.getSerialPort() )) {
                         // start the data acquisition
-                        new Thread( ((AcquisitionModel) model).connector ).start();
-                        new Thread( ((AcquisitionModel) model).consumer ).start();
+                        new Thread( am.connector ).start();
+                        am.consumer.start();
                         model.setState( RUNNING );
                     } else {
                         return false;
                     }
 
                 } else if (model instanceof PacketListenerModel) {
-                    // add/remove PacketListener
-                    final PacketListenerModel plm = (PacketListenerModel) model;
-                    switch (plm.action) {
-                        case PacketListenerModel.ADD:
-                            plm.distributor.addListener( plm.id, plm.listener );
-                            break;
-                        case PacketListenerModel.REMOVE:
-                            plm.distributor.removeListener( plm.id );
-                            break;
-                        default:
-                            return false;
-                    }
+                    return handlePacketListener( (PacketListenerModel) model );
 
                 } else if (model instanceof PacketFactoryModel) {
                     // add/remove IPacketFactory
@@ -134,13 +132,12 @@ final class FacadeSM {
 
                 } else if (model instanceof SetPortModel) {
                     // set the port for data acquisition
-                    if (((SetPortModel) model).connector.setSerialPort( ((SetPortModel) model).port )) {
-                        port = ((SetPortModel) model).port;
-                    } else {
+                    if (!((SetPortModel) model).connector.setSerialPort( ((SetPortModel) model).port )) {
                         return false;
                     }
-                } else if (model instanceof SendMessageModel) {
-                    return false;
+
+                } else if (model instanceof CloseModel) {
+                    release( (CloseModel) model );
                 }
 
                 return true;
@@ -148,9 +145,10 @@ final class FacadeSM {
         },
 
         /**
-         * In this state the data acquisition is running. Adding / removing of
-         * listeners or factories and changing of settings is <em>NOT</em>
-         * allowed. The data acquisition can be stopped.
+         * In this state the data acquisition is running. Packet listeners can
+         * be added or removed. Adding / removing of other listeners or
+         * factories and changing of settings is <em>NOT</em> allowed. The data
+         * acquisition can be stopped. Packets can only be sent in this state.
          */
         RUNNING {
             @Override
@@ -162,13 +160,74 @@ final class FacadeSM {
 
                     model.setState( INITIALIZED );
                     return true;
-                } else if (model instanceof SendMessageModel) {
-                    ((SendMessageModel) model).sendMessageQueue.add( ((SendMessageModel) model).packet );
+                } else if (model instanceof PacketListenerModel) {
+                    return handlePacketListener( (PacketListenerModel) model );
+                } else if (model instanceof CloseModel) {
+                    ((CloseModel) model).connector.stopThread();
+                    ((CloseModel) model).consumer.stopThread();
+                    release( (CloseModel) model );
                     return true;
                 }
                 return false;
             }
+
+            @Override
+            public boolean isSendingPossible() {
+                return true;
+            }
+        },
+
+        /**
+         * In this state the resources of the EOC are released. No transition
+         * leaves this state.
+         */
+        CLOSED {
+            @Override
+            public boolean handle( AbstractTransitionModel model ) {
+                return false;
+            }
+        };
+
+        @Override
+        public boolean isSendingPossible() {
+            return false;
+        }
+    }
+
+    /**
+     * Add or remove a packet listener. This is possible in the states
+     * {@link State#INITIALIZED} and {@link State#RUNNING}.
+     *
+     * @param plm the packet listener model
+     * @return <code>true</code> if the action was executed, <code>false</code>
+     *         otherwise
+     */
+    private static boolean handlePacketListener( PacketListenerModel plm ) {
+        switch (plm.action) {
+            case PacketListenerModel.ADD:
+                plm.distributor.addListener( plm.id, plm.listener );
+                return true;
+            case PacketListenerModel.REMOVE:
+                plm.distributor.removeListener( plm.id );
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Release the resources of the EOC, that are not shared with other
+     * instances, and close the state machine.
+     *
+     * @param cm the close model
+     */
+    private static void release( CloseModel cm ) {
+        if (cm.watchdog != null) {
+            cm.watchdog.stop();
         }
+        cm.metrics.removeExporters();
+        cm.distributor.shutdown();
+        cm.setState( State.CLOSED );
     }
 
     private FacadeSM() {
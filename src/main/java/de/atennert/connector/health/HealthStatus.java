@@ -0,0 +1,181 @@
+package de.atennert.connector.health;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Health of the packet pipeline at the time of a check of the
+ * {@link PipelineWatchdog}. The status contains the health of each stage of
+ * the pipeline and the overall level, which is the worst level of all stages.
+ * Instances are immutable.
+ */
+public final class HealthStatus {
+
+    /**
+     * Health levels, ordered from good to bad.
+     */
+    public enum Level {
+        /** the stage makes progress and its queue is short */
+        HEALTHY,
+        /** the stage works, but its queue is long or it got no data for long */
+        DEGRADED,
+        /** the stage has pending work, but made no progress for too long */
+        STALLED
+    }
+
+    /**
+     * Stages of the packet pipeline.
+     */
+    public enum Stage {
+        /** the serial port reader, which fills the receive queue */
+        READER,
+        /** the decoder, which takes bytes from the receive queue */
+        DECODER,
+        /** the distributor, which calls the packet listeners */
+        DISPATCHER,
+        /** the writer, which takes packets from the send queue */
+        WRITER
+    }
+
+    /**
+     * Health of one stage of the pipeline.
+     */
+    public static final class StageHealth {
+
+        private final Level level;
+        private final long progress;
+        private final long queueDepth;
+        private final long idleTime;
+        private final String message;
+
+        StageHealth( Level level, long progress, long queueDepth, long idleTime, String message ) {
+            this.level = level;
+            this.progress = progress;
+            this.queueDepth = queueDepth;
+            this.idleTime = idleTime;
+            this.message = message;
+        }
+
+        /**
+         * @return the health level of the stage
+         */
+        public Level getLevel() {
+            return level;
+        }
+
+        /**
+         * @return the progress counter of the stage, for instance the number
+         *         of bytes read by the reader or packets written by the writer
+         */
+        public long getProgress() {
+            return progress;
+        }
+
+        /**
+         * @return the number of items, that wait for the stage
+         */
+        public long getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return the time in milliseconds since the progress counter changed
+         */
+        public long getIdleTime() {
+            return idleTime;
+        }
+
+        /**
+         * @return the reason for the level or <code>null</code> if the stage is
+         *         healthy
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return level + (message != null ? " (" + message + ")" : "") + ", progress " + progress + ", queue "
+                    + queueDepth + ", idle " + idleTime + " ms";
+        }
+    }
+
+    private final long time;
+    private final Map< Stage, StageHealth > stages;
+    private final Level level;
+
+    HealthStatus( long time, EnumMap< Stage, StageHealth > stages ) {
+        Level worst = Level.HEALTHY;
+        for (final StageHealth stage : stages.values()) {
+            if (stage.getLevel().compareTo( worst ) > 0) {
+                worst = stage.getLevel();
+            }
+        }
+        this.time = time;
+        this.stages = Collections.unmodifiableMap( stages );
+        this.level = worst;
+    }
+
+    /**
+     * @return the time of the check in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the worst level of all stages
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return <code>true</code> if all stages are healthy
+     */
+    public boolean isHealthy() {
+        return level == Level.HEALTHY;
+    }
+
+    /**
+     * @param stage a stage of the pipeline
+     * @return the health of the stage
+     */
+    public StageHealth getStage( Stage stage ) {
+        return stages.get( stage );
+    }
+
+    /**
+     * @return the health of all stages in the order of the pipeline
+     */
+    public Map< Stage, StageHealth > getStages() {
+        return stages;
+    }
+
+    /**
+     * @param other another status or <code>null</code>
+     * @return <code>true</code> if any stage has another level in the other
+     *         status
+     */
+    boolean hasOtherLevels( HealthStatus other ) {
+        if (other == null) {
+            return true;
+        }
+        for (final Stage stage : Stage.values()) {
+            if (getStage( stage ).getLevel() != other.getStage( stage ).getLevel()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder( level.toString() );
+        for (final Map.Entry< Stage, StageHealth > stage : stages.entrySet()) {
+            builder.append( ", " ).append( stage.getKey() ).append( ": " ).append( stage.getValue() );
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,358 @@
+package de.atennert.connector.health;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.atennert.connector.distribution.IDistributor;
+import de.atennert.connector.distribution.IEventListener;
+import de.atennert.connector.health.HealthStatus.Level;
+import de.atennert.connector.health.HealthStatus.Stage;
+import de.atennert.connector.health.HealthStatus.StageHealth;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watchdog, that periodically checks the progress of each stage of the packet
+ * pipeline. The progress counters and queue depths are read from the
+ * {@link PipelineMetrics} in the {@link MetricsRegistry} of a connector:
+ * <ul>
+ * <li>reader: read bytes</li>
+ * <li>decoder: bytes taken from the receive queue</li>
+ * <li>dispatcher: packets, that were delivered to all listeners</li>
+ * <li>writer: packets, that were written or failed</li>
+ * </ul>
+ * A stage is {@link Level#STALLED} if it has pending work, but its progress
+ * counter didn't change for the stall timeout, for instance because a packet
+ * listener blocks all dispatch threads. A stage is {@link Level#DEGRADED} if
+ * its queue is longer than the configured threshold. The reader is degraded
+ * if it didn't read any data for the reader idle timeout, which is disabled by
+ * default, because many EnOcean networks are quiet for a long time.<br>
+ * <br>
+ * Listeners are informed with the new {@link HealthStatus} whenever the level
+ * of a stage changes and get the current status when they are added.
+ * Watchdogs are created with a {@link Builder}, which is returned by
+ * {@link #builder()}.
+ */
+public class PipelineWatchdog implements IDistributor< HealthStatus > {
+
+    private static final Logger log = LoggerFactory.getLogger( PipelineWatchdog.class );
+
+    /** default time in milliseconds between two checks */
+    public static final long DEFAULT_CHECK_INTERVAL = 1000;
+    /** default time in milliseconds without progress, after which a stage is stalled */
+    public static final long DEFAULT_STALL_TIMEOUT = 10000;
+
+    private static final int STAGES = Stage.values().length;
+
+    private final MetricsRegistry registry;
+    private final long checkInterval;
+    private final long stallTimeout;
+    private final long readerIdleTimeout;
+    private final long[] maxQueueDepths;
+
+    private final List< IEventListener< HealthStatus > > listeners = new ArrayList<>();
+
+    /** last progress of each stage, only used while holding the lock */
+    private final long[] lastProgress = new long[STAGES];
+    /** time of the last progress of each stage, only used while holding the lock */
+    private final long[] lastProgressTime = new long[STAGES];
+
+    private volatile HealthStatus status = null;
+
+    private ScheduledExecutorService executor;
+    /** <code>true</code> if the executor is shared and mustn't be shut down */
+    private boolean sharedExecutor;
+    private ScheduledFuture< ? > checks;
+
+    private PipelineWatchdog( Builder builder, MetricsRegistry registry ) {
+        this.registry = registry;
+        this.checkInterval = builder.checkInterval;
+        this.stallTimeout = builder.stallTimeout;
+        this.readerIdleTimeout = builder.readerIdleTimeout;
+        this.maxQueueDepths = builder.maxQueueDepths.clone();
+        final long now = now();
+        for (int i = 0; i < STAGES; i++) {
+            lastProgress[i] = -1;
+            lastProgressTime[i] = now;
+        }
+    }
+
+    /**
+     * @return a new builder for a watchdog
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Start the periodic checks in a daemon thread. Nothing happens if the
+     * watchdog is running already.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        schedule( Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable runnable ) {
+                final Thread thread = new Thread( runnable, "pipeline-watchdog" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } ), false );
+    }
+
+    /**
+     * Start the periodic checks with an executor, that may be shared with
+     * other watchdogs. The executor is not shut down when the watchdog stops.
+     * Nothing happens if the watchdog is running already.
+     *
+     * @param executor executor for the checks
+     */
+    public synchronized void start( ScheduledExecutorService executor ) {
+        if (executor == null) {
+            throw new IllegalArgumentException( "An executor is required!" );
+        }
+        if (this.executor != null) {
+            return;
+        }
+        schedule( executor, true );
+    }
+
+    private void schedule( ScheduledExecutorService executor, boolean shared ) {
+        this.executor = executor;
+        this.sharedExecutor = shared;
+        checks = executor.scheduleWithFixedDelay( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    check();
+                } catch (RuntimeException e) {
+                    log.error( "Error while checking the pipeline health!", e );
+                }
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Stop the periodic checks.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            checks.cancel( false );
+            if (!sharedExecutor) {
+                executor.shutdown();
+            }
+            checks = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the periodic checks are running
+     */
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * Get the status of the last check. If the watchdog is not running or no
+     * check happened yet, the pipeline is checked now.
+     *
+     * @return the current health status of the pipeline
+     */
+    public HealthStatus getStatus() {
+        final HealthStatus current = status;
+        if (current == null || !isRunning()) {
+            return check();
+        }
+        return current;
+    }
+
+    /**
+     * Check the pipeline now and inform the listeners if the level of a stage
+     * changed.
+     *
+     * @return the new health status
+     */
+    public HealthStatus check() {
+        return check( now() );
+    }
+
+    /**
+     * @param now the current time in milliseconds of a monotonic clock
+     */
+    synchronized HealthStatus check( long now ) {
+        final EnumMap< Stage, StageHealth > stages = new EnumMap<>( Stage.class );
+
+        final long dispatched = value( PipelineMetrics.PACKETS_DISPATCHED );
+        final long completed = value( PipelineMetrics.DISPATCH_COMPLETED );
+        stages.put( Stage.READER, checkStage( Stage.READER, now, value( PipelineMetrics.BYTES_READ ), 0, false ) );
+        stages.put( Stage.DECODER, checkStage( Stage.DECODER, now, value( PipelineMetrics.BYTES_CONSUMED ),
+                value( PipelineMetrics.RECEIVE_QUEUE_DEPTH ), false ) );
+        // packets in the listeners count as pending work, too
+        stages.put( Stage.DISPATCHER, checkStage( Stage.DISPATCHER, now, completed,
+                value( PipelineMetrics.DISPATCH_QUEUE_DEPTH ), dispatched > completed ) );
+        stages.put( Stage.WRITER, checkStage( Stage.WRITER, now, value( PipelineMetrics.PACKETS_WRITTEN )
+                + value( PipelineMetrics.WRITE_ERRORS ), value( PipelineMetrics.SEND_QUEUE_DEPTH ), false ) );
+
+        final HealthStatus previous = status;
+        final HealthStatus current = new HealthStatus( System.currentTimeMillis(), stages );
+        status = current;
+        if (current.hasOtherLevels( previous )) {
+            if (current.isHealthy()) {
+                log.info( "The pipeline is healthy: " + current );
+            } else {
+                log.warn( "The pipeline is " + current.getLevel() + ": " + current );
+            }
+            updateListeners( current );
+        }
+        return current;
+    }
+
+    private StageHealth checkStage( Stage stage, long now, long progress, long queueDepth, boolean busy ) {
+        final int index = stage.ordinal();
+        if (progress != lastProgress[index]) {
+            lastProgress[index] = progress;
+            lastProgressTime[index] = now;
+        }
+        final long idleTime = now - lastProgressTime[index];
+
+        if ((queueDepth > 0 || busy) && idleTime >= stallTimeout) {
+            return new StageHealth( Level.STALLED, progress, queueDepth, idleTime, "no progress for " + idleTime
+                    + " ms" );
+        }
+        if (maxQueueDepths[index] > 0 && queueDepth > maxQueueDepths[index]) {
+            return new StageHealth( Level.DEGRADED, progress, queueDepth, idleTime, "queue longer than "
+                    + maxQueueDepths[index] );
+        }
+        if (stage == Stage.READER && readerIdleTimeout > 0 && idleTime >= readerIdleTimeout) {
+            return new StageHealth( Level.DEGRADED, progress, queueDepth, idleTime, "no data for " + idleTime
+                    + " ms" );
+        }
+        return new StageHealth( Level.HEALTHY, progress, queueDepth, idleTime, null );
+    }
+
+    private long value( String name ) {
+        final Long value = registry.getValue( name );
+        return value == null ? 0 : value;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() );
+    }
+
+    @Override
+    public void addListener( IEventListener< HealthStatus > listener ) {
+        synchronized (listeners) {
+            listeners.add( listener );
+            final HealthStatus current = status;
+            if (current != null) {
+                listener.onEvent( current );
+            }
+        }
+    }
+
+    @Override
+    public void removeListener( IEventListener< HealthStatus > listener ) {
+        synchronized (listeners) {
+            listeners.remove( listener );
+        }
+    }
+
+    private void updateListeners( HealthStatus current ) {
+        synchronized (listeners) {
+            for (final IEventListener< HealthStatus > listener : listeners) {
+                try {
+                    listener.onEvent( current );
+                } catch (RuntimeException e) {
+                    log.error( "Error in health listener!", e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link PipelineWatchdog}s.
+     */
+    public static final class Builder {
+
+        private long checkInterval = DEFAULT_CHECK_INTERVAL;
+        private long stallTimeout = DEFAULT_STALL_TIMEOUT;
+        private long readerIdleTimeout = 0;
+        private final long[] maxQueueDepths = new long[STAGES];
+
+        private Builder() {}
+
+        /**
+         * @param interval time in milliseconds between two checks
+         * @return this builder
+         */
+        public Builder checkInterval( long interval ) {
+            if (interval < 1) {
+                throw new IllegalArgumentException( "The check interval must be positive!" );
+            }
+            this.checkInterval = interval;
+            return this;
+        }
+
+        /**
+         * @param timeout time in milliseconds without progress, after which a
+         *            stage with pending work is stalled
+         * @return this builder
+         */
+        public Builder stallTimeout( long timeout ) {
+            if (timeout < 1) {
+                throw new IllegalArgumentException( "The stall timeout must be positive!" );
+            }
+            this.stallTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param timeout time in milliseconds without received data, after
+         *            which the reader is degraded, 0 disables the check
+         * @return this builder
+         */
+        public Builder readerIdleTimeout( long timeout ) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException( "The reader idle timeout must not be negative!" );
+            }
+            this.readerIdleTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param stage a stage of the pipeline
+         * @param depth queue depth, above which the stage is degraded, 0
+         *            disables the check
+         * @return this builder
+         */
+        public Builder maxQueueDepth( Stage stage, long depth ) {
+            if (stage == null || depth < 0) {
+                throw new IllegalArgumentException( "A stage and a queue depth, that is not negative, are required!" );
+            }
+            this.maxQueueDepths[stage.ordinal()] = depth;
+            return this;
+        }
+
+        /**
+         * @param registry registry with the pipeline metrics of a connector
+         * @return a new watchdog, which is not started
+         */
+        public PipelineWatchdog build( MetricsRegistry registry ) {
+            if (registry == null) {
+                throw new IllegalArgumentException( "A metrics registry is required!" );
+            }
+            return new PipelineWatchdog( this, registry );
+        }
+    }
+}
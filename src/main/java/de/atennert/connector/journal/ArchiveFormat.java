@@ -0,0 +1,87 @@
+package de.atennert.connector.journal;
+
+/**
+ * Layout of compressed telegram archives, see {@link ArchiveWriter}. An
+ * archive starts with a header (magic number, version) and contains blocks of
+ * records, which can be decompressed independently.<br>
+ * <br>
+ * Block header, big endian: int stored length of the body, int raw length of
+ * the body, int number of records, byte flags ({@link #FLAG_DEFLATED}). The
+ * body contains the sender dictionary of the block (varint count, int sender
+ * IDs), the receive time of the first record (long), the time unit of the
+ * block in nanoseconds (varlong, a power of ten), the receive times of all
+ * records as zigzag varlong delta-of-delta of their offset to the first time
+ * in the time unit and the records:
+ * <ul>
+ * <li>byte: kind of the record, {@link #GATEWAY_CHANGED} and
+ * {@link #CHECKSUM_VALID}</li>
+ * <li>zigzag varint: gateway, only with {@link #GATEWAY_CHANGED}</li>
+ * <li>{@link #KIND_RAW}: varint length and bytes of the frame</li>
+ * <li>radio telegrams: varint index of the sender in the dictionary, then
+ * <ul>
+ * <li>{@link #KIND_NEW}: 5 header bytes (lengths, type, checksum) and the
+ * payload</li>
+ * <li>{@link #KIND_XOR}: bit mask of the changed payload bytes and the changed
+ * bytes XOR the previous payload of the sender</li>
+ * <li>{@link #KIND_SAME}: nothing, the payload of the previous telegram of the
+ * sender</li>
+ * </ul>
+ * </li>
+ * </ul>
+ * The payload of a radio telegram is the frame without sync byte, header,
+ * header checksum and sender ID: the data before the sender ID, the status
+ * byte, the optional data and the checksum. A valid checksum is stored as 0
+ * and calculated again, when the frame is restored. Numbers are variable length
+ * integers with 7 bits per byte, least significant group first.
+ */
+final class ArchiveFormat {
+
+    /** "EOA1" */
+    static final int MAGIC = 0x454F4131;
+    static final int VERSION = 1;
+    /** magic number and version */
+    static final int HEADER_LENGTH = 5;
+    /** stored length, raw length, record count and flags */
+    static final int BLOCK_HEADER_LENGTH = 13;
+
+    /** largest time unit of a block, one second */
+    static final long MAX_TIME_UNIT = 1000000000L;
+
+    /** the body of the block is compressed with deflate */
+    static final int FLAG_DEFLATED = 0x01;
+
+    static final int KIND_RAW = 0;
+    static final int KIND_NEW = 1;
+    static final int KIND_XOR = 2;
+    static final int KIND_SAME = 3;
+    static final int KIND_MASK = 0x03;
+    static final int GATEWAY_CHANGED = 0x04;
+    /** the data checksum of a radio telegram is valid, it is stored as 0 */
+    static final int CHECKSUM_VALID = 0x08;
+
+    /** sync byte, header and header checksum */
+    static final int FRAME_HEADER_LENGTH = 6;
+
+    // Don't allow creating an instance
+    private ArchiveFormat() {}
+
+    /**
+     * @return the position after the value
+     */
+    static int putVarLong( byte[] target, int position, long value ) {
+        while ((value & ~0x7FL) != 0) {
+            target[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    static long zigZag( long value ) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag( long value ) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,326 @@
+package de.atennert.connector.journal;
+
+import de.atennert.connector.reader.PacketEncoder;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Cursor over the records of an archive, that was written by an
+ * {@link ArchiveWriter}. The archive is read block by block from the channel,
+ * so it is decompressed while it is streamed. The frames are restored exactly
+ * as they were appended.<br>
+ * <br>
+ * The frame of the current record is a read-only view, which is reused for
+ * the next record. A reader must only be used by one thread.
+ */
+public class ArchiveReader implements Closeable {
+
+    private final ReadableByteChannel channel;
+    private final Inflater inflater = new Inflater();
+    private final ByteBuffer blockHeader = ByteBuffer.allocate( ArchiveFormat.BLOCK_HEADER_LENGTH );
+
+    private byte[] stored = new byte[0];
+    private byte[] body = new byte[0];
+    private int position;
+    private int timePosition;
+    private int remaining = 0;
+
+    /** sender dictionary and state of every sender of the block */
+    private int[] senders = new int[0];
+    private long[] headers = new long[0];
+    private byte[][] payloads = new byte[0][];
+    private int[] payloadLengths = new int[0];
+
+    private long firstNanos;
+    private long timeUnit;
+    private long previousTime;
+    private long previousDelta;
+    private int previousGateway;
+
+    private byte[] frameBytes = new byte[256];
+    private ByteBuffer frame = ByteBuffer.wrap( frameBytes ).asReadOnlyBuffer();
+    private long receiveNanos;
+    private int gateway;
+
+    /**
+     * @param channel the channel with the archive
+     * @throws IOException if the header can't be read or the channel isn't
+     *             an archive
+     */
+    public ArchiveReader( ReadableByteChannel channel ) throws IOException {
+        this.channel = channel;
+        final ByteBuffer header = ByteBuffer.allocate( ArchiveFormat.HEADER_LENGTH );
+        if (!readFully( header ) || header.getInt( 0 ) != ArchiveFormat.MAGIC) {
+            throw new IOException( "The channel contains no telegram archive!" );
+        }
+        if (header.get( 4 ) != ArchiveFormat.VERSION) {
+            throw new IOException( "Unsupported telegram archive version " + header.get( 4 ) + "!" );
+        }
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return <code>true</code> if there is another record,
+     *         <code>false</code> at the end of the archive
+     * @throws IOException if the archive can't be read or is invalid
+     */
+    public boolean next() throws IOException {
+        while (remaining == 0) {
+            if (!readBlock()) {
+                return false;
+            }
+        }
+        remaining--;
+        try {
+            readRecord();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException( "Invalid telegram archive block!", e );
+        }
+        return true;
+    }
+
+    /**
+     * @return the receive time of the current record in nanoseconds since the
+     *         epoch
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    /**
+     * @return the receive time of the current record in milliseconds since
+     *         the epoch
+     */
+    public long getTimestamp() {
+        return TimeUnit.NANOSECONDS.toMillis( receiveNanos );
+    }
+
+    /**
+     * @return the gateway of the current record
+     */
+    public int getGateway() {
+        return gateway;
+    }
+
+    /**
+     * @return read-only view of the ESP3 frame of the current record, from
+     *         its position to its limit, valid until the next call of
+     *         {@link #next()}
+     */
+    public ByteBuffer getFrame() {
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private void readRecord() {
+        final byte[] in = body;
+        final int head = in[position++];
+
+        final int recordPosition = position;
+        position = timePosition;
+        final long delta = previousDelta + ArchiveFormat.unZigZag( readVarLong() );
+        timePosition = position;
+        position = recordPosition;
+        previousTime += delta;
+        previousDelta = delta;
+        receiveNanos = firstNanos + previousTime * timeUnit;
+        if ((head & ArchiveFormat.GATEWAY_CHANGED) != 0) {
+            previousGateway = (int) ArchiveFormat.unZigZag( readVarLong() );
+        }
+        gateway = previousGateway;
+
+        final int kind = head & ArchiveFormat.KIND_MASK;
+        if (kind == ArchiveFormat.KIND_RAW) {
+            final int length = (int) readVarLong();
+            final byte[] out = frameBuffer( length );
+            System.arraycopy( in, position, out, 0, length );
+            position += length;
+            JournalFormat.setRange( frame, 0, length );
+            return;
+        }
+
+        final int index = (int) readVarLong();
+        int payloadLength = payloadLengths[index];
+        byte[] payload = payloads[index];
+        if (kind == ArchiveFormat.KIND_NEW) {
+            long header = 0;
+            for (int i = 0; i < ArchiveFormat.FRAME_HEADER_LENGTH - 1; i++) {
+                header = header << 8 | in[position++] & 0xFF;
+            }
+            payloadLength = (int) (header >>> 24 & 0xFFFF) + (int) (header >>> 16 & 0xFF) - 3;
+            if (payload == null || payload.length < payloadLength) {
+                payload = new byte[payloadLength];
+                payloads[index] = payload;
+            }
+            System.arraycopy( in, position, payload, 0, payloadLength );
+            position += payloadLength;
+            headers[index] = header;
+            payloadLengths[index] = payloadLength;
+        } else if (kind == ArchiveFormat.KIND_XOR) {
+            final int mask = position;
+            position += (payloadLength + 7) >>> 3;
+            for (int i = 0; i < payloadLength; i++) {
+                if ((in[mask + (i >>> 3)] & 1 << (i & 7)) != 0) {
+                    payload[i] ^= in[position++];
+                }
+            }
+        }
+
+        // sync byte, header, data before the sender ID, sender ID and the rest
+        final long header = headers[index];
+        final int dataLength = (int) (header >>> 24 & 0xFFFF);
+        final int length = ArchiveFormat.FRAME_HEADER_LENGTH + 4 + payloadLength;
+        final byte[] out = frameBuffer( length );
+        out[0] = 0x55;
+        for (int i = 1; i < ArchiveFormat.FRAME_HEADER_LENGTH; i++) {
+            out[i] = (byte) (header >>> (8 * (ArchiveFormat.FRAME_HEADER_LENGTH - 1 - i)));
+        }
+        final int beforeSender = dataLength - 5;
+        System.arraycopy( payload, 0, out, ArchiveFormat.FRAME_HEADER_LENGTH, beforeSender );
+        final int sender = senders[index];
+        final int senderOffset = ArchiveFormat.FRAME_HEADER_LENGTH + beforeSender;
+        out[senderOffset] = (byte) (sender >>> 24);
+        out[senderOffset + 1] = (byte) (sender >>> 16);
+        out[senderOffset + 2] = (byte) (sender >>> 8);
+        out[senderOffset + 3] = (byte) sender;
+        System.arraycopy( payload, beforeSender, out, senderOffset + 4, payloadLength - beforeSender );
+        JournalFormat.setRange( frame, 0, length );
+        if ((head & ArchiveFormat.CHECKSUM_VALID) != 0) {
+            out[length - 1] = (byte) PacketEncoder.checksum( frame, ArchiveFormat.FRAME_HEADER_LENGTH, length
+                    - ArchiveFormat.FRAME_HEADER_LENGTH - 1 );
+        }
+    }
+
+    /**
+     * @return the frame buffer, it is enlarged if it is shorter than the frame
+     */
+    private byte[] frameBuffer( int length ) {
+        if (frameBytes.length < length) {
+            frameBytes = new byte[Math.max( length, 2 * frameBytes.length )];
+            frame = ByteBuffer.wrap( frameBytes ).asReadOnlyBuffer();
+        }
+        return frameBytes;
+    }
+
+    private long readVarLong() {
+        final byte[] in = body;
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in[position++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Read and decompress the next block and its dictionary.
+     *
+     * @return <code>false</code> at the end of the archive
+     */
+    private boolean readBlock() throws IOException {
+        JournalFormat.setRange( blockHeader, 0, blockHeader.capacity() );
+        if (!readFully( blockHeader )) {
+            return false;
+        }
+        final int storedLength = blockHeader.getInt( 0 );
+        final int rawLength = blockHeader.getInt( 4 );
+        final int records = blockHeader.getInt( 8 );
+        final boolean deflated = (blockHeader.get( 12 ) & ArchiveFormat.FLAG_DEFLATED) != 0;
+        if (storedLength < 0 || rawLength < 0 || records < 0) {
+            throw new IOException( "Invalid telegram archive block!" );
+        }
+        if (body.length < rawLength) {
+            body = new byte[rawLength];
+        }
+        if (deflated) {
+            if (stored.length < storedLength) {
+                stored = new byte[storedLength];
+            }
+            if (!readFully( ByteBuffer.wrap( stored, 0, storedLength ) )) {
+                throw new EOFException( "The telegram archive ends in a block!" );
+            }
+            inflater.reset();
+            inflater.setInput( stored, 0, storedLength );
+            try {
+                if (inflater.inflate( body, 0, rawLength ) != rawLength || !inflater.finished()) {
+                    throw new IOException( "Invalid telegram archive block!" );
+                }
+            } catch (DataFormatException e) {
+                throw new IOException( "Invalid telegram archive block!", e );
+            }
+        } else if (storedLength != rawLength || !readFully( ByteBuffer.wrap( body, 0, rawLength ) )) {
+            throw new EOFException( "The telegram archive ends in a block!" );
+        }
+
+        position = 0;
+        try {
+            final int senderCount = (int) readVarLong();
+            if (senders.length < senderCount) {
+                senders = new int[senderCount];
+                headers = new long[senderCount];
+                payloads = new byte[senderCount][];
+                payloadLengths = new int[senderCount];
+            }
+            for (int i = 0; i < senderCount; i++) {
+                senders[i] = readInt();
+            }
+            firstNanos = (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+            timeUnit = readVarLong();
+            timePosition = position;
+            // the records follow the receive times
+            for (int i = 0; i < records; i++) {
+                while ((body[position++] & 0x80) != 0) {
+                    // skip the time
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException( "Invalid telegram archive block!", e );
+        }
+        previousTime = 0;
+        previousDelta = 0;
+        previousGateway = 0;
+        remaining = records;
+        return true;
+    }
+
+    private int readInt() {
+        final byte[] in = body;
+        final int value = (in[position] & 0xFF) << 24 | (in[position + 1] & 0xFF) << 16
+                | (in[position + 2] & 0xFF) << 8 | in[position + 3] & 0xFF;
+        position += 4;
+        return value;
+    }
+
+    /**
+     * @return <code>false</code> if the channel ended before the first byte
+     * @throws EOFException if the channel ended after the first byte
+     */
+    private boolean readFully( ByteBuffer buffer ) throws IOException {
+        final int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read( buffer ) < 0) {
+                if (buffer.position() == start) {
+                    return false;
+                }
+                throw new EOFException( "The telegram archive ends in a block!" );
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,399 @@
+package de.atennert.connector.journal;
+
+import de.atennert.connector.reader.PacketEncoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes telegram records to a compressed archive, for instance a completed
+ * journal segment with {@link #compressSegment(Path, Path)}. Archived
+ * telegrams are very repetitive: the same senders send telegrams with nearly
+ * the same payload every few minutes. The archive uses this in blocks of
+ * records (see {@link ArchiveFormat}):
+ * <ul>
+ * <li>the sender IDs of a block are stored once in a dictionary</li>
+ * <li>the receive times are stored as delta-of-delta in the coarsest unit of
+ * the block, for instance milliseconds</li>
+ * <li>the payload of a radio telegram is stored as XOR against the previous
+ * payload of the sender, only the changed bytes are written</li>
+ * <li>valid data checksums are calculated again by the reader</li>
+ * <li>the block is compressed with deflate, unless it is disabled</li>
+ * </ul>
+ * The frames are restored exactly, including their checksums, by an
+ * {@link ArchiveReader}. A writer must only be used by one thread.
+ */
+public class ArchiveWriter implements Closeable {
+
+    /** default number of records per block */
+    public static final int DEFAULT_BLOCK_RECORDS = 16384;
+
+    private final WritableByteChannel channel;
+    private final int blockRecords;
+    private final Deflater deflater;
+
+    /** dictionary indexes of the senders of the block */
+    private final Map< Integer, Integer > senderIndexes = new HashMap<>();
+    private int[] senders = new int[64];
+    /** header bytes and last payload of every sender of the block */
+    private long[] headers = new long[64];
+    private byte[][] payloads = new byte[64][];
+    private int[] payloadLengths = new int[64];
+
+    private byte[] records = new byte[65536];
+    private int recordsLength = 0;
+    private int recordCount = 0;
+    private long[] times = new long[1024];
+    private byte[] payload = new byte[256];
+    private byte[] body = new byte[0];
+    private byte[] stored = new byte[0];
+
+    private int previousGateway;
+    private long totalRecords = 0;
+
+    /**
+     * Create a writer with deflate and the default block size.
+     *
+     * @param channel the channel for the archive
+     * @throws IOException if the header can't be written
+     */
+    public ArchiveWriter( WritableByteChannel channel ) throws IOException {
+        this( channel, DEFAULT_BLOCK_RECORDS, true );
+    }
+
+    /**
+     * @param channel the channel for the archive
+     * @param blockRecords number of records per block
+     * @param deflate <code>true</code> to compress the blocks with deflate,
+     *            <code>false</code> for faster decompression
+     * @throws IOException if the header can't be written
+     */
+    public ArchiveWriter( WritableByteChannel channel, int blockRecords, boolean deflate ) throws IOException {
+        if (blockRecords < 1) {
+            throw new IllegalArgumentException( "A block needs at least one record!" );
+        }
+        this.channel = channel;
+        this.blockRecords = blockRecords;
+        this.deflater = deflate ? new Deflater( Deflater.BEST_SPEED ) : null;
+        final ByteBuffer header = ByteBuffer.allocate( ArchiveFormat.HEADER_LENGTH );
+        header.putInt( ArchiveFormat.MAGIC );
+        header.put( (byte) ArchiveFormat.VERSION );
+        JournalFormat.setRange( header, 0, header.position() );
+        writeFully( header );
+    }
+
+    /**
+     * Compress a journal segment.
+     *
+     * @param segmentFile the segment file
+     * @param archiveFile the archive file, it is replaced if it exists
+     * @return the number of archived records
+     * @throws IOException if the segment can't be read or the archive can't
+     *             be written
+     */
+    public static long compressSegment( Path segmentFile, Path archiveFile ) throws IOException {
+        final ByteBuffer segment;
+        try (FileChannel channel = FileChannel.open( segmentFile, StandardOpenOption.READ )) {
+            segment = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        JournalFormat.checkHeader( segment, segmentFile );
+        final ByteBuffer frame = segment.asReadOnlyBuffer();
+        try (ArchiveWriter writer = new ArchiveWriter( FileChannel.open( archiveFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE ) )) {
+            int position = JournalFormat.SEGMENT_HEADER_LENGTH;
+            while (position + JournalFormat.RECORD_HEADER_LENGTH <= segment.limit()) {
+                final int length = segment.getInt( position );
+                final int frameOffset = position + JournalFormat.RECORD_HEADER_LENGTH;
+                if (length <= 0 || frameOffset + length > segment.limit()) {
+                    break;
+                }
+                JournalFormat.setRange( frame, frameOffset, frameOffset + length );
+                writer.append( frame, segment.getLong( position + 4 ), segment.getInt( position + 12 ) );
+                position = frameOffset + length;
+            }
+            return writer.getRecordCount();
+        }
+    }
+
+    /**
+     * Append a record. The frame is read from its position to its limit, the
+     * position of the buffer is moved to the limit.
+     *
+     * @param frame the ESP3 frame
+     * @param receiveNanos the receive time in nanoseconds since the epoch
+     * @param gateway the gateway, that received the frame
+     * @throws IOException if a complete block can't be written
+     */
+    public void append( ByteBuffer frame, long receiveNanos, int gateway ) throws IOException {
+        final int offset = frame.position();
+        final int length = frame.remaining();
+        ensureRecordSpace( 32 + length );
+
+        if (recordCount == 0) {
+            previousGateway = 0;
+        }
+        if (recordCount == times.length) {
+            times = Arrays.copyOf( times, 2 * times.length );
+        }
+        times[recordCount] = receiveNanos;
+        final int head = recordsLength++;
+        int kind = ArchiveFormat.KIND_RAW;
+        if (gateway != previousGateway) {
+            kind |= ArchiveFormat.GATEWAY_CHANGED;
+            recordsLength = ArchiveFormat.putVarLong( records, recordsLength, ArchiveFormat.zigZag( gateway ) );
+            previousGateway = gateway;
+        }
+
+        if (isCompleteRadio( frame, offset, length )) {
+            kind |= appendRadio( frame, offset, length );
+        } else {
+            recordsLength = ArchiveFormat.putVarLong( records, recordsLength, length );
+            for (int i = 0; i < length; i++) {
+                records[recordsLength++] = frame.get( offset + i );
+            }
+        }
+        records[head] = (byte) kind;
+        JournalFormat.setRange( frame, frame.limit(), frame.limit() );
+
+        totalRecords++;
+        if (++recordCount == blockRecords) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * @return the number of appended records
+     */
+    public long getRecordCount() {
+        return totalRecords;
+    }
+
+    /**
+     * Write the current block, so all appended records are in the channel.
+     *
+     * @throws IOException if the block can't be written
+     */
+    public void flush() throws IOException {
+        if (recordCount > 0) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write the current block and close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * @return <code>true</code> for a radio telegram, that fills the frame
+     *         exactly
+     */
+    private static boolean isCompleteRadio( ByteBuffer frame, int offset, int length ) {
+        if (!JournalFormat.isRadio( frame, offset, length ) || frame.get( offset ) != 0x55) {
+            return false;
+        }
+        final int dataLength = (frame.get( offset + 1 ) & 0xFF) << 8 | frame.get( offset + 2 ) & 0xFF;
+        final int optionalLength = frame.get( offset + 3 ) & 0xFF;
+        return length == ArchiveFormat.FRAME_HEADER_LENGTH + dataLength + optionalLength + 1;
+    }
+
+    /**
+     * @return the kind of the record
+     */
+    private int appendRadio( ByteBuffer frame, int offset, int length ) {
+        final int sender = JournalFormat.senderOf( frame, offset );
+        Integer index = senderIndexes.get( sender );
+        if (index == null) {
+            index = senderIndexes.size();
+            addSender( index, sender );
+        }
+        recordsLength = ArchiveFormat.putVarLong( records, recordsLength, index );
+
+        // payload: data before the sender ID, status, optional data and checksum
+        final int dataLength = (frame.get( offset + 1 ) & 0xFF) << 8 | frame.get( offset + 2 ) & 0xFF;
+        final int senderOffset = offset + ArchiveFormat.FRAME_HEADER_LENGTH + dataLength - 5;
+        final int payloadLength = length - ArchiveFormat.FRAME_HEADER_LENGTH - 4;
+        if (payload.length < payloadLength) {
+            payload = new byte[payloadLength];
+        }
+        int p = 0;
+        for (int i = offset + ArchiveFormat.FRAME_HEADER_LENGTH; i < senderOffset; i++) {
+            payload[p++] = frame.get( i );
+        }
+        for (int i = senderOffset + 4; i < offset + length; i++) {
+            payload[p++] = frame.get( i );
+        }
+        int checksum = 0;
+        final int payloadChecksum = PacketEncoder.checksum( frame, offset + ArchiveFormat.FRAME_HEADER_LENGTH, length
+                - ArchiveFormat.FRAME_HEADER_LENGTH - 1 );
+        if (payload[payloadLength - 1] == (byte) payloadChecksum) {
+            // the checksum changes with every other byte, so it's calculated by the reader
+            payload[payloadLength - 1] = 0;
+            checksum = ArchiveFormat.CHECKSUM_VALID;
+        }
+        long header = 0;
+        for (int i = 1; i < ArchiveFormat.FRAME_HEADER_LENGTH; i++) {
+            header = header << 8 | frame.get( offset + i ) & 0xFF;
+        }
+
+        final byte[] previous = payloads[index];
+        final int kind;
+        if (previous == null || headers[index] != header || payloadLengths[index] != payloadLength) {
+            kind = ArchiveFormat.KIND_NEW;
+            for (int i = 1; i < ArchiveFormat.FRAME_HEADER_LENGTH; i++) {
+                records[recordsLength++] = frame.get( offset + i );
+            }
+            System.arraycopy( payload, 0, records, recordsLength, payloadLength );
+            recordsLength += payloadLength;
+        } else {
+            final int maskStart = recordsLength;
+            final int maskLength = (payloadLength + 7) >>> 3;
+            Arrays.fill( records, maskStart, maskStart + maskLength, (byte) 0 );
+            recordsLength += maskLength;
+            for (int i = 0; i < payloadLength; i++) {
+                final int change = payload[i] ^ previous[i];
+                if (change != 0) {
+                    records[maskStart + (i >>> 3)] |= 1 << (i & 7);
+                    records[recordsLength++] = (byte) change;
+                }
+            }
+            if (recordsLength == maskStart + maskLength) {
+                // unchanged payload, the mask isn't needed
+                recordsLength = maskStart;
+                kind = ArchiveFormat.KIND_SAME;
+            } else {
+                kind = ArchiveFormat.KIND_XOR;
+            }
+        }
+        if (previous == null || previous.length < payloadLength) {
+            payloads[index] = new byte[payloadLength];
+        }
+        System.arraycopy( payload, 0, payloads[index], 0, payloadLength );
+        headers[index] = header;
+        payloadLengths[index] = payloadLength;
+        return kind | checksum;
+    }
+
+    private void addSender( int index, int sender ) {
+        if (index == senders.length) {
+            final int capacity = 2 * senders.length;
+            senders = Arrays.copyOf( senders, capacity );
+            headers = Arrays.copyOf( headers, capacity );
+            payloads = Arrays.copyOf( payloads, capacity );
+            payloadLengths = Arrays.copyOf( payloadLengths, capacity );
+        }
+        senderIndexes.put( sender, index );
+        senders[index] = sender;
+        payloads[index] = null;
+    }
+
+    private void ensureRecordSpace( int length ) {
+        // payload, mask and header of a radio telegram are shorter than twice the frame
+        if (records.length - recordsLength < 2 * length) {
+            records = Arrays.copyOf( records, Math.max( 2 * records.length, recordsLength + 2 * length ) );
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final int senderCount = senderIndexes.size();
+        final int rawLength = 5 + 4 * senderCount + 8 + 10 + 10 * recordCount + recordsLength;
+        if (body.length < rawLength) {
+            body = new byte[rawLength];
+        }
+        int position = ArchiveFormat.putVarLong( body, 0, senderCount );
+        for (int i = 0; i < senderCount; i++) {
+            position = putInt( body, position, senders[i] );
+        }
+
+        // receive times in the largest power of ten, that divides all offsets to the first time
+        final long firstNanos = times[0];
+        long unit = ArchiveFormat.MAX_TIME_UNIT;
+        for (int i = 1; i < recordCount && unit > 1; i++) {
+            while ((times[i] - firstNanos) % unit != 0) {
+                unit /= 10;
+            }
+        }
+        position = putInt( body, position, (int) (firstNanos >>> 32) );
+        position = putInt( body, position, (int) firstNanos );
+        position = ArchiveFormat.putVarLong( body, position, unit );
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < recordCount; i++) {
+            final long time = (times[i] - firstNanos) / unit;
+            final long delta = time - previous;
+            position = ArchiveFormat.putVarLong( body, position, ArchiveFormat.zigZag( delta - previousDelta ) );
+            previous = time;
+            previousDelta = delta;
+        }
+        System.arraycopy( records, 0, body, position, recordsLength );
+        position += recordsLength;
+
+        byte[] content = body;
+        int contentLength = position;
+        int flags = 0;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput( body, 0, position );
+            deflater.finish();
+            if (stored.length < position + 64) {
+                stored = new byte[position + position / 8 + 64];
+            }
+            int storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == stored.length) {
+                    stored = Arrays.copyOf( stored, 2 * stored.length );
+                }
+                storedLength += deflater.deflate( stored, storedLength, stored.length - storedLength );
+            }
+            content = stored;
+            contentLength = storedLength;
+            flags = ArchiveFormat.FLAG_DEFLATED;
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate( ArchiveFormat.BLOCK_HEADER_LENGTH );
+        header.putInt( contentLength );
+        header.putInt( position );
+        header.putInt( recordCount );
+        header.put( (byte) flags );
+        JournalFormat.setRange( header, 0, header.position() );
+        writeFully( header );
+        writeFully( ByteBuffer.wrap( content, 0, contentLength ) );
+
+        senderIndexes.clear();
+        recordsLength = 0;
+        recordCount = 0;
+    }
+
+    private static int putInt( byte[] target, int position, int value ) {
+        target[position] = (byte) (value >>> 24);
+        target[position + 1] = (byte) (value >>> 16);
+        target[position + 2] = (byte) (value >>> 8);
+        target[position + 3] = (byte) value;
+        return position + 4;
+    }
+
+    private void writeFully( ByteBuffer buffer ) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write( buffer );
+        }
+    }
+}
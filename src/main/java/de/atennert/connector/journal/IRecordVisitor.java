@@ -0,0 +1,23 @@
+package de.atennert.connector.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for receiving the records, that match a {@link JournalQuery}.
+ */
+public interface IRecordVisitor {
+
+    /**
+     * Receive a matching record. The frame is a read-only view of the mapped
+     * segment, which is reused for the next record. Visitors, that keep the
+     * frame, have to copy it.
+     *
+     * @param frame read-only view of the ESP3 frame from its position to its
+     *            limit
+     * @param receiveNanos the receive time in nanoseconds since the epoch
+     * @param gateway the gateway, that received the frame
+     * @return <code>true</code> to continue the query, <code>false</code> to
+     *         stop it
+     */
+    boolean visit( ByteBuffer frame, long receiveNanos, int gateway );
+}
@@ -0,0 +1,148 @@
+package de.atennert.connector.journal;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import de.atennert.connector.packets.IPacketConstants;
+
+/**
+ * Layout of the journal files. A journal is a directory of segment files
+ * named <code>telegrams-&lt;sequence&gt;.seg</code> and the index files of the
+ * completed segments named <code>telegrams-&lt;sequence&gt;.idx</code> (see
+ * {@link SegmentIndex}). Every segment starts with
+ * a header (magic number, version, segment size) and contains records up to
+ * the first record length of 0, the rest of the file is zero-filled.<br>
+ * <br>
+ * Record layout, big endian:
+ * <ul>
+ * <li>int: length of the frame</li>
+ * <li>long: receive time in nanoseconds since the epoch</li>
+ * <li>int: gateway ID</li>
+ * <li>bytes: the ESP3 frame</li>
+ * </ul>
+ */
+final class JournalFormat {
+
+    /** "EOJ1" */
+    static final int MAGIC = 0x454F4A31;
+    static final int VERSION = 1;
+
+    /** magic number, version and segment size */
+    static final int SEGMENT_HEADER_LENGTH = 16;
+    /** frame length, receive time and gateway */
+    static final int RECORD_HEADER_LENGTH = 16;
+
+    private static final String PREFIX = "telegrams-";
+    private static final String SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /** offset of the data in an ESP3 frame: sync byte, header and header checksum */
+    private static final int FRAME_DATA_OFFSET = 6;
+
+    // Don't allow creating an instance
+    private JournalFormat() {}
+
+    /**
+     * @return the name of the segment file with the given sequence number
+     */
+    static String segmentName( long sequence ) {
+        return String.format( Locale.ROOT, "%s%016d%s", PREFIX, sequence, SUFFIX );
+    }
+
+    /**
+     * @return the name of the index file of the segment with the given
+     *         sequence number
+     */
+    static String indexName( long sequence ) {
+        return String.format( Locale.ROOT, "%s%016d%s", PREFIX, sequence, INDEX_SUFFIX );
+    }
+
+    /**
+     * @return the sequence number of a segment file or -1 if the file isn't a
+     *         segment
+     */
+    static long sequenceOf( Path file ) {
+        final String name = file.getFileName().toString();
+        if (!name.startsWith( PREFIX ) || !name.endsWith( SUFFIX )) {
+            return -1;
+        }
+        try {
+            return Long.parseLong( name.substring( PREFIX.length(), name.length() - SUFFIX.length() ) );
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the segment files of the journal in the order of their sequence
+     *         numbers
+     */
+    static List< Path > listSegments( Path directory ) throws IOException {
+        final List< Path > segments = new ArrayList<>();
+        if (!Files.isDirectory( directory )) {
+            return segments;
+        }
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory, PREFIX + "*" + SUFFIX )) {
+            for (final Path file : files) {
+                if (sequenceOf( file ) >= 0) {
+                    segments.add( file );
+                }
+            }
+        }
+        Collections.sort( segments );
+        return segments;
+    }
+
+    /**
+     * @param frames buffer with an ESP3 frame
+     * @param frameOffset the index of the frame in the buffer
+     * @param frameLength the length of the frame
+     * @return <code>true</code> if the frame is a radio telegram with a
+     *         sender ID
+     */
+    static boolean isRadio( ByteBuffer frames, int frameOffset, int frameLength ) {
+        if (frameLength < FRAME_DATA_OFFSET || frames.get( frameOffset + 4 ) != IPacketConstants.TYPE_RADIO) {
+            return false;
+        }
+        final int dataLength = (frames.get( frameOffset + 1 ) & 0xFF) << 8 | frames.get( frameOffset + 2 ) & 0xFF;
+        return dataLength >= 6 && frameLength >= FRAME_DATA_OFFSET + dataLength;
+    }
+
+    /**
+     * @param frames buffer with a radio telegram, see
+     *            {@link #isRadio(ByteBuffer, int, int)}
+     * @param frameOffset the index of the frame in the buffer
+     * @return the sender ID of the telegram
+     */
+    static int senderOf( ByteBuffer frames, int frameOffset ) {
+        final int dataLength = (frames.get( frameOffset + 1 ) & 0xFF) << 8 | frames.get( frameOffset + 2 ) & 0xFF;
+        return frames.getInt( frameOffset + FRAME_DATA_OFFSET + dataLength - 5 );
+    }
+
+    /**
+     * Set the range of a buffer through {@link Buffer}, ByteBuffer overrides
+     * the methods since Java 9.
+     */
+    static void setRange( Buffer buffer, int position, int limit ) {
+        buffer.limit( limit );
+        buffer.position( position );
+    }
+
+    /**
+     * @throws IOException if the segment doesn't start with a valid header
+     */
+    static void checkHeader( ByteBuffer segment, Path file ) throws IOException {
+        if (segment.limit() < SEGMENT_HEADER_LENGTH || segment.getInt( 0 ) != MAGIC
+                || segment.getInt( 4 ) != VERSION) {
+            throw new IOException( "Invalid journal segment " + file + "!" );
+        }
+    }
+}
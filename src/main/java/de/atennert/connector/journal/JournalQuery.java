@@ -0,0 +1,153 @@
+package de.atennert.connector.journal;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queries the records of a {@link TelegramJournal} by receive time and sender
+ * ID. The query uses the {@link SegmentIndex} of every segment to skip the
+ * segments without records in the time range or without telegrams of the
+ * sender. In the remaining segments it starts reading at the sampled record
+ * before the start of the time range and stops after its end, so only these
+ * regions of the memory-mapped segments are read from the storage device.<br>
+ * <br>
+ * Segments without index file, like the segment, that is currently written,
+ * are indexed by the query itself. The indexes of the completed segments are
+ * kept by the query and used for the following queries. A query must only be
+ * used by one thread.
+ */
+public class JournalQuery {
+
+    private final Path directory;
+    /** indexes of the completed segments by sequence number */
+    private final Map< Long, SegmentIndex > indexes = new HashMap<>();
+
+    private long segmentsRead = 0;
+
+    /**
+     * @param directory the directory of the journal
+     */
+    public JournalQuery( Path directory ) {
+        this.directory = directory;
+    }
+
+    /**
+     * Visit all records in a time range in the order of the journal.
+     *
+     * @param fromNanos start of the time range in nanoseconds since the epoch,
+     *            inclusive
+     * @param toNanos end of the time range in nanoseconds since the epoch,
+     *            inclusive
+     * @param visitor receives the records
+     * @return the number of visited records
+     * @throws IOException if a segment or index can't be read
+     */
+    public long query( long fromNanos, long toNanos, IRecordVisitor visitor ) throws IOException {
+        return query( false, 0, fromNanos, toNanos, visitor );
+    }
+
+    /**
+     * Visit the radio telegrams of a sender in a time range in the order of
+     * the journal.
+     *
+     * @param senderId the sender ID
+     * @param fromNanos start of the time range in nanoseconds since the epoch,
+     *            inclusive
+     * @param toNanos end of the time range in nanoseconds since the epoch,
+     *            inclusive
+     * @param visitor receives the records
+     * @return the number of visited records
+     * @throws IOException if a segment or index can't be read
+     */
+    public long query( int senderId, long fromNanos, long toNanos, IRecordVisitor visitor ) throws IOException {
+        return query( true, senderId, fromNanos, toNanos, visitor );
+    }
+
+    /**
+     * @return the number of segments, that were read by the queries, the
+     *         skipped segments aren't counted
+     */
+    public long getSegmentsRead() {
+        return segmentsRead;
+    }
+
+    private long query( boolean bySender, int senderId, long fromNanos, long toNanos, IRecordVisitor visitor )
+            throws IOException {
+        final List< Path > segments = JournalFormat.listSegments( directory );
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            final Path file = segments.get( i );
+            final long sequence = JournalFormat.sequenceOf( file );
+            // the last segment may still be written
+            final boolean completed = i < segments.size() - 1;
+
+            ByteBuffer segment = null;
+            SegmentIndex index = indexes.get( sequence );
+            if (index == null) {
+                final Path indexFile = directory.resolve( JournalFormat.indexName( sequence ) );
+                if (Files.exists( indexFile )) {
+                    index = SegmentIndex.open( indexFile );
+                } else {
+                    segment = map( file );
+                    index = SegmentIndex.scan( sequence, segment );
+                }
+                if (completed) {
+                    indexes.put( sequence, index );
+                }
+            }
+            if (!index.overlaps( fromNanos, toNanos ) || bySender && !index.mightContain( senderId )) {
+                continue;
+            }
+            if (segment == null) {
+                segment = map( file );
+            }
+            segmentsRead++;
+
+            final boolean ordered = index.isOrdered();
+            final ByteBuffer frame = segment.asReadOnlyBuffer();
+            int position = index.findOffset( fromNanos );
+            while (position + JournalFormat.RECORD_HEADER_LENGTH <= segment.limit()) {
+                final int length = segment.getInt( position );
+                final int frameOffset = position + JournalFormat.RECORD_HEADER_LENGTH;
+                if (length <= 0 || frameOffset + length > segment.limit()) {
+                    break;
+                }
+                position = frameOffset + length;
+
+                final long receiveNanos = segment.getLong( frameOffset - 12 );
+                if (receiveNanos > toNanos && ordered) {
+                    break;
+                }
+                if (receiveNanos < fromNanos || receiveNanos > toNanos || bySender
+                        && (!JournalFormat.isRadio( segment, frameOffset, length )
+                                || JournalFormat.senderOf( segment, frameOffset ) != senderId)) {
+                    continue;
+                }
+                final Buffer view = frame;
+                view.limit( frameOffset + length );
+                view.position( frameOffset );
+                count++;
+                if (!visitor.visit( frame, receiveNanos, segment.getInt( frameOffset - 4 ) )) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static ByteBuffer map( Path file ) throws IOException {
+        try (FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+            final ByteBuffer mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            JournalFormat.checkHeader( mapped, file );
+            return mapped;
+        }
+    }
+}
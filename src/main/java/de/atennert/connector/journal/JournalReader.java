@@ -0,0 +1,165 @@
+package de.atennert.connector.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cursor over the records of a {@link TelegramJournal}, from the oldest to the
+ * newest segment. The segments are memory-mapped read-only one after the
+ * other. The reader may be used while the journal is written, it stops at
+ * the last complete record of the segments, that existed when the reader was
+ * created.<br>
+ * <br>
+ * The frame of the current record is a read-only view, which is reused for
+ * the next record. A reader must only be used by one thread.
+ */
+public class JournalReader implements Closeable {
+
+    private final List< Path > segments;
+    private int segmentIndex = -1;
+    private long sequence = -1;
+
+    private ByteBuffer segment;
+    private ByteBuffer frame;
+    private int offset;
+    private int nextOffset;
+
+    private long receiveNanos;
+    private int gateway;
+
+    /**
+     * @param directory the directory of the journal
+     * @throws IOException if the segments can't be listed
+     */
+    public JournalReader( Path directory ) throws IOException {
+        this.segments = JournalFormat.listSegments( directory );
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return <code>true</code> if there is another record,
+     *         <code>false</code> at the end of the journal
+     * @throws IOException if a segment can't be read
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment != null && nextOffset + JournalFormat.RECORD_HEADER_LENGTH <= segment.limit()) {
+                final int length = segment.getInt( nextOffset );
+                if (length > 0 && nextOffset + JournalFormat.RECORD_HEADER_LENGTH + length <= segment.limit()) {
+                    offset = nextOffset;
+                    receiveNanos = segment.getLong( offset + 4 );
+                    gateway = segment.getInt( offset + 12 );
+                    final Buffer view = frame;
+                    view.limit( offset + JournalFormat.RECORD_HEADER_LENGTH + length );
+                    view.position( offset + JournalFormat.RECORD_HEADER_LENGTH );
+                    nextOffset = offset + JournalFormat.RECORD_HEADER_LENGTH + length;
+                    return true;
+                }
+            }
+            if (segmentIndex + 1 >= segments.size()) {
+                return false;
+            }
+            openSegment( segmentIndex + 1, JournalFormat.SEGMENT_HEADER_LENGTH );
+        }
+    }
+
+    /**
+     * Move to a record, for instance one found in an index. The next call of
+     * {@link #next()} returns the record at the offset.
+     *
+     * @param segmentSequence the sequence number of the segment
+     * @param recordOffset the offset of the record in the segment
+     * @throws IOException if the segment doesn't exist or can't be read
+     */
+    public void seek( long segmentSequence, int recordOffset ) throws IOException {
+        for (int i = 0; i < segments.size(); i++) {
+            if (JournalFormat.sequenceOf( segments.get( i ) ) == segmentSequence) {
+                if (i != segmentIndex) {
+                    openSegment( i, recordOffset );
+                } else {
+                    nextOffset = recordOffset;
+                }
+                return;
+            }
+        }
+        throw new IOException( "Unknown journal segment " + segmentSequence + "!" );
+    }
+
+    /**
+     * @return the receive time of the current record in nanoseconds since the
+     *         epoch
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    /**
+     * @return the receive time of the current record in milliseconds since
+     *         the epoch
+     */
+    public long getTimestamp() {
+        return TimeUnit.NANOSECONDS.toMillis( receiveNanos );
+    }
+
+    /**
+     * @return the gateway of the current record
+     */
+    public int getGateway() {
+        return gateway;
+    }
+
+    /**
+     * @return read-only view of the ESP3 frame of the current record, from
+     *         its position to its limit, valid until the next call of
+     *         {@link #next()}
+     */
+    public ByteBuffer getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return the sequence number of the segment of the current record
+     */
+    public long getSegmentSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the offset of the current record in its segment
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Release the current segment, the mapping is released by the garbage
+     * collector.
+     */
+    @Override
+    public void close() {
+        segment = null;
+        frame = null;
+        segmentIndex = segments.size();
+    }
+
+    private void openSegment( int index, int startOffset ) throws IOException {
+        final Path file = segments.get( index );
+        try (FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+            final ByteBuffer mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            JournalFormat.checkHeader( mapped, file );
+            segment = mapped;
+        }
+        frame = segment.asReadOnlyBuffer();
+        segmentIndex = index;
+        sequence = JournalFormat.sequenceOf( file );
+        nextOffset = startOffset;
+    }
+}
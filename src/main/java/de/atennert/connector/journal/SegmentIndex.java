@@ -0,0 +1,300 @@
+package de.atennert.connector.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sparse index of one journal segment. It contains the range of receive times
+ * of the segment, the time and offset of every {@link #SAMPLE_INTERVAL}-th
+ * record and a bloom filter of the sender IDs of the radio telegrams. So a
+ * query can skip segments by time and sender and start reading a segment near
+ * the start of the requested time range.<br>
+ * <br>
+ * The index is kept in a buffer with the same layout in memory and in the
+ * index file, big endian:
+ * <ul>
+ * <li>int magic number, int version, long segment sequence</li>
+ * <li>int record count, int 1 if the records are in ascending time order</li>
+ * <li>long first receive time, long last receive time (minimum and maximum)</li>
+ * <li>int sample count, int number of bloom filter words</li>
+ * <li>samples: long receive time, int record offset</li>
+ * <li>bloom filter: long words</li>
+ * </ul>
+ * Index files are memory-mapped, so a query only reads the pages of the
+ * header, the samples and the bloom filter words, that it needs.
+ */
+final class SegmentIndex {
+
+    /** every n-th record is sampled */
+    static final int SAMPLE_INTERVAL = 256;
+
+    /** "EOI1" */
+    private static final int MAGIC = 0x454F4931;
+    private static final int VERSION = 1;
+
+    private static final int SEQUENCE = 8;
+    private static final int RECORD_COUNT = 16;
+    private static final int ORDERED = 20;
+    private static final int MIN_NANOS = 24;
+    private static final int MAX_NANOS = 32;
+    private static final int SAMPLE_COUNT = 40;
+    private static final int BLOOM_WORDS = 44;
+    private static final int SAMPLES = 48;
+    private static final int SAMPLE_LENGTH = 12;
+
+    private static final int BLOOM_HASHES = 4;
+    /** smallest possible record: record header and a frame with one data byte */
+    private static final int MIN_RECORD_LENGTH = JournalFormat.RECORD_HEADER_LENGTH + 8;
+
+    private final ByteBuffer buffer;
+    private final int bloomStart;
+    private final int bloomMask;
+
+    private SegmentIndex( ByteBuffer buffer ) {
+        this.buffer = buffer;
+        this.bloomStart = SAMPLES + buffer.getInt( SAMPLE_COUNT ) * SAMPLE_LENGTH;
+        this.bloomMask = buffer.getInt( BLOOM_WORDS ) * 64 - 1;
+    }
+
+    /**
+     * Open an index file.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file can't be read or isn't an index
+     */
+    static SegmentIndex open( Path file ) throws IOException {
+        final ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+            mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        if (mapped.limit() < SAMPLES || mapped.getInt( 0 ) != MAGIC || mapped.getInt( 4 ) != VERSION
+                || mapped.limit() < SAMPLES + mapped.getInt( SAMPLE_COUNT ) * SAMPLE_LENGTH
+                        + 8 * mapped.getInt( BLOOM_WORDS )) {
+            throw new IOException( "Invalid journal index " + file + "!" );
+        }
+        return new SegmentIndex( mapped );
+    }
+
+    /**
+     * Index the records of a segment, that has no index file, for instance
+     * the segment, that is currently written.
+     *
+     * @param sequence the sequence number of the segment
+     * @param segment the mapped segment
+     * @return the index of the segment
+     */
+    static SegmentIndex scan( long sequence, ByteBuffer segment ) {
+        final Builder builder = new Builder( sequence, segment.limit() );
+        builder.addAll( segment );
+        return builder.build();
+    }
+
+    long getSequence() {
+        return buffer.getLong( SEQUENCE );
+    }
+
+    int getRecordCount() {
+        return buffer.getInt( RECORD_COUNT );
+    }
+
+    boolean isOrdered() {
+        return buffer.getInt( ORDERED ) != 0;
+    }
+
+    long getMinNanos() {
+        return buffer.getLong( MIN_NANOS );
+    }
+
+    long getMaxNanos() {
+        return buffer.getLong( MAX_NANOS );
+    }
+
+    /**
+     * @return <code>false</code> if the segment has no records in the time
+     *         range
+     */
+    boolean overlaps( long fromNanos, long toNanos ) {
+        return getRecordCount() > 0 && getMinNanos() <= toNanos && getMaxNanos() >= fromNanos;
+    }
+
+    /**
+     * @return <code>false</code> if the segment has no telegram of the sender,
+     *         <code>true</code> if it may have one
+     */
+    boolean mightContain( int senderId ) {
+        final int hash1 = mix( senderId );
+        final int hash2 = mix( hash1 ) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final int bit = (hash1 + i * hash2) & bloomMask;
+            if ((buffer.getLong( bloomStart + 8 * (bit >>> 6) ) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param fromNanos start of a time range
+     * @return the offset of a record at or before the first record of the
+     *         time range, the first record of the segment if the records
+     *         aren't ordered
+     */
+    int findOffset( long fromNanos ) {
+        if (!isOrdered()) {
+            return JournalFormat.SEGMENT_HEADER_LENGTH;
+        }
+        // last sample before the start
+        int low = 0;
+        int high = buffer.getInt( SAMPLE_COUNT ) - 1;
+        int offset = JournalFormat.SEGMENT_HEADER_LENGTH;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int sample = SAMPLES + middle * SAMPLE_LENGTH;
+            if (buffer.getLong( sample ) < fromNanos) {
+                offset = buffer.getInt( sample + 8 );
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Write the index to a file.
+     */
+    void write( Path file ) throws IOException {
+        final ByteBuffer content = buffer.duplicate();
+        JournalFormat.setRange( content, 0, content.capacity() );
+        try (FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE )) {
+            while (content.hasRemaining()) {
+                channel.write( content );
+            }
+        }
+    }
+
+    private static int mix( int value ) {
+        int h = value * 0x9E3779B9;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * Builds the index of a segment while it is written. The buffer is sized
+     * for the largest possible number of records of the segment, so adding a
+     * record doesn't allocate anything.
+     */
+    static final class Builder {
+        private final ByteBuffer buffer;
+        private final int bloomStart;
+        private final int bloomMask;
+        private final int maxSamples;
+
+        private int recordCount = 0;
+        private int sampleCount = 0;
+        private long minNanos = Long.MAX_VALUE;
+        private long maxNanos = Long.MIN_VALUE;
+        private long lastNanos = Long.MIN_VALUE;
+        private boolean ordered = true;
+
+        /**
+         * @param sequence the sequence number of the segment
+         * @param segmentSize the size of the segment file
+         */
+        Builder( long sequence, int segmentSize ) {
+            maxSamples = segmentSize / MIN_RECORD_LENGTH / SAMPLE_INTERVAL + 1;
+            // about 8 bits per 256 bytes of the segment, at least 1024 bits
+            final int bloomWords = Math.max( 16, Integer.highestOneBit( segmentSize >>> 11 ) );
+            bloomStart = SAMPLES + maxSamples * SAMPLE_LENGTH;
+            bloomMask = bloomWords * 64 - 1;
+            buffer = ByteBuffer.allocate( bloomStart + 8 * bloomWords );
+            buffer.putInt( 0, MAGIC );
+            buffer.putInt( 4, VERSION );
+            buffer.putLong( SEQUENCE, sequence );
+            buffer.putInt( BLOOM_WORDS, bloomWords );
+        }
+
+        /**
+         * Add a record.
+         *
+         * @param offset the offset of the record in the segment
+         * @param receiveNanos the receive time of the record
+         * @param frames buffer with the frame of the record
+         * @param frameOffset the index of the frame in the buffer
+         * @param frameLength the length of the frame
+         */
+        void add( int offset, long receiveNanos, ByteBuffer frames, int frameOffset, int frameLength ) {
+            if (receiveNanos < lastNanos) {
+                ordered = false;
+            }
+            lastNanos = receiveNanos;
+            minNanos = Math.min( minNanos, receiveNanos );
+            maxNanos = Math.max( maxNanos, receiveNanos );
+            if (recordCount % SAMPLE_INTERVAL == 0 && sampleCount < maxSamples) {
+                final int sample = SAMPLES + sampleCount * SAMPLE_LENGTH;
+                buffer.putLong( sample, receiveNanos );
+                buffer.putInt( sample + 8, offset );
+                sampleCount++;
+            }
+            recordCount++;
+            if (JournalFormat.isRadio( frames, frameOffset, frameLength )) {
+                final int hash1 = mix( JournalFormat.senderOf( frames, frameOffset ) );
+                final int hash2 = mix( hash1 ) | 1;
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    final int bit = (hash1 + i * hash2) & bloomMask;
+                    final int word = bloomStart + 8 * (bit >>> 6);
+                    buffer.putLong( word, buffer.getLong( word ) | 1L << bit );
+                }
+            }
+        }
+
+        /**
+         * Add the complete records of a segment.
+         *
+         * @param segment the mapped segment
+         * @return the position after the last complete record
+         */
+        int addAll( ByteBuffer segment ) {
+            int position = JournalFormat.SEGMENT_HEADER_LENGTH;
+            while (position + JournalFormat.RECORD_HEADER_LENGTH <= segment.limit()) {
+                final int length = segment.getInt( position );
+                if (length <= 0 || position + JournalFormat.RECORD_HEADER_LENGTH + length > segment.limit()) {
+                    break;
+                }
+                add( position, segment.getLong( position + 4 ), segment,
+                        position + JournalFormat.RECORD_HEADER_LENGTH, length );
+                position += JournalFormat.RECORD_HEADER_LENGTH + length;
+            }
+            return position;
+        }
+
+        /**
+         * @return the index of the records, that were added so far
+         */
+        SegmentIndex build() {
+            final ByteBuffer index = ByteBuffer.allocate( buffer.capacity() );
+            index.put( buffer.array() );
+            index.putInt( RECORD_COUNT, recordCount );
+            index.putInt( ORDERED, ordered ? 1 : 0 );
+            index.putLong( MIN_NANOS, minNanos );
+            index.putLong( MAX_NANOS, maxNanos );
+            index.putInt( SAMPLE_COUNT, maxSamples );
+            // unused samples repeat the last sample, so the binary search still works
+            final int used = Math.max( sampleCount, 1 );
+            for (int i = sampleCount; i < maxSamples; i++) {
+                final int sample = SAMPLES + i * SAMPLE_LENGTH;
+                index.putLong( sample, sampleCount == 0 ? Long.MAX_VALUE
+                        : index.getLong( SAMPLES + (used - 1) * SAMPLE_LENGTH ) );
+                index.putInt( sample + 8, sampleCount == 0 ? JournalFormat.SEGMENT_HEADER_LENGTH
+                        : index.getInt( SAMPLES + (used - 1) * SAMPLE_LENGTH + 8 ) );
+            }
+            return new SegmentIndex( index );
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package de.atennert.connector.journal;
+
+/**
+ * When the {@link TelegramJournal} forces the written records to the storage
+ * device. The records are in the page cache of the operating system right
+ * after the append, so they survive a crash of the application in any case;
+ * the policy only matters for crashes of the operating system or power
+ * failures.
+ */
+public enum SyncPolicy {
+    /** leave it to the operating system */
+    NEVER,
+    /** force a segment when it is full and when the journal is closed */
+    ON_ROLL,
+    /** additionally force the current segment after the sync interval */
+    PERIODIC,
+    /** force every record, which is by far the slowest policy */
+    ALWAYS
+}
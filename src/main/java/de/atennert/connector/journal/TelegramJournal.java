@@ -0,0 +1,380 @@
+package de.atennert.connector.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.atennert.connector.distribution.IRawFrameListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the received ESP3 frames for auditing and
+ * reprocessing. The journal is a raw frame listener, so it gets every frame
+ * with valid checksums directly from the decoder. Each frame is appended with
+ * the receive time in nanoseconds and the gateway ID as length-prefixed record
+ * to a memory-mapped segment file (see {@link JournalFormat}). When a segment
+ * is full, the journal rolls over to the next one.<br>
+ * <br>
+ * While a segment is written, the journal builds a sparse index of its receive
+ * times and senders, which is written next to the segment when it is
+ * completed. {@link JournalQuery} uses the indexes to read only the segments
+ * and regions, that may contain the requested telegrams.<br>
+ * <br>
+ * An append copies the frame into the mapping and updates the index, it
+ * neither allocates nor calls
+ * into the operating system, unless the segment rolls or the
+ * {@link SyncPolicy} forces the segment to the storage device. The length of a
+ * record is written last, so readers never see incomplete records. Opening an
+ * existing journal continues after the last complete record.<br>
+ * <br>
+ * Journals are created with a {@link Builder}, which is returned by
+ * {@link #builder(Path)}. The methods are synchronized, so a journal can be
+ * shared by several connectors. Every connector gets its own listener from
+ * {@link #frameListener(int)}, so its frames are recorded with its gateway ID.
+ */
+public final class TelegramJournal implements IRawFrameListener, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger( TelegramJournal.class );
+
+    /** default size of a segment file: 64 MiB */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    /** default sync interval in milliseconds for {@link SyncPolicy#PERIODIC} */
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalNanos;
+    private final int gateway;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private SegmentIndex.Builder index;
+    private long sequence;
+    private long lastSync;
+    private boolean closed = false;
+
+    private long recordCount = 0;
+    private long droppedCount = 0;
+
+    private TelegramJournal( Builder builder ) throws IOException {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.syncPolicy = builder.syncPolicy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos( builder.syncInterval );
+        this.gateway = builder.gateway;
+        this.lastSync = System.nanoTime();
+
+        Files.createDirectories( directory );
+        final List< Path > segments = JournalFormat.listSegments( directory );
+        if (segments.isEmpty()) {
+            openSegment( 0 );
+        } else {
+            reopenSegment( segments.get( segments.size() - 1 ) );
+        }
+    }
+
+    /**
+     * @param directory the directory of the segment files
+     * @return a new builder for a journal
+     */
+    public static Builder builder( Path directory ) {
+        return new Builder( directory );
+    }
+
+    /**
+     * @return the directory of the segment files
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Append a frame with the gateway ID of the journal and the timestamp
+     * converted to nanoseconds. Errors are logged and the frame is counted as
+     * dropped.
+     */
+    @Override
+    public void receiveFrame( ByteBuffer frame, long timestamp ) {
+        journalFrame( frame, TimeUnit.MILLISECONDS.toNanos( timestamp ), gateway );
+    }
+
+    /**
+     * Append a frame from the decoder with the gateway ID of the journal. The
+     * receive time is the one of the decoder's clock, so live frames have
+     * nanosecond resolution and replayed frames keep the time of their
+     * recording. Errors are logged and the frame is counted as dropped.
+     */
+    @Override
+    public void receiveFrame( ByteBuffer frame, long timestamp, long receiveNanos ) {
+        journalFrame( frame, receiveNanos, gateway );
+    }
+
+    /**
+     * Create a listener, that appends the frames of a connector with the
+     * gateway ID of the connector. It is added to the connector with
+     * {@link de.atennert.connector.IEnOceanConnector#addRawFrameListener(IRawFrameListener)}
+     * and handles the frames like {@link #receiveFrame(ByteBuffer, long, long)}.
+     *
+     * @param gatewayId ID of the gateway (connector), for instance the base ID
+     *            of its transceiver
+     * @return the listener for the connector
+     */
+    public IRawFrameListener frameListener( final int gatewayId ) {
+        return new IRawFrameListener() {
+            @Override
+            public void receiveFrame( ByteBuffer frame, long timestamp ) {
+                journalFrame( frame, TimeUnit.MILLISECONDS.toNanos( timestamp ), gatewayId );
+            }
+
+            @Override
+            public void receiveFrame( ByteBuffer frame, long timestamp, long receiveNanos ) {
+                journalFrame( frame, receiveNanos, gatewayId );
+            }
+        };
+    }
+
+    private void journalFrame( ByteBuffer frame, long receiveNanos, int gatewayId ) {
+        try {
+            append( frame, receiveNanos, gatewayId );
+        } catch (IOException | IllegalArgumentException e) {
+            synchronized (this) {
+                droppedCount++;
+            }
+            log.error( "Unable to journal a frame!", e );
+        }
+    }
+
+    /**
+     * Append a frame. The frame is read from its position to its limit, the
+     * position of the buffer is moved to the limit.
+     *
+     * @param frame the ESP3 frame
+     * @param receiveNanos the receive time in nanoseconds since the epoch
+     * @param gatewayId the gateway, that received the frame
+     * @throws IOException if the journal is closed or the next segment can't
+     *             be created
+     */
+    public synchronized void append( ByteBuffer frame, long receiveNanos, int gatewayId ) throws IOException {
+        if (closed) {
+            throw new IOException( "The journal is closed!" );
+        }
+        final int length = frame.remaining();
+        if (length == 0 || JournalFormat.RECORD_HEADER_LENGTH + length > segmentSize
+                - JournalFormat.SEGMENT_HEADER_LENGTH) {
+            throw new IllegalArgumentException( "Invalid frame length " + length + "!" );
+        }
+        if (segment.remaining() < JournalFormat.RECORD_HEADER_LENGTH + length) {
+            roll();
+        }
+        final int position = segment.position();
+        segment.putLong( position + 4, receiveNanos );
+        segment.putInt( position + 12, gatewayId );
+        moveTo( segment, position + JournalFormat.RECORD_HEADER_LENGTH );
+        segment.put( frame );
+        // the length makes the record visible to readers
+        segment.putInt( position, length );
+        index.add( position, receiveNanos, segment, position + JournalFormat.RECORD_HEADER_LENGTH, length );
+        recordCount++;
+
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            segment.force();
+        } else if (syncPolicy == SyncPolicy.PERIODIC) {
+            final long now = System.nanoTime();
+            if (now - lastSync >= syncIntervalNanos) {
+                segment.force();
+                lastSync = now;
+            }
+        }
+    }
+
+    /**
+     * @return the number of records, that were appended since the journal was
+     *         opened
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the number of frames, that couldn't be appended
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the sequence number of the current segment
+     */
+    public synchronized long getSegmentSequence() {
+        return sequence;
+    }
+
+    /**
+     * Force the current segment to the storage device.
+     */
+    public synchronized void sync() {
+        if (!closed) {
+            segment.force();
+            lastSync = System.nanoTime();
+        }
+    }
+
+    /**
+     * Close the journal and write the index of the current segment. Unless
+     * the sync policy is {@link SyncPolicy#NEVER}, the current segment is
+     * forced to the storage device. The mapping of the segment is released by
+     * the garbage collector.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (syncPolicy != SyncPolicy.NEVER) {
+            segment.force();
+        }
+        channel.close();
+        segment = null;
+        writeIndex();
+    }
+
+    private void roll() throws IOException {
+        if (syncPolicy != SyncPolicy.NEVER) {
+            segment.force();
+        }
+        channel.close();
+        writeIndex();
+        openSegment( sequence + 1 );
+        log.debug( "Journal rolled over to segment " + sequence );
+    }
+
+    private void openSegment( long newSequence ) throws IOException {
+        final Path file = directory.resolve( JournalFormat.segmentName( newSequence ) );
+        channel = FileChannel.open( file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE );
+        segment = channel.map( FileChannel.MapMode.READ_WRITE, 0, segmentSize );
+        segment.putInt( 0, JournalFormat.MAGIC );
+        segment.putInt( 4, JournalFormat.VERSION );
+        segment.putInt( 8, segmentSize );
+        moveTo( segment, JournalFormat.SEGMENT_HEADER_LENGTH );
+        index = new SegmentIndex.Builder( newSequence, segmentSize );
+        sequence = newSequence;
+    }
+
+    private void reopenSegment( Path file ) throws IOException {
+        channel = FileChannel.open( file, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException( "Invalid journal segment " + file + "!" );
+        }
+        segment = channel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+        try {
+            JournalFormat.checkHeader( segment, file );
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        sequence = JournalFormat.sequenceOf( file );
+        // the index of the segment is rebuilt, the old one misses the new records
+        Files.deleteIfExists( directory.resolve( JournalFormat.indexName( sequence ) ) );
+        index = new SegmentIndex.Builder( sequence, (int) size );
+        moveTo( segment, index.addAll( segment ) );
+        // continue in a new segment, if the old one has another size
+        if (size != segmentSize) {
+            roll();
+        }
+    }
+
+    private void writeIndex() {
+        try {
+            index.build().write( directory.resolve( JournalFormat.indexName( sequence ) ) );
+        } catch (IOException e) {
+            // queries index the segment themselves
+            log.error( "Unable to write the index of journal segment " + sequence + "!", e );
+        }
+    }
+
+    /**
+     * Set the position through {@link Buffer}, ByteBuffer overrides the method
+     * since Java 9.
+     */
+    private static void moveTo( Buffer buffer, int position ) {
+        buffer.position( position );
+    }
+
+    /**
+     * Builder for {@link TelegramJournal}s.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private SyncPolicy syncPolicy = SyncPolicy.ON_ROLL;
+        private long syncInterval = DEFAULT_SYNC_INTERVAL;
+        private int gateway = 0;
+
+        private Builder( Path directory ) {
+            if (directory == null) {
+                throw new IllegalArgumentException( "A directory is required!" );
+            }
+            this.directory = directory;
+        }
+
+        /**
+         * @param size size of the segment files in bytes
+         * @return this builder
+         */
+        public Builder segmentSize( int size ) {
+            if (size < 1024) {
+                throw new IllegalArgumentException( "The segment size must be at least 1024 bytes!" );
+            }
+            this.segmentSize = size;
+            return this;
+        }
+
+        /**
+         * @param policy when the segments are forced to the storage device
+         * @param interval time in milliseconds between forces for
+         *            {@link SyncPolicy#PERIODIC}
+         * @return this builder
+         */
+        public Builder syncPolicy( SyncPolicy policy, long interval ) {
+            if (policy == null || interval < 1) {
+                throw new IllegalArgumentException( "A sync policy and a positive interval are required!" );
+            }
+            this.syncPolicy = policy;
+            this.syncInterval = interval;
+            return this;
+        }
+
+        /**
+         * @param gateway ID of the gateway for the frames of
+         *            {@link TelegramJournal#receiveFrame(ByteBuffer, long)}
+         * @return this builder
+         */
+        public Builder gateway( int gateway ) {
+            this.gateway = gateway;
+            return this;
+        }
+
+        /**
+         * @return a new journal, that continues an existing journal in the
+         *         directory
+         * @throws IOException if the directory or a segment can't be opened
+         */
+        public TelegramJournal build() throws IOException {
+            return new TelegramJournal( this );
+        }
+    }
+}
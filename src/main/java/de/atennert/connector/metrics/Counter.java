@@ -0,0 +1,35 @@
+package de.atennert.connector.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A metric that counts events. It is based on a {@link LongAdder}, so
+ * concurrent updates don't block each other.
+ */
+public final class Counter implements LongSupplier {
+
+    private final LongAdder adder = new LongAdder();
+
+    /**
+     * Count one event.
+     */
+    public void increment() {
+        adder.increment();
+    }
+
+    /**
+     * @param value the value to add, may be negative
+     */
+    public void add( long value ) {
+        adder.add( value );
+    }
+
+    /**
+     * @return the current sum of the counter
+     */
+    @Override
+    public long getAsLong() {
+        return adder.sum();
+    }
+}
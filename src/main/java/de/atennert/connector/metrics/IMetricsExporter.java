@@ -0,0 +1,22 @@
+package de.atennert.connector.metrics;
+
+/**
+ * Interface for exporters, that publish the metrics of a
+ * {@link MetricsRegistry}, for instance via JMX.
+ */
+public interface IMetricsExporter {
+
+    /**
+     * Start publishing the metrics of the given registry. This is called when
+     * the exporter is added to the registry.
+     *
+     * @param registry the registry with the metrics to publish
+     */
+    void start( MetricsRegistry registry );
+
+    /**
+     * Stop publishing the metrics. This is called when the exporter is removed
+     * from the registry.
+     */
+    void stop();
+}
@@ -0,0 +1,135 @@
+package de.atennert.connector.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exporter, that publishes the metrics of a registry as read-only attributes
+ * of an MBean on the platform MBean server. The object name is
+ * <code>de.atennert.connector:type=Metrics,name=&lt;name&gt;</code>, so the
+ * name must be unique for each connector instance.
+ */
+public class JmxMetricsExporter implements IMetricsExporter {
+
+    /** JMX domain of the connector MBeans */
+    public static final String DOMAIN = "de.atennert.connector";
+
+    private static final Logger log = LoggerFactory.getLogger( JmxMetricsExporter.class );
+
+    private final ObjectName objectName;
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * @param name name of the connector instance
+     * @throws IllegalArgumentException if the name can't be used in an object
+     *             name
+     */
+    public JmxMetricsExporter( String name ) {
+        try {
+            objectName = new ObjectName( DOMAIN + ":type=Metrics,name=" + ObjectName.quote( name ) );
+        } catch (final MalformedObjectNameException e) {
+            throw new IllegalArgumentException( "Invalid name for the metrics MBean: " + name, e );
+        }
+    }
+
+    /**
+     * @return the object name of the MBean
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void start( MetricsRegistry registry ) {
+        try {
+            server.registerMBean( new MetricsMBean( registry ), objectName );
+        } catch (final JMException e) {
+            log.error( "Unable to register metrics MBean " + objectName + ": " + e.getMessage() );
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            server.unregisterMBean( objectName );
+        } catch (final JMException e) {
+            log.error( "Unable to unregister metrics MBean " + objectName + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * MBean that reads its attributes from the registry. The attributes change
+     * when new metrics are added to the registry.
+     */
+    private static class MetricsMBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+
+        private MetricsMBean( MetricsRegistry registry ) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute( String attribute ) throws AttributeNotFoundException {
+            final Long value = registry.getValue( attribute );
+            if (value == null) {
+                throw new AttributeNotFoundException( attribute );
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute( Attribute attribute ) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException( "Metrics are read-only: " + attribute.getName() );
+        }
+
+        @Override
+        public AttributeList getAttributes( String[] attributes ) {
+            final AttributeList list = new AttributeList();
+            for (final String attribute : attributes) {
+                final Long value = registry.getValue( attribute );
+                if (value != null) {
+                    list.add( new Attribute( attribute, value ) );
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes( AttributeList attributes ) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke( String actionName, Object[] params, String[] signature ) throws ReflectionException {
+            throw new ReflectionException( new NoSuchMethodException( actionName ) );
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final Map< String, Long > snapshot = registry.snapshot();
+            final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+            int i = 0;
+            for (final String name : snapshot.keySet()) {
+                attributes[i++] = new MBeanAttributeInfo( name, "long", name, true, false, false );
+            }
+            return new MBeanInfo( MetricsMBean.class.getName(), "EnOceanConnector pipeline metrics", attributes,
+                    null, null, null );
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package de.atennert.connector.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Histogram of latencies in nanoseconds with buckets like an HDR histogram:
+ * values below 128 are counted exactly, larger values are counted in 64
+ * buckets per power of two. So every value is stored with a relative error of
+ * less than 1.6%, from nanoseconds up to more than two hours. Larger values
+ * are counted in the highest bucket.<br>
+ * <br>
+ * Recording a value doesn't take a lock or allocate memory, so it can be done
+ * from any thread of the pipeline. Queries read the buckets while they may be
+ * updated, so they are only consistent if no values are recorded at the same
+ * time.
+ */
+public final class LatencyHistogram {
+
+    /** buckets per power of two, except for the first linear bucket range */
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** number of powers of two above the linear range */
+    private static final int MAX_SHIFT = 36;
+
+    private static final int BUCKETS = 2 * SUB_BUCKETS + MAX_SHIFT * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( BUCKETS );
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator( new LongBinaryOperator() {
+        @Override
+        public long applyAsLong( long left, long right ) {
+            return Math.max( left, right );
+        }
+    }, 0 );
+
+    /**
+     * @param nanos the latency to record, negative values are recorded as 0
+     */
+    public void record( long nanos ) {
+        final long value = Math.max( nanos, 0 );
+        buckets.incrementAndGet( indexOf( value ) );
+        count.increment();
+        sum.add( value );
+        max.accumulate( value );
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the largest recorded value or 0 if there is none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the average of the recorded values or 0 if there is none
+     */
+    public long getMean() {
+        final long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * Return the value below which the given percentage of the recorded values
+     * lies. The result is the highest value of the bucket, that contains the
+     * percentile, but never more than the largest recorded value.
+     *
+     * @param percentile the percentile between 0 and 100, for instance 99.9
+     * @return the value at the percentile or 0 if there are no values
+     */
+    public long getValueAtPercentile( double percentile ) {
+        final long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        final double p = Math.min( Math.max( percentile, 0 ), 100 );
+        final long target = Math.max( 1, (long) Math.ceil( p / 100 * n ) );
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get( i );
+            if (seen >= target) {
+                // the highest bucket has no upper bound
+                return i == BUCKETS - 1 ? getMax() : Math.min( highestValueOf( i ), getMax() );
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Remove all recorded values. Values that are recorded at the same time may
+     * be lost partially.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set( i, 0 );
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + " mean=" + getMean()
+                + " p50=" + getValueAtPercentile( 50 )
+                + " p90=" + getValueAtPercentile( 90 )
+                + " p99=" + getValueAtPercentile( 99 )
+                + " p99.9=" + getValueAtPercentile( 99.9 )
+                + " max=" + getMax();
+    }
+
+    /**
+     * Values below 2 * SUB_BUCKETS have their own bucket. Above, the value is
+     * shifted right until it is below 2 * SUB_BUCKETS and the remaining bits
+     * select one of SUB_BUCKETS buckets for this shift.
+     */
+    private static int indexOf( long value ) {
+        final int shift = 64 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS - 1;
+        if (shift <= 0) {
+            return (int) value;
+        }
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf( int index ) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,66 @@
+package de.atennert.connector.metrics;
+
+/**
+ * Metrics of a single packet listener: the number of invocations, the time
+ * spent in the listener, the number of failed invocations and the latency from
+ * the serial read until the listener returned for traced packets.
+ */
+public final class ListenerMetrics {
+
+    private static final String INVOCATIONS = ".invocations";
+    private static final String TIME = ".timeNanos";
+    private static final String ERRORS = ".errors";
+    private static final String LATENCY = ".latency";
+
+    private final Counter invocations;
+    private final Counter time;
+    private final Counter errors;
+    private final LatencyHistogram latency;
+
+    ListenerMetrics( MetricsRegistry registry, String prefix ) {
+        invocations = registry.counter( prefix + INVOCATIONS );
+        time = registry.counter( prefix + TIME );
+        errors = registry.counter( prefix + ERRORS );
+        latency = registry.histogram( prefix + LATENCY );
+    }
+
+    /**
+     * Remove the metrics of a packet listener from the registry.
+     *
+     * @param registry the registry with the metrics
+     * @param prefix the prefix of the listener's metrics
+     */
+    static void remove( MetricsRegistry registry, String prefix ) {
+        registry.remove( prefix + INVOCATIONS );
+        registry.remove( prefix + TIME );
+        registry.remove( prefix + ERRORS );
+        registry.remove( prefix + LATENCY );
+    }
+
+    /**
+     * Record an invocation of the listener.
+     *
+     * @param nanos the time spent in the listener in nanoseconds
+     */
+    public void onInvocation( long nanos ) {
+        invocations.increment();
+        time.add( nanos );
+    }
+
+    /**
+     * Record the latency of a traced packet, when the listener returned.
+     *
+     * @param trace the trace of the packet
+     * @param now the time when the listener returned in nanoseconds
+     */
+    public void onReturned( PacketTrace trace, long now ) {
+        latency.record( now - trace.getReadTime() );
+    }
+
+    /**
+     * Record a failed invocation of the listener.
+     */
+    public void onError() {
+        errors.increment();
+    }
+}
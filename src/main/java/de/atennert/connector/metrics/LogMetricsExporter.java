@@ -0,0 +1,72 @@
+package de.atennert.connector.metrics;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exporter, that periodically writes the latency histograms of a registry to
+ * the log. Each histogram is logged in one line with its count, mean,
+ * percentiles and maximum in nanoseconds. The histograms are not reset, so
+ * the values cover the whole runtime of the connector.
+ */
+public class LogMetricsExporter implements IMetricsExporter {
+
+    private static final Logger log = LoggerFactory.getLogger( LogMetricsExporter.class );
+
+    private final long period;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param period time in milliseconds between two dumps
+     */
+    public LogMetricsExporter( long period ) {
+        if (period < 1) {
+            throw new IllegalArgumentException( "The period must be positive!" );
+        }
+        this.period = period;
+    }
+
+    @Override
+    public synchronized void start( final MetricsRegistry registry ) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable runnable ) {
+                final Thread thread = new Thread( runnable, "metrics-log" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        executor.scheduleAtFixedRate( new Runnable() {
+            @Override
+            public void run() {
+                dump( registry );
+            }
+        }, period, period, TimeUnit.MILLISECONDS );
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private static void dump( MetricsRegistry registry ) {
+        for (final Map.Entry< String, LatencyHistogram > histogram : registry.getHistograms().entrySet()) {
+            if (histogram.getValue().getCount() > 0) {
+                log.info( histogram.getKey() + ": " + histogram.getValue() );
+            }
+        }
+    }
+}
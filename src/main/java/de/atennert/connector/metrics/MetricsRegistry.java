@@ -0,0 +1,209 @@
+package de.atennert.connector.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * This class holds the named metrics of a connector instance. Metrics are
+ * either counters, which are updated by the connector, or gauges, which are
+ * read from the connector when the metrics are queried. Names are separated by
+ * dots, starting with the stage of the pipeline, for instance
+ * <code>decoder.framesDecoded</code>.<br>
+ * <br>
+ * Latencies are recorded in {@link LatencyHistogram}s. The count, mean,
+ * percentiles and maximum of each histogram are available as gauges, too, so
+ * exporters, that only know single values, publish them as well.<br>
+ * <br>
+ * Exporters can be added to publish the metrics.
+ */
+public final class MetricsRegistry {
+
+    /** suffixes of the gauges, that are added for every histogram */
+    private static final String[] HISTOGRAM_GAUGES = { ".count", ".mean", ".max", ".p50", ".p90", ".p99", ".p999" };
+
+    private final ConcurrentMap< String, LongSupplier > metrics = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap< String, LatencyHistogram > histograms = new ConcurrentHashMap<>();
+
+    private final List< IMetricsExporter > exporters = new CopyOnWriteArrayList<>();
+
+    /**
+     * Return the counter with the given name. The counter is created if it
+     * doesn't exist yet.
+     *
+     * @param name name of the counter
+     * @return the counter for the given name
+     * @throws IllegalArgumentException if there is a gauge with the given name
+     */
+    public Counter counter( String name ) {
+        LongSupplier metric = metrics.get( name );
+        if (metric == null) {
+            final Counter counter = new Counter();
+            metric = metrics.putIfAbsent( name, counter );
+            if (metric == null) {
+                return counter;
+            }
+        }
+        if (!(metric instanceof Counter)) {
+            throw new IllegalArgumentException( "Metric " + name + " is not a counter!" );
+        }
+        return (Counter) metric;
+    }
+
+    /**
+     * Add a gauge, that is read whenever the metrics are queried. An existing
+     * metric with the same name is replaced.
+     *
+     * @param name name of the gauge
+     * @param gauge supplier of the current value
+     */
+    public void gauge( String name, LongSupplier gauge ) {
+        metrics.put( name, gauge );
+    }
+
+    /**
+     * Return the histogram with the given name. The histogram is created if it
+     * doesn't exist yet, together with the gauges <code>&lt;name&gt;.count</code>,
+     * <code>.mean</code>, <code>.p50</code>, <code>.p90</code>,
+     * <code>.p99</code>, <code>.p999</code> and <code>.max</code>.
+     *
+     * @param name name of the histogram
+     * @return the histogram for the given name
+     */
+    public LatencyHistogram histogram( String name ) {
+        LatencyHistogram histogram = histograms.get( name );
+        if (histogram == null) {
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent( name, created );
+            if (histogram == null) {
+                histogram = created;
+                addHistogramGauges( name, histogram );
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Remove a counter, gauge or histogram. The gauges of a histogram are
+     * removed with it. Counters and histograms, that are still referenced,
+     * can be updated, but they are not queried anymore.
+     *
+     * @param name name of the metric or histogram
+     */
+    public void remove( String name ) {
+        metrics.remove( name );
+        if (histograms.remove( name ) != null) {
+            for (final String suffix : HISTOGRAM_GAUGES) {
+                metrics.remove( name + suffix );
+            }
+        }
+    }
+
+    /**
+     * @param name name of a histogram
+     * @return the histogram or <code>null</code> if there is no histogram with
+     *         the given name
+     */
+    public LatencyHistogram getHistogram( String name ) {
+        return histograms.get( name );
+    }
+
+    /**
+     * @return all histograms, sorted by name
+     */
+    public SortedMap< String, LatencyHistogram > getHistograms() {
+        return new TreeMap<>( histograms );
+    }
+
+    /**
+     * @param name name of a metric
+     * @return the current value of the metric or <code>null</code> if there
+     *         is no metric with the given name
+     */
+    public Long getValue( String name ) {
+        final LongSupplier metric = metrics.get( name );
+        return metric == null ? null : metric.getAsLong();
+    }
+
+    /**
+     * @return the current values of all metrics, sorted by name
+     */
+    public SortedMap< String, Long > snapshot() {
+        final SortedMap< String, Long > snapshot = new TreeMap<>();
+        for (final Map.Entry< String, LongSupplier > metric : metrics.entrySet()) {
+            snapshot.put( metric.getKey(), metric.getValue().getAsLong() );
+        }
+        return snapshot;
+    }
+
+    private void addHistogramGauges( String name, final LatencyHistogram histogram ) {
+        gauge( name + ".count", new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return histogram.getCount();
+            }
+        } );
+        gauge( name + ".mean", new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return histogram.getMean();
+            }
+        } );
+        gauge( name + ".max", new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return histogram.getMax();
+            }
+        } );
+        addPercentileGauge( name + ".p50", histogram, 50 );
+        addPercentileGauge( name + ".p90", histogram, 90 );
+        addPercentileGauge( name + ".p99", histogram, 99 );
+        addPercentileGauge( name + ".p999", histogram, 99.9 );
+    }
+
+    private void addPercentileGauge( String name, final LatencyHistogram histogram, final double percentile ) {
+        gauge( name, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return histogram.getValueAtPercentile( percentile );
+            }
+        } );
+    }
+
+    /**
+     * Add an exporter and start it.
+     *
+     * @param exporter the exporter to add
+     */
+    public void addExporter( IMetricsExporter exporter ) {
+        exporters.add( exporter );
+        exporter.start( this );
+    }
+
+    /**
+     * Stop an exporter and remove it.
+     *
+     * @param exporter the exporter to remove
+     */
+    public void removeExporter( IMetricsExporter exporter ) {
+        if (exporters.remove( exporter )) {
+            exporter.stop();
+        }
+    }
+
+    /**
+     * Stop all exporters and remove them, for instance when the connector is
+     * closed.
+     */
+    public void removeExporters() {
+        for (final IMetricsExporter exporter : exporters) {
+            removeExporter( exporter );
+        }
+    }
+}
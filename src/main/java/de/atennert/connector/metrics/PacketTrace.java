@@ -0,0 +1,61 @@
+package de.atennert.connector.metrics;
+
+/**
+ * Timestamps of a sampled packet on its way through the pipeline. All times
+ * are in nanoseconds as returned by {@link System#nanoTime()}. A timestamp is
+ * 0 as long as the packet didn't reach the stage.<br>
+ * <br>
+ * Traces are created by {@link PipelineMetrics#onFrameComplete(long)} and
+ * travel with the packet. The stages are passed one after the other, so the
+ * trace doesn't need to be thread safe.
+ */
+public final class PacketTrace {
+
+    private final long readTime;
+    private final long decodedTime;
+    private long createdTime;
+    private long dispatchTime;
+
+    PacketTrace( long readTime, long decodedTime ) {
+        this.readTime = readTime;
+        this.decodedTime = decodedTime;
+    }
+
+    /**
+     * @return the time when the first byte of the frame was read from the
+     *         serial port
+     */
+    public long getReadTime() {
+        return readTime;
+    }
+
+    /**
+     * @return the time when the decoder completed the frame
+     */
+    public long getDecodedTime() {
+        return decodedTime;
+    }
+
+    /**
+     * @return the time when the packet factory returned the packet
+     */
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    /**
+     * @return the time when the distribution of the packet to the listeners
+     *         started
+     */
+    public long getDispatchTime() {
+        return dispatchTime;
+    }
+
+    void setCreatedTime( long createdTime ) {
+        this.createdTime = createdTime;
+    }
+
+    void setDispatchTime( long dispatchTime ) {
+        this.dispatchTime = dispatchTime;
+    }
+}
@@ -0,0 +1,420 @@
+package de.atennert.connector.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * This class collects the metrics of the packet pipeline of one connector
+ * instance: reading, decoding, packet creation, distribution and writing. The
+ * components of the pipeline call its methods, which only update counters and
+ * never block. All metrics are registered in a {@link MetricsRegistry}.<br>
+ * <br>
+ * A sample of the received packets is traced through the pipeline: every n-th
+ * decoded frame gets a {@link PacketTrace}, which travels with the packet and
+ * collects the time of each stage. The times between the stages are recorded
+ * in {@link LatencyHistogram}s. The time of the serial read is taken from the
+ * read events of the connector, which are kept in a small ring buffer together
+ * with the number of bytes that were queued so far.
+ */
+public final class PipelineMetrics {
+
+    /** bytes read from the serial port */
+    public static final String BYTES_READ = "reader.bytesRead";
+    /** received bytes, that wait for decoding */
+    public static final String RECEIVE_QUEUE_DEPTH = "reader.queueDepth";
+    /** received bytes, that were removed from the receive queue without decoding */
+    public static final String BYTES_DISCARDED = "reader.bytesDiscarded";
+    /** complete frames, including frames with invalid payload */
+    public static final String FRAMES_DECODED = "decoder.framesDecoded";
+    /** frames with invalid header checksum, which are dropped */
+    public static final String HEADER_CRC_FAILURES = "decoder.headerCrcFailures";
+    /** frames with invalid payload checksum */
+    public static final String PAYLOAD_CRC_FAILURES = "decoder.payloadCrcFailures";
+    /** frames without packet listeners, which are skipped without building a packet */
+    public static final String FRAMES_UNSUBSCRIBED = "decoder.framesUnsubscribed";
+    /** bytes, that the decoder took from the receive queue */
+    public static final String BYTES_CONSUMED = "decoder.bytesConsumed";
+    /** unexpected errors while decoding or handing over packets */
+    public static final String DECODER_ERRORS = "decoder.errors";
+    /** prefix for the number of created packets per packet type */
+    public static final String PACKETS_CREATED = "factory.packets.";
+    /** packets, that are waiting for distribution */
+    public static final String DISPATCH_QUEUE_DEPTH = "distributor.queueDepth";
+    /** packets, that were distributed */
+    public static final String PACKETS_DISPATCHED = "distributor.packets";
+    /** packets, that were delivered to all listeners */
+    public static final String DISPATCH_COMPLETED = "distributor.completed";
+    /** prefix for the metrics of each packet listener */
+    public static final String LISTENER = "distributor.listener.";
+    /** packets, that wait for sending */
+    public static final String SEND_QUEUE_DEPTH = "writer.queueDepth";
+    /** packets, that were written to the serial port */
+    public static final String PACKETS_WRITTEN = "writer.packets";
+    /** time spent writing packets in nanoseconds */
+    public static final String WRITE_TIME = "writer.timeNanos";
+    /** longest time for writing a packet in nanoseconds */
+    public static final String MAX_WRITE_TIME = "writer.maxTimeNanos";
+    /** packets, that couldn't be written */
+    public static final String WRITE_ERRORS = "writer.errors";
+    /** latency from the serial read until the decoder completed the frame */
+    public static final String DECODE_LATENCY = "latency.decode";
+    /** latency of the packet factory */
+    public static final String FACTORY_LATENCY = "latency.factory";
+    /** latency from the packet creation until its distribution starts */
+    public static final String DISPATCH_LATENCY = "latency.dispatch";
+    /** latency from the serial read until the last listener returned */
+    public static final String TOTAL_LATENCY = "latency.total";
+
+    /** default sampling, every n-th frame is traced */
+    public static final int DEFAULT_SAMPLING = 10;
+
+    /** number of read events, that are kept for finding the read time of a frame */
+    private static final int READ_HISTORY = 256;
+
+    private final MetricsRegistry registry;
+
+    private final Counter bytesRead;
+    private final Counter bytesDiscarded;
+    private final Counter framesDecoded;
+    private final Counter headerCrcFailures;
+    private final Counter payloadCrcFailures;
+    private final Counter decoderErrors;
+    private final Counter framesUnsubscribed;
+    /** bytes consumed by the decoder, only written by the decoder */
+    private volatile long bytesConsumed = 0;
+    private final AtomicReferenceArray< Counter > packetsCreated = new AtomicReferenceArray<>( 256 );
+    private final Counter dispatchQueueDepth;
+    private final Counter packetsDispatched;
+    private final Counter dispatchCompleted;
+    private final Counter packetsWritten;
+    private final Counter writeTime;
+    private final LongAccumulator maxWriteTime = new LongAccumulator( new LongBinaryOperator() {
+        @Override
+        public long applyAsLong( long left, long right ) {
+            return Math.max( left, right );
+        }
+    }, 0 );
+    private final Counter writeErrors;
+
+    private final int sampling;
+    private final LatencyHistogram decodeLatency;
+    private final LatencyHistogram factoryLatency;
+    private final LatencyHistogram dispatchLatency;
+    private final LatencyHistogram totalLatency;
+
+    /** number of completed frames, only used by the decoder */
+    private long frames = 0;
+
+    /** number of queued bytes, only used by the reader */
+    private long queuedBytes = 0;
+    /** number of queued bytes after each read event */
+    private final long[] readEnds = new long[READ_HISTORY];
+    /** time of each read event */
+    private final long[] readTimes = new long[READ_HISTORY];
+    /** number of read events, written last to publish a read event */
+    private volatile long readEvents = 0;
+    /** number of queued bytes, that the decoder never took, only written by the reader */
+    private volatile long discardedBytes = 0;
+
+    /**
+     * Create pipeline metrics with a registry of their own.
+     */
+    public PipelineMetrics() {
+        this( new MetricsRegistry() );
+    }
+
+    /**
+     * @param registry registry for the pipeline metrics
+     */
+    public PipelineMetrics( MetricsRegistry registry ) {
+        this( registry, DEFAULT_SAMPLING );
+    }
+
+    /**
+     * @param registry registry for the pipeline metrics
+     * @param sampling trace every n-th frame, 1 traces all frames, 0 disables
+     *            the tracing
+     */
+    public PipelineMetrics( MetricsRegistry registry, int sampling ) {
+        if (sampling < 0) {
+            throw new IllegalArgumentException( "The sampling must not be negative!" );
+        }
+        this.registry = registry;
+        this.sampling = sampling;
+        bytesRead = registry.counter( BYTES_READ );
+        bytesDiscarded = registry.counter( BYTES_DISCARDED );
+        framesDecoded = registry.counter( FRAMES_DECODED );
+        headerCrcFailures = registry.counter( HEADER_CRC_FAILURES );
+        payloadCrcFailures = registry.counter( PAYLOAD_CRC_FAILURES );
+        decoderErrors = registry.counter( DECODER_ERRORS );
+        framesUnsubscribed = registry.counter( FRAMES_UNSUBSCRIBED );
+        dispatchQueueDepth = registry.counter( DISPATCH_QUEUE_DEPTH );
+        packetsDispatched = registry.counter( PACKETS_DISPATCHED );
+        dispatchCompleted = registry.counter( DISPATCH_COMPLETED );
+        packetsWritten = registry.counter( PACKETS_WRITTEN );
+        writeTime = registry.counter( WRITE_TIME );
+        writeErrors = registry.counter( WRITE_ERRORS );
+        decodeLatency = registry.histogram( DECODE_LATENCY );
+        factoryLatency = registry.histogram( FACTORY_LATENCY );
+        dispatchLatency = registry.histogram( DISPATCH_LATENCY );
+        totalLatency = registry.histogram( TOTAL_LATENCY );
+        registry.gauge( BYTES_CONSUMED, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return bytesConsumed;
+            }
+        } );
+        registry.gauge( MAX_WRITE_TIME, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return maxWriteTime.get();
+            }
+        } );
+    }
+
+    /**
+     * @return the registry that contains the pipeline metrics
+     */
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Add a gauge to the registry, for instance for the size of a queue.
+     *
+     * @param name name of the gauge
+     * @param gauge supplier of the current value
+     */
+    public void gauge( String name, LongSupplier gauge ) {
+        registry.gauge( name, gauge );
+    }
+
+    /**
+     * @param count number of bytes read from the serial port
+     */
+    public void onBytesRead( int count ) {
+        bytesRead.add( count );
+    }
+
+    /**
+     * Remember the time of a read event for tracing. It must be called by the
+     * reader for the bytes, that it put in the receive queue. A frame, that
+     * the decoder completes before its read event is known, isn't traced.
+     *
+     * @param count number of bytes, that were put in the receive queue
+     */
+    public void onBytesQueued( int count ) {
+        if (sampling == 0 || count <= 0) {
+            return;
+        }
+        final long event = readEvents;
+        final int index = (int) (event % READ_HISTORY);
+        queuedBytes += count;
+        readEnds[index] = queuedBytes;
+        readTimes[index] = System.nanoTime();
+        readEvents = event + 1;
+    }
+
+    /**
+     * Bytes were removed from the receive queue without decoding, for instance
+     * when the connection is restarted. The decoder doesn't count these
+     * bytes, so the positions of later frames are moved by them to find their
+     * read events. It must be called by the reader before it queues new
+     * bytes.
+     *
+     * @param count number of bytes, that were removed from the receive queue
+     */
+    public void onBytesDiscarded( int count ) {
+        if (count <= 0) {
+            return;
+        }
+        bytesDiscarded.add( count );
+        discardedBytes += count;
+    }
+
+    /**
+     * Start the trace of a frame, if it is sampled. It must be called by the
+     * decoder when a frame is complete.
+     *
+     * @param frameStart number of bytes, that the decoder took from the
+     *            receive queue before the first byte of the frame
+     * @return the trace of the frame or <code>null</code> if the frame isn't
+     *         traced
+     */
+    public PacketTrace onFrameComplete( long frameStart ) {
+        if (sampling == 0 || ++frames % sampling != 0) {
+            return null;
+        }
+        final long readTime = readTimeOf( frameStart + discardedBytes );
+        if (readTime == 0) {
+            return null;
+        }
+        final PacketTrace trace = new PacketTrace( readTime, System.nanoTime() );
+        decodeLatency.record( trace.getDecodedTime() - readTime );
+        return trace;
+    }
+
+    /**
+     * @param trace trace of the packet, that was created by the factory, or
+     *            <code>null</code>
+     */
+    public void onPacketBuilt( PacketTrace trace ) {
+        if (trace != null) {
+            trace.setCreatedTime( System.nanoTime() );
+            factoryLatency.record( trace.getCreatedTime() - trace.getDecodedTime() );
+        }
+    }
+
+    /**
+     * Find the read event, that queued the byte at the given position.
+     *
+     * @return the time of the read event or 0 if it isn't known (anymore)
+     */
+    private long readTimeOf( long position ) {
+        final long events = readEvents;
+        final long oldest = Math.max( 0, events - READ_HISTORY );
+        long found = -1;
+        long time = 0;
+        for (long event = events - 1; event >= oldest; event--) {
+            final int index = (int) (event % READ_HISTORY);
+            if (readEnds[index] <= position) {
+                break;
+            }
+            found = event;
+            time = readTimes[index];
+        }
+        // the position must lie in the known events and the reader must not
+        // have overwritten the found event meanwhile
+        if (found < 0 || (found == oldest && oldest > 0) || readEvents - READ_HISTORY > found) {
+            return 0;
+        }
+        return time;
+    }
+
+    /**
+     * Publish the progress of the decoder. It is called once per frame and not
+     * per byte, to keep the decoding cheap.
+     *
+     * @param count total number of bytes, that the decoder took from the
+     *            receive queue
+     */
+    public void onBytesConsumed( long count ) {
+        bytesConsumed = count;
+    }
+
+    /**
+     * An unexpected error occurred while decoding or handing over a packet.
+     */
+    public void onDecoderError() {
+        decoderErrors.increment();
+    }
+
+    /**
+     * The decoder skipped a frame, because no packet listener receives its
+     * packet type.
+     */
+    public void onFrameUnsubscribed() {
+        framesUnsubscribed.increment();
+    }
+
+    /**
+     * A frame was dropped because of an invalid header checksum.
+     */
+    public void onHeaderCrcFailure() {
+        headerCrcFailures.increment();
+    }
+
+    /**
+     * @param valid <code>true</code> if the payload checksum of the decoded
+     *            frame was correct
+     */
+    public void onFrameDecoded( boolean valid ) {
+        framesDecoded.increment();
+        if (!valid) {
+            payloadCrcFailures.increment();
+        }
+    }
+
+    /**
+     * @param type the type of the created packet
+     */
+    public void onPacketCreated( int type ) {
+        final int index = type & 0xFF;
+        Counter counter = packetsCreated.get( index );
+        if (counter == null) {
+            counter = registry.counter( PACKETS_CREATED + String.format( "0x%02X", index ) );
+            packetsCreated.set( index, counter );
+        }
+        counter.increment();
+    }
+
+    /**
+     * A packet was handed over for distribution.
+     */
+    public void onDispatchQueued() {
+        dispatchQueueDepth.increment();
+    }
+
+    /**
+     * The distribution of a packet started.
+     *
+     * @param trace trace of the packet or <code>null</code>
+     */
+    public void onDispatchStarted( PacketTrace trace ) {
+        dispatchQueueDepth.add( -1 );
+        packetsDispatched.increment();
+        if (trace != null) {
+            trace.setDispatchTime( System.nanoTime() );
+            dispatchLatency.record( trace.getDispatchTime() - trace.getCreatedTime() );
+        }
+    }
+
+    /**
+     * The distribution of a packet to all listeners is complete.
+     *
+     * @param trace trace of the packet or <code>null</code>
+     */
+    public void onDispatchCompleted( PacketTrace trace ) {
+        dispatchCompleted.increment();
+        if (trace != null) {
+            totalLatency.record( System.nanoTime() - trace.getReadTime() );
+        }
+    }
+
+    /**
+     * @param id name (ID) of a packet listener
+     * @return the metrics of the packet listener
+     */
+    public ListenerMetrics listener( String id ) {
+        return new ListenerMetrics( registry, LISTENER + id );
+    }
+
+    /**
+     * Remove the metrics of a packet listener, when it was removed from the
+     * distributor. A listener, that is added again with the same ID, starts
+     * with new metrics.
+     *
+     * @param id name (ID) of a packet listener
+     */
+    public void removeListener( String id ) {
+        ListenerMetrics.remove( registry, LISTENER + id );
+    }
+
+    /**
+     * @param nanos time for writing the packet in nanoseconds
+     */
+    public void onPacketWritten( long nanos ) {
+        packetsWritten.increment();
+        writeTime.add( nanos );
+        maxWriteTime.accumulate( nanos );
+    }
+
+    /**
+     * A packet couldn't be written.
+     */
+    public void onWriteError() {
+        writeErrors.increment();
+    }
+}
@@ -0,0 +1,24 @@
+package de.atennert.connector.metrics.jfr;
+
+/**
+ * Emitter of the JFR events of the packet pipeline, see
+ * {@link PipelineEvents} for the methods. The implementation uses the JFR
+ * classes and is compiled separately for Java 11, so the connector itself
+ * builds and runs without JFR.
+ */
+interface IPipelineEvents {
+
+    Object beginFrame();
+
+    void commitFrame( Object frame, int packetType, int length, boolean valid );
+
+    Object beginListener();
+
+    void commitListener( Object invocation, String listener, int packetType, boolean failed );
+
+    Object beginWrite();
+
+    void commitWrite( Object write, int packetType, int length, long queueWait, boolean success );
+
+    void connectionStatus( String port, String status );
+}
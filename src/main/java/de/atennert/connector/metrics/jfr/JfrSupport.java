@@ -0,0 +1,55 @@
+package de.atennert.connector.metrics.jfr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Switch for the JDK Flight Recorder events of the connector. The events are
+ * emitted if the system property <code>de.atennert.connector.jfr</code> is
+ * <code>true</code> and the JDK supports JFR. The flag is a constant, so the
+ * JIT removes the event code completely if the events are switched off.<br>
+ * <br>
+ * The event classes are compiled for Java 11 in the separate source set
+ * <code>src/jfr</code>, because the rest of the connector is built for Java 8.
+ * They are loaded by name, so this class can be loaded on JDKs without JFR.
+ */
+public final class JfrSupport {
+
+    /** name of the system property, that switches on the events */
+    public static final String PROPERTY = "de.atennert.connector.jfr";
+
+    /** name of the emitter class in the JFR source set */
+    private static final String EVENTS_CLASS = "de.atennert.connector.metrics.jfr.JfrPipelineEvents";
+
+    /** emitter of the events or <code>null</code> if they are switched off */
+    static final IPipelineEvents EVENTS = loadEvents();
+
+    /** <code>true</code> if the connector emits JFR events */
+    public static final boolean ENABLED = EVENTS != null;
+
+    private JfrSupport() {
+        // never create an instance of this class
+    }
+
+    private static IPipelineEvents loadEvents() {
+        if (!Boolean.getBoolean( PROPERTY )) {
+            return null;
+        }
+        final Logger log = LoggerFactory.getLogger( JfrSupport.class );
+        try {
+            Class.forName( "jdk.jfr.Event" );
+        } catch (final ClassNotFoundException e) {
+            log.warn( "JFR events are switched on, but the JDK doesn't support JFR!" );
+            return null;
+        }
+        try {
+            return Class.forName( EVENTS_CLASS ).asSubclass( IPipelineEvents.class ).getDeclaredConstructor()
+                    .newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            // the JFR source set is missing or the JDK is older than 11
+            log.warn( "JFR events are switched on, but the connector was built without them or the JDK is older "
+                    + "than 11!", e );
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.atennert.connector.metrics.jfr;
+
+/**
+ * Emits the JFR events of the packet pipeline. The methods must only be called
+ * if {@link JfrSupport#ENABLED} is <code>true</code>, otherwise the event
+ * classes aren't loaded. They are only available on Java 11 or later, see
+ * {@link JfrSupport}.<br>
+ * <br>
+ * Events with a duration are started with a <code>begin</code> method, which
+ * returns <code>null</code> if the event isn't recorded, and finished with the
+ * matching <code>commit</code> method. The events are passed as
+ * {@link Object}, so the callers don't need the JFR classes.
+ */
+public final class PipelineEvents {
+
+    private PipelineEvents() {
+        // never create an instance of this class
+    }
+
+    /**
+     * @return the started event or <code>null</code>
+     */
+    public static Object beginFrame() {
+        return JfrSupport.EVENTS.beginFrame();
+    }
+
+    /**
+     * @param frame the event from {@link #beginFrame()}
+     * @param packetType type of the decoded packet
+     * @param length number of data and optional bytes
+     * @param valid <code>true</code> if the payload checksum was correct
+     */
+    public static void commitFrame( Object frame, int packetType, int length, boolean valid ) {
+        JfrSupport.EVENTS.commitFrame( frame, packetType, length, valid );
+    }
+
+    /**
+     * @return the started event or <code>null</code>
+     */
+    public static Object beginListener() {
+        return JfrSupport.EVENTS.beginListener();
+    }
+
+    /**
+     * @param invocation the event from {@link #beginListener()}
+     * @param listener name (ID) of the packet listener
+     * @param packetType type of the distributed packet
+     * @param failed <code>true</code> if the listener threw an exception
+     */
+    public static void commitListener( Object invocation, String listener, int packetType, boolean failed ) {
+        JfrSupport.EVENTS.commitListener( invocation, listener, packetType, failed );
+    }
+
+    /**
+     * @return the started event or <code>null</code>
+     */
+    public static Object beginWrite() {
+        return JfrSupport.EVENTS.beginWrite();
+    }
+
+    /**
+     * @param write the event from {@link #beginWrite()}
+     * @param packetType type of the written packet
+     * @param length number of bytes of the frame
+     * @param queueWait time in nanoseconds, that the packet waited for
+     *            sending
+     * @param success <code>true</code> if the packet was written
+     */
+    public static void commitWrite( Object write, int packetType, int length, long queueWait, boolean success ) {
+        JfrSupport.EVENTS.commitWrite( write, packetType, length, queueWait, success );
+    }
+
+    /**
+     * @param port name of the serial port
+     * @param status the new connection status
+     */
+    public static void connectionStatus( String port, String status ) {
+        JfrSupport.EVENTS.connectionStatus( port, status );
+    }
+}
+
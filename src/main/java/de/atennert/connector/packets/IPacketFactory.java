@@ -8,7 +8,9 @@ import java.util.Date;
  * <br>
  * Factories, that are added to an instance of {@link PacketFactory} (extension
  * factories), must return <code>null</code> when a requested data packet type
- * a.k.a. message type is not covered!
+ * a.k.a. message type is not covered! Extension factories should declare the
+ * types they cover with {@link #getSupportedTypes()}, so the main factory
+ * only asks them for these types.
  * 
  * @author Andreas Tennert
  */
@@ -29,4 +31,16 @@ public interface IPacketFactory {
      *         {@link PacketFactory} and the given type is not covered
      */
     Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid );
+
+    /**
+     * The types are read once when the factory is added to a
+     * {@link PacketFactory}.
+     *
+     * @return the packet types, that the factory creates, or
+     *         {@link IPacketConstants#TYPE_ANY} if it may create packets of
+     *         any type, which is the default
+     */
+    default int[] getSupportedTypes() {
+        return new int[] { IPacketConstants.TYPE_ANY };
+    }
 }
@@ -2,6 +2,11 @@ package de.atennert.connector.packets;
 
 import java.util.Date;
 
+import de.atennert.connector.metrics.PacketTrace;
+import de.atennert.connector.packets.eep.EepDecoder;
+import de.atennert.connector.packets.eep.EepProfile;
+import de.atennert.connector.packets.eep.EepValues;
+
 /**
  * This class is the basic representation of an EnOcean data packet. It holds
  * the required and optional data parts as well as the packet type, the time
@@ -20,6 +25,13 @@ public class Packet {
 
     public final boolean isValid;
 
+    private PacketTrace trace;
+
+    private volatile long queuedTime;
+
+    /** values of the EEP profile of the sender, decoded on the first access */
+    private volatile EepValues eepValues;
+
     /**
      * @param type the type of the EnOcean data packet, the general EnOcean
      *            defined type can be found in {@link IPacketConstants} (don't
@@ -38,6 +50,61 @@ public class Packet {
         this.isValid = isValid;
     }
 
+    /**
+     * @return the latency trace of the packet or <code>null</code> if the
+     *         packet wasn't sampled for tracing
+     */
+    public PacketTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param trace the latency trace of the packet, it is set by the decoder
+     *            for sampled packets
+     */
+    public void setTrace( PacketTrace trace ) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return the time in nanoseconds ({@link System#nanoTime()}), when the
+     *         packet was put in the send queue, or 0 if it isn't known
+     */
+    public long getQueuedTime() {
+        return queuedTime;
+    }
+
+    /**
+     * @param queuedTime the time in nanoseconds ({@link System#nanoTime()}),
+     *            when the packet was put in the send queue
+     */
+    public void setQueuedTime( long queuedTime ) {
+        this.queuedTime = queuedTime;
+    }
+
+    /**
+     * Get the values of the EEP profile, that the decoder maps to the sender
+     * of this packet. The values are decoded on the first access and cached
+     * in the packet, so all listeners of the packet share them. They are
+     * decoded again if the profile of the sender changed.
+     *
+     * @param decoder decoder with the profiles of the senders
+     * @return the values or <code>null</code> if the sender has no profile or
+     *         the packet doesn't match it
+     */
+    public EepValues getEepValues( EepDecoder decoder ) {
+        final EepProfile profile = decoder.getProfile( this );
+        if (profile == null) {
+            return null;
+        }
+        EepValues values = eepValues;
+        if (values == null || values.getProfile() != profile) {
+            values = profile.decode( this );
+            eepValues = values;
+        }
+        return values;
+    }
+
     /**
      * @return a clone of the required data
      */
@@ -45,10 +112,44 @@ public class Packet {
         return data.clone();
     }
 
+    /**
+     * @return the length of the required data
+     */
+    public int getDataLength() {
+        return data.length;
+    }
+
+    /**
+     * Read one value of the required data without copying the data.
+     *
+     * @param index index in the required data
+     * @return the value at the index
+     */
+    public int getDataValue( int index ) {
+        return data[index];
+    }
+
     /**
      * @return a clone of the optional data
      */
     public int[] getOptional() {
         return optional.clone();
     }
+
+    /**
+     * @return the length of the optional data
+     */
+    public int getOptionalLength() {
+        return optional.length;
+    }
+
+    /**
+     * Read one value of the optional data without copying the data.
+     *
+     * @param index index in the optional data
+     * @return the value at the index
+     */
+    public int getOptionalValue( int index ) {
+        return optional[index];
+    }
 }
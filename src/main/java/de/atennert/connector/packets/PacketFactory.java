@@ -1,9 +1,14 @@
 package de.atennert.connector.packets;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
+import de.atennert.connector.metrics.PipelineMetrics;
 import de.atennert.connector.packets.enocean.CommonCommandPacket;
 import de.atennert.connector.packets.enocean.EventPacket;
 import de.atennert.connector.packets.enocean.RadioAdvancedPacket;
@@ -12,6 +17,8 @@ import de.atennert.connector.packets.enocean.RadioSubTelPacket;
 import de.atennert.connector.packets.enocean.RemoteManCommandPacket;
 import de.atennert.connector.packets.enocean.ResponsePacket;
 import de.atennert.connector.packets.enocean.SmartAckCommandPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This factory class creates {@link Packet}s for EnOcean messages. If the
@@ -28,19 +35,60 @@ import de.atennert.connector.packets.enocean.SmartAckCommandPacket;
  * follows:
  * <ol>
  * <li>Try to create specific packet by itself</li>
- * <li>Try additional factories in order of addition until the return value !=
- * <code>null</code></li>
+ * <li>Try additional factories, that support the type, in order of addition
+ * until the return value != <code>null</code></li>
  * <li>Create an instance of the default class {@link Packet}</li>
  * </ol>
+ * The extension factories are indexed by the types they support
+ * ({@link IPacketFactory#getSupportedTypes()}), which are read once when a
+ * factory is added, in an array with one entry per
+ * packet type. The array is replaced as a whole when a factory is added or
+ * removed, so creating a packet reads it without a lock and types without
+ * extension factories fall back to {@link Packet} immediately.
  * 
  * @author Andreas Tennert
  */
 public class PacketFactory implements IPacketFactory {
 
+    /** number of possible ESP3 packet types (1 byte) */
+    private static final int TYPE_COUNT = 256;
+
+    private static final IPacketFactory[] NO_FACTORIES = new IPacketFactory[0];
+
+    private static final Logger log = LoggerFactory.getLogger( PacketFactory.class );
+
+    /** extension factories in order of addition, only used while holding the lock */
     private final List< IPacketFactory > factories = new ArrayList<>();
 
+    /**
+     * Supported types of the extension factories, read when they were added,
+     * with the same index as the factories. Only used while holding the lock.
+     */
+    private final List< Set< Integer > > factoryTypes = new ArrayList<>();
+
+    /**
+     * Extension factories per packet type, indexed by the packet type. It is
+     * replaced on every change and never modified.
+     */
+    private volatile IPacketFactory[][] routes = createRoutes( factories, factoryTypes );
+
+    private final PipelineMetrics metrics;
+
+    public PacketFactory() {
+        this( new PipelineMetrics() );
+    }
+
+    /**
+     * @param metrics the metrics of the connector, which count the created
+     *            packets per type
+     */
+    public PacketFactory( PipelineMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
     @Override
     public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+        metrics.onPacketCreated( type );
         switch( type ) {
             case IPacketConstants.TYPE_RADIO:
                 return new RadioPacket( data, optional, timestamp, isValid );
@@ -60,10 +108,9 @@ public class PacketFactory implements IPacketFactory {
                 return new RadioAdvancedPacket( data, optional, timestamp, isValid );
             default:
                 // try with external factory
-                Packet externalPacket;
-                synchronized( this ) {
-                    for( final IPacketFactory factory : factories ) {
-                        externalPacket = factory.createPacket( type, data, optional, timestamp, isValid );
+                if( type >= 0 && type < TYPE_COUNT ) {
+                    for( final IPacketFactory factory : routes[type] ) {
+                        final Packet externalPacket = factory.createPacket( type, data, optional, timestamp, isValid );
                         if( externalPacket != null ) {
                             return externalPacket;
                         }
@@ -78,11 +125,46 @@ public class PacketFactory implements IPacketFactory {
      * Add a factory to the list of extension factories.
      * 
      * @param factory an additional extension factory
-     * @return <code>true</code> if the factory was added, <code>false</code>
-     *         otherwise
+     * @return <code>true</code> if the factory was added
+     * @throws IllegalArgumentException if the factory returns
+     *             <code>null</code> as supported types
      */
     public synchronized boolean addFactory( IPacketFactory factory ) {
-        return factories.add( factory );
+        final Set< Integer > types = supportedTypes( factory );
+        if( types == null ) {
+            throw new IllegalArgumentException( "The packet factory " + factory + " has no supported types!" );
+        }
+        factories.add( factory );
+        factoryTypes.add( types );
+        routes = createRoutes( factories, factoryTypes );
+        return true;
+    }
+
+    /**
+     * Add several factories to the list of extension factories. The type index
+     * is only rebuilt once, so this is preferred for registering many
+     * factories, for instance after a discovery.
+     * 
+     * @param newFactories additional extension factories in order of priority
+     * @return the number of added factories, factories, that return
+     *         <code>null</code> as supported types, are logged and skipped
+     */
+    public synchronized int addFactories( Collection< ? extends IPacketFactory > newFactories ) {
+        int added = 0;
+        for( final IPacketFactory factory : newFactories ) {
+            final Set< Integer > types = supportedTypes( factory );
+            if( types == null ) {
+                log.warn( "Skipped the packet factory " + factory + " without supported types!" );
+                continue;
+            }
+            factories.add( factory );
+            factoryTypes.add( types );
+            added++;
+        }
+        if( added > 0 ) {
+            routes = createRoutes( factories, factoryTypes );
+        }
+        return added;
     }
 
     /**
@@ -93,7 +175,14 @@ public class PacketFactory implements IPacketFactory {
      *         <code>false</code> otherwise
      */
     public synchronized boolean removeFactory( IPacketFactory factory ) {
-        return factories.remove( factory );
+        final int index = factories.indexOf( factory );
+        if( index < 0 ) {
+            return false;
+        }
+        factories.remove( index );
+        factoryTypes.remove( index );
+        routes = createRoutes( factories, factoryTypes );
+        return true;
     }
 
     /**
@@ -101,5 +190,57 @@ public class PacketFactory implements IPacketFactory {
      */
     public synchronized void clearFactories() {
         factories.clear();
+        factoryTypes.clear();
+        routes = createRoutes( factories, factoryTypes );
+    }
+
+    /**
+     * @param factories the extension factories in order of addition
+     * @param factoryTypes the supported types of the factories
+     * @return a new array, that maps every packet type to the factories, that
+     *         support it
+     */
+    private static IPacketFactory[][] createRoutes( List< IPacketFactory > factories,
+            List< Set< Integer > > factoryTypes ) {
+        final List< List< IPacketFactory > > lists = new ArrayList<>( Collections.nCopies( TYPE_COUNT,
+                (List< IPacketFactory >) null ) );
+        for( int i = 0; i < factories.size(); i++ ) {
+            for( final int type : factoryTypes.get( i ) ) {
+                if( lists.get( type ) == null ) {
+                    lists.set( type, new ArrayList<>() );
+                }
+                lists.get( type ).add( factories.get( i ) );
+            }
+        }
+        final IPacketFactory[][] routes = new IPacketFactory[TYPE_COUNT][];
+        for( int type = 0; type < TYPE_COUNT; type++ ) {
+            final List< IPacketFactory > list = lists.get( type );
+            routes[type] = list == null ? NO_FACTORIES : list.toArray( NO_FACTORIES );
+        }
+        return routes;
+    }
+
+    /**
+     * @return the packet types of the factory, all types for
+     *         {@link IPacketConstants#TYPE_ANY}, or <code>null</code> if the
+     *         factory returns <code>null</code>
+     */
+    private static Set< Integer > supportedTypes( IPacketFactory factory ) {
+        final int[] supported = factory.getSupportedTypes();
+        if( supported == null ) {
+            return null;
+        }
+        final Set< Integer > types = new TreeSet<>();
+        for( final int type : supported ) {
+            if( type == IPacketConstants.TYPE_ANY ) {
+                for( int t = 0; t < TYPE_COUNT; t++ ) {
+                    types.add( t );
+                }
+            }
+            else if( type >= 0 && type < TYPE_COUNT ) {
+                types.add( type );
+            }
+        }
+        return types;
     }
 }
@@ -0,0 +1,160 @@
+package de.atennert.connector.packets.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import de.atennert.connector.packets.Packet;
+
+/**
+ * Compact binary format for {@link Packet}s, for instance for forwarding
+ * packets to other processes or exporting them. A record contains the packet
+ * type, the validity, the timestamp as difference to the timestamp of the
+ * previous record, a gateway tag and the raw data and optional data. The
+ * subclass of a packet isn't stored, it is restored from the type by a packet
+ * factory when the record is read (see {@link PacketRecord}).<br>
+ * <br>
+ * Record layout, the lengths and numbers are variable length integers with 7
+ * bits per byte, least significant group first:
+ * <ul>
+ * <li>varint: length of the rest of the record</li>
+ * <li>byte: packet type</li>
+ * <li>byte: flags, {@link #FLAG_VALID} and {@link #FLAG_TIMESTAMP}</li>
+ * <li>zigzag varlong: timestamp in milliseconds minus the previous timestamp,
+ * only with {@link #FLAG_TIMESTAMP}</li>
+ * <li>zigzag varint: gateway tag</li>
+ * <li>varint, bytes: length and bytes of the data</li>
+ * <li>varint, bytes: length and bytes of the optional data</li>
+ * </ul>
+ * A radio telegram with 4 data bytes and 7 optional bytes takes about 20
+ * bytes. Streams of records start with a header with {@link #MAGIC} and
+ * {@link #VERSION}, see {@link PacketWriter} and {@link PacketReader}.
+ */
+public final class PacketCodec {
+
+    /** "EOP1" */
+    public static final int MAGIC = 0x454F5031;
+    /** version of the record layout */
+    public static final int VERSION = 1;
+    /** length of the stream header: magic number and version */
+    public static final int HEADER_LENGTH = 5;
+
+    /** the packet is valid */
+    public static final int FLAG_VALID = 0x01;
+    /** the record contains a timestamp */
+    public static final int FLAG_TIMESTAMP = 0x02;
+
+    // Don't allow creating an instance
+    private PacketCodec() {}
+
+    /**
+     * @param packet a packet
+     * @param gateway the gateway tag
+     * @param previousTimestamp timestamp of the previous record in
+     *            milliseconds since the epoch, 0 for the first record
+     * @return the length of the record of the packet
+     */
+    public static int encodedLength( Packet packet, int gateway, long previousTimestamp ) {
+        final int length = bodyLength( packet, gateway, previousTimestamp );
+        return varIntLength( length ) + length;
+    }
+
+    /**
+     * Write the record of a packet at the position of the target buffer. The
+     * data is written directly from the packet without copying it.
+     *
+     * @param packet the packet
+     * @param gateway the gateway tag
+     * @param previousTimestamp timestamp of the previous record in
+     *            milliseconds since the epoch, 0 for the first record
+     * @param target buffer for the record, its position is moved after the
+     *            record
+     * @return the timestamp of the record for the next record
+     * @throws BufferOverflowException if the record doesn't fit in the
+     *             buffer, nothing is written in this case
+     */
+    public static long encode( Packet packet, int gateway, long previousTimestamp, ByteBuffer target ) {
+        final int length = bodyLength( packet, gateway, previousTimestamp );
+        if (target.remaining() < varIntLength( length ) + length) {
+            throw new BufferOverflowException();
+        }
+        putVarInt( target, length );
+        target.put( (byte) packet.type );
+        long timestamp = previousTimestamp;
+        if (packet.timestamp != null) {
+            target.put( (byte) (FLAG_TIMESTAMP | (packet.isValid ? FLAG_VALID : 0)) );
+            timestamp = packet.timestamp.getTime();
+            putVarLong( target, zigZag( timestamp - previousTimestamp ) );
+        } else {
+            target.put( (byte) (packet.isValid ? FLAG_VALID : 0) );
+        }
+        putVarInt( target, zigZag( gateway ) );
+        putVarInt( target, packet.getDataLength() );
+        for (int i = 0; i < packet.getDataLength(); i++) {
+            target.put( (byte) packet.getDataValue( i ) );
+        }
+        putVarInt( target, packet.getOptionalLength() );
+        for (int i = 0; i < packet.getOptionalLength(); i++) {
+            target.put( (byte) packet.getOptionalValue( i ) );
+        }
+        return timestamp;
+    }
+
+    private static int bodyLength( Packet packet, int gateway, long previousTimestamp ) {
+        int length = 2 + varIntLength( zigZag( gateway ) ) + varIntLength( packet.getDataLength() )
+                + packet.getDataLength() + varIntLength( packet.getOptionalLength() ) + packet.getOptionalLength();
+        if (packet.timestamp != null) {
+            length += varLongLength( zigZag( packet.timestamp.getTime() - previousTimestamp ) );
+        }
+        return length;
+    }
+
+    static int zigZag( int value ) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigZag( long value ) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int unZigZag( int value ) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long unZigZag( long value ) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int varIntLength( int value ) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    static int varLongLength( long value ) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    static void putVarInt( ByteBuffer target, int value ) {
+        while ((value & ~0x7F) != 0) {
+            target.put( (byte) (value & 0x7F | 0x80) );
+            value >>>= 7;
+        }
+        target.put( (byte) value );
+    }
+
+    static void putVarLong( ByteBuffer target, long value ) {
+        while ((value & ~0x7FL) != 0) {
+            target.put( (byte) (value & 0x7F | 0x80) );
+            value >>>= 7;
+        }
+        target.put( (byte) value );
+    }
+}
@@ -0,0 +1,126 @@
+package de.atennert.connector.packets.codec;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads a stream of packet records, that was written by a
+ * {@link PacketWriter}, from a channel. The reader is a cursor: the current
+ * record is a {@link PacketRecord} view of the buffer of the reader, which is
+ * reused for the next record. Packets are created with
+ * {@link PacketRecord#toPacket(de.atennert.connector.packets.IPacketFactory)}.
+ * <br>
+ * A reader must only be used by one thread.
+ */
+public class PacketReader implements Closeable {
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private final PacketRecord record = new PacketRecord();
+    private long previousTimestamp = 0;
+    private boolean headerRead = false;
+    private boolean endOfStream = false;
+
+    /**
+     * @param channel the channel with the records
+     */
+    public PacketReader( ReadableByteChannel channel ) {
+        this( channel, PacketWriter.DEFAULT_BUFFER_SIZE );
+    }
+
+    /**
+     * @param channel the channel with the records
+     * @param bufferSize initial size of the buffer, it is enlarged for larger
+     *            records
+     */
+    public PacketReader( ReadableByteChannel channel, int bufferSize ) {
+        if (bufferSize < PacketCodec.HEADER_LENGTH) {
+            throw new IllegalArgumentException( "The buffer size must be at least " + PacketCodec.HEADER_LENGTH
+                    + " bytes!" );
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate( bufferSize );
+        // called through Buffer, ByteBuffer overrides the method since Java 9
+        ((Buffer) buffer).flip();
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return <code>true</code> if there is another record,
+     *         <code>false</code> at the end of the stream
+     * @throws IOException if the stream can't be read, is invalid or ends in
+     *             the middle of a record
+     */
+    public boolean next() throws IOException {
+        if (!headerRead) {
+            readHeader();
+        }
+        while (true) {
+            try {
+                if (record.read( buffer, previousTimestamp )) {
+                    previousTimestamp = record.getTimestamp();
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException( "Invalid packet stream!", e );
+            }
+            if (endOfStream) {
+                if (buffer.hasRemaining()) {
+                    throw new EOFException( "The packet stream ends in a record!" );
+                }
+                return false;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * @return the current record, valid until the next call of
+     *         {@link #next()}
+     */
+    public PacketRecord getRecord() {
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readHeader() throws IOException {
+        while (buffer.remaining() < PacketCodec.HEADER_LENGTH && !endOfStream) {
+            fill();
+        }
+        if (buffer.remaining() < PacketCodec.HEADER_LENGTH || buffer.getInt() != PacketCodec.MAGIC) {
+            throw new IOException( "The stream is no packet stream!" );
+        }
+        final int version = buffer.get() & 0xFF;
+        if (version != PacketCodec.VERSION) {
+            throw new IOException( "Unsupported packet stream version " + version + "!" );
+        }
+        headerRead = true;
+    }
+
+    /**
+     * Read more data from the channel. The buffer is enlarged, if it is full.
+     */
+    private void fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocate( 2 * buffer.capacity() );
+            larger.put( buffer );
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        if (channel.read( buffer ) < 0) {
+            endOfStream = true;
+        }
+        // called through Buffer, ByteBuffer overrides the method since Java 9
+        ((Buffer) buffer).flip();
+    }
+}
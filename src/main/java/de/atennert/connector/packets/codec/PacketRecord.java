@@ -0,0 +1,199 @@
+package de.atennert.connector.packets.codec;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import de.atennert.connector.packets.IPacketFactory;
+import de.atennert.connector.packets.Packet;
+
+/**
+ * View of a record in the format of {@link PacketCodec}. Reading a record
+ * only parses the header fields, the data and optional data are read from the
+ * buffer when they are accessed, so records can be filtered without copying
+ * them. {@link #toPacket(IPacketFactory)} creates the packet of the record.<br>
+ * <br>
+ * A record view can be reused for the next record. It refers to the buffer,
+ * so it is only valid as long as the content of the buffer isn't changed.
+ */
+public final class PacketRecord {
+
+    private ByteBuffer buffer;
+    private int type;
+    private int flags;
+    private long timestamp;
+    private int gateway;
+    private int dataOffset;
+    private int dataLength;
+    private int optionalOffset;
+    private int optionalLength;
+
+    /** index of the next byte while a record is parsed */
+    private int index;
+
+    /**
+     * Read the record at the position of a buffer.
+     *
+     * @param source buffer with the record, its position is moved after the
+     *            record if it is complete
+     * @param previousTimestamp timestamp of the previous record in
+     *            milliseconds since the epoch, 0 for the first record
+     * @return <code>true</code> if the record was read, <code>false</code> if
+     *         the buffer doesn't contain the complete record
+     * @throws IllegalArgumentException if the record is invalid
+     */
+    public boolean read( ByteBuffer source, long previousTimestamp ) {
+        index = source.position();
+        final int end = source.limit();
+        final long length = readVarLong( source, end, 5 );
+        if (length < 0 || index + length > end) {
+            return false;
+        }
+        final int recordEnd = index + (int) length;
+        if (length < 4) {
+            throw new IllegalArgumentException( "Invalid packet record length " + length + "!" );
+        }
+        type = source.get( index++ ) & 0xFF;
+        flags = source.get( index++ ) & 0xFF;
+        timestamp = previousTimestamp;
+        if ((flags & PacketCodec.FLAG_TIMESTAMP) != 0) {
+            timestamp += PacketCodec.unZigZag( readField( source, recordEnd, 10 ) );
+        }
+        gateway = PacketCodec.unZigZag( (int) readField( source, recordEnd, 5 ) );
+        dataLength = (int) readField( source, recordEnd, 5 );
+        dataOffset = index;
+        index += dataLength;
+        optionalLength = (int) readField( source, recordEnd, 5 );
+        optionalOffset = index;
+        if (dataLength < 0 || optionalLength < 0 || optionalOffset + optionalLength != recordEnd) {
+            throw new IllegalArgumentException( "Invalid packet record!" );
+        }
+        buffer = source;
+        // called through Buffer, ByteBuffer overrides the method since Java 9
+        ((Buffer) source).position( recordEnd );
+        return true;
+    }
+
+    /**
+     * @return the packet type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return <code>true</code> if the packet is valid
+     */
+    public boolean isValid() {
+        return (flags & PacketCodec.FLAG_VALID) != 0;
+    }
+
+    /**
+     * @return <code>true</code> if the record has a timestamp
+     */
+    public boolean hasTimestamp() {
+        return (flags & PacketCodec.FLAG_TIMESTAMP) != 0;
+    }
+
+    /**
+     * @return the timestamp in milliseconds since the epoch, without
+     *         timestamp the timestamp of the previous record
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the gateway tag
+     */
+    public int getGateway() {
+        return gateway;
+    }
+
+    /**
+     * @return the length of the data
+     */
+    public int getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * @param i index in the data
+     * @return the value at the index
+     */
+    public int getDataValue( int i ) {
+        if (i < 0 || i >= dataLength) {
+            throw new IndexOutOfBoundsException( "Invalid data index " + i + "!" );
+        }
+        return buffer.get( dataOffset + i ) & 0xFF;
+    }
+
+    /**
+     * @return the length of the optional data
+     */
+    public int getOptionalLength() {
+        return optionalLength;
+    }
+
+    /**
+     * @param i index in the optional data
+     * @return the value at the index
+     */
+    public int getOptionalValue( int i ) {
+        if (i < 0 || i >= optionalLength) {
+            throw new IndexOutOfBoundsException( "Invalid optional data index " + i + "!" );
+        }
+        return buffer.get( optionalOffset + i ) & 0xFF;
+    }
+
+    /**
+     * Create the packet of the record. The factory creates the subclass of
+     * the packet type, like for received packets.
+     *
+     * @param factory the packet factory
+     * @return the packet
+     */
+    public Packet toPacket( IPacketFactory factory ) {
+        final int[] data = new int[dataLength];
+        for (int i = 0; i < dataLength; i++) {
+            data[i] = buffer.get( dataOffset + i ) & 0xFF;
+        }
+        final int[] optional = new int[optionalLength];
+        for (int i = 0; i < optionalLength; i++) {
+            optional[i] = buffer.get( optionalOffset + i ) & 0xFF;
+        }
+        return factory.createPacket( type, data, optional, hasTimestamp() ? new Date( timestamp ) : null,
+                isValid() );
+    }
+
+    /**
+     * @return a field of the record
+     * @throws IllegalArgumentException if the field exceeds the record
+     */
+    private long readField( ByteBuffer source, int end, int maxBytes ) {
+        final long value = readVarLong( source, end, maxBytes );
+        if (value == -1) {
+            throw new IllegalArgumentException( "Invalid packet record!" );
+        }
+        return value;
+    }
+
+    /**
+     * @return the value or -1 if the buffer ends before the value
+     * @throws IllegalArgumentException if the value is longer than allowed
+     */
+    private long readVarLong( ByteBuffer source, int end, int maxBytes ) {
+        long value = 0;
+        for (int i = 0; i < maxBytes; i++) {
+            if (index >= end) {
+                return -1;
+            }
+            final int b = source.get( index++ );
+            value |= (long) (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException( "Invalid variable length integer in packet record!" );
+    }
+}
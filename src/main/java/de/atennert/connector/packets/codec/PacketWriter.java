@@ -0,0 +1,109 @@
+package de.atennert.connector.packets.codec;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import de.atennert.connector.packets.Packet;
+
+/**
+ * Writes a stream of packet records in the format of {@link PacketCodec} to a
+ * channel, for instance a socket or a file. Streams can be used through
+ * {@link java.nio.channels.Channels#newChannel(java.io.OutputStream)}. The
+ * stream starts with a header, the timestamps of the records are stored as
+ * differences to the previous record.<br>
+ * <br>
+ * The records are collected in a buffer, which is written to the channel when
+ * it is full, when {@link #flush()} is called and when the writer is closed.
+ * A writer must only be used by one thread.
+ */
+public class PacketWriter implements Flushable, Closeable {
+
+    /** default size of the buffer: 64 KiB */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private long previousTimestamp = 0;
+    private long count = 0;
+
+    /**
+     * @param channel the channel for the records
+     */
+    public PacketWriter( WritableByteChannel channel ) {
+        this( channel, DEFAULT_BUFFER_SIZE );
+    }
+
+    /**
+     * @param channel the channel for the records
+     * @param bufferSize size of the buffer, that collects the records
+     */
+    public PacketWriter( WritableByteChannel channel, int bufferSize ) {
+        if (bufferSize < PacketCodec.HEADER_LENGTH) {
+            throw new IllegalArgumentException( "The buffer size must be at least " + PacketCodec.HEADER_LENGTH
+                    + " bytes!" );
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate( bufferSize );
+        buffer.putInt( PacketCodec.MAGIC );
+        buffer.put( (byte) PacketCodec.VERSION );
+    }
+
+    /**
+     * Write the record of a packet.
+     *
+     * @param packet the packet
+     * @param gateway the gateway tag, for instance the gateway, that received
+     *            the packet
+     * @throws IOException if the buffer can't be written to the channel
+     */
+    public void write( Packet packet, int gateway ) throws IOException {
+        final int length = PacketCodec.encodedLength( packet, gateway, previousTimestamp );
+        if (buffer.remaining() < length) {
+            flush();
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate( length );
+            }
+        }
+        previousTimestamp = PacketCodec.encode( packet, gateway, previousTimestamp, buffer );
+        count++;
+    }
+
+    /**
+     * @return the number of written records
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Write the collected records to the channel.
+     *
+     * @throws IOException if the buffer can't be written to the channel
+     */
+    @Override
+    public void flush() throws IOException {
+        // called through Buffer, ByteBuffer overrides the methods since Java 9
+        final Buffer view = buffer;
+        view.flip();
+        while (buffer.hasRemaining()) {
+            channel.write( buffer );
+        }
+        view.clear();
+    }
+
+    /**
+     * Write the collected records and close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package de.atennert.connector.packets.eep;
+
+import java.util.Arrays;
+
+import de.atennert.connector.packets.Packet;
+
+/**
+ * Decoder, that applies the profile of the sending device to radio packets.
+ * The devices are mapped to their profiles by the sender ID, for instance
+ * after the teach-in or from the configuration of an application.<br>
+ * <br>
+ * The mapping is kept in two sorted arrays of sender IDs and profiles, which
+ * are replaced on every change. So looking up the profile of a packet is a
+ * binary search without locks and allocations, while changes of the mapping,
+ * which are rare, copy the arrays. The decoder can be used by multiple
+ * threads.
+ */
+public class EepDecoder {
+
+    /**
+     * Snapshot of the mapping, the arrays are never changed.
+     */
+    private static final class Mapping {
+        private final int[] senders;
+        private final EepProfile[] profiles;
+
+        private Mapping( int[] senders, EepProfile[] profiles ) {
+            this.senders = senders;
+            this.profiles = profiles;
+        }
+    }
+
+    private volatile Mapping mapping = new Mapping( new int[0], new EepProfile[0] );
+
+    /**
+     * Read the sender ID of a radio packet. It is stored in the four bytes
+     * before the status, which is the last byte of the required data.
+     *
+     * @param packet a radio packet
+     * @return the sender ID or -1 if the packet is too short
+     */
+    public static int getSenderId( Packet packet ) {
+        final int length = packet.getDataLength();
+        if (length < 6) {
+            return -1;
+        }
+        return (packet.getDataValue( length - 5 ) & 0xFF) << 24 | (packet.getDataValue( length - 4 ) & 0xFF) << 16
+                | (packet.getDataValue( length - 3 ) & 0xFF) << 8 | packet.getDataValue( length - 2 ) & 0xFF;
+    }
+
+    /**
+     * Map a device to its profile. An existing mapping of the device is
+     * replaced.
+     *
+     * @param senderId the ID of the device
+     * @param profile the profile of the device
+     */
+    public synchronized void map( int senderId, EepProfile profile ) {
+        if (profile == null) {
+            throw new IllegalArgumentException( "A profile is required!" );
+        }
+        final Mapping current = mapping;
+        final int index = Arrays.binarySearch( current.senders, senderId );
+        if (index >= 0) {
+            final EepProfile[] profiles = current.profiles.clone();
+            profiles[index] = profile;
+            mapping = new Mapping( current.senders, profiles );
+            return;
+        }
+        final int insert = -index - 1;
+        final int length = current.senders.length;
+        final int[] senders = new int[length + 1];
+        final EepProfile[] profiles = new EepProfile[length + 1];
+        System.arraycopy( current.senders, 0, senders, 0, insert );
+        System.arraycopy( current.profiles, 0, profiles, 0, insert );
+        senders[insert] = senderId;
+        profiles[insert] = profile;
+        System.arraycopy( current.senders, insert, senders, insert + 1, length - insert );
+        System.arraycopy( current.profiles, insert, profiles, insert + 1, length - insert );
+        mapping = new Mapping( senders, profiles );
+    }
+
+    /**
+     * Remove the mapping of a device.
+     *
+     * @param senderId the ID of the device
+     * @return <code>true</code> if the device was mapped
+     */
+    public synchronized boolean unmap( int senderId ) {
+        final Mapping current = mapping;
+        final int index = Arrays.binarySearch( current.senders, senderId );
+        if (index < 0) {
+            return false;
+        }
+        final int length = current.senders.length;
+        final int[] senders = new int[length - 1];
+        final EepProfile[] profiles = new EepProfile[length - 1];
+        System.arraycopy( current.senders, 0, senders, 0, index );
+        System.arraycopy( current.profiles, 0, profiles, 0, index );
+        System.arraycopy( current.senders, index + 1, senders, index, length - index - 1 );
+        System.arraycopy( current.profiles, index + 1, profiles, index, length - index - 1 );
+        mapping = new Mapping( senders, profiles );
+        return true;
+    }
+
+    /**
+     * @param senderId the ID of a device
+     * @return the profile of the device or <code>null</code> if the device
+     *         isn't mapped
+     */
+    public EepProfile getProfile( int senderId ) {
+        final Mapping current = mapping;
+        final int index = Arrays.binarySearch( current.senders, senderId );
+        return index >= 0 ? current.profiles[index] : null;
+    }
+
+    /**
+     * @param packet a radio packet
+     * @return the profile of the sender of the packet or <code>null</code> if
+     *         the sender isn't mapped
+     */
+    public EepProfile getProfile( Packet packet ) {
+        return getProfile( getSenderId( packet ) );
+    }
+
+    /**
+     * @return the number of mapped devices
+     */
+    public int size() {
+        return mapping.senders.length;
+    }
+
+    /**
+     * Decode a packet with the profile of its sender.
+     *
+     * @param packet a radio packet
+     * @param values array for the field values, at least as long as the
+     *            number of fields of the profile
+     * @return the profile, that was used for decoding, or <code>null</code> if
+     *         the sender isn't mapped or the packet doesn't match its profile
+     */
+    public EepProfile decode( Packet packet, double[] values ) {
+        final EepProfile profile = getProfile( packet );
+        if (profile == null || !profile.decode( packet, values )) {
+            return null;
+        }
+        return profile;
+    }
+}
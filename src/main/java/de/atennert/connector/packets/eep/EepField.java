@@ -0,0 +1,135 @@
+package de.atennert.connector.packets.eep;
+
+/**
+ * Definition of a data field of an EnOcean Equipment Profile (EEP), as it is
+ * listed in the field tables of the EEP specification. The position of the
+ * field is given by the bit offset from the most significant bit of the first
+ * user data byte (DB3 for 4BS telegrams) and the bit length.<br>
+ * <br>
+ * Scaled fields map the raw value linearly from the valid range to the scale,
+ * for instance the range 255 to 0 of a temperature sensor to the scale -40 to
+ * 0 &deg;C. The range may be descending. Other fields, like enumerations and
+ * flags, return the raw value.
+ */
+public final class EepField {
+
+    /** maximum length of a field in bits */
+    public static final int MAX_LENGTH = 32;
+
+    private final String name;
+    private final String unit;
+    private final int offset;
+    private final int length;
+    private final double rangeMin;
+    private final double rangeMax;
+    private final double scaleMin;
+    private final double scaleMax;
+    private final boolean scaled;
+
+    private EepField( String name, String unit, int offset, int length, double rangeMin, double rangeMax,
+            double scaleMin, double scaleMax, boolean scaled ) {
+        if (name == null || offset < 0 || length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException( "Invalid EEP field " + name + "!" );
+        }
+        if (scaled && rangeMin == rangeMax) {
+            throw new IllegalArgumentException( "The range of EEP field " + name + " must not be empty!" );
+        }
+        this.name = name;
+        this.unit = unit;
+        this.offset = offset;
+        this.length = length;
+        this.rangeMin = rangeMin;
+        this.rangeMax = rangeMax;
+        this.scaleMin = scaleMin;
+        this.scaleMax = scaleMax;
+        this.scaled = scaled;
+    }
+
+    /**
+     * Create a field, which returns the raw value, for instance an enumeration
+     * or a flag.
+     *
+     * @param name short name of the field (shortcut in the EEP specification)
+     * @param offset bit offset from the start of the user data
+     * @param length length in bits
+     * @return a new field definition
+     */
+    public static EepField raw( String name, int offset, int length ) {
+        return new EepField( name, null, offset, length, 0, 0, 0, 0, false );
+    }
+
+    /**
+     * Create a field, which maps the raw value linearly to a physical value.
+     *
+     * @param name short name of the field (shortcut in the EEP specification)
+     * @param offset bit offset from the start of the user data
+     * @param length length in bits
+     * @param rangeMin raw value, that is mapped to the minimum of the scale
+     * @param rangeMax raw value, that is mapped to the maximum of the scale
+     * @param scaleMin minimum of the scale
+     * @param scaleMax maximum of the scale
+     * @param unit unit of the physical value
+     * @return a new field definition
+     */
+    public static EepField scaled( String name, int offset, int length, double rangeMin, double rangeMax,
+            double scaleMin, double scaleMax, String unit ) {
+        return new EepField( name, unit, offset, length, rangeMin, rangeMax, scaleMin, scaleMax, true );
+    }
+
+    /**
+     * @return the short name of the field
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the unit of the physical value or <code>null</code> for raw
+     *         fields
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return the bit offset from the start of the user data
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length in bits
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return <code>true</code> if the raw value is mapped to a physical
+     *         value
+     */
+    public boolean isScaled() {
+        return scaled;
+    }
+
+    /**
+     * @return the factor for the raw value, 1 for raw fields
+     */
+    double getMultiplier() {
+        return scaled ? (scaleMax - scaleMin) / (rangeMax - rangeMin) : 1;
+    }
+
+    /**
+     * @return the value, that is added to the multiplied raw value, 0 for raw
+     *         fields
+     */
+    double getAddend() {
+        return scaled ? scaleMin - rangeMin * getMultiplier() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + offset + ":" + length + "]" + (unit != null ? " " + unit : "");
+    }
+}
@@ -0,0 +1,229 @@
+package de.atennert.connector.packets.eep;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import de.atennert.connector.packets.Packet;
+
+/**
+ * An EnOcean Equipment Profile (EEP), identified by R-ORG, function and type
+ * (RORG-FUNC-TYPE, for instance A5-02-05). The field table of the profile is
+ * compiled into a flat extraction plan when the profile is created: for every
+ * field the index of the first data byte, the number of bytes, the shift and
+ * mask and the linear scaling are kept in arrays. Decoding a packet only reads
+ * these arrays and writes the field values into an array of the caller, so it
+ * doesn't allocate anything.<br>
+ * <br>
+ * The fields are decoded from the required data of radio packets: R-ORG, user
+ * data, sender ID and status. Profiles are immutable and can be shared between
+ * threads.
+ */
+public final class EepProfile {
+
+    /** bytes after the user data: sender ID and status */
+    private static final int TRAILER_LENGTH = 5;
+
+    private final int rOrg;
+    private final int func;
+    private final int type;
+    private final String id;
+    private final List< EepField > fields;
+
+    // the extraction plan, one entry per field
+    private final int[] firstByte;
+    private final int[] byteCount;
+    private final int[] shift;
+    private final long[] mask;
+    private final double[] multiplier;
+    private final double[] addend;
+
+    /** minimum length of the required data */
+    private final int minDataLength;
+
+    /**
+     * @param rOrg the R-ORG of the telegrams, for instance 0xA5 for 4BS
+     * @param func the function of the profile
+     * @param type the type of the profile
+     * @param fields the field table of the profile
+     */
+    public EepProfile( int rOrg, int func, int type, EepField... fields ) {
+        if (rOrg < 0 || rOrg > 0xFF || func < 0 || func > 0xFF || type < 0 || type > 0xFF || fields.length == 0) {
+            throw new IllegalArgumentException( "Invalid EEP profile!" );
+        }
+        this.rOrg = rOrg;
+        this.func = func;
+        this.type = type;
+        this.id = String.format( Locale.ROOT, "%02X-%02X-%02X", rOrg, func, type );
+        this.fields = Collections.unmodifiableList( Arrays.asList( fields.clone() ) );
+
+        firstByte = new int[fields.length];
+        byteCount = new int[fields.length];
+        shift = new int[fields.length];
+        mask = new long[fields.length];
+        multiplier = new double[fields.length];
+        addend = new double[fields.length];
+        int userDataLength = 0;
+        for (int i = 0; i < fields.length; i++) {
+            final EepField field = fields[i];
+            final int end = field.getOffset() + field.getLength();
+            final int lastByte = (end - 1) / 8;
+            // the user data starts after the R-ORG
+            firstByte[i] = 1 + field.getOffset() / 8;
+            byteCount[i] = lastByte - field.getOffset() / 8 + 1;
+            shift[i] = 8 * (lastByte + 1) - end;
+            mask[i] = (1L << field.getLength()) - 1;
+            multiplier[i] = field.getMultiplier();
+            addend[i] = field.getAddend();
+            userDataLength = Math.max( userDataLength, lastByte + 1 );
+        }
+        minDataLength = 1 + userDataLength + TRAILER_LENGTH;
+    }
+
+    /**
+     * @return the R-ORG of the telegrams
+     */
+    public int getROrg() {
+        return rOrg;
+    }
+
+    /**
+     * @return the function of the profile
+     */
+    public int getFunc() {
+        return func;
+    }
+
+    /**
+     * @return the type of the profile
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return the ID in the form RORG-FUNC-TYPE, for instance A5-02-05
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the field table in the order of the values of
+     *         {@link #decode(Packet, double[])}
+     */
+    public List< EepField > getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return firstByte.length;
+    }
+
+    /**
+     * @param name short name of a field
+     * @return the index of the field or -1 if the profile has no such field
+     */
+    public int indexOf( String name ) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get( i ).getName().equals( name )) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param packet a radio packet
+     * @return <code>true</code> if the packet has the R-ORG of the profile and
+     *         enough data for all fields
+     */
+    public boolean matches( Packet packet ) {
+        return packet.getDataLength() >= minDataLength && packet.getDataValue( 0 ) == rOrg;
+    }
+
+    /**
+     * Decode all fields of a packet. Scaled fields are written as physical
+     * values, the other fields as raw values.
+     *
+     * @param packet a radio packet of this profile
+     * @param values array for the field values, at least as long as the
+     *            number of fields
+     * @return <code>true</code> if the values were decoded,
+     *         <code>false</code> if the packet doesn't match the profile
+     */
+    public boolean decode( Packet packet, double[] values ) {
+        if (!matches( packet )) {
+            return false;
+        }
+        for (int i = 0; i < firstByte.length; i++) {
+            values[i] = extract( packet, i ) * multiplier[i] + addend[i];
+        }
+        return true;
+    }
+
+    /**
+     * Decode all fields of a packet into a new value object.
+     *
+     * @param packet a radio packet of this profile
+     * @return the values or <code>null</code> if the packet doesn't match the
+     *         profile
+     */
+    public EepValues decode( Packet packet ) {
+        final double[] values = new double[firstByte.length];
+        return decode( packet, values ) ? new EepValues( this, values ) : null;
+    }
+
+    /**
+     * Decode the raw values of all fields of a packet.
+     *
+     * @param packet a radio packet of this profile
+     * @param values array for the raw values, at least as long as the number
+     *            of fields
+     * @return <code>true</code> if the values were decoded,
+     *         <code>false</code> if the packet doesn't match the profile
+     */
+    public boolean decodeRaw( Packet packet, long[] values ) {
+        if (!matches( packet )) {
+            return false;
+        }
+        for (int i = 0; i < firstByte.length; i++) {
+            values[i] = extract( packet, i );
+        }
+        return true;
+    }
+
+    /**
+     * Decode one field of a packet.
+     *
+     * @param packet a radio packet of this profile
+     * @param field index of the field
+     * @return the value of the field or {@link Double#NaN} if the packet
+     *         doesn't match the profile
+     */
+    public double decodeField( Packet packet, int field ) {
+        if (!matches( packet )) {
+            return Double.NaN;
+        }
+        return extract( packet, field ) * multiplier[field] + addend[field];
+    }
+
+    private long extract( Packet packet, int field ) {
+        final int start = firstByte[field];
+        final int end = start + byteCount[field];
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value << 8 | packet.getDataValue( i ) & 0xFF;
+        }
+        return value >>> shift[field] & mask[field];
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + fields;
+    }
+}
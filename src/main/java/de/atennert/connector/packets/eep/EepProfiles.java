@@ -0,0 +1,165 @@
+package de.atennert.connector.packets.eep;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The common EnOcean Equipment Profiles of rocker switches (F6), contacts
+ * (D5) and 4BS sensors (A5). The field names are the shortcuts of the EEP
+ * specification. All A5 profiles contain the learn bit <code>LRN</code>, which
+ * is 0 for teach-in telegrams.
+ */
+public final class EepProfiles {
+
+    /** R-ORG of repeated switch communication (RPS) */
+    public static final int RORG_RPS = 0xF6;
+    /** R-ORG of 1 byte communication (1BS) */
+    public static final int RORG_1BS = 0xD5;
+    /** R-ORG of 4 byte communication (4BS) */
+    public static final int RORG_4BS = 0xA5;
+
+    /** rocker switch with 2 rockers, application style 1 */
+    public static final EepProfile F6_02_01 = rocker( 0x01 );
+    /** rocker switch with 2 rockers, application style 2 */
+    public static final EepProfile F6_02_02 = rocker( 0x02 );
+    /** window handle */
+    public static final EepProfile F6_10_00 = new EepProfile( RORG_RPS, 0x10, 0x00,
+            EepField.raw( "WIN", 0, 8 ) );
+
+    /** single input contact, CO is 1 if the contact is closed */
+    public static final EepProfile D5_00_01 = new EepProfile( RORG_1BS, 0x00, 0x01,
+            EepField.raw( "LRN", 4, 1 ),
+            EepField.raw( "CO", 7, 1 ) );
+
+    /** temperature sensor 0 &deg;C to +40 &deg;C */
+    public static final EepProfile A5_02_05 = temperature( 0x05, 0, 40 );
+
+    /** temperature and humidity sensor 0 &deg;C to +40 &deg;C, 0 to 100 % */
+    public static final EepProfile A5_04_01 = humidity( 0x01, 0, 40 );
+    /** temperature and humidity sensor -20 &deg;C to +60 &deg;C, 0 to 100 % */
+    public static final EepProfile A5_04_02 = humidity( 0x02, -20, 60 );
+
+    /** light sensor 300 lx to 60000 lx */
+    public static final EepProfile A5_06_01 = new EepProfile( RORG_4BS, 0x06, 0x01,
+            EepField.scaled( "SVC", 0, 8, 0, 255, 0, 5.1, "V" ),
+            EepField.scaled( "ILL2", 8, 8, 0, 255, 300, 30000, "lx" ),
+            EepField.scaled( "ILL1", 16, 8, 0, 255, 600, 60000, "lx" ),
+            EepField.raw( "LRN", 28, 1 ),
+            EepField.raw( "RS", 31, 1 ) );
+
+    /** occupancy sensor, PIRS above 127 means motion */
+    public static final EepProfile A5_07_01 = new EepProfile( RORG_4BS, 0x07, 0x01,
+            EepField.scaled( "SVC", 0, 8, 0, 250, 0, 5.0, "V" ),
+            EepField.raw( "PIRS", 16, 8 ),
+            EepField.raw( "LRN", 28, 1 ),
+            EepField.raw( "SVA", 31, 1 ) );
+
+    /** light, temperature and occupancy sensor 0 lx to 510 lx, 0 &deg;C to +51 &deg;C */
+    public static final EepProfile A5_08_01 = new EepProfile( RORG_4BS, 0x08, 0x01,
+            EepField.scaled( "SUP", 0, 8, 0, 255, 0, 5.1, "V" ),
+            EepField.scaled( "ILL", 8, 8, 0, 255, 0, 510, "lx" ),
+            EepField.scaled( "TMP", 16, 8, 0, 255, 0, 51, "\u00B0C" ),
+            EepField.raw( "LRN", 28, 1 ),
+            EepField.raw( "PIRS", 30, 1 ),
+            EepField.raw( "OCC", 31, 1 ) );
+
+    /** CO2 sensor with humidity and temperature */
+    public static final EepProfile A5_09_04 = new EepProfile( RORG_4BS, 0x09, 0x04,
+            EepField.scaled( "HUM", 0, 8, 0, 200, 0, 100, "%" ),
+            EepField.scaled( "Conc", 8, 8, 0, 255, 0, 2550, "ppm" ),
+            EepField.scaled( "TMP", 16, 8, 0, 255, 0, 51, "\u00B0C" ),
+            EepField.raw( "LRN", 28, 1 ),
+            EepField.raw( "HSN", 29, 1 ),
+            EepField.raw( "TSN", 30, 1 ) );
+
+    private static final Map< String, EepProfile > PROFILES = new LinkedHashMap<>();
+
+    static {
+        add( F6_02_01 );
+        add( F6_02_02 );
+        add( F6_10_00 );
+        add( D5_00_01 );
+        // A5-02-01 to A5-02-0B: 8 bit temperature with a span of 40 K
+        for (int type = 0x01; type <= 0x0B; type++) {
+            add( type == 0x05 ? A5_02_05 : temperature( type, -40 + 10 * (type - 0x01), 10 * (type - 0x01) ) );
+        }
+        // A5-02-10 to A5-02-1B: 8 bit temperature with a span of 80 K
+        for (int type = 0x10; type <= 0x1B; type++) {
+            add( temperature( type, -60 + 10 * (type - 0x10), 20 + 10 * (type - 0x10) ) );
+        }
+        // 10 bit temperature
+        add( new EepProfile( RORG_4BS, 0x02, 0x20,
+                EepField.scaled( "TMP", 14, 10, 1023, 0, -10, 41.2, "\u00B0C" ),
+                EepField.raw( "LRN", 28, 1 ) ) );
+        add( new EepProfile( RORG_4BS, 0x02, 0x30,
+                EepField.scaled( "TMP", 14, 10, 1023, 0, -40, 62.3, "\u00B0C" ),
+                EepField.raw( "LRN", 28, 1 ) ) );
+        add( A5_04_01 );
+        add( A5_04_02 );
+        add( A5_06_01 );
+        add( A5_07_01 );
+        add( A5_08_01 );
+        add( A5_09_04 );
+    }
+
+    // Don't allow creating an instance
+    private EepProfiles() {}
+
+    /**
+     * @param id ID of a profile in the form RORG-FUNC-TYPE, for instance
+     *            A5-02-05
+     * @return the profile or <code>null</code> if it isn't included
+     */
+    public static EepProfile get( String id ) {
+        return PROFILES.get( id.toUpperCase( Locale.ROOT ) );
+    }
+
+    /**
+     * @param rOrg R-ORG of the profile
+     * @param func function of the profile
+     * @param type type of the profile
+     * @return the profile or <code>null</code> if it isn't included
+     */
+    public static EepProfile get( int rOrg, int func, int type ) {
+        return PROFILES.get( String.format( Locale.ROOT, "%02X-%02X-%02X", rOrg, func, type ) );
+    }
+
+    /**
+     * @return all included profiles
+     */
+    public static Collection< EepProfile > getAll() {
+        return Collections.unmodifiableCollection( PROFILES.values() );
+    }
+
+    private static void add( EepProfile profile ) {
+        PROFILES.put( profile.getId(), profile );
+    }
+
+    private static EepProfile rocker( int type ) {
+        return new EepProfile( RORG_RPS, 0x02, type,
+                EepField.raw( "R1", 0, 3 ),
+                EepField.raw( "EB", 3, 1 ),
+                EepField.raw( "R2", 4, 3 ),
+                EepField.raw( "SA", 7, 1 ) );
+    }
+
+    /**
+     * The raw value 255 is the minimum and 0 the maximum temperature.
+     */
+    private static EepProfile temperature( int type, double min, double max ) {
+        return new EepProfile( RORG_4BS, 0x02, type,
+                EepField.scaled( "TMP", 16, 8, 255, 0, min, max, "\u00B0C" ),
+                EepField.raw( "LRN", 28, 1 ) );
+    }
+
+    private static EepProfile humidity( int type, double min, double max ) {
+        return new EepProfile( RORG_4BS, 0x04, type,
+                EepField.scaled( "HUM", 8, 8, 0, 250, 0, 100, "%" ),
+                EepField.scaled( "TMP", 16, 8, 0, 250, min, max, "\u00B0C" ),
+                EepField.raw( "LRN", 28, 1 ),
+                EepField.raw( "TSN", 30, 1 ) );
+    }
+}
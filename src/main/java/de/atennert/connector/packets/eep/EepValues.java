@@ -0,0 +1,61 @@
+package de.atennert.connector.packets.eep;
+
+/**
+ * Decoded field values of a packet together with the profile, that was used
+ * for decoding. Instances are created by
+ * {@link de.atennert.connector.packets.Packet#getEepValues(EepDecoder)} on the
+ * first access and cached in the packet.
+ */
+public final class EepValues {
+
+    private final EepProfile profile;
+    private final double[] values;
+
+    EepValues( EepProfile profile, double[] values ) {
+        this.profile = profile;
+        this.values = values;
+    }
+
+    /**
+     * @return the profile of the values
+     */
+    public EepProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the number of values, which is the number of fields of the
+     *         profile
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param field index of a field of the profile
+     * @return the value of the field
+     */
+    public double get( int field ) {
+        return values[field];
+    }
+
+    /**
+     * @param name short name of a field of the profile
+     * @return the value of the field or {@link Double#NaN} if the profile has
+     *         no such field
+     */
+    public double get( String name ) {
+        final int field = profile.indexOf( name );
+        return field < 0 ? Double.NaN : values[field];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder( profile.getId() ).append( " {" );
+        for (int i = 0; i < values.length; i++) {
+            builder.append( i == 0 ? "" : ", " ).append( profile.getFields().get( i ).getName() ).append( '=' )
+                    .append( values[i] );
+        }
+        return builder.append( '}' ).toString();
+    }
+}
@@ -1,6 +1,7 @@
 package de.atennert.connector.reader;
 
 import gnu.io.CommPortIdentifier;
+import gnu.io.NoSuchPortException;
 import gnu.io.PortInUseException;
 import gnu.io.SerialPort;
 import gnu.io.SerialPortEvent;
@@ -11,13 +12,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.TooManyListenersException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import de.atennert.connector.distribution.IDistributor;
 import de.atennert.connector.distribution.IEventListener;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.metrics.jfr.JfrSupport;
+import de.atennert.connector.metrics.jfr.PipelineEvents;
 import de.atennert.connector.packets.Packet;
 import de.atennert.connector.reader.ComConnector.ConnectionStatus;
 import org.slf4j.Logger;
@@ -27,10 +32,16 @@ import org.slf4j.LoggerFactory;
  * This class manages the connection to the EnOcean transceiver. It uses RXTX to
  * read and send messages.<br>
  * <br>
- * While reading and writing is not active, it listens for updates of the serial
- * ports and forwards changes to registered port listeners. The received bytes
+ * Updates of the serial ports are forwarded to registered port listeners by a
+ * {@link PortDiscovery}. The received bytes
  * are changed to integers and put in a queue. The messages to send are taken
- * from a queue in form of {@link Packet} instances.
+ * from a queue in form of {@link Packet} instances.<br>
+ * <br>
+ * If the connection to the transceiver gets lost while reading or writing or
+ * the serial port reports a break interrupt, the connector tries to reopen the
+ * serial port with an increasing delay between the attempts. Packets, that are
+ * sent in the meantime, are kept in a {@link SendBuffer} and sent after the
+ * connection was restored.
  *
  * @author Andreas Tennert
  */
@@ -41,17 +52,22 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
      */
     public enum ConnectionStatus
     {
-        OPENED, CLOSED, OPEN_FAILED
+        OPENED, CLOSED, OPEN_FAILED, RECONNECTING, RESTORED
     }
 
     private static final int READ_WRITE_MODE_WAIT_TIME = 500;
 
-    private static CommPortIdentifier serialPortId;
-    @SuppressWarnings("rawtypes")
-    private static Enumeration enumComm;
-    private SerialPort serialPort;
-    private InputStream inputStream;
-    private OutputStream outputStream;
+    /** minimum time in milliseconds between two attempts to reopen the port */
+    private static final long RECONNECT_MIN_DELAY = 250;
+    /** maximum time in milliseconds between two attempts to reopen the port */
+    private static final long RECONNECT_MAX_DELAY = 10000;
+
+    private long reconnectMinDelay = RECONNECT_MIN_DELAY;
+    private long reconnectMaxDelay = RECONNECT_MAX_DELAY;
+
+    private volatile SerialPort serialPort;
+    private volatile InputStream inputStream;
+    private volatile OutputStream outputStream;
     private Boolean serialPortOpen = false;
     private final int baudrate = 57600;
     private final int dataBits = SerialPort.DATABITS_8;
@@ -62,6 +78,12 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
     /** read/write mode is supposed to be active */
     private volatile boolean doRun;
 
+    /** the connection to the transceiver was lost and needs to be reopened */
+    private volatile boolean connectionLost;
+
+    /** used to wake up the connector thread on connection loss or stop */
+    private final Object connectionMonitor = new Object();
+
     private static final Logger log = LoggerFactory.getLogger(ComConnector.class);
 
     private final List<IEventListener<ConnectionStatus>> statusListeners = new ArrayList<>();
@@ -70,7 +92,16 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
     private final BlockingQueue<Integer> messageByteQueue;
     private final BlockingQueue<Packet> sendPacketQueue;
 
-    private final PortUpdater portUpdater;
+    /** how the writer waits for packets to send */
+    private final WaitStrategy waitStrategy;
+    private final long waitTime;
+
+    private final PortDiscovery portDiscovery;
+
+    /** packets, that couldn't be sent because the connection was lost */
+    private final SendBuffer sendBuffer;
+
+    private final PipelineMetrics metrics;
 
     /**
      * @param messageByteQueue queue for forwarding of message parts
@@ -78,12 +109,77 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
      */
     public ComConnector(BlockingQueue<Integer> messageByteQueue, BlockingQueue<Packet> sendPacketQueue)
     {
+        this(messageByteQueue, sendPacketQueue, WaitStrategy.SLEEPING, READ_WRITE_MODE_WAIT_TIME);
+    }
+
+    /**
+     * @param messageByteQueue queue for forwarding of message parts
+     * @param sendPacketQueue queue for packets to send away
+     * @param waitStrategy how the writer waits for packets to send
+     * @param waitTime time in milliseconds to wait for packets to send
+     */
+    public ComConnector(BlockingQueue<Integer> messageByteQueue, BlockingQueue<Packet> sendPacketQueue,
+                        WaitStrategy waitStrategy, long waitTime)
+    {
+        this(messageByteQueue, sendPacketQueue, waitStrategy, waitTime, new PortDiscovery());
+    }
+
+    /**
+     * @param messageByteQueue queue for forwarding of message parts
+     * @param sendPacketQueue queue for packets to send away
+     * @param waitStrategy how the writer waits for packets to send
+     * @param waitTime time in milliseconds to wait for packets to send
+     * @param portDiscovery port discovery, that may be shared with other
+     *            connectors
+     */
+    public ComConnector(BlockingQueue<Integer> messageByteQueue, BlockingQueue<Packet> sendPacketQueue,
+                        WaitStrategy waitStrategy, long waitTime, PortDiscovery portDiscovery)
+    {
+        this(messageByteQueue, sendPacketQueue, waitStrategy, waitTime, portDiscovery, new SendBuffer(),
+                new PipelineMetrics());
+    }
+
+    /**
+     * @param messageByteQueue queue for forwarding of message parts
+     * @param sendPacketQueue queue for packets to send away
+     * @param waitStrategy how the writer waits for packets to send
+     * @param waitTime time in milliseconds to wait for packets to send
+     * @param portDiscovery port discovery, that may be shared with other
+     *            connectors
+     * @param sendBuffer buffer for packets, that are sent while the connection
+     *            is lost
+     * @param metrics the metrics of the connector
+     */
+    public ComConnector(final BlockingQueue<Integer> messageByteQueue, final BlockingQueue<Packet> sendPacketQueue,
+                        WaitStrategy waitStrategy, long waitTime, PortDiscovery portDiscovery,
+                        SendBuffer sendBuffer, PipelineMetrics metrics)
+    {
+        this.sendBuffer = sendBuffer;
+        this.metrics = metrics;
+        metrics.gauge(PipelineMetrics.RECEIVE_QUEUE_DEPTH, new LongSupplier()
+        {
+            @Override
+            public long getAsLong()
+            {
+                return messageByteQueue.size();
+            }
+        });
+        metrics.gauge(PipelineMetrics.SEND_QUEUE_DEPTH, new LongSupplier()
+        {
+            @Override
+            public long getAsLong()
+            {
+                return sendPacketQueue.size();
+            }
+        });
         this.messageByteQueue = messageByteQueue;
         this.sendPacketQueue = sendPacketQueue;
+        this.waitStrategy = waitStrategy;
+        this.waitTime = waitTime;
 
-        // start port updater for continuous updates on serial port changes
-        portUpdater = new PortUpdater();
-        portUpdater.start();
+        // start port discovery for continuous updates on serial port changes
+        this.portDiscovery = portDiscovery;
+        portDiscovery.start();
         status = ConnectionStatus.CLOSED;
     }
 
@@ -111,6 +207,10 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
         synchronized ( statusListeners )
         {
             this.status = status;
+            if ( JfrSupport.ENABLED )
+            {
+                PipelineEvents.connectionStatus(portName, status.name());
+            }
             for ( final IEventListener<ConnectionStatus> listener : statusListeners )
             {
                 listener.onEvent(status);
@@ -123,7 +223,11 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
      */
     public void stopThread()
     {
-        doRun = false;
+        synchronized ( connectionMonitor )
+        {
+            doRun = false;
+            connectionMonitor.notifyAll();
+        }
     }
 
     /**
@@ -132,7 +236,7 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
      */
     public IDistributor<List<String>> getPortUpdater()
     {
-        return portUpdater;
+        return portDiscovery;
     }
 
     /**
@@ -143,32 +247,47 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
     {
         log.debug("Starting connector thread.");
 
-        // stop serial port updates and activate read/write mode
-        portUpdater.interrupt();
-
-        messageByteQueue.clear();
+        // drop the data of the last run, the decoder must not count these bytes
+        int discarded = 0;
+        while ( messageByteQueue.poll() != null )
+        {
+            discarded++;
+        }
+        metrics.onBytesDiscarded(discarded);
 
         doRun = true;
+        connectionLost = false;
 
         if ( openPort(portName) )
         {
             log.debug("Connector thread initialized.");
             updateListeners(ConnectionStatus.OPENED);
 
-            // read/write mode is activated, wait for stop request
+            final Thread writer = new Thread(new SerialPortWriter());
+            writer.start();
+
+            // read/write mode is activated, wait for stop request or connection loss
             while ( doRun )
             {
-                try
-                {
-                    Thread.sleep(READ_WRITE_MODE_WAIT_TIME);
-                }
-                catch ( final InterruptedException e )
+                awaitConnectionEvent(READ_WRITE_MODE_WAIT_TIME);
+                if ( doRun && connectionLost )
                 {
+                    reconnect();
                 }
             }
 
-            // stop read/write mode and start port change updates
-            closePort();
+            // stop read/write mode
+            try
+            {
+                writer.join();
+            }
+            catch ( final InterruptedException e )
+            {
+            }
+            if ( serialPortOpen )
+            {
+                closePort();
+            }
             updateListeners(ConnectionStatus.CLOSED);
         }
         else
@@ -176,26 +295,107 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
             updateListeners(ConnectionStatus.OPEN_FAILED);
         }
 
-        portUpdater.start();
-
         log.debug("Connector thread stopped.");
     }
 
     /**
-     * @return all currently available serial ports
+     * Wait until the connection gets lost, the thread is stopped or the given
+     * time has passed.
+     *
+     * @param time maximum time to wait in milliseconds
      */
-    private List<String> getPortNames()
+    private void awaitConnectionEvent(long time)
     {
-        final List<String> portNames = new ArrayList<>();
+        synchronized ( connectionMonitor )
+        {
+            if ( doRun && !connectionLost )
+            {
+                try
+                {
+                    connectionMonitor.wait(time);
+                }
+                catch ( final InterruptedException e )
+                {
+                }
+            }
+        }
+    }
 
-        enumComm = CommPortIdentifier.getPortIdentifiers();
-        while ( enumComm.hasMoreElements() )
+    /**
+     * Mark the connection as lost, so that the connector thread reopens the
+     * serial port.
+     *
+     * @param message description of the error
+     */
+    void onConnectionLost(String message)
+    {
+        synchronized ( connectionMonitor )
         {
-            serialPortId = (CommPortIdentifier)enumComm.nextElement();
-            portNames.add(serialPortId.getName());
+            if ( !connectionLost )
+            {
+                log.error(message + " Connection to the transceiver lost.");
+                connectionLost = true;
+                connectionMonitor.notifyAll();
+            }
         }
+    }
 
-        return portNames;
+    /**
+     * Reopen the serial port until it works or the thread is stopped. The
+     * delay between two attempts is doubled after each failed attempt.
+     */
+    private void reconnect()
+    {
+        updateListeners(ConnectionStatus.RECONNECTING);
+        closePort();
+
+        long delay = reconnectMinDelay;
+        while ( doRun )
+        {
+            synchronized ( connectionMonitor )
+            {
+                try
+                {
+                    if ( doRun )
+                    {
+                        connectionMonitor.wait(delay);
+                    }
+                }
+                catch ( final InterruptedException e )
+                {
+                }
+            }
+            if ( doRun && openPort(portName) )
+            {
+                connectionLost = false;
+                log.info("Connection to the transceiver restored.");
+                updateListeners(ConnectionStatus.RESTORED);
+                return;
+            }
+            delay = Math.min(delay * 2, reconnectMaxDelay);
+        }
+    }
+
+    /**
+     * Set the delays between the attempts to reopen the serial port, which are
+     * 0.25 s up to 10 s by default.
+     *
+     * @param minDelay time in milliseconds before the first attempt
+     * @param maxDelay maximum time in milliseconds between two attempts
+     */
+    void setReconnectDelays(long minDelay, long maxDelay)
+    {
+        this.reconnectMinDelay = minDelay;
+        this.reconnectMaxDelay = maxDelay;
+    }
+
+    /**
+     * @return the serial port to which the EnOcean transceiver is connected or
+     *         <code>null</code> if it wasn't set yet
+     */
+    public String getSerialPort()
+    {
+        return portName;
     }
 
     /**
@@ -207,7 +407,9 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
      */
     public boolean setSerialPort(String portName)
     {
-        if ( portName != null && !doRun && getPortNames().contains(portName) )
+        // the cached ports might be outdated if the ports are polled
+        if ( portName != null && !doRun
+                && ( portDiscovery.getPorts().contains(portName) || portDiscovery.refresh().contains(portName) ) )
         {
             this.portName = portName;
             return true;
@@ -222,14 +424,13 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
      * @param portName
      * @return serial port open
      */
-    private boolean openPort(String portName)
+    boolean openPort(String portName)
     {
         if ( portName == null )
         {
             return false;
         }
 
-        Boolean foundPort = false;
         if (serialPortOpen)
         {
             log.error("Serial port already opened!");
@@ -237,21 +438,17 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
         }
 
         log.debug("Opening serial port.");
-        enumComm = CommPortIdentifier.getPortIdentifiers();
-        while ( enumComm.hasMoreElements() )
+        final CommPortIdentifier serialPortId;
+        try
         {
-            serialPortId = (CommPortIdentifier)enumComm.nextElement();
-            if ( portName.contentEquals(serialPortId.getName()) )
-            {
-                foundPort = true;
-                break;
-            }
+            serialPortId = CommPortIdentifier.getPortIdentifier(portName);
         }
-        if (!foundPort)
+        catch ( final NoSuchPortException e )
         {
             log.error("Could not find serial port: " + portName);
             return false;
         }
+        serialPort = null;
         try
         {
             serialPort = (SerialPort)serialPortId.open("Open and send", 100);
@@ -259,13 +456,17 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
             inputStream = serialPort.getInputStream();
             outputStream = serialPort.getOutputStream();
 
-            ( new Thread(new SerialPortWriter()) ).start();
-
             serialPort.addEventListener(new SerialPortListener());
 
             serialPort.notifyOnDataAvailable(true);
+            serialPort.notifyOnBreakInterrupt(true);
 
             serialPort.setSerialPortParams(baudrate, dataBits, stopBits, parity);
+
+            log.debug("Opened port " + portName + ".");
+
+            serialPortOpen = true;
+            return true;
         }
         catch ( final PortInUseException e )
         {
@@ -284,16 +485,17 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
             log.error("Unable to set interface parameters!");
         }
 
-        log.debug("Opened port " + portName + ".");
-
-        serialPortOpen = true;
-        return true;
+        if ( serialPort != null )
+        {
+            serialPort.close();
+        }
+        return false;
     }
 
     /**
      * Close the serial port
      */
-    private void closePort()
+    void closePort()
     {
         if ( serialPortOpen )
         {
@@ -328,15 +530,28 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
             while ( inputStream.available() > 0 )
             {
                 num = inputStream.read(data, 0, data.length);
+                if ( num > 0 )
+                {
+                    metrics.onBytesRead(num);
+                }
+                int queued = 0;
                 for ( int i = 0; i < num; i++ )
                 {
-                    messageByteQueue.add(new Integer( ( data[i] & 0x7F ) + ( data[i] < 0 ? 128 : 0 )));
+                    if ( messageByteQueue.offer(new Integer( ( data[i] & 0x7F ) + ( data[i] < 0 ? 128 : 0 ))) )
+                    {
+                        queued++;
+                    }
+                    else
+                    {
+                        log.warn("Receive queue is full, dropping incoming data!");
+                    }
                 }
+                metrics.onBytesQueued(queued);
             }
         }
         catch ( final IOException e )
         {
-            log.error("Error while reading incoming data!");
+            onConnectionLost("Error while reading incoming data!");
         }
     }
 
@@ -352,12 +567,18 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
             {
                 readData();
             }
+            else if ( event.getEventType() == SerialPortEvent.BI )
+            {
+                // the transceiver never sends a break, the line was disconnected
+                onConnectionLost("Break interrupt on serial port!");
+            }
         }
     }
 
     /**
      * This class takes packets from the send queue, transforms them to byte
-     * messages and sends them away via the EnOcean transceiver.
+     * messages and sends them away via the EnOcean transceiver. While the
+     * connection is lost, the packets are put in the send buffer.
      */
     private class SerialPortWriter implements Runnable
     {
@@ -370,7 +591,18 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
             {
                 try
                 {
-                    Thread.sleep(READ_WRITE_MODE_WAIT_TIME);
+                    if ( waitStrategy == WaitStrategy.BLOCKING )
+                    {
+                        packet = sendPacketQueue.poll(waitTime, TimeUnit.MILLISECONDS);
+                        if ( packet != null )
+                        {
+                            sendPacket(packet);
+                        }
+                    }
+                    else
+                    {
+                        Thread.sleep(waitTime);
+                    }
                 }
                 catch ( final InterruptedException e )
                 {
@@ -378,93 +610,69 @@ public class ComConnector implements Runnable, IDistributor<ConnectionStatus>
 
                 while ( ( packet = sendPacketQueue.poll() ) != null )
                 {
-                    try
-                    {
-                        outputStream.write(PacketEncoder.encodePacket(packet));
-                    }
-                    catch ( final IOException e )
-                    {
-                        log.error("Error while sending packet: " + packet);
-                    }
+                    sendPacket(packet);
                 }
+                flushSendBuffer();
             }
         }
-    }
-
-    /**
-     * This class repeatedly checks for the available serial ports. If one or
-     * more ports changed it sends an update to all registered port listeners.
-     */
-    private class PortUpdater extends Thread implements IDistributor<List<String>>
-    {
-
-        /** list of currently available ports */
-        private List<String> ports = new ArrayList<String>();
-
-        /** list of port listeners */
-        private final List<IEventListener<List<String>>> listeners = new ArrayList<IEventListener<List<String>>>();
 
-        @Override
-        public void addListener(IEventListener<List<String>> listener)
+        /**
+         * Send a packet after the buffered packets or buffer it if the
+         * connection is lost.
+         */
+        private void sendPacket(Packet packet)
         {
-            synchronized ( ports )
+            flushSendBuffer();
+            if ( connectionLost || !sendBuffer.isEmpty() || !writePacket(packet) )
             {
-                listeners.add(listener);
-                listener.onEvent(ports);
+                sendBuffer.add(packet, System.nanoTime());
             }
         }
 
-        @Override
-        public void removeListener(IEventListener<List<String>> listener)
+        /**
+         * Send the buffered packets, that didn't expire, if the connection is
+         * available.
+         */
+        private void flushSendBuffer()
         {
-            synchronized ( ports )
+            final long now = System.nanoTime();
+            Packet packet;
+            while ( !connectionLost && ( packet = sendBuffer.peek(now) ) != null )
             {
-                listeners.remove(listener);
+                if ( !writePacket(packet) )
+                {
+                    return;
+                }
+                sendBuffer.remove();
             }
         }
 
         /**
-         * Send the a list of serial ports to all registered listeners.
-         *
-         * @param ports new list of serial ports
+         * @return <code>true</code> if the packet was written
          */
-        private void distributeEvent(List<String> ports)
+        private boolean writePacket(Packet packet)
         {
-            for ( final IEventListener<List<String>> l : listeners )
+            final byte[] message = PacketEncoder.encodePacket(packet);
+            final Object event = JfrSupport.ENABLED ? PipelineEvents.beginWrite() : null;
+            final long start = System.nanoTime();
+            boolean written = false;
+            try
             {
-                l.onEvent(ports);
+                outputStream.write(message);
+                metrics.onPacketWritten(System.nanoTime() - start);
+                written = true;
             }
-        }
-
-        @Override
-        public void run()
-        {
-            log.debug("PortUpdater thread started.");
-
-            while ( !isInterrupted() )
+            catch ( final IOException e )
             {
-                synchronized ( ports )
-                {
-                    final List<String> ports = getPortNames();
-                    if ( ports.size() != this.ports.size() || !this.ports.containsAll(ports) )
-                    {
-                        this.ports = ports;
-                        distributeEvent(this.ports);
-                    }
-                }
-
-                try
-                {
-                    // update list every second
-                    sleep(1000);
-                }
-                catch ( final InterruptedException e )
-                {
-                    interrupt();
-                }
+                metrics.onWriteError();
+                onConnectionLost("Error while sending packet: " + packet);
             }
-
-            log.debug("PortUpdater thread stopped.");
+            if ( JfrSupport.ENABLED )
+            {
+                PipelineEvents.commitWrite(event, packet.type, message.length,
+                        packet.getQueuedTime() == 0 ? 0 : start - packet.getQueuedTime(), written);
+            }
+            return written;
         }
     }
 }
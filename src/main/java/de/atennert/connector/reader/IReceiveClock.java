@@ -0,0 +1,18 @@
+package de.atennert.connector.reader;
+
+/**
+ * Source of the receive times of the frames, that a {@link PacketDecoder}
+ * decodes. Without a clock the decoder uses the {@link SystemReceiveClock}. A
+ * replay uses a clock to give the packets the receive times of the recording.
+ */
+public interface IReceiveClock {
+
+    /**
+     * Called by the decoder thread for every complete frame.
+     *
+     * @param frameStart number of bytes, that the decoder took from the
+     *            receive queue before the sync byte of the frame
+     * @return the receive time of the frame in nanoseconds since the epoch
+     */
+    long getReceiveNanos( long frameStart );
+}
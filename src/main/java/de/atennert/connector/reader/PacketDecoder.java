@@ -1,9 +1,22 @@
 package de.atennert.connector.reader;
 
-import java.util.Calendar;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import de.atennert.connector.distribution.IRawFrameListener;
 import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.metrics.PacketTrace;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.metrics.jfr.JfrSupport;
+import de.atennert.connector.metrics.jfr.PipelineEvents;
 import de.atennert.connector.packets.IPacketFactory;
 import de.atennert.connector.packets.Packet;
 import org.slf4j.Logger;
@@ -36,6 +49,12 @@ public class PacketDecoder implements Runnable{
 	//}
 
     private static final Logger log = LoggerFactory.getLogger(PacketDecoder.class);
+
+    /** default time in milliseconds to wait for new data */
+    public static final long DEFAULT_WAIT_TIME = 500;
+
+    /** length of the sync byte, the header and the header checksum */
+    private static final int HEADER_LENGTH = 6;
     
 	private final BlockingQueue<Integer> messageByteQueue;
 	private final PacketDistributor distributor;
@@ -44,6 +63,33 @@ public class PacketDecoder implements Runnable{
 	private volatile boolean run;
 	
 	private IPacketFactory factory;
+
+	/** shared executor or <code>null</code> if the decoder uses its own thread */
+	private final ScheduledExecutorService executor;
+	private final WaitStrategy waitStrategy;
+	private final long waitTime;
+
+	private final PipelineMetrics metrics;
+
+	/** number of bytes taken from the queue, for finding the read time of a frame */
+	private long consumedBytes = 0;
+
+	/** set by {@link #readData()} if it dropped a frame, so decoding continues */
+	private boolean frameDropped = false;
+
+	/** listeners for raw frames, the array is replaced on every change */
+	private volatile IRawFrameListener[] rawFrameListeners = new IRawFrameListener[0];
+
+	/** source of the receive times */
+	private volatile IReceiveClock receiveClock = SystemReceiveClock.INSTANCE;
+
+	/** buffer for the current frame, only used if there are raw frame listeners */
+	private byte[] frameBuffer = new byte[64];
+	/** read-only view of the frame buffer for the raw frame listeners */
+	private ByteBuffer frameView = ByteBuffer.wrap(frameBuffer).asReadOnlyBuffer();
+
+	/** the scheduled decoding if the decoder sleeps on a shared executor */
+	private ScheduledFuture<?> scheduledDecoding;
 	
     /**
 	 * Registers the synchronized list and the evaluator.
@@ -52,16 +98,109 @@ public class PacketDecoder implements Runnable{
 	 * @param distributor
 	 */
 	public PacketDecoder(BlockingQueue<Integer> messageByteQueue, PacketDistributor distributor, IPacketFactory factory){
+		this(messageByteQueue, distributor, factory, null, WaitStrategy.SLEEPING, DEFAULT_WAIT_TIME,
+				new PipelineMetrics());
+	}
+
+	/**
+	 * Registers the synchronized list and the evaluator and sets how the
+	 * decoder waits for new data.
+	 *
+	 * @param messageByteQueue
+	 * @param distributor
+	 * @param factory
+	 * @param executor executor, that may be shared with other decoders, or
+	 *            <code>null</code> to let the decoder use its own thread
+	 * @param waitStrategy how to wait for new data
+	 * @param waitTime time in milliseconds to wait for new data
+	 * @param metrics the metrics of the connector
+	 */
+	public PacketDecoder(BlockingQueue<Integer> messageByteQueue, PacketDistributor distributor, IPacketFactory factory,
+			ScheduledExecutorService executor, WaitStrategy waitStrategy, long waitTime, PipelineMetrics metrics){
 		this.messageByteQueue = messageByteQueue;
 		this.distributor = distributor;
 		this.factory = factory;
+		this.executor = executor;
+		this.waitStrategy = waitStrategy;
+		this.waitTime = waitTime;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Start the decoding. Without a shared executor the decoder starts its
+	 * own thread. With a shared executor, a sleeping decoder is scheduled with
+	 * the wait time as delay, so it doesn't hold a thread while it waits. A
+	 * blocking decoder occupies one thread of the executor.
+	 */
+	public synchronized void start(){
+		run = true;
+		if (executor == null) {
+			new Thread(this).start();
+		} else if (waitStrategy == WaitStrategy.SLEEPING) {
+			log.debug("Consumer started");
+			scheduledDecoding = executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					decodeAvailableData();
+				}
+			}, waitTime, waitTime, TimeUnit.MILLISECONDS);
+		} else {
+			executor.execute(this);
+		}
 	}
 	
     /**
      * Method that allows to terminate the thread.
      */
-	public void stopThread(){
+	public synchronized void stopThread(){
 	    this.run = false;
+	    if (scheduledDecoding != null) {
+	        scheduledDecoding.cancel(false);
+	        scheduledDecoding = null;
+	        log.debug("Consumer stopped");
+	    }
+	}
+
+	/**
+	 * Add a listener for raw frames. It receives all frames with valid
+	 * checksums, also while the decoder is running.
+	 *
+	 * @param listener the raw frame listener
+	 */
+	public synchronized void addRawFrameListener(IRawFrameListener listener) {
+		final IRawFrameListener[] listeners = Arrays.copyOf(rawFrameListeners, rawFrameListeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+		rawFrameListeners = listeners;
+	}
+
+	/**
+	 * Remove a listener for raw frames.
+	 *
+	 * @param listener the raw frame listener
+	 */
+	public synchronized void removeRawFrameListener(IRawFrameListener listener) {
+		final List<IRawFrameListener> listeners = new ArrayList<>(Arrays.asList(rawFrameListeners));
+		if (listeners.remove(listener)) {
+			rawFrameListeners = listeners.toArray(new IRawFrameListener[listeners.size()]);
+		}
+	}
+
+	/**
+	 * Set the source of the receive times of the packets and raw frames, for
+	 * instance for a replay of recorded frames.
+	 *
+	 * @param clock the clock or <code>null</code> to use the
+	 *            {@link SystemReceiveClock}
+	 */
+	public void setReceiveClock(IReceiveClock clock) {
+		this.receiveClock = clock != null ? clock : SystemReceiveClock.INSTANCE;
+	}
+
+	/**
+	 * @return the factory, that creates the packets of the decoded frames
+	 */
+	public IPacketFactory getPacketFactory() {
+		return factory;
 	}
 
 	/**
@@ -74,35 +213,90 @@ public class PacketDecoder implements Runnable{
 		
 		log.debug("Consumer started");
 		while (run) {
-		    Packet packet;
-			try {
-				Thread.sleep(500);
-			} catch(InterruptedException e) { }
-			
-			while ((packet = readData()) != null){
-				distributor.distributePacket(packet);
+			if (waitStrategy == WaitStrategy.SLEEPING) {
+				try {
+					Thread.sleep(waitTime);
+				} catch(InterruptedException e) { }
 			}
+			
+			decodeAvailableData();
 		}
 		log.debug("Consumer stopped");
 	}
 
+	/**
+	 * Decode and distribute packets until there is no complete packet
+	 * available anymore. Errors of a single packet, for instance from an
+	 * extension factory or a rejected distribution, are logged and don't stop
+	 * the decoder. Dropped frames don't stop the decoder either.
+	 */
+	void decodeAvailableData() {
+	    boolean frameRead;
+		do {
+			frameRead = false;
+			try {
+				frameDropped = false;
+				final Packet packet = readData();
+				frameRead = frameDropped;
+				if (packet != null) {
+					frameRead = true;
+					distributor.distributePacket(packet);
+				}
+			} catch (RuntimeException e) {
+				// the frame was consumed, continue with the next one
+				frameRead = true;
+				metrics.onDecoderError();
+				log.error("Error while decoding or distributing a packet!", e);
+			}
+			metrics.onBytesConsumed(consumedBytes);
+		} while (frameRead);
+	}
+
+	/**
+	 * @return the next value from the queue or <code>null</code> if there is
+	 *         none, a blocking decoder waits at most the wait time for it
+	 */
+	private Integer nextValue() {
+		Integer value;
+		if (waitStrategy == WaitStrategy.BLOCKING) {
+			try {
+				value = messageByteQueue.poll(waitTime, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		} else {
+			value = messageByteQueue.poll();
+		}
+		if (value != null) {
+			consumedBytes++;
+		}
+		return value;
+	}
+
 	/**
 	 * Reads all currently available values from the list and puts
 	 * them in a map. Finishes when there are no more values or when
-	 * a data set is complete.
+	 * a data set is complete. Frames of types without packet listeners are
+	 * skipped after the header check, without building a packet.
 	 * 
-	 * @return packet type if data is complete otherwise -1
+	 * @return the packet if data is complete otherwise <code>null</code>
 	 */
     private Packet readData(){
-		Integer value = messageByteQueue.poll();
+		Integer value = nextValue();
 		
 		// get synchronization byte
 		boolean syncByteFound = false;
+		long frameStart = 0;
+		Object frameEvent = null;
 		while(value != null && !syncByteFound) {
 		    if (value.intValue() == 0x55)
 		        syncByteFound = true;
+		    frameStart = consumedBytes - 1;
+		    if (syncByteFound && JfrSupport.ENABLED)
+		        frameEvent = PipelineEvents.beginFrame();
 		    
-		    value = messageByteQueue.poll();
+		    value = nextValue();
 		}
 		
 		// read header {data length (2x), optional length, packet type, checksum}
@@ -110,7 +304,7 @@ public class PacketDecoder implements Runnable{
     	for (int i=0; i<header.length; i++){
     	    if (value != null){
     	        header[i] = value;
-                value = messageByteQueue.poll();
+                value = nextValue();
     		} else {
     		    return null;
     		}
@@ -121,40 +315,115 @@ public class PacketDecoder implements Runnable{
 	    for (int i=0; i<header.length-1; i++)
 	        checksum = CodingHelper.processCRC8(checksum, header[i]);
 	    if ((checksum & 0xFF) != header[4]){
+	        metrics.onHeaderCrcFailure();
+	        frameDropped = true;
 	        return null;
 	    }
-		    
-    	// get data
-    	int[] data = new int[(header[0] << 2) + header[1]];
-    	for (int i=0; i<data.length; i++){
-            if (value != null){
-                data[i] = value;
-                value = messageByteQueue.poll();
-            } else {
-                return null;
-            }
-    	}
-    	
-    	// get optional
-        int[] optional = new int[header[2]];
-        for (int i=0; i<optional.length; i++){
-            if (value != null){
-                optional[i] = value;
-                value = messageByteQueue.poll();
-            } else {
-                return null;
-            }
-        }
+
+	    final int dataLength = (header[0] << 8) + header[1];
+	    final int payloadLength = dataLength + header[2];
+	    final boolean typed = distributor.hasListeners(header[3]);
+	    final IRawFrameListener[] frameListeners = rawFrameListeners;
+
+	    // skip data, optional data and checksum if nobody wants the frame
+	    if (!typed && frameListeners.length == 0){
+	        for (int i=0; i<payloadLength; i++){
+	            if (value == null){
+	                return null;
+	            }
+	            value = nextValue();
+	        }
+	        if (value == null){
+	            return null;
+	        }
+	        metrics.onFrameUnsubscribed();
+	        frameDropped = true;
+	        return null;
+	    }
+
+	    // get data and optional, the arrays are only needed for packets
+	    final int[] data = new int[typed ? dataLength : 0];
+	    final int[] optional = new int[typed ? header[2] : 0];
+	    final byte[] frame = frameListeners.length > 0 ? prepareFrame(HEADER_LENGTH + payloadLength + 1, header) : null;
+	    checksum = 0;
+	    for (int i=0; i<payloadLength; i++){
+	        if (value == null){
+	            return null;
+	        }
+	        checksum = CodingHelper.processCRC8(checksum, value);
+	        if (typed){
+	            if (i < dataLength)
+	                data[i] = value;
+	            else
+	                optional[i - dataLength] = value;
+	        }
+	        if (frame != null)
+	            frame[HEADER_LENGTH + i] = (byte) value.intValue();
+	        value = nextValue();
+	    }
         
         if (value == null){
             return null;
         }
         
         // check payload
-        checksum = CodingHelper.calculatePayloadChecksum(data, optional);
         boolean dataValid = (checksum & 0xFF) == value;
+        metrics.onFrameDecoded(dataValid);
+        if (JfrSupport.ENABLED)
+            PipelineEvents.commitFrame(frameEvent, header[3], payloadLength, dataValid);
+        final long receiveNanos = receiveClock.getReceiveNanos(frameStart);
+        final long timestamp = TimeUnit.NANOSECONDS.toMillis(receiveNanos);
+
+        if (frame != null && dataValid){
+            frame[HEADER_LENGTH + payloadLength] = (byte) value.intValue();
+            distributeFrame(frameListeners, HEADER_LENGTH + payloadLength + 1, timestamp, receiveNanos);
+        }
+        if (!typed){
+            frameDropped = true;
+            return null;
+        }
+        final PacketTrace trace = metrics.onFrameComplete(frameStart);
 
         // put data in packet and return it
-		return factory.createPacket(header[3], data, optional, Calendar.getInstance().getTime(), dataValid);
+		final Packet packet = factory.createPacket(header[3], data, optional, new Date(timestamp), dataValid);
+		metrics.onPacketBuilt(trace);
+		packet.setTrace(trace);
+		return packet;
+	}
+
+	/**
+	 * @param length length of the frame
+	 * @param header header of the frame
+	 * @return the frame buffer with the sync byte and the header, it is
+	 *         enlarged if it is shorter than the frame
+	 */
+	private byte[] prepareFrame(int length, int[] header) {
+		if (frameBuffer.length < length) {
+			frameBuffer = new byte[Math.max(length, 2 * frameBuffer.length)];
+			frameView = ByteBuffer.wrap(frameBuffer).asReadOnlyBuffer();
+		}
+		frameBuffer[0] = 0x55;
+		for (int i=0; i<header.length; i++)
+			frameBuffer[1 + i] = (byte) header[i];
+		return frameBuffer;
+	}
+
+	/**
+	 * Hand a frame to the raw frame listeners. Every listener gets the view
+	 * from position 0 to the end of the frame.
+	 */
+	private void distributeFrame(IRawFrameListener[] listeners, int length, long timestamp, long receiveNanos) {
+		// called through Buffer, ByteBuffer overrides these methods since Java 9
+		final Buffer view = frameView;
+		for (final IRawFrameListener listener : listeners) {
+			view.limit(length);
+			view.position(0);
+			try {
+				listener.receiveFrame(frameView, timestamp, receiveNanos);
+			} catch (RuntimeException e) {
+				metrics.onDecoderError();
+				log.error("Error in raw frame listener!", e);
+			}
+		}
 	}
 }
@@ -2,19 +2,23 @@ package de.atennert.connector.reader;
 
 import de.atennert.connector.packets.Packet;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class provides methods to encode instances of {@link Packet} into byte
- * messages for sending them away using an EnOcean transceiver.
+ * messages for sending them away using an EnOcean transceiver. It can also be
+ * used to create ESP3 byte streams for other transports, for instance for
+ * tests and simulations.
  * 
  * @author Andreas Tennert
  */
-final class PacketEncoder {
+public final class PacketEncoder {
 
     /**
      * @param packet a packet representing an EnOcean message
      * @return the byte code for the given packet
      */
-    static byte[] encodePacket( Packet packet ) {
+    public static byte[] encodePacket( Packet packet ) {
         final int[] data = packet.getData();
         final int[] optional = packet.getOptional();
         final int type = packet.type;
@@ -23,7 +27,7 @@ final class PacketEncoder {
         packetMessage[0] = 0x55; // synchronization byte
 
         /* create message header */
-        packetMessage[1] = (byte) ( ( data.length & 0xFF00 ) >> 2 ); // data
+        packetMessage[1] = (byte) ( ( data.length & 0xFF00 ) >> 8 ); // data
                                                                      // length
                                                                      // part 1
         packetMessage[2] = (byte) ( data.length & 0xFF ); // data length part 2
@@ -31,7 +35,7 @@ final class PacketEncoder {
         packetMessage[4] = (byte) ( type & 0xFF ); // message type
         int checksum = 0;
         for( int i = 1; i < 5; i++ ) {
-            checksum = CodingHelper.processCRC8( checksum, packetMessage[i] );
+            checksum = CodingHelper.processCRC8( checksum, packetMessage[i] & 0xFF );
         }
         packetMessage[5] = (byte) ( checksum & 0xFF ); // header checksum
 
@@ -48,6 +52,20 @@ final class PacketEncoder {
         return packetMessage;
     }
 
+    /**
+     * @param bytes buffer with the bytes
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return the ESP3 checksum (CRC8) of the bytes
+     */
+    public static int checksum( ByteBuffer bytes, int offset, int length ) {
+        int checksum = 0;
+        for( int i = offset; i < offset + length; i++ ) {
+            checksum = CodingHelper.processCRC8( checksum, bytes.get( i ) & 0xFF );
+        }
+        return checksum;
+    }
+
     private PacketEncoder() {
         // create instances of this class
     }
@@ -0,0 +1,326 @@
+package de.atennert.connector.reader;
+
+import gnu.io.CommPortIdentifier;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import de.atennert.connector.distribution.IDistributor;
+import de.atennert.connector.distribution.IEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps the list of available serial ports up to date and forwards
+ * changes to registered port listeners.<br>
+ * <br>
+ * If the device directory (<code>/dev</code>) can be watched, the serial ports
+ * are only enumerated after a device appeared or disappeared. Otherwise the
+ * serial ports are enumerated periodically. The last enumerated list of ports
+ * is cached and can be used without enumerating the ports again. An instance
+ * can be shared by multiple {@link ComConnector}s.
+ */
+public class PortDiscovery implements IDistributor<List<String>>
+{
+    /** default time in milliseconds between two enumerations if the device directory can't be watched */
+    public static final long DEFAULT_POLL_INTERVAL = 1000;
+
+    /** time in milliseconds to wait for related device events before enumerating */
+    private static final long SETTLE_TIME = 50;
+
+    private static final Logger log = LoggerFactory.getLogger(PortDiscovery.class);
+
+    /** enumeration of the serial ports by RXTX */
+    private static final Supplier<List<String>> SERIAL_PORTS = new Supplier<List<String>>()
+    {
+        @Override
+        public List<String> get()
+        {
+            return enumeratePorts();
+        }
+    };
+
+    private final Path deviceDirectory;
+    private final long pollInterval;
+
+    /** source of the currently available ports */
+    private final Supplier<List<String>> portEnumeration;
+
+    /** list of port listeners */
+    private final List<IEventListener<List<String>>> listeners = new ArrayList<>();
+
+    /** list of currently available ports, it is replaced on changes */
+    private volatile List<String> ports = Collections.emptyList();
+
+    private Thread discoveryThread;
+
+    /**
+     * Create a port discovery, that watches <code>/dev</code> or enumerates the
+     * ports every second.
+     */
+    public PortDiscovery()
+    {
+        this(Paths.get("/dev"), DEFAULT_POLL_INTERVAL);
+    }
+
+    /**
+     * @param deviceDirectory directory in which serial devices appear
+     * @param pollInterval time in milliseconds between two enumerations if the
+     *            device directory can't be watched
+     */
+    public PortDiscovery(Path deviceDirectory, long pollInterval)
+    {
+        this(deviceDirectory, pollInterval, SERIAL_PORTS);
+    }
+
+    /**
+     * @param deviceDirectory directory in which serial devices appear
+     * @param pollInterval time in milliseconds between two enumerations if the
+     *            device directory can't be watched
+     * @param portEnumeration returns the currently available ports
+     */
+    PortDiscovery(Path deviceDirectory, long pollInterval, Supplier<List<String>> portEnumeration)
+    {
+        this.deviceDirectory = deviceDirectory;
+        this.pollInterval = pollInterval;
+        this.portEnumeration = portEnumeration;
+    }
+
+    /**
+     * Start the discovery of serial ports. Nothing happens if it is already
+     * running.
+     */
+    public synchronized void start()
+    {
+        if ( discoveryThread != null )
+        {
+            return;
+        }
+
+        discoveryThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                discover();
+            }
+        }, "PortDiscovery");
+        discoveryThread.setDaemon(true);
+        discoveryThread.start();
+    }
+
+    /**
+     * Stop the discovery of serial ports.
+     */
+    public synchronized void stop()
+    {
+        if ( discoveryThread != null )
+        {
+            discoveryThread.interrupt();
+            discoveryThread = null;
+        }
+    }
+
+    @Override
+    public void addListener(IEventListener<List<String>> listener)
+    {
+        synchronized ( listeners )
+        {
+            listeners.add(listener);
+            listener.onEvent(ports);
+        }
+    }
+
+    @Override
+    public void removeListener(IEventListener<List<String>> listener)
+    {
+        synchronized ( listeners )
+        {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * @return the cached list of available serial ports
+     */
+    public List<String> getPorts()
+    {
+        return ports;
+    }
+
+    /**
+     * Enumerate the serial ports and inform the port listeners if the ports
+     * changed.
+     *
+     * @return the current list of available serial ports
+     */
+    public List<String> refresh()
+    {
+        final List<String> newPorts = Collections.unmodifiableList(new ArrayList<>(portEnumeration.get()));
+        synchronized ( listeners )
+        {
+            if ( newPorts.size() != ports.size() || !ports.containsAll(newPorts) )
+            {
+                ports = newPorts;
+                for ( final IEventListener<List<String>> l : listeners )
+                {
+                    l.onEvent(ports);
+                }
+            }
+            return ports;
+        }
+    }
+
+    /**
+     * @return all currently available serial ports
+     */
+    private static List<String> enumeratePorts()
+    {
+        final List<String> portNames = new ArrayList<>();
+
+        @SuppressWarnings("rawtypes")
+        final Enumeration enumComm = CommPortIdentifier.getPortIdentifiers();
+        while ( enumComm.hasMoreElements() )
+        {
+            portNames.add(( (CommPortIdentifier)enumComm.nextElement() ).getName());
+        }
+
+        return portNames;
+    }
+
+    /**
+     * Thread loop, that either watches the device directory or polls the
+     * serial ports.
+     */
+    private void discover()
+    {
+        log.debug("PortDiscovery thread started.");
+
+        // register the watch first to not miss any changes
+        final WatchService watchService = openWatchService();
+        refresh();
+
+        if ( watchService == null )
+        {
+            log.debug("Unable to watch " + deviceDirectory + ", polling serial ports.");
+            poll();
+        }
+        else
+        {
+            try
+            {
+                watch(watchService);
+            }
+            finally
+            {
+                try
+                {
+                    watchService.close();
+                }
+                catch ( final IOException e )
+                {
+                    log.error(e.getMessage());
+                }
+            }
+        }
+
+        log.debug("PortDiscovery thread stopped.");
+    }
+
+    /**
+     * @return a watch service for the device directory or <code>null</code> if
+     *         the directory can't be watched efficiently
+     */
+    private WatchService openWatchService()
+    {
+        if ( !Files.isDirectory(deviceDirectory) )
+        {
+            return null;
+        }
+        WatchService watchService = null;
+        try
+        {
+            watchService = deviceDirectory.getFileSystem().newWatchService();
+            // the JDK fallback implementation polls slower than we do
+            if ( !"PollingWatchService".equals(watchService.getClass().getSimpleName()) )
+            {
+                deviceDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                return watchService;
+            }
+        }
+        catch ( final IOException | UnsupportedOperationException e )
+        {
+            log.debug(e.getMessage());
+        }
+
+        if ( watchService != null )
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch ( final IOException e )
+            {
+                log.error(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void watch(WatchService watchService)
+    {
+        try
+        {
+            while ( !Thread.currentThread().isInterrupted() )
+            {
+                final WatchKey key = watchService.take();
+
+                // a device usually creates several entries at once
+                Thread.sleep(SETTLE_TIME);
+                key.pollEvents();
+                final boolean valid = key.reset();
+
+                refresh();
+
+                if ( !valid )
+                {
+                    log.warn("Lost watch on " + deviceDirectory + ", polling serial ports.");
+                    poll();
+                    return;
+                }
+            }
+        }
+        catch ( final InterruptedException | ClosedWatchServiceException e )
+        {
+            // discovery was stopped
+        }
+    }
+
+    private void poll()
+    {
+        try
+        {
+            while ( !Thread.currentThread().isInterrupted() )
+            {
+                Thread.sleep(pollInterval);
+                refresh();
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            // discovery was stopped
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package de.atennert.connector.reader;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import de.atennert.connector.packets.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffer for packets, that can't be sent while the connection to the EnOcean
+ * transceiver is lost. It keeps at most a fixed number of packets and drops
+ * the oldest packet when it is full. Packets that are older than the time to
+ * live are dropped instead of being sent after the connection was restored.<br>
+ * <br>
+ * The buffer is only used by the writer of the {@link ComConnector} and is not
+ * thread safe.
+ */
+public class SendBuffer
+{
+    /** default maximum number of buffered packets */
+    public static final int DEFAULT_CAPACITY = 100;
+
+    /** default time in milliseconds until a buffered packet is dropped */
+    public static final long DEFAULT_TIME_TO_LIVE = 30000;
+
+    private static final Logger log = LoggerFactory.getLogger(SendBuffer.class);
+
+    private final int capacity;
+    private final long timeToLive;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * Create a buffer with the default capacity and time to live.
+     */
+    public SendBuffer()
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param capacity maximum number of buffered packets
+     * @param timeToLive time in milliseconds until a buffered packet is dropped
+     */
+    public SendBuffer(int capacity, long timeToLive)
+    {
+        if ( capacity < 1 || timeToLive < 1 )
+        {
+            throw new IllegalArgumentException("Capacity and time to live of the send buffer must be positive!");
+        }
+        this.capacity = capacity;
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    }
+
+    /**
+     * Add a packet to the buffer. If the buffer is full, the oldest packet is
+     * dropped.
+     *
+     * @param packet the packet to buffer
+     * @param now the current time in nanoseconds ({@link System#nanoTime()})
+     */
+    void add(Packet packet, long now)
+    {
+        if ( entries.size() == capacity )
+        {
+            log.warn("Send buffer is full, dropping packet: " + entries.pollFirst().packet);
+        }
+        entries.addLast(new Entry(packet, now));
+    }
+
+    /**
+     * Return the oldest packet that didn't expire yet without removing it.
+     * Expired packets are dropped.
+     *
+     * @param now the current time in nanoseconds ({@link System#nanoTime()})
+     * @return the oldest valid packet or <code>null</code> if there is none
+     */
+    Packet peek(long now)
+    {
+        Entry entry;
+        while ( ( entry = entries.peekFirst() ) != null )
+        {
+            if ( now - entry.time <= timeToLive )
+            {
+                return entry.packet;
+            }
+            entries.pollFirst();
+            log.warn("Packet expired in send buffer: " + entry.packet);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the oldest packet, for instance after it was sent.
+     */
+    void remove()
+    {
+        entries.pollFirst();
+    }
+
+    /**
+     * @return <code>true</code> if there are no buffered packets
+     */
+    boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the number of buffered packets, including expired ones
+     */
+    int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * A buffered packet and the time when it was buffered.
+     */
+    private static final class Entry
+    {
+        private final Packet packet;
+        private final long time;
+
+        private Entry(Packet packet, long time)
+        {
+            this.packet = packet;
+            this.time = time;
+        }
+    }
+}
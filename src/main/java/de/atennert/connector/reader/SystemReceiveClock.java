@@ -0,0 +1,36 @@
+package de.atennert.connector.reader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receive clock of the decoders, that have no other clock. It is the system
+ * time at the start plus the time, that elapsed since then, measured with
+ * {@link System#nanoTime()}. So it has nanosecond resolution and doesn't go
+ * backwards, when the system time is set back. All decoders share the clock,
+ * so the frames of several connectors get comparable receive times.
+ */
+public final class SystemReceiveClock implements IReceiveClock {
+
+    /** the clock of the decoders */
+    public static final SystemReceiveClock INSTANCE = new SystemReceiveClock();
+
+    private final long epochNanosAtStart;
+    private final long nanoTimeAtStart;
+
+    private SystemReceiveClock() {
+        nanoTimeAtStart = System.nanoTime();
+        epochNanosAtStart = TimeUnit.MILLISECONDS.toNanos( System.currentTimeMillis() );
+    }
+
+    /**
+     * @return the current time in nanoseconds since the epoch
+     */
+    public long currentTimeNanos() {
+        return epochNanosAtStart + (System.nanoTime() - nanoTimeAtStart);
+    }
+
+    @Override
+    public long getReceiveNanos( long frameStart ) {
+        return currentTimeNanos();
+    }
+}
@@ -0,0 +1,20 @@
+package de.atennert.connector.reader;
+
+/**
+ * Defines how the {@link PacketDecoder} and the writer of the
+ * {@link ComConnector} wait for new data in their queues.
+ */
+public enum WaitStrategy {
+    /**
+     * Sleep for the wait time and then process everything that arrived in
+     * the meantime. If the decoder has a shared executor, it doesn't need a
+     * thread of its own while it waits.
+     */
+    SLEEPING,
+    /**
+     * Block on the queue for at most the wait time and process the data as
+     * soon as it arrives. This has the lowest latency but needs a thread per
+     * decoder and writer.
+     */
+    BLOCKING
+}
@@ -0,0 +1,303 @@
+package de.atennert.connector.security;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Security state of one device: its key, the security level format and the
+ * last rolling code, that was accepted. Secure telegrams are verified with
+ * AES-CMAC over R-ORG, encrypted data and rolling code and decrypted with
+ * VAES: the rolling code XOR a public key is encrypted with the device key and
+ * XORed with the data.<br>
+ * <br>
+ * The AES cipher of the device is created once with the device key, together
+ * with the CMAC subkeys and buffers for the blocks. All of them are only used
+ * while holding the lock of the device, which also keeps the check and the
+ * update of the rolling code atomic.
+ */
+final class SecureDevice {
+
+    /** the telegram was verified, the data was decrypted */
+    static final int DECRYPTED = 0;
+    /** the rolling code was already used or is too far ahead */
+    static final int REPLAYED = 1;
+    /** the CMAC doesn't match for any accepted rolling code */
+    static final int NOT_AUTHENTIC = 2;
+
+    private static final int BLOCK = 16;
+
+    /** public key of VAES */
+    private static final byte[] PUBLIC_KEY = { 0x34, 0x10, (byte) 0xDE, (byte) 0x8F, 0x1A, (byte) 0xBA, 0x3E,
+            (byte) 0xFF, (byte) 0x9F, 0x5A, 0x11, 0x71, 0x72, (byte) 0xEA, (byte) 0xCA, (byte) 0xBD };
+
+    private final int rollingCodeLength;
+    private final boolean rollingCodeTransmitted;
+    private final int macLength;
+    private final boolean encrypted;
+    private final int window;
+    private final long rollingCodeMask;
+
+    private long rollingCode;
+
+    private final Cipher cipher;
+    private final byte[] k1 = new byte[BLOCK];
+    private final byte[] k2 = new byte[BLOCK];
+    /** R-ORG, encrypted data and rolling code */
+    private final byte[] message = new byte[2 * BLOCK + 8];
+    private final byte[] block = new byte[BLOCK];
+    private final byte[] result = new byte[BLOCK];
+
+    /**
+     * @param key the AES-128 key of the device
+     * @param slf the security level format of the device
+     * @param rollingCode the last rolling code of the device
+     * @param window number of rolling codes after the last one, that are
+     *            accepted
+     */
+    SecureDevice( byte[] key, int slf, long rollingCode, int window ) {
+        if (key == null || key.length != BLOCK) {
+            throw new IllegalArgumentException( "The key of a secure device must have 16 bytes!" );
+        }
+        rollingCodeLength = (slf & SecurityKeyStore.SLF_RLC_MASK) >>> 6 == 0 ? 0
+                : ((slf & SecurityKeyStore.SLF_RLC_MASK) >>> 6) + 1;
+        rollingCodeTransmitted = (slf & SecurityKeyStore.SLF_RLC_TX) != 0;
+        final int mac = slf & SecurityKeyStore.SLF_MAC_MASK;
+        macLength = mac == SecurityKeyStore.SLF_MAC_3 ? 3 : mac == SecurityKeyStore.SLF_MAC_4 ? 4 : 0;
+        final int encryption = slf & SecurityKeyStore.SLF_ENC_MASK;
+        if (rollingCodeLength == 0 || macLength == 0 || (encryption != SecurityKeyStore.SLF_ENC_NONE
+                && encryption != SecurityKeyStore.SLF_ENC_VAES)) {
+            throw new IllegalArgumentException( "Only secure telegrams with rolling code, CMAC and VAES or no "
+                    + "encryption are supported!" );
+        }
+        encrypted = encryption == SecurityKeyStore.SLF_ENC_VAES;
+        this.window = window;
+        rollingCodeMask = rollingCodeLength == 4 ? 0xFFFFFFFFL : (1L << (8 * rollingCodeLength)) - 1;
+        this.rollingCode = rollingCode & rollingCodeMask;
+
+        try {
+            cipher = Cipher.getInstance( "AES/ECB/NoPadding" );
+            cipher.init( Cipher.ENCRYPT_MODE, new SecretKeySpec( key, "AES" ) );
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException( "AES isn't available!", e );
+        }
+        // CMAC subkeys from the encrypted zero block
+        encrypt( new byte[BLOCK], result );
+        shiftLeft( result, k1 );
+        shiftLeft( k1, k2 );
+    }
+
+    /**
+     * @return the number of bytes, that the rolling code and the CMAC add to
+     *         the data of a telegram
+     */
+    int getOverhead() {
+        return (rollingCodeTransmitted ? rollingCodeLength : 0) + macLength;
+    }
+
+    /**
+     * @return <code>true</code> if the data is encrypted with VAES
+     */
+    boolean isEncrypted() {
+        return encrypted;
+    }
+
+    synchronized long getRollingCode() {
+        return rollingCode;
+    }
+
+    synchronized void setRollingCode( long rollingCode ) {
+        this.rollingCode = rollingCode & rollingCodeMask;
+    }
+
+    /**
+     * Verify and decrypt the data of a secure telegram. The rolling code of
+     * the device is only updated, if the telegram is authentic.
+     *
+     * @param data data of the radio telegram: R-ORG, encrypted data, rolling
+     *            code if it is transmitted, CMAC, sender ID and status
+     * @param length length of the encrypted data
+     * @param plain receives the decrypted data
+     * @param offset position of the decrypted data in the array
+     * @return {@link #DECRYPTED}, {@link #REPLAYED} or {@link #NOT_AUTHENTIC}
+     */
+    synchronized int decode( int[] data, int length, int[] plain, int offset ) {
+        int position = 0;
+        for (int i = 0; i <= length; i++) {
+            message[position++] = (byte) data[i];
+        }
+        final int macOffset = length + 1 + (rollingCodeTransmitted ? rollingCodeLength : 0);
+
+        long accepted = -1;
+        if (rollingCodeTransmitted) {
+            long received = 0;
+            for (int i = length + 1; i < macOffset; i++) {
+                received = received << 8 | data[i] & 0xFF;
+            }
+            final long distance = (received - rollingCode) & rollingCodeMask;
+            if (distance == 0 || distance > window) {
+                return REPLAYED;
+            }
+            if (macMatches( position, received, data, macOffset )) {
+                accepted = received;
+            }
+        } else {
+            // the receiver has to find the rolling code, that the CMAC was calculated with
+            for (int i = 1; i <= window && accepted < 0; i++) {
+                final long candidate = (rollingCode + i) & rollingCodeMask;
+                if (macMatches( position, candidate, data, macOffset )) {
+                    accepted = candidate;
+                }
+            }
+        }
+        if (accepted < 0) {
+            return NOT_AUTHENTIC;
+        }
+        rollingCode = accepted;
+
+        if (encrypted) {
+            keyStream( accepted );
+            for (int i = 0; i < length; i++) {
+                plain[offset + i] = (data[1 + i] ^ result[i]) & 0xFF;
+            }
+        } else {
+            System.arraycopy( data, 1, plain, offset, length );
+        }
+        return DECRYPTED;
+    }
+
+    /**
+     * Create a secure telegram, for instance for tests and simulations of
+     * secure devices.
+     *
+     * @param data data of a radio telegram: R-ORG, user data, sender ID and
+     *            status
+     * @param rollingCode the rolling code of the telegram
+     * @param encapsulated <code>true</code> to encrypt the R-ORG with the
+     *            user data, <code>false</code> to replace it by
+     *            {@link SecureTelegramFactory#RORG_SEC}
+     * @return the data of the secure telegram
+     */
+    synchronized int[] encode( int[] data, long rollingCode, boolean encapsulated ) {
+        final long code = rollingCode & rollingCodeMask;
+        final int start = encapsulated ? 0 : 1;
+        final int length = data.length - 5 - start;
+        if (length > BLOCK) {
+            throw new IllegalArgumentException( "Only 16 bytes of data can be encrypted!" );
+        }
+        final int[] secure = new int[1 + length + getOverhead() + 5];
+        secure[0] = encapsulated ? SecureTelegramFactory.RORG_SEC_ENCAPS : SecureTelegramFactory.RORG_SEC;
+        if (encrypted) {
+            keyStream( code );
+        }
+        for (int i = 0; i < length; i++) {
+            secure[1 + i] = (data[start + i] ^ (encrypted ? result[i] : 0)) & 0xFF;
+        }
+        int position = length + 1;
+        if (rollingCodeTransmitted) {
+            for (int i = rollingCodeLength - 1; i >= 0; i--) {
+                secure[position++] = (int) (code >>> (8 * i)) & 0xFF;
+            }
+        }
+        int messageLength = 0;
+        for (int i = 0; i <= length; i++) {
+            message[messageLength++] = (byte) secure[i];
+        }
+        cmac( appendRollingCode( messageLength, code ) );
+        for (int i = 0; i < macLength; i++) {
+            secure[position++] = result[i] & 0xFF;
+        }
+        System.arraycopy( data, start + length, secure, position, 5 );
+        return secure;
+    }
+
+    /**
+     * @param input at most 40 bytes
+     * @return the AES-CMAC of the bytes with the key of the device
+     */
+    synchronized byte[] mac( byte[] input ) {
+        System.arraycopy( input, 0, message, 0, input.length );
+        cmac( input.length );
+        return result.clone();
+    }
+
+    private boolean macMatches( int messageLength, long code, int[] data, int macOffset ) {
+        cmac( appendRollingCode( messageLength, code ) );
+        for (int i = 0; i < macLength; i++) {
+            if ((result[i] & 0xFF) != data[macOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the length of the message with the rolling code
+     */
+    private int appendRollingCode( int messageLength, long code ) {
+        for (int i = rollingCodeLength - 1; i >= 0; i--) {
+            message[messageLength++] = (byte) (code >>> (8 * i));
+        }
+        return messageLength;
+    }
+
+    /**
+     * AES-CMAC (RFC 4493) of the message, the result is in {@link #result}.
+     */
+    private void cmac( int length ) {
+        final int blocks = length == 0 ? 1 : (length + BLOCK - 1) / BLOCK;
+        final boolean complete = length > 0 && length % BLOCK == 0;
+        Arrays.fill( result, (byte) 0 );
+        for (int b = 0; b < blocks; b++) {
+            final int offset = b * BLOCK;
+            for (int i = 0; i < BLOCK; i++) {
+                final int position = offset + i;
+                int value;
+                if (position < length) {
+                    value = message[position];
+                } else {
+                    value = position == length ? 0x80 : 0;
+                }
+                if (b == blocks - 1) {
+                    value ^= complete ? k1[i] : k2[i];
+                }
+                block[i] = (byte) (result[i] ^ value);
+            }
+            encrypt( block, result );
+        }
+    }
+
+    /**
+     * VAES key stream of a rolling code, the result is in {@link #result}.
+     */
+    private void keyStream( long code ) {
+        System.arraycopy( PUBLIC_KEY, 0, block, 0, BLOCK );
+        for (int i = 0; i < rollingCodeLength; i++) {
+            block[i] ^= (byte) (code >>> (8 * (rollingCodeLength - 1 - i)));
+        }
+        encrypt( block, result );
+    }
+
+    private void encrypt( byte[] input, byte[] output ) {
+        try {
+            cipher.update( input, 0, BLOCK, output, 0 );
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException( "The AES block buffer is too short!", e );
+        }
+    }
+
+    private static void shiftLeft( byte[] input, byte[] output ) {
+        int carry = 0;
+        for (int i = BLOCK - 1; i >= 0; i--) {
+            final int value = input[i] & 0xFF;
+            output[i] = (byte) (value << 1 | carry);
+            carry = value >>> 7;
+        }
+        if ((input[0] & 0x80) != 0) {
+            output[BLOCK - 1] ^= (byte) 0x87;
+        }
+    }
+}
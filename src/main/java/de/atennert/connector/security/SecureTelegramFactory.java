@@ -0,0 +1,145 @@
+package de.atennert.connector.security;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import de.atennert.connector.metrics.Counter;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.IPacketFactory;
+import de.atennert.connector.packets.Packet;
+
+/**
+ * Packet factory, that verifies and decrypts secure radio telegrams (R-ORG
+ * {@link #RORG_SEC} and {@link #RORG_SEC_ENCAPS}) of the devices in a
+ * {@link SecurityKeyStore}, before the packets are created by another
+ * factory. The connector puts it in front of its packet factory, if it has a
+ * key store. Decrypted telegrams are created as normal radio packets:
+ * <ul>
+ * <li>with R-ORG encapsulation, with the R-ORG from the decrypted data</li>
+ * <li>without R-ORG encapsulation, with R-ORG {@link #RORG_SECD}</li>
+ * </ul>
+ * The rolling code and the CMAC are removed and the security level of the
+ * optional data is set to {@link #SECURITY_AUTHENTICATED} or
+ * {@link #SECURITY_DECRYPTED_AUTHENTICATED}.<br>
+ * <br>
+ * Secure telegrams of unknown senders are created unchanged. Telegrams with a
+ * used rolling code or a wrong CMAC are created unchanged as invalid packets,
+ * this includes the same telegram received by a second gateway. The results
+ * are counted in the metrics.
+ */
+public class SecureTelegramFactory implements IPacketFactory {
+
+    /** secure telegram without R-ORG encapsulation */
+    public static final int RORG_SEC = 0x30;
+    /** secure telegram with R-ORG encapsulation */
+    public static final int RORG_SEC_ENCAPS = 0x31;
+    /** decrypted secure telegram without R-ORG encapsulation */
+    public static final int RORG_SECD = 0x32;
+
+    /** security level of the optional data of an authenticated telegram */
+    public static final int SECURITY_AUTHENTICATED = 3;
+    /** security level of the optional data of a decrypted and authenticated telegram */
+    public static final int SECURITY_DECRYPTED_AUTHENTICATED = 4;
+
+    /** secure telegrams, that were verified and decrypted */
+    public static final String DECRYPTED = "security.decrypted";
+    /** secure telegrams with a used rolling code */
+    public static final String REPLAYED = "security.replayed";
+    /** secure telegrams with a wrong CMAC or invalid length */
+    public static final String NOT_AUTHENTIC = "security.notAuthentic";
+    /** secure telegrams of senders without key */
+    public static final String UNKNOWN_SENDERS = "security.unknownSenders";
+
+    /** sender ID and status */
+    private static final int SENDER_AND_STATUS = 5;
+    /** largest number of bytes, that are encrypted with one VAES block */
+    private static final int MAX_DATA = 16;
+    /** position of the security level in the optional data */
+    private static final int SECURITY_LEVEL = 6;
+
+    private final IPacketFactory factory;
+    private final SecurityKeyStore keys;
+
+    private final Counter decrypted;
+    private final Counter replayed;
+    private final Counter notAuthentic;
+    private final Counter unknownSenders;
+
+    /**
+     * @param factory factory for creating the packets
+     * @param keys keys of the secure devices
+     */
+    public SecureTelegramFactory( IPacketFactory factory, SecurityKeyStore keys ) {
+        this( factory, keys, new MetricsRegistry() );
+    }
+
+    /**
+     * @param factory factory for creating the packets
+     * @param keys keys of the secure devices
+     * @param registry registry for the security metrics
+     */
+    public SecureTelegramFactory( IPacketFactory factory, SecurityKeyStore keys, MetricsRegistry registry ) {
+        if (factory == null || keys == null) {
+            throw new IllegalArgumentException( "A packet factory and a key store are required!" );
+        }
+        this.factory = factory;
+        this.keys = keys;
+        decrypted = registry.counter( DECRYPTED );
+        replayed = registry.counter( REPLAYED );
+        notAuthentic = registry.counter( NOT_AUTHENTIC );
+        unknownSenders = registry.counter( UNKNOWN_SENDERS );
+    }
+
+    @Override
+    public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+        if (type != IPacketConstants.TYPE_RADIO || !isValid || data.length < 1 + SENDER_AND_STATUS
+                || (data[0] != RORG_SEC && data[0] != RORG_SEC_ENCAPS)) {
+            return factory.createPacket( type, data, optional, timestamp, isValid );
+        }
+        final int senderOffset = data.length - SENDER_AND_STATUS;
+        final int sender = data[senderOffset] << 24 | data[senderOffset + 1] << 16 | data[senderOffset + 2] << 8
+                | data[senderOffset + 3];
+        final SecureDevice device = keys.getDevice( sender );
+        if (device == null) {
+            unknownSenders.increment();
+            return factory.createPacket( type, data, optional, timestamp, isValid );
+        }
+
+        final boolean encapsulated = data[0] == RORG_SEC_ENCAPS;
+        final int length = senderOffset - 1 - device.getOverhead();
+        if (length < (encapsulated ? 1 : 0) || length > MAX_DATA) {
+            notAuthentic.increment();
+            return factory.createPacket( type, data, optional, timestamp, false );
+        }
+        // R-ORG, decrypted data, sender ID and status, the encapsulated R-ORG is part of the data
+        final int offset = encapsulated ? 0 : 1;
+        final int[] plain = new int[offset + length + SENDER_AND_STATUS];
+        final int result = device.decode( data, length, plain, offset );
+        if (result != SecureDevice.DECRYPTED) {
+            if (result == SecureDevice.REPLAYED) {
+                replayed.increment();
+            } else {
+                notAuthentic.increment();
+            }
+            return factory.createPacket( type, data, optional, timestamp, false );
+        }
+        decrypted.increment();
+        if (!encapsulated) {
+            plain[0] = RORG_SECD;
+        }
+        System.arraycopy( data, senderOffset, plain, offset + length, SENDER_AND_STATUS );
+        int[] plainOptional = optional;
+        if (optional.length > SECURITY_LEVEL) {
+            plainOptional = Arrays.copyOf( optional, optional.length );
+            plainOptional[SECURITY_LEVEL] = device.isEncrypted() ? SECURITY_DECRYPTED_AUTHENTICATED
+                    : SECURITY_AUTHENTICATED;
+        }
+        return factory.createPacket( type, plain, plainOptional, timestamp, true );
+    }
+
+    @Override
+    public int[] getSupportedTypes() {
+        return factory.getSupportedTypes();
+    }
+}
@@ -0,0 +1,117 @@
+package de.atennert.connector.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keys and rolling codes of secure devices, by sender ID. A device is added
+ * with the key and the security level format (SLF) from its teach-in, the
+ * SLF is a combination of the <code>SLF_*</code> constants. Supported are
+ * rolling codes with 16 to 32 bits, which are transmitted or not, AES-CMAC
+ * with 3 or 4 bytes and VAES encryption or no encryption.<br>
+ * <br>
+ * The rolling code of every device is updated by every authentic telegram.
+ * It can be read with {@link #getRollingCode(int)} to persist it and restored
+ * with {@link #setRollingCode(int, long)}. The store is thread safe and may be
+ * shared by several connectors.
+ */
+public class SecurityKeyStore {
+
+    /** default number of rolling codes after the last one, that are accepted */
+    public static final int DEFAULT_WINDOW = 128;
+
+    public static final int SLF_RLC_MASK = 0xC0;
+    /** 16 bit rolling code */
+    public static final int SLF_RLC_16 = 0x40;
+    /** 24 bit rolling code */
+    public static final int SLF_RLC_24 = 0x80;
+    /** 32 bit rolling code */
+    public static final int SLF_RLC_32 = 0xC0;
+    /** the rolling code is transmitted in the telegrams */
+    public static final int SLF_RLC_TX = 0x20;
+    public static final int SLF_MAC_MASK = 0x18;
+    /** AES-CMAC with 3 bytes */
+    public static final int SLF_MAC_3 = 0x08;
+    /** AES-CMAC with 4 bytes */
+    public static final int SLF_MAC_4 = 0x10;
+    public static final int SLF_ENC_MASK = 0x07;
+    /** the data isn't encrypted, only authenticated */
+    public static final int SLF_ENC_NONE = 0x00;
+    /** the data is encrypted with VAES */
+    public static final int SLF_ENC_VAES = 0x03;
+
+    private final ConcurrentMap< Integer, SecureDevice > devices = new ConcurrentHashMap<>();
+    private final int window;
+
+    public SecurityKeyStore() {
+        this( DEFAULT_WINDOW );
+    }
+
+    /**
+     * @param window number of rolling codes after the last one, that are
+     *            accepted, it limits the number of telegrams, that may get
+     *            lost, and the CMACs, that are calculated for a telegram
+     *            without rolling code
+     */
+    public SecurityKeyStore( int window ) {
+        if (window < 1) {
+            throw new IllegalArgumentException( "The rolling code window must be positive!" );
+        }
+        this.window = window;
+    }
+
+    /**
+     * Add a device or replace its key.
+     *
+     * @param sender the sender ID of the device
+     * @param key the AES-128 key of the device
+     * @param slf the security level format of the device
+     * @param rollingCode the last rolling code of the device, the next
+     *            telegram must have a higher one
+     * @throws IllegalArgumentException if the key doesn't have 16 bytes or
+     *             the SLF isn't supported
+     */
+    public void addDevice( int sender, byte[] key, int slf, long rollingCode ) {
+        devices.put( sender, new SecureDevice( key, slf, rollingCode, window ) );
+    }
+
+    /**
+     * @param sender the sender ID of the device
+     * @return <code>true</code> if the device was removed
+     */
+    public boolean removeDevice( int sender ) {
+        return devices.remove( sender ) != null;
+    }
+
+    /**
+     * @param sender the sender ID of the device
+     * @return the last accepted rolling code of the device or -1 if the
+     *         device is unknown
+     */
+    public long getRollingCode( int sender ) {
+        final SecureDevice device = devices.get( sender );
+        return device == null ? -1 : device.getRollingCode();
+    }
+
+    /**
+     * @param sender the sender ID of the device
+     * @param rollingCode the last rolling code of the device, for instance a
+     *            persisted one
+     * @return <code>true</code> if the device is known
+     */
+    public boolean setRollingCode( int sender, long rollingCode ) {
+        final SecureDevice device = devices.get( sender );
+        if (device == null) {
+            return false;
+        }
+        device.setRollingCode( rollingCode );
+        return true;
+    }
+
+    /**
+     * @return the device or <code>null</code> if the sender is unknown
+     */
+    SecureDevice getDevice( int sender ) {
+        return devices.get( sender );
+    }
+}
@@ -0,0 +1,258 @@
+package de.atennert.connector.simulation;
+
+/**
+ * Configuration of a population of virtual EnOcean devices, that send radio
+ * telegrams. The telegrams of the farm are read as ESP3 byte stream from a
+ * {@link TelegramStream}, which is created by {@link #openStream()}. The
+ * stream can be fed into a connector pipeline by a {@link LoadGenerator} or
+ * be written to a pseudo-terminal, that is opened by a connector.<br>
+ * <br>
+ * Farms are created with a {@link Builder}, which is returned by
+ * {@link #builder()}.
+ */
+public final class DeviceFarm {
+
+    /**
+     * How the telegrams of the devices are spread over time.
+     */
+    public enum Timing {
+        /** every telegram is sent at a random time, independent of the others */
+        POISSON,
+        /**
+         * telegrams of different devices are sent in bursts, for instance
+         * after a power failure or when a scene is activated
+         */
+        BURST
+    }
+
+    /** first sender ID of the virtual devices */
+    public static final int BASE_ID = 0x01800000;
+
+    private final DeviceType[] devices;
+    private final double telegramRate;
+    private final Timing timing;
+    private final int burstSize;
+    private final double crcErrorRate;
+    private final double repeatRate;
+    private final long seed;
+    private final boolean realTime;
+
+    private DeviceFarm( Builder builder ) {
+        devices = new DeviceType[builder.switches + builder.contacts + builder.temperatureSensors];
+        int device = 0;
+        for (int i = 0; i < builder.switches; i++) {
+            devices[device++] = DeviceType.SWITCH;
+        }
+        for (int i = 0; i < builder.contacts; i++) {
+            devices[device++] = DeviceType.CONTACT;
+        }
+        for (int i = 0; i < builder.temperatureSensors; i++) {
+            devices[device++] = DeviceType.TEMPERATURE;
+        }
+        telegramRate = builder.telegramRate;
+        timing = builder.timing;
+        burstSize = builder.burstSize;
+        crcErrorRate = builder.crcErrorRate;
+        repeatRate = builder.repeatRate;
+        seed = builder.seed;
+        realTime = builder.realTime;
+    }
+
+    /**
+     * @return a new builder for a device farm
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a new stream of telegrams. Every stream starts with the same
+     * devices in the same state and with the same random sequence.
+     *
+     * @return a new stream of the telegrams of this farm
+     */
+    public TelegramStream openStream() {
+        return new TelegramStream( this );
+    }
+
+    /**
+     * @return the number of devices
+     */
+    public int getDeviceCount() {
+        return devices.length;
+    }
+
+    /**
+     * @return the mean number of telegrams of all devices per second, without
+     *         repeated telegrams
+     */
+    public double getTelegramRate() {
+        return telegramRate * devices.length;
+    }
+
+    DeviceType getDevice( int index ) {
+        return devices[index];
+    }
+
+    Timing getTiming() {
+        return timing;
+    }
+
+    int getBurstSize() {
+        return burstSize;
+    }
+
+    double getCrcErrorRate() {
+        return crcErrorRate;
+    }
+
+    double getRepeatRate() {
+        return repeatRate;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    boolean isRealTime() {
+        return realTime;
+    }
+
+    /**
+     * Builder for {@link DeviceFarm}s.
+     */
+    public static final class Builder {
+
+        private int switches = 0;
+        private int contacts = 0;
+        private int temperatureSensors = 0;
+        private double telegramRate = 1.0 / 60;
+        private Timing timing = Timing.POISSON;
+        private int burstSize = 10;
+        private double crcErrorRate = 0;
+        private double repeatRate = 0;
+        private long seed = 0;
+        private boolean realTime = true;
+
+        private Builder() {}
+
+        /**
+         * @param count number of rocker switches (F6-02-01)
+         * @return this builder
+         */
+        public Builder switches( int count ) {
+            this.switches = checkCount( count );
+            return this;
+        }
+
+        /**
+         * @param count number of window and door contacts (D5-00-01)
+         * @return this builder
+         */
+        public Builder contacts( int count ) {
+            this.contacts = checkCount( count );
+            return this;
+        }
+
+        /**
+         * @param count number of temperature sensors (A5-02-05)
+         * @return this builder
+         */
+        public Builder temperatureSensors( int count ) {
+            this.temperatureSensors = checkCount( count );
+            return this;
+        }
+
+        /**
+         * @param telegramsPerSecond mean number of telegrams per second of
+         *            each device, the default is one telegram per minute
+         * @return this builder
+         */
+        public Builder telegramRate( double telegramsPerSecond ) {
+            if (!(telegramsPerSecond > 0)) {
+                throw new IllegalArgumentException( "The telegram rate must be positive!" );
+            }
+            this.telegramRate = telegramsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param timing how the telegrams are spread over time
+         * @param burstSize number of telegrams in a burst, only used for
+         *            {@link Timing#BURST}
+         * @return this builder
+         */
+        public Builder timing( Timing timing, int burstSize ) {
+            if (timing == null || burstSize < 1) {
+                throw new IllegalArgumentException( "A timing and a positive burst size are required!" );
+            }
+            this.timing = timing;
+            this.burstSize = burstSize;
+            return this;
+        }
+
+        /**
+         * @param rate probability between 0 and 1, that a telegram has an
+         *            invalid header or payload checksum
+         * @return this builder
+         */
+        public Builder crcErrorRate( double rate ) {
+            this.crcErrorRate = checkRate( rate );
+            return this;
+        }
+
+        /**
+         * @param rate probability between 0 and 1, that a telegram is received
+         *            a second time through a repeater
+         * @return this builder
+         */
+        public Builder repeatRate( double rate ) {
+            this.repeatRate = checkRate( rate );
+            return this;
+        }
+
+        /**
+         * @param seed seed for the random generator, so runs can be repeated
+         * @return this builder
+         */
+        public Builder seed( long seed ) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param realTime <code>true</code> if the stream delivers the
+         *            telegrams at their time, <code>false</code> if it
+         *            delivers them as fast as they are read
+         * @return this builder
+         */
+        public Builder realTime( boolean realTime ) {
+            this.realTime = realTime;
+            return this;
+        }
+
+        /**
+         * @return a new device farm
+         */
+        public DeviceFarm build() {
+            if (switches + contacts + temperatureSensors == 0) {
+                throw new IllegalStateException( "A device farm needs at least one device!" );
+            }
+            return new DeviceFarm( this );
+        }
+
+        private static int checkCount( int count ) {
+            if (count < 0) {
+                throw new IllegalArgumentException( "The number of devices must not be negative!" );
+            }
+            return count;
+        }
+
+        private static double checkRate( double rate ) {
+            if (!(rate >= 0 && rate <= 1)) {
+                throw new IllegalArgumentException( "The rate must be between 0 and 1!" );
+            }
+            return rate;
+        }
+    }
+}
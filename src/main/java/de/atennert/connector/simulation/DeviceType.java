@@ -0,0 +1,82 @@
+package de.atennert.connector.simulation;
+
+import java.util.Random;
+
+/**
+ * Types of virtual devices in a {@link DeviceFarm}. Each type creates the
+ * radio telegrams of a common EnOcean Equipment Profile (EEP).
+ */
+public enum DeviceType {
+
+    /**
+     * Rocker switch with two rockers, EEP F6-02-01. Each event is a button
+     * press, which is followed by the release in the next event.
+     */
+    SWITCH {
+        @Override
+        int[] createData( int senderId, int[] state, Random random ) {
+            final int db0;
+            final int status;
+            if (state[0] == 0) {
+                // press a random button with the energy bow
+                db0 = random.nextInt( 4 ) << 5 | 0x10;
+                status = 0x30;
+                state[0] = 1;
+            } else {
+                db0 = 0x00;
+                status = 0x20;
+                state[0] = 0;
+            }
+            return data( 0xF6, new int[] { db0 }, senderId, status );
+        }
+    },
+
+    /**
+     * Window or door contact, EEP D5-00-01. Each event toggles the contact.
+     */
+    CONTACT {
+        @Override
+        int[] createData( int senderId, int[] state, Random random ) {
+            state[0] ^= 1;
+            return data( 0xD5, new int[] { 0x08 | state[0] }, senderId, 0x00 );
+        }
+    },
+
+    /**
+     * Temperature sensor with a range of 0 to 40 degrees, EEP A5-02-05. The
+     * temperature changes slowly with every event.
+     */
+    TEMPERATURE {
+        @Override
+        int[] createData( int senderId, int[] state, Random random ) {
+            // the state is the raw value, 255 is 0 degrees and 0 is 40 degrees
+            if (state[0] == 0) {
+                state[0] = 96 + random.nextInt( 64 );
+            }
+            state[0] = Math.min( 254, Math.max( 1, state[0] + random.nextInt( 5 ) - 2 ) );
+            return data( 0xA5, new int[] { 0x00, 0x00, state[0], 0x08 }, senderId, 0x00 );
+        }
+    };
+
+    /**
+     * Create the data part of the next radio telegram of a device.
+     *
+     * @param senderId the ID of the device
+     * @param state the state of the device, which is kept between the events
+     * @param random the random generator of the farm
+     * @return R-ORG, user data, sender ID and status
+     */
+    abstract int[] createData( int senderId, int[] state, Random random );
+
+    private static int[] data( int rOrg, int[] userData, int senderId, int status ) {
+        final int[] data = new int[userData.length + 6];
+        data[0] = rOrg;
+        System.arraycopy( userData, 0, data, 1, userData.length );
+        data[data.length - 5] = senderId >>> 24;
+        data[data.length - 4] = (senderId >>> 16) & 0xFF;
+        data[data.length - 3] = (senderId >>> 8) & 0xFF;
+        data[data.length - 2] = senderId & 0xFF;
+        data[data.length - 1] = status;
+        return data;
+    }
+}
@@ -0,0 +1,246 @@
+package de.atennert.connector.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import de.atennert.connector.reader.PacketDecoder;
+import de.atennert.connector.reader.WaitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load generator, that feeds the telegrams of a {@link DeviceFarm} into a
+ * connector pipeline instead of the serial port. The pipeline consists of the
+ * receive queue, a {@link PacketDecoder}, a {@link PacketFactory} and a
+ * {@link PacketDistributor} like in a connector, which is created by the
+ * {@link de.atennert.connector.ConnectorFactory}. The stream is read in the
+ * same chunks as from the serial port.<br>
+ * <br>
+ * A real time farm is fed like the serial port does: bytes are dropped if the
+ * receive queue is full. Otherwise the generator waits for free space in the
+ * queue, so the run shows the highest sustained packet rate of the pipeline.
+ */
+public class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger( LoadGenerator.class );
+
+    /** size of the chunks, that are read from the stream */
+    private static final int READ_SIZE = 150;
+
+    /**
+     * time in milliseconds, that the decoder waits for the next byte of a
+     * frame, like in a connector
+     */
+    static final long DECODER_WAIT_TIME = PacketDecoder.DEFAULT_WAIT_TIME;
+
+    /** maximum time in milliseconds to wait for the pipeline after feeding */
+    private static final long DRAIN_TIMEOUT = 30000;
+
+    private final int receiveQueueCapacity;
+    private final int dispatchThreads;
+    private final int latencySampling;
+
+    private final Map< String, IPacketListener > listeners = new LinkedHashMap<>();
+
+    /**
+     * Create a load generator with the default settings of a connector and a
+     * receive queue for 64 KiB.
+     */
+    public LoadGenerator() {
+        this( 65536, PacketDistributor.DEFAULT_THREADS, PipelineMetrics.DEFAULT_SAMPLING );
+    }
+
+    /**
+     * @param receiveQueueCapacity maximum number of received bytes, that wait
+     *            for decoding
+     * @param dispatchThreads number of threads for calling packet listeners
+     * @param latencySampling trace the latency of every n-th packet, 0
+     *            disables the tracing
+     */
+    public LoadGenerator( int receiveQueueCapacity, int dispatchThreads, int latencySampling ) {
+        if (receiveQueueCapacity < 1 || dispatchThreads < 1 || latencySampling < 0) {
+            throw new IllegalArgumentException( "Invalid settings for the load generator!" );
+        }
+        this.receiveQueueCapacity = receiveQueueCapacity;
+        this.dispatchThreads = dispatchThreads;
+        this.latencySampling = latencySampling;
+    }
+
+    /**
+     * Add a packet listener, that is called for the packets of every run, for
+     * instance the application logic of a gateway.
+     *
+     * @param id name (ID) of the packet listener
+     * @param listener the packet listener
+     */
+    public void addListener( String id, IPacketListener listener ) {
+        listeners.put( id, listener );
+    }
+
+    /**
+     * Feed the telegrams of a farm into a new pipeline for the given time and
+     * wait until the pipeline processed them.
+     *
+     * @param farm the device farm
+     * @param duration time in milliseconds for feeding telegrams
+     * @return the report of the run
+     * @throws InterruptedException if the thread is interrupted while feeding
+     *             or waiting for the pipeline
+     */
+    public LoadReport run( DeviceFarm farm, long duration ) throws InterruptedException {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final PipelineMetrics metrics = new PipelineMetrics( registry, latencySampling );
+        final BlockingQueue< Integer > receiveQueue = new LinkedBlockingQueue<>( receiveQueueCapacity );
+        final ExecutorService executor = Executors.newFixedThreadPool( dispatchThreads );
+        final PacketDistributor distributor = new PacketDistributor( executor, metrics );
+        final ScheduledExecutorService decoderExecutor = Executors.newSingleThreadScheduledExecutor();
+        final PacketDecoder decoder = new PacketDecoder( receiveQueue, distributor, new PacketFactory( metrics ),
+                decoderExecutor, WaitStrategy.BLOCKING, DECODER_WAIT_TIME, metrics );
+
+        final LongAdder delivered = new LongAdder();
+        distributor.addListener( "loadGenerator", new IPacketListener() {
+            @Override
+            public void receivePacket( Packet packet ) {
+                delivered.increment();
+            }
+
+            @Override
+            public int[] getSupportedPackets() {
+                return new int[] { IPacketConstants.TYPE_ANY };
+            }
+        } );
+        for (final Map.Entry< String, IPacketListener > listener : listeners.entrySet()) {
+            distributor.addListener( listener.getKey(), listener.getValue() );
+        }
+
+        final TelegramStream stream = farm.openStream();
+        final byte[] buffer = new byte[READ_SIZE];
+        long dropped = 0;
+        long queuedBytes = 0;
+
+        decoder.start();
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos( duration );
+        try {
+            while (System.nanoTime() < end) {
+                if (farm.isRealTime() && stream.available() == 0 && stream.getNextTelegramTime() > end) {
+                    break;
+                }
+                final int count = stream.read( buffer, 0, buffer.length );
+                metrics.onBytesRead( count );
+                int queued = 0;
+                for (int i = 0; i < count; i++) {
+                    final Integer value = buffer[i] & 0xFF;
+                    if (!farm.isRealTime()) {
+                        receiveQueue.put( value );
+                        queued++;
+                    } else if (receiveQueue.offer( value )) {
+                        queued++;
+                    } else {
+                        dropped++;
+                    }
+                }
+                metrics.onBytesQueued( queued );
+                queuedBytes += queued;
+            }
+            awaitPipeline( queuedBytes, registry );
+        } finally {
+            stopPipeline( decoder, decoderExecutor, executor );
+        }
+        final long nanos = System.nanoTime() - start;
+
+        final long telegrams = stream.getTelegrams() + stream.getRepeatedTelegrams();
+        final LoadReport report = new LoadReport( telegrams, telegrams - stream.getHeaderErrors(),
+                registry.getValue( PipelineMetrics.FRAMES_DECODED ), delivered.sum(), stream.getBytes(), dropped, nanos,
+                registry );
+        log.info( "Load test finished: " + report );
+        return report;
+    }
+
+    /**
+     * Wait until the decoder processed all queued bytes and the packet
+     * listeners returned for all packets.
+     *
+     * @param queuedBytes number of bytes, that were put in the receive queue
+     * @param registry the metrics of the pipeline
+     */
+    static void awaitPipeline( long queuedBytes, MetricsRegistry registry ) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        while (System.currentTimeMillis() < timeout) {
+            // the decoder reports the consumed bytes after it handed over the packet of a frame
+            final boolean decoded = registry.getValue( PipelineMetrics.BYTES_CONSUMED ) == queuedBytes;
+            // the queue depth drops when the listeners are called, not when they returned
+            final long running = registry.getValue( PipelineMetrics.PACKETS_DISPATCHED )
+                    - registry.getValue( PipelineMetrics.DISPATCH_COMPLETED );
+            if (decoded && registry.getValue( PipelineMetrics.DISPATCH_QUEUE_DEPTH ) == 0 && running == 0) {
+                return;
+            }
+            Thread.sleep( 1 );
+        }
+        log.warn( "The pipeline didn't finish the load test in time!" );
+    }
+
+    /**
+     * Stop the decoder and wait until it distributed its last packet, then
+     * shut down the dispatch executor and wait until the listeners returned.
+     * The dispatch executor must not be shut down before, it would reject the
+     * last packet of the decoder. The decoder is interrupted, so it doesn't
+     * wait for new data anymore.
+     */
+    static void stopPipeline( PacketDecoder decoder, ExecutorService decoderExecutor, ExecutorService executor )
+            throws InterruptedException {
+        decoder.stopThread();
+        decoderExecutor.shutdownNow();
+        try {
+            if (!decoderExecutor.awaitTermination( DRAIN_TIMEOUT, TimeUnit.MILLISECONDS )) {
+                log.warn( "The decoder didn't stop in time!" );
+            }
+        } finally {
+            executor.shutdown();
+        }
+        if (!executor.awaitTermination( DRAIN_TIMEOUT, TimeUnit.MILLISECONDS )) {
+            log.warn( "The listeners didn't finish in time!" );
+        }
+    }
+
+    /**
+     * Run a load test from the command line.
+     *
+     * @param args number of devices, telegrams per second of each device,
+     *            duration in seconds and optionally "max" to feed the
+     *            telegrams as fast as possible
+     * @throws InterruptedException if the load test is interrupted
+     */
+    public static void main( String[] args ) throws InterruptedException {
+        if (args.length < 3) {
+            System.out.println( "Usage: LoadGenerator <devices> <telegrams per second per device> <seconds> [max]" );
+            return;
+        }
+        final int devices = Integer.parseInt( args[0] );
+        final DeviceFarm farm = DeviceFarm.builder()
+                .switches( devices / 4 )
+                .contacts( devices / 4 )
+                .temperatureSensors( devices - 2 * (devices / 4) )
+                .telegramRate( Double.parseDouble( args[1] ) )
+                .realTime( args.length < 4 || !"max".equals( args[3] ) )
+                .build();
+        final LoadReport report = new LoadGenerator().run( farm, TimeUnit.SECONDS.toMillis( Long.parseLong( args[2] ) ) );
+        System.out.println( report );
+        System.out.println( PipelineMetrics.TOTAL_LATENCY + ": "
+                + report.getMetrics().getHistogram( PipelineMetrics.TOTAL_LATENCY ) );
+    }
+}
@@ -0,0 +1,124 @@
+package de.atennert.connector.simulation;
+
+import java.util.Locale;
+
+import de.atennert.connector.metrics.MetricsRegistry;
+
+/**
+ * Result of a run of the {@link LoadGenerator}. The rates refer to the time
+ * from the start of the run until all fed telegrams were distributed.
+ */
+public final class LoadReport {
+
+    private final long telegrams;
+    private final long expectedFrames;
+    private final long framesDecoded;
+    private final long packetsDelivered;
+    private final long bytesFed;
+    private final long bytesDropped;
+    private final long nanos;
+    private final MetricsRegistry metrics;
+
+    LoadReport( long telegrams, long expectedFrames, long framesDecoded, long packetsDelivered, long bytesFed,
+            long bytesDropped, long nanos, MetricsRegistry metrics ) {
+        this.telegrams = telegrams;
+        this.expectedFrames = expectedFrames;
+        this.framesDecoded = framesDecoded;
+        this.packetsDelivered = packetsDelivered;
+        this.bytesFed = bytesFed;
+        this.bytesDropped = bytesDropped;
+        this.nanos = nanos;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the number of telegrams, that were fed into the pipeline,
+     *         including repeated telegrams
+     */
+    public long getTelegrams() {
+        return telegrams;
+    }
+
+    /**
+     * @return the number of frames, that the decoder should decode: all
+     *         telegrams without the ones with an invalid header checksum
+     */
+    public long getExpectedFrames() {
+        return expectedFrames;
+    }
+
+    /**
+     * @return the number of frames, that were decoded
+     */
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    /**
+     * @return the number of packets, that reached the listener of the
+     *         generator
+     */
+    public long getPacketsDelivered() {
+        return packetsDelivered;
+    }
+
+    /**
+     * @return the number of bytes read from the stream
+     */
+    public long getBytesFed() {
+        return bytesFed;
+    }
+
+    /**
+     * @return the number of bytes, that were dropped because the receive
+     *         queue was full
+     */
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+
+    /**
+     * @return the duration of the run in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return the metrics of the pipeline, including the latency histograms
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the sustained number of decoded packets per second
+     */
+    public double getPacketsPerSecond() {
+        return nanos == 0 ? 0 : framesDecoded * 1e9 / nanos;
+    }
+
+    /**
+     * @return the share of the expected frames, that were not decoded
+     */
+    public double getFrameDropRate() {
+        return expectedFrames == 0 ? 0 : Math.max( 0, expectedFrames - framesDecoded ) / (double) expectedFrames;
+    }
+
+    /**
+     * @return the share of the fed bytes, that were dropped at the receive
+     *         queue
+     */
+    public double getByteDropRate() {
+        return bytesFed == 0 ? 0 : bytesDropped / (double) bytesFed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( Locale.ROOT,
+                "%d telegrams in %.3f s: %.1f packets/s decoded, %d of %d frames decoded (%.4f%% dropped), "
+                        + "%d packets delivered, %d of %d bytes dropped (%.4f%%)",
+                telegrams, nanos / 1e9, getPacketsPerSecond(), framesDecoded, expectedFrames,
+                getFrameDropRate() * 100, packetsDelivered, bytesDropped, bytesFed, getByteDropRate() * 100 );
+    }
+}
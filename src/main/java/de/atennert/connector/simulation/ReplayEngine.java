@@ -0,0 +1,296 @@
+package de.atennert.connector.simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.LockSupport;
+
+import de.atennert.connector.IEnOceanConnector;
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.IRawFrameListener;
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.journal.JournalReader;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketFactory;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import de.atennert.connector.reader.IReceiveClock;
+import de.atennert.connector.reader.PacketDecoder;
+import de.atennert.connector.reader.SystemReceiveClock;
+import de.atennert.connector.reader.WaitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays the frames of a {@link de.atennert.connector.journal.TelegramJournal}
+ * through a connector pipeline, for instance to reproduce an incident or to
+ * test new listeners with recorded traffic. Like the {@link LoadGenerator}, the
+ * engine creates the receive queue, a {@link PacketDecoder} and a
+ * {@link PacketDistributor} for every run and puts the frames byte by byte in
+ * the receive queue, like the serial port. The packets are created by the
+ * factory of {@link #setPacketFactory(IPacketFactory)}, for instance the one
+ * of the live connector, or by a new {@link PacketFactory}.<br>
+ * <br>
+ * The frames are fed with the time between them in the recording, divided by
+ * the speed: {@link #REAL_TIME}, any factor or {@link #MAX_SPEED}. The packets
+ * and raw frames get the receive times of the recording. A paced replay drops
+ * a frame, if the receive queue has no space for it, like the serial port
+ * does. At maximum speed, the engine waits for space in the queue.
+ */
+public class ReplayEngine {
+
+    private static final Logger log = LoggerFactory.getLogger( ReplayEngine.class );
+
+    /** replay with the timing of the recording */
+    public static final double REAL_TIME = 1;
+    /** replay as fast as the pipeline allows */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    /** smallest frame: sync byte, header, header checksum, data and checksum */
+    private static final int MIN_FRAME_LENGTH = 8;
+
+    private final int receiveQueueCapacity;
+    private final int dispatchThreads;
+
+    private final Map< String, IPacketListener > listeners = new LinkedHashMap<>();
+    private final List< IRawFrameListener > rawFrameListeners = new ArrayList<>();
+    private IPacketFactory packetFactory = null;
+
+    /**
+     * Create a replay engine with the default settings of a connector and a
+     * receive queue for 64 KiB.
+     */
+    public ReplayEngine() {
+        this( 65536, PacketDistributor.DEFAULT_THREADS );
+    }
+
+    /**
+     * @param receiveQueueCapacity maximum number of bytes, that wait for
+     *            decoding
+     * @param dispatchThreads number of threads for calling packet listeners
+     */
+    public ReplayEngine( int receiveQueueCapacity, int dispatchThreads ) {
+        if (receiveQueueCapacity < 1 || dispatchThreads < 1) {
+            throw new IllegalArgumentException( "Invalid settings for the replay engine!" );
+        }
+        this.receiveQueueCapacity = receiveQueueCapacity;
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    /**
+     * Add a packet listener, that is called for the packets of every replay.
+     *
+     * @param id name (ID) of the packet listener
+     * @param listener the packet listener
+     */
+    public void addListener( String id, IPacketListener listener ) {
+        listeners.put( id, listener );
+    }
+
+    /**
+     * Add a raw frame listener, that is called for the frames of every
+     * replay.
+     *
+     * @param listener the raw frame listener
+     */
+    public void addRawFrameListener( IRawFrameListener listener ) {
+        rawFrameListeners.add( listener );
+    }
+
+    /**
+     * Set the factory, that creates the packets of every replay. With the
+     * factory of a connector ({@link IEnOceanConnector#getPacketFactory()}),
+     * the frames get the extension factories of the connector and secure
+     * telegrams are verified with its security keys. The packets are counted
+     * in the metrics of the connector then. Secure telegrams are only accepted
+     * if their rolling codes are newer than the ones of the key store.
+     *
+     * @param factory the packet factory or <code>null</code> to create a
+     *            {@link PacketFactory} without extensions for every replay
+     */
+    public void setPacketFactory( IPacketFactory factory ) {
+        this.packetFactory = factory;
+    }
+
+    /**
+     * Replay the records of a journal from the current position of the reader
+     * to its end and wait until the listeners processed them.
+     *
+     * @param reader the reader of the journal
+     * @param speed factor for the speed of the recording, for instance
+     *            {@link #REAL_TIME} or {@link #MAX_SPEED}
+     * @return the report of the replay
+     * @throws IOException if the journal can't be read
+     * @throws InterruptedException if the thread is interrupted while feeding
+     *             or waiting for the pipeline
+     */
+    public ReplayReport run( JournalReader reader, double speed ) throws IOException, InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException( "The speed must be positive!" );
+        }
+        final boolean paced = speed != MAX_SPEED;
+        final MetricsRegistry registry = new MetricsRegistry();
+        // all packets are traced for the latencies of the listeners
+        final PipelineMetrics metrics = new PipelineMetrics( registry, 1 );
+        final BlockingQueue< Integer > receiveQueue = new LinkedBlockingQueue<>( receiveQueueCapacity );
+        final ExecutorService executor = Executors.newFixedThreadPool( dispatchThreads );
+        final PacketDistributor distributor = new PacketDistributor( executor, metrics );
+        final IPacketFactory factory = packetFactory != null ? packetFactory : new PacketFactory( metrics );
+        final ScheduledExecutorService decoderExecutor = Executors.newSingleThreadScheduledExecutor();
+        final PacketDecoder decoder = new PacketDecoder( receiveQueue, distributor, factory, decoderExecutor,
+                WaitStrategy.BLOCKING, LoadGenerator.DECODER_WAIT_TIME, metrics );
+        final RecordedClock clock = new RecordedClock( receiveQueueCapacity / MIN_FRAME_LENGTH + 2 );
+        decoder.setReceiveClock( clock );
+        for (final IRawFrameListener listener : rawFrameListeners) {
+            decoder.addRawFrameListener( listener );
+        }
+        final Map< String, TimedListener > timedListeners = new LinkedHashMap<>();
+        for (final Map.Entry< String, IPacketListener > listener : listeners.entrySet()) {
+            timedListeners.put( listener.getKey(), new TimedListener( listener.getValue() ) );
+        }
+        distributor.addListeners( timedListeners );
+
+        long records = 0;
+        long framesFed = 0;
+        long framesDropped = 0;
+        long queuedBytes = 0;
+        long firstNanos = 0;
+        long lastNanos = 0;
+
+        decoder.start();
+        final long start = System.nanoTime();
+        long feedEnd = start;
+        try {
+            while (reader.next()) {
+                final long receiveNanos = reader.getReceiveNanos();
+                if (records == 0) {
+                    firstNanos = receiveNanos;
+                }
+                lastNanos = receiveNanos;
+                records++;
+                if (paced) {
+                    waitUntil( start + (long) ((receiveNanos - firstNanos) / speed) );
+                }
+
+                final ByteBuffer frame = reader.getFrame();
+                final int length = frame.remaining();
+                metrics.onBytesRead( length );
+                if (paced && receiveQueue.remainingCapacity() < length) {
+                    framesDropped++;
+                    continue;
+                }
+                clock.add( queuedBytes, receiveNanos );
+                // put() doesn't drop bytes, so the read event is known before
+                // the decoder can complete the frame
+                metrics.onBytesQueued( length );
+                for (int i = frame.position(); i < frame.limit(); i++) {
+                    receiveQueue.put( frame.get( i ) & 0xFF );
+                }
+                queuedBytes += length;
+                framesFed++;
+            }
+            feedEnd = System.nanoTime();
+            LoadGenerator.awaitPipeline( queuedBytes, registry );
+        } finally {
+            LoadGenerator.stopPipeline( decoder, decoderExecutor, executor );
+        }
+        final long nanos = System.nanoTime() - start;
+
+        final Map< String, Long > lags = new LinkedHashMap<>();
+        for (final Map.Entry< String, TimedListener > listener : timedListeners.entrySet()) {
+            lags.put( listener.getKey(), Math.max( 0, listener.getValue().lastReturn - feedEnd ) );
+        }
+        final ReplayReport report = new ReplayReport( records, framesFed, framesDropped,
+                registry.getValue( PipelineMetrics.FRAMES_DECODED ), lastNanos - firstNanos, feedEnd - start, nanos,
+                lags, registry );
+        log.info( "Replay finished: " + report );
+        return report;
+    }
+
+    private static void waitUntil( long time ) {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos( remaining );
+        }
+    }
+
+    /**
+     * Receive times of the fed frames by the position of their first byte in
+     * the receive queue. The feeding thread adds the frames, the decoder
+     * thread looks them up in the same order. The receive queue limits the
+     * number of frames, that wait for decoding, so the ring isn't overwritten
+     * before the decoder read it.
+     */
+    private static final class RecordedClock implements IReceiveClock {
+        private final long[] positions;
+        private final long[] receiveNanos;
+        /** number of added frames, written last to publish a frame */
+        private volatile long added = 0;
+        /** next frame for the decoder, only used by the decoder */
+        private long next = 0;
+
+        private RecordedClock( int capacity ) {
+            positions = new long[capacity];
+            receiveNanos = new long[capacity];
+        }
+
+        private void add( long position, long nanos ) {
+            final long frame = added;
+            final int index = (int) (frame % positions.length);
+            positions[index] = position;
+            receiveNanos[index] = nanos;
+            added = frame + 1;
+        }
+
+        @Override
+        public long getReceiveNanos( long frameStart ) {
+            final long published = added;
+            while (next < published) {
+                final int index = (int) (next % positions.length);
+                if (positions[index] == frameStart) {
+                    return receiveNanos[index];
+                }
+                if (positions[index] > frameStart) {
+                    break;
+                }
+                next++;
+            }
+            return SystemReceiveClock.INSTANCE.getReceiveNanos( frameStart );
+        }
+    }
+
+    /**
+     * Remembers, when the listener returned from its last packet.
+     */
+    private static final class TimedListener implements IPacketListener {
+        private final IPacketListener listener;
+        private volatile long lastReturn = 0;
+
+        private TimedListener( IPacketListener listener ) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void receivePacket( Packet packet ) {
+            try {
+                listener.receivePacket( packet );
+            } finally {
+                lastReturn = System.nanoTime();
+            }
+        }
+
+        @Override
+        public int[] getSupportedPackets() {
+            return listener.getSupportedPackets();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package de.atennert.connector.simulation;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import de.atennert.connector.metrics.LatencyHistogram;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+
+/**
+ * Result of a run of the {@link ReplayEngine}. The lag of a listener is the
+ * time from the end of the feeding until the listener returned from its last
+ * packet, so it shows how far the listener fell behind the replay. The
+ * latency histograms of the listeners measure the time from feeding a frame
+ * until the listener returned for every packet.
+ */
+public final class ReplayReport {
+
+    private final long records;
+    private final long framesFed;
+    private final long framesDropped;
+    private final long framesDecoded;
+    private final long recordedNanos;
+    private final long feedNanos;
+    private final long nanos;
+    private final Map< String, Long > listenerLags;
+    private final MetricsRegistry metrics;
+
+    ReplayReport( long records, long framesFed, long framesDropped, long framesDecoded, long recordedNanos,
+            long feedNanos, long nanos, Map< String, Long > listenerLags, MetricsRegistry metrics ) {
+        this.records = records;
+        this.framesFed = framesFed;
+        this.framesDropped = framesDropped;
+        this.framesDecoded = framesDecoded;
+        this.recordedNanos = recordedNanos;
+        this.feedNanos = feedNanos;
+        this.nanos = nanos;
+        this.listenerLags = Collections.unmodifiableMap( listenerLags );
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the number of records, that were read from the journal
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the number of frames, that were fed into the pipeline
+     */
+    public long getFramesFed() {
+        return framesFed;
+    }
+
+    /**
+     * @return the number of frames, that were dropped because the receive
+     *         queue was full
+     */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * @return the number of frames, that were decoded
+     */
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    /**
+     * @return the time between the first and the last replayed record in
+     *         nanoseconds
+     */
+    public long getRecordedNanos() {
+        return recordedNanos;
+    }
+
+    /**
+     * @return the time for feeding the frames in nanoseconds
+     */
+    public long getFeedNanos() {
+        return feedNanos;
+    }
+
+    /**
+     * @return the duration of the run until all listeners returned in
+     *         nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return the number of decoded frames per second of the run
+     */
+    public double getFramesPerSecond() {
+        return nanos == 0 ? 0 : framesDecoded * 1e9 / nanos;
+    }
+
+    /**
+     * @return the achieved speed: recorded time divided by the time for
+     *         feeding the frames
+     */
+    public double getSpeed() {
+        return feedNanos == 0 ? 0 : recordedNanos / (double) feedNanos;
+    }
+
+    /**
+     * @return the lag of every listener by name (ID) in nanoseconds
+     */
+    public Map< String, Long > getListenerLags() {
+        return listenerLags;
+    }
+
+    /**
+     * @param id name (ID) of a listener
+     * @return the latencies of the listener
+     */
+    public LatencyHistogram getListenerLatency( String id ) {
+        return metrics.getHistogram( PipelineMetrics.LISTENER + id + ".latency" );
+    }
+
+    /**
+     * @return the metrics of the pipeline
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder( String.format( Locale.ROOT,
+                "%d records in %.3f s (%.3f s recorded, %.1fx): %.1f frames/s decoded, %d of %d frames decoded, "
+                        + "%d frames dropped",
+                records, nanos / 1e9, recordedNanos / 1e9, getSpeed(), getFramesPerSecond(), framesDecoded,
+                framesFed, framesDropped ) );
+        for (final Map.Entry< String, Long > lag : listenerLags.entrySet()) {
+            builder.append( String.format( Locale.ROOT, ", %s lag %.3f ms", lag.getKey(), lag.getValue() / 1e6 ) );
+        }
+        return builder.toString();
+    }
+}
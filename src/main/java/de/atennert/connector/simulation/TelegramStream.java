@@ -0,0 +1,218 @@
+package de.atennert.connector.simulation;
+
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.reader.PacketEncoder;
+
+/**
+ * Endless ESP3 byte stream with the radio telegrams of a {@link DeviceFarm}.
+ * The sending devices are chosen at random and the time between the
+ * telegrams follows the timing of the farm. A real time stream blocks until a
+ * telegram is due, otherwise the telegrams are delivered immediately.<br>
+ * <br>
+ * Telegrams with checksum errors are created by changing the header or
+ * payload checksum of valid frames. A repeated telegram follows the original
+ * one with the repeater count set in the status byte.<br>
+ * <br>
+ * A stream must only be read by one thread. The counters may be read by any
+ * thread.
+ */
+public class TelegramStream extends InputStream {
+
+    private final DeviceFarm farm;
+    private final Random random;
+    private final int[][] states;
+
+    /** time of the stream start for real time streams */
+    private final long start = System.nanoTime();
+    /** time of the next telegram in nanoseconds since the start */
+    private double nextTime = 0;
+    /** remaining telegrams of the current burst */
+    private int burstRemaining = 0;
+
+    private byte[] frame = new byte[0];
+    private int position = 0;
+    /** repeated frame, that follows the current frame, or <code>null</code> */
+    private byte[] repeatedFrame = null;
+
+    private volatile long telegrams = 0;
+    private volatile long repeatedTelegrams = 0;
+    private volatile long headerErrors = 0;
+    private volatile long payloadErrors = 0;
+    private volatile long bytes = 0;
+
+    TelegramStream( DeviceFarm farm ) {
+        this.farm = farm;
+        this.random = new Random( farm.getSeed() );
+        this.states = new int[farm.getDeviceCount()][1];
+        scheduleNextTelegram();
+    }
+
+    @Override
+    public int read() {
+        if (position == frame.length) {
+            nextFrame();
+        }
+        bytes++;
+        return frame[position++] & 0xFF;
+    }
+
+    /**
+     * Read the rest of the current frame, but at most the given length. If the
+     * current frame is complete, the next frame is created first, so the call
+     * blocks until the next telegram is due in a real time stream.
+     */
+    @Override
+    public int read( byte[] buffer, int offset, int length ) {
+        if (length == 0) {
+            return 0;
+        }
+        if (position == frame.length) {
+            nextFrame();
+        }
+        final int count = Math.min( length, frame.length - position );
+        System.arraycopy( frame, position, buffer, offset, count );
+        position += count;
+        bytes += count;
+        return count;
+    }
+
+    /**
+     * @return the number of bytes of the current frame, that are not read yet
+     */
+    @Override
+    public int available() {
+        return frame.length - position;
+    }
+
+    /**
+     * @return the time in nanoseconds ({@link System#nanoTime()}), when the
+     *         next telegram is due in a real time stream
+     */
+    public long getNextTelegramTime() {
+        return repeatedFrame != null ? System.nanoTime() : start + (long) nextTime;
+    }
+
+    /**
+     * @return the number of sent telegrams without repeated telegrams
+     */
+    public long getTelegrams() {
+        return telegrams;
+    }
+
+    /**
+     * @return the number of repeated telegrams
+     */
+    public long getRepeatedTelegrams() {
+        return repeatedTelegrams;
+    }
+
+    /**
+     * @return the number of frames with an invalid header checksum, the
+     *         decoder can't read these frames
+     */
+    public long getHeaderErrors() {
+        return headerErrors;
+    }
+
+    /**
+     * @return the number of frames with an invalid payload checksum, the
+     *         decoder creates invalid packets for these frames
+     */
+    public long getPayloadErrors() {
+        return payloadErrors;
+    }
+
+    /**
+     * @return the number of bytes read from the stream
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    private void nextFrame() {
+        position = 0;
+        if (repeatedFrame != null) {
+            frame = corrupt( repeatedFrame );
+            repeatedFrame = null;
+            repeatedTelegrams++;
+            return;
+        }
+
+        if (farm.isRealTime()) {
+            waitUntil( (long) nextTime );
+        }
+        scheduleNextTelegram();
+
+        final int device = random.nextInt( farm.getDeviceCount() );
+        final int senderId = DeviceFarm.BASE_ID + device;
+        final int[] data = farm.getDevice( device ).createData( senderId, states[device], random );
+        // sub telegram number, broadcast destination, signal strength, security level
+        final int[] optional = { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x30 + random.nextInt( 0x30 ), 0x00 };
+        frame = corrupt( encode( data, optional ) );
+        telegrams++;
+
+        if (farm.getRepeatRate() > 0 && random.nextDouble() < farm.getRepeatRate()) {
+            // the repeater increments the repeater count in the status byte
+            data[data.length - 1] = (data[data.length - 1] & 0xF0) | 0x01;
+            optional[5] = 0x30 + random.nextInt( 0x30 );
+            repeatedFrame = encode( data, optional );
+        }
+    }
+
+    /**
+     * Advance the time to the next telegram. Poisson timing uses exponential
+     * gaps between all telegrams. Burst timing uses the same distribution for
+     * the start of the bursts with the same mean telegram rate and sends the
+     * telegrams of a burst without gaps.
+     */
+    private void scheduleNextTelegram() {
+        final double meanGap = TimeUnit.SECONDS.toNanos( 1 ) / farm.getTelegramRate();
+        if (farm.getTiming() == DeviceFarm.Timing.POISSON) {
+            nextTime += exponential( meanGap );
+        } else if (burstRemaining == 0) {
+            nextTime += exponential( meanGap * farm.getBurstSize() );
+            burstRemaining = farm.getBurstSize() - 1;
+        } else {
+            burstRemaining--;
+        }
+    }
+
+    private double exponential( double mean ) {
+        return -Math.log( 1 - random.nextDouble() ) * mean;
+    }
+
+    private void waitUntil( long time ) {
+        long remaining;
+        while ((remaining = start + time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos( remaining );
+        }
+    }
+
+    /**
+     * Change the header or payload checksum of a frame according to the CRC
+     * error rate.
+     */
+    private byte[] corrupt( byte[] frame ) {
+        if (farm.getCrcErrorRate() > 0 && random.nextDouble() < farm.getCrcErrorRate()) {
+            if (random.nextBoolean()) {
+                frame[5] ^= 0x01;
+                headerErrors++;
+            } else {
+                frame[frame.length - 1] ^= 0x01;
+                payloadErrors++;
+            }
+        }
+        return frame;
+    }
+
+    private static byte[] encode( int[] data, int[] optional ) {
+        return PacketEncoder.encodePacket( new Packet( IPacketConstants.TYPE_RADIO, data, optional, new Date(), true ) );
+    }
+}
@@ -22,4 +22,20 @@ public class FacadeCreatorTest
 
         Assert.assertSame( connector1, connector2 );
     }
+
+    @Test
+    public void createIndependentConnectorInstances() {
+        ConnectorFactory.Builder builder = ConnectorFactory.builder().dispatchThreads( 1 );
+        IEnOceanConnector connector1 = builder.build(),
+                connector2 = builder.build();
+
+        Assert.assertNotNull( connector1 );
+        Assert.assertNotSame( connector1, connector2 );
+        Assert.assertNotSame( ConnectorFactory.createConnector(), connector1 );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidQueueCapacity() {
+        ConnectorFactory.builder().receiveQueueCapacity( 0 );
+    }
 }
@@ -0,0 +1,108 @@
+package de.atennert.connector.devices;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.eep.EepProfiles;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.packets.enocean.ResponsePacket;
+import de.atennert.connector.reader.PacketEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+public class DeviceRegistryTest {
+
+    private static final int BASE_ID = 0x01800000;
+
+    @Test
+    public void updateAndGet() {
+        final DeviceRegistry registry = new DeviceRegistry();
+        registry.update( BASE_ID, 0xA5, 1, 1000, -60 );
+        registry.update( BASE_ID, 0xA5, 2, 2000, -70 );
+
+        final DeviceRecord record = new DeviceRecord();
+        Assert.assertTrue( registry.get( BASE_ID, record ) );
+        Assert.assertEquals( BASE_ID, record.getSenderId() );
+        Assert.assertEquals( 0xA5, record.getROrg() );
+        Assert.assertEquals( 2, record.getGateway() );
+        Assert.assertEquals( 1000, record.getFirstSeen() );
+        Assert.assertEquals( 2000, record.getLastSeen() );
+        Assert.assertEquals( 2, record.getTelegramCount() );
+        Assert.assertEquals( -70, record.getRssi() );
+        Assert.assertNull( record.getProfile() );
+        Assert.assertFalse( registry.get( BASE_ID + 1, record ) );
+        Assert.assertNull( registry.get( BASE_ID + 1 ) );
+    }
+
+    @Test
+    public void profileOfUnknownDevice() {
+        final DeviceRegistry registry = new DeviceRegistry();
+        registry.setProfile( BASE_ID, EepProfiles.A5_02_05 );
+
+        final DeviceRecord record = registry.get( BASE_ID );
+        Assert.assertSame( EepProfiles.A5_02_05, record.getProfile() );
+        Assert.assertEquals( 0xA5, record.getROrg() );
+        Assert.assertEquals( 0, record.getTelegramCount() );
+        Assert.assertEquals( DeviceRegistry.NO_RSSI, record.getRssi() );
+    }
+
+    @Test
+    public void manyDevices() {
+        final DeviceRegistry registry = new DeviceRegistry( 16 );
+        for (int i = 0; i < 100000; i++) {
+            registry.update( BASE_ID + i, 0xF6, 0, i, -50 );
+        }
+        registry.update( 0, 0xF6, 0, 0, -50 );
+
+        Assert.assertEquals( 100001, registry.size() );
+        Assert.assertEquals( 100001, registry.getSenderIds().length );
+        for (int i = 0; i < 100000; i++) {
+            Assert.assertEquals( 1, registry.getTelegramCount( BASE_ID + i ) );
+        }
+        Assert.assertTrue( registry.contains( 0 ) );
+    }
+
+    @Test
+    public void removeKeepsOtherDevices() {
+        final DeviceRegistry registry = new DeviceRegistry( 4 );
+        for (int i = 0; i < 1000; i++) {
+            registry.update( i * 1024, 0xD5, 0, i, -50 );
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            Assert.assertTrue( registry.remove( i * 1024 ) );
+        }
+        Assert.assertFalse( registry.remove( 0 ) );
+
+        Assert.assertEquals( 500, registry.size() );
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals( i % 2 == 1, registry.contains( i * 1024 ) );
+        }
+        registry.clear();
+        Assert.assertEquals( 0, registry.size() );
+        Assert.assertFalse( registry.contains( 1024 ) );
+    }
+
+    @Test
+    public void updateFromFrames() {
+        final DeviceRegistry registry = new DeviceRegistry();
+        final Packet radio = new RadioPacket( new int[] { 0xF6, 0x50, 0x01, 0x80, 0x00, 0x01, 0x30 },
+                new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 }, new Date(), true );
+        final Packet response = new ResponsePacket( new int[] { 0x00, 0xFF, 0x80, 0x00, 0x00 }, new Date(), true );
+
+        registry.frameListener( 7 ).receiveFrame( frame( radio ), 1234 );
+        registry.frameListener( 7 ).receiveFrame( frame( response ), 1235 );
+
+        Assert.assertEquals( 1, registry.size() );
+        final DeviceRecord record = registry.get( 0x01800001 );
+        Assert.assertEquals( 0xF6, record.getROrg() );
+        Assert.assertEquals( 7, record.getGateway() );
+        Assert.assertEquals( 1234, record.getLastSeen() );
+        Assert.assertEquals( -0x44, record.getRssi() );
+        Assert.assertArrayEquals( new int[] { 0x01800001 }, registry.getSenderIds() );
+    }
+
+    private static ByteBuffer frame( Packet packet ) {
+        return ByteBuffer.wrap( PacketEncoder.encodePacket( packet ) ).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,71 @@
+package de.atennert.connector.devices;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.eep.EepProfiles;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Map;
+
+public class DeviceStateCacheTest {
+
+    private static final int SENDER = 0x01802A3B;
+
+    @Test
+    public void latestTelegramWins() {
+        final DeviceStateCache cache = new DeviceStateCache();
+        final Packet first = temperature( SENDER, 0x80, 1000 );
+        final Packet second = temperature( SENDER, 0x40, 2000 );
+
+        cache.receivePacket( first );
+        cache.receivePacket( second );
+        // a late packet doesn't replace the newer state
+        cache.receivePacket( temperature( SENDER, 0x00, 1500 ) );
+
+        Assert.assertEquals( 1, cache.size() );
+        Assert.assertSame( second, cache.get( SENDER ).getPacket() );
+        Assert.assertEquals( 2000, cache.get( SENDER ).getTimestamp() );
+        Assert.assertNull( cache.get( SENDER + 1 ) );
+    }
+
+    @Test
+    public void valuesWithProfile() {
+        final DeviceStateCache cache = new DeviceStateCache();
+        cache.receivePacket( temperature( SENDER, 0x00, 1000 ) );
+        Assert.assertNull( cache.get( SENDER ).getValues() );
+        Assert.assertTrue( Double.isNaN( cache.get( SENDER ).getValue( "TMP" ) ) );
+
+        cache.getEepDecoder().map( SENDER, EepProfiles.A5_02_05 );
+
+        // A5-02-05 maps 255..0 to 0..40 degrees
+        Assert.assertEquals( 40.0, cache.get( SENDER ).getValue( "TMP" ), 0.001 );
+        Assert.assertSame( EepProfiles.A5_02_05, cache.get( SENDER ).getValues().getProfile() );
+    }
+
+    @Test
+    public void snapshotsAndIteration() {
+        final DeviceStateCache cache = new DeviceStateCache();
+        cache.receivePacket( temperature( SENDER, 0x00, 1000 ) );
+        cache.receivePacket( temperature( SENDER + 1, 0x00, 1000 ) );
+        cache.receivePacket( new RadioPacket( new int[] { 0xF6, 0x50 }, new Date(), true ) );
+
+        final Map< Integer, DeviceState > snapshot = cache.snapshot();
+        cache.remove( SENDER + 1 );
+
+        Assert.assertEquals( 2, snapshot.size() );
+        Assert.assertEquals( 1, cache.size() );
+        Assert.assertEquals( 1, cache.getAll( SENDER, SENDER + 1 ).size() );
+        for (final DeviceState state : cache.getStates()) {
+            Assert.assertEquals( SENDER, state.getSenderId() );
+        }
+        cache.clear();
+        Assert.assertTrue( cache.getStates().isEmpty() );
+    }
+
+    private static Packet temperature( int sender, int value, long time ) {
+        return new RadioPacket( new int[] { 0xA5, 0x00, 0x00, value, 0x08, sender >>> 24, (sender >>> 16) & 0xFF,
+                (sender >>> 8) & 0xFF, sender & 0xFF, 0x00 }, new Date( time ), true );
+    }
+}
@@ -0,0 +1,94 @@
+package de.atennert.connector.devices;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.eep.EepDecoder;
+import de.atennert.connector.packets.eep.EepProfiles;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+public class TimeSeriesStoreTest {
+
+    private static final int SENDER = 0x01802A3B;
+
+    private EepDecoder decoder;
+    private TimeSeriesStore store;
+
+    @Before
+    public void setup() {
+        decoder = new EepDecoder();
+        decoder.map( SENDER, EepProfiles.A5_02_05 );
+        // 4 raw points, buckets of 10 ms
+        store = new TimeSeriesStore( decoder, new TimeSeriesConfig( 4, 10, 2 ) );
+    }
+
+    @Test
+    public void rawPointsInRange() {
+        for (int i = 0; i < 4; i++) {
+            store.receivePacket( temperature( SENDER, 255 - i, i ) );
+        }
+        store.receivePacket( temperature( SENDER + 1, 0, 0 ) );
+
+        final TimeSeriesRange range = store.query( SENDER, "TMP", 1, 3 );
+        Assert.assertEquals( 2, range.getPointCount() );
+        Assert.assertEquals( 1, range.getTime( 0 ) );
+        Assert.assertEquals( 2, range.getTime( 1 ) );
+        Assert.assertEquals( (255 - 254) * 40.0 / 255, range.getValue( 0 ), 0.001 );
+        Assert.assertEquals( 0, range.getBucketCount() );
+        Assert.assertNull( store.get( SENDER + 1 ) );
+    }
+
+    @Test
+    public void oldPointsAreDownsampled() {
+        // a point every 5 ms
+        for (int i = 0; i < 10; i++) {
+            store.receivePacket( temperature( SENDER, 255 - i * 10, i * 5 ) );
+        }
+        final TimeSeries series = store.get( SENDER );
+        Assert.assertEquals( 4, series.size() );
+        // 6 points were evicted: 0..25 ms fill 3 buckets, the oldest bucket was dropped
+        Assert.assertEquals( 2, series.getBucketCount() );
+
+        final TimeSeriesRange range = series.query( "TMP", 0, Long.MAX_VALUE );
+        Assert.assertEquals( 10, range.getBucketStart( 0 ) );
+        Assert.assertEquals( 20, range.getBucketStart( 1 ) );
+        Assert.assertEquals( 4, range.getPointCount() );
+        Assert.assertEquals( 30, range.getTime( 0 ) );
+        Assert.assertTrue( range.getMinimum( 0 ) <= range.getAverage( 0 ) );
+        Assert.assertTrue( range.getAverage( 0 ) <= range.getMaximum( 0 ) );
+        Assert.assertTrue( range.getMaximum( 0 ) > range.getMinimum( 0 ) );
+    }
+
+    @Test
+    public void latePointsAreDropped() {
+        store.receivePacket( temperature( SENDER, 0, 100 ) );
+        store.receivePacket( temperature( SENDER, 0, 50 ) );
+
+        Assert.assertEquals( 1, store.get( SENDER ).size() );
+    }
+
+    @Test
+    public void configurationPerProfile() {
+        final int contact = 0x01802A3C;
+        decoder.map( contact, EepProfiles.D5_00_01 );
+        store.configure( EepProfiles.D5_00_01, new TimeSeriesConfig( 1, 10, 0 ) );
+
+        store.receivePacket( new RadioPacket( new int[] { 0xD5, 0x09, 0x01, 0x80, 0x2A, 0x3C, 0x00 }, new Date( 1 ),
+                true ) );
+        store.receivePacket( new RadioPacket( new int[] { 0xD5, 0x08, 0x01, 0x80, 0x2A, 0x3C, 0x00 }, new Date( 2 ),
+                true ) );
+
+        final TimeSeries series = store.get( contact );
+        Assert.assertEquals( 1, series.size() );
+        Assert.assertEquals( 0, series.getBucketCount() );
+        Assert.assertEquals( 2, store.query( contact, "CO", 0, 10 ).getTime( 0 ) );
+    }
+
+    private static Packet temperature( int sender, int value, long time ) {
+        return new RadioPacket( new int[] { 0xA5, 0x00, 0x00, value, 0x08, sender >>> 24, (sender >>> 16) & 0xFF,
+                (sender >>> 8) & 0xFF, sender & 0xFF, 0x00 }, new Date( time ), true );
+    }
+}
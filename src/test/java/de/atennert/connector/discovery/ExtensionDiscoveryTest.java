@@ -0,0 +1,180 @@
+package de.atennert.connector.discovery;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.packets.IPacketFactory;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExtensionDiscoveryTest {
+
+    private static final AtomicInteger createdFactories = new AtomicInteger();
+    private static final AtomicInteger createdListeners = new AtomicInteger();
+    private static final AtomicInteger receivedPackets = new AtomicInteger();
+
+    private Path folder;
+    private ClassLoader loader;
+
+    @Before
+    public void setup() throws IOException {
+        createdFactories.set( 0 );
+        createdListeners.set( 0 );
+        receivedPackets.set( 0 );
+        folder = Files.createTempDirectory( "extensions" );
+        final File services = Files.createDirectories( folder.resolve( "META-INF/services" ) ).toFile();
+        Files.write( new File( services, IPacketFactory.class.getName() ).toPath(), Arrays.asList(
+                "# test factories",
+                PlainFactory.class.getName(),
+                LazyFactory.class.getName() + " # created on demand",
+                "",
+                PlainFactory.class.getName(),
+                "de.atennert.connector.discovery.Missing" ), StandardCharsets.UTF_8 );
+        Files.write( new File( services, IPacketListener.class.getName() ).toPath(), Arrays.asList(
+                LazyListener.class.getName() ), StandardCharsets.UTF_8 );
+        loader = new URLClassLoader( new URL[] { folder.toUri().toURL() },
+                ExtensionDiscoveryTest.class.getClassLoader() );
+    }
+
+    @After
+    public void teardown() throws IOException {
+        final File services = folder.resolve( "META-INF/services" ).toFile();
+        for (final File file : services.listFiles()) {
+            Files.delete( file.toPath() );
+        }
+        Files.delete( services.toPath() );
+        Files.delete( services.getParentFile().toPath() );
+        Files.delete( folder );
+    }
+
+    @Test
+    public void factoriesAreOrderedByPriority() {
+        final List< IPacketFactory > factories = ExtensionDiscovery.discoverFactories( loader );
+
+        Assert.assertEquals( 2, factories.size() );
+        Assert.assertEquals( LazyFactory.class.getName(), factories.get( 0 ).toString() );
+        Assert.assertArrayEquals( new int[] { 0x40 }, factories.get( 0 ).getSupportedTypes() );
+        Assert.assertTrue( factories.get( 1 ) instanceof PlainFactory );
+        // only the factory without metadata is created
+        Assert.assertEquals( 1, createdFactories.get() );
+    }
+
+    @Test
+    public void annotatedFactoryIsCreatedOnFirstPacket() {
+        final PacketFactory packetFactory = new PacketFactory();
+        Assert.assertEquals( 2, packetFactory.addFactories( ExtensionDiscovery.discoverFactories( loader ) ) );
+        Assert.assertEquals( 1, createdFactories.get() );
+
+        final Packet packet = packetFactory.createPacket( 0x40, new int[] { 1 }, new int[0], new Date(), true );
+
+        Assert.assertTrue( packet instanceof TestPacket );
+        Assert.assertEquals( 2, createdFactories.get() );
+        packetFactory.createPacket( 0x40, new int[] { 1 }, new int[0], new Date(), true );
+        Assert.assertEquals( 2, createdFactories.get() );
+    }
+
+    @Test
+    public void annotatedListenerIsCreatedOnFirstPacket() throws InterruptedException {
+        final Map< String, IPacketListener > listeners = ExtensionDiscovery.discoverListeners( loader );
+        Assert.assertEquals( 1, listeners.size() );
+        Assert.assertTrue( listeners.containsKey( LazyListener.class.getName() ) );
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final PacketDistributor distributor = new PacketDistributor( executor );
+            distributor.addListeners( listeners );
+            Assert.assertTrue( distributor.hasListeners( 0x40 ) );
+            Assert.assertFalse( distributor.hasListeners( 0x41 ) );
+            Assert.assertEquals( 0, createdListeners.get() );
+
+            distributor.distributePacket( new Packet( 0x40, new int[] { 1 }, new int[0], new Date(), true ) );
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination( 1, TimeUnit.SECONDS );
+        }
+        Assert.assertEquals( 1, createdListeners.get() );
+        Assert.assertEquals( 1, receivedPackets.get() );
+    }
+
+    @Test
+    public void missingProviderFiles() {
+        final ClassLoader empty = new URLClassLoader( new URL[0], null );
+        Assert.assertTrue( ExtensionDiscovery.discoverFactories( empty ).isEmpty() );
+        Assert.assertTrue( ExtensionDiscovery.discoverListeners( empty ).isEmpty() );
+    }
+
+    public static class TestPacket extends Packet {
+        public TestPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+            super( type, data, optional, timestamp, isValid );
+        }
+    }
+
+    public static class PlainFactory implements IPacketFactory {
+        public PlainFactory() {
+            createdFactories.incrementAndGet();
+        }
+
+        @Override
+        public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+            return null;
+        }
+
+        @Override
+        public int[] getSupportedTypes() {
+            return new int[] { 0x41 };
+        }
+    }
+
+    @ExtensionInfo( types = 0x40, priority = 5 )
+    public static class LazyFactory implements IPacketFactory {
+        public LazyFactory() {
+            createdFactories.incrementAndGet();
+        }
+
+        @Override
+        public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+            return new TestPacket( type, data, optional, timestamp, isValid );
+        }
+
+        @Override
+        public int[] getSupportedTypes() {
+            throw new AssertionError( "The metadata is read from the annotation!" );
+        }
+    }
+
+    @ExtensionInfo( types = 0x40 )
+    public static class LazyListener implements IPacketListener {
+        public LazyListener() {
+            createdListeners.incrementAndGet();
+        }
+
+        @Override
+        public void receivePacket( Packet packet ) {
+            receivedPackets.incrementAndGet();
+        }
+
+        @Override
+        public int[] getSupportedPackets() {
+            throw new AssertionError( "The metadata is read from the annotation!" );
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.atennert.connector.distribution;
+
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PacketDistributorTest {
+
+    private PacketDistributor distributor;
+
+    @Before
+    public void setup() {
+        distributor = new PacketDistributor();
+    }
+
+    @Test
+    public void routeByPacketType() {
+        distributor.addListener( "radio", new LatchListener( 1, IPacketConstants.TYPE_RADIO ) );
+        distributor.addListener( "any", new LatchListener( 1, IPacketConstants.TYPE_ANY ) );
+
+        Assert.assertTrue( distributor.hasListeners( IPacketConstants.TYPE_RADIO ) );
+        Assert.assertTrue( distributor.hasListeners( IPacketConstants.TYPE_EVENT ) );
+
+        distributor.removeListener( "any" );
+
+        Assert.assertTrue( distributor.hasListeners( IPacketConstants.TYPE_RADIO ) );
+        Assert.assertFalse( distributor.hasListeners( IPacketConstants.TYPE_EVENT ) );
+    }
+
+    @Test
+    public void addListenerWhileDistributing() throws InterruptedException {
+        final LatchListener first = new LatchListener( 2, IPacketConstants.TYPE_RADIO );
+        distributor.addListener( "first", first );
+        distributor.distributePacket( radioPacket() );
+
+        final LatchListener second = new LatchListener( 1, IPacketConstants.TYPE_ANY );
+        distributor.addListener( "second", second );
+        distributor.distributePacket( radioPacket() );
+
+        Assert.assertTrue( first.latch.await( 1, TimeUnit.SECONDS ) );
+        Assert.assertTrue( second.latch.await( 1, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void removedListenerReceivesNothing() throws InterruptedException {
+        final LatchListener listener = new LatchListener( 1, IPacketConstants.TYPE_ANY );
+        distributor.addListener( "listener", listener );
+        distributor.removeListener( "listener" );
+        distributor.distributePacket( radioPacket() );
+
+        Assert.assertFalse( listener.latch.await( 200, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void removedListenerHasNoMetrics() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final PacketDistributor distributor = new PacketDistributor( 1, new PipelineMetrics( registry ) );
+        distributor.addListener( "first", new LatchListener( 1, IPacketConstants.TYPE_ANY ) );
+        distributor.addListener( "second", new LatchListener( 1, IPacketConstants.TYPE_ANY ) );
+        distributor.addListener( "third", new LatchListener( 1, IPacketConstants.TYPE_ANY ) );
+        try {
+            distributor.removeListener( "first" );
+            Assert.assertTrue( listenerMetrics( registry, "first" ).isEmpty() );
+            Assert.assertFalse( listenerMetrics( registry, "second" ).isEmpty() );
+
+            distributor.clear();
+            Assert.assertTrue( listenerMetrics( registry, "" ).isEmpty() );
+        } finally {
+            distributor.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownOwnPool() throws InterruptedException {
+        final LatchListener listener = new LatchListener( 1, IPacketConstants.TYPE_ANY );
+        distributor.addListener( "listener", listener );
+        distributor.distributePacket( radioPacket() );
+
+        distributor.shutdown();
+
+        Assert.assertTrue( listener.latch.await( 1, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void sharedExecutorIsNotShutDown() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new PacketDistributor( executor, new PipelineMetrics() ).shutdown();
+
+            Assert.assertFalse( executor.isShutdown() );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static SortedMap< String, Long > listenerMetrics( MetricsRegistry registry, String id ) {
+        return registry.snapshot().subMap( PipelineMetrics.LISTENER + id, PipelineMetrics.LISTENER + id + '\uffff' );
+    }
+
+    private static Packet radioPacket() {
+        return new Packet( IPacketConstants.TYPE_RADIO, new int[0], new int[0], new Date(), true );
+    }
+
+    private static class LatchListener implements IPacketListener {
+        private final CountDownLatch latch;
+        private final int type;
+
+        private LatchListener( int count, int type ) {
+            this.latch = new CountDownLatch( count );
+            this.type = type;
+        }
+
+        @Override
+        public void receivePacket( Packet packet ) {
+            latch.countDown();
+        }
+
+        @Override
+        public int[] getSupportedPackets() {
+            return new int[] { type };
+        }
+    }
+}
@@ -2,6 +2,8 @@ package de.atennert.connector.facade;
 
 import de.atennert.connector.IEnOceanConnector;
 
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.IRawFrameListener;
 import de.atennert.connector.distribution.PacketDistributor;
 import de.atennert.connector.packets.Packet;
 import de.atennert.connector.packets.PacketFactory;
@@ -12,8 +14,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Date;
 import java.util.concurrent.BlockingQueue;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -46,4 +50,61 @@ public class ConnectorFacadeTest {
     public void connectorExists() {
         Assert.assertNotNull( connector );
     }
+
+    @Test
+    public void componentsGetNoListeners() {
+        Mockito.verify( packetDecoder, Mockito.never() ).addRawFrameListener( Mockito.any( IRawFrameListener.class ) );
+        Mockito.verify( packetDistributor, Mockito.never() ).addListener( Mockito.anyString(),
+                Mockito.any( IPacketListener.class ) );
+        Assert.assertNull( connector.getDeviceRegistry() );
+        Assert.assertNull( connector.getDeviceStates() );
+    }
+
+    @Test
+    public void sendDataPacketWhileNotRunning() {
+        connector.sendDataPacket( new Packet( 0x01, new int[0], new int[0], new Date(), true ) );
+
+        Mockito.verifyZeroInteractions( sendPacketQueue );
+    }
+
+    @Test
+    public void sendDataPacketWhileRunning() {
+        final Packet packet = new Packet( 0x01, new int[0], new int[0], new Date(), true );
+        Mockito.when( comConnector.setSerialPort( "port" ) ).thenReturn( true );
+        Mockito.when( comConnector.getSerialPort() ).thenReturn( "port" );
+        Mockito.when( sendPacketQueue.offer( packet ) ).thenReturn( true );
+
+        connector.setPort( "port" );
+        connector.startDataAcquisition();
+        connector.sendDataPacket( packet );
+
+        Mockito.verify( sendPacketQueue ).offer( packet );
+    }
+
+    @Test
+    public void packetFactoryOfTheDecoder() {
+        Mockito.when( packetDecoder.getPacketFactory() ).thenReturn( packetFactory );
+
+        Assert.assertSame( packetFactory, connector.getPacketFactory() );
+    }
+
+    @Test
+    public void closeWhileRunning() {
+        Mockito.when( comConnector.setSerialPort( "port" ) ).thenReturn( true );
+        Mockito.when( comConnector.getSerialPort() ).thenReturn( "port" );
+        connector.setPort( "port" );
+        connector.startDataAcquisition();
+
+        connector.close();
+        Mockito.verify( comConnector ).stopThread();
+        Mockito.verify( packetDecoder ).stopThread();
+        Mockito.verify( packetDistributor ).shutdown();
+        Assert.assertFalse( connector.getWatchdog().isRunning() );
+
+        // a closed connector can't be started again
+        connector.startDataAcquisition();
+        connector.sendDataPacket( new Packet( 0x01, new int[0], new int[0], new Date(), true ) );
+        Mockito.verify( packetDecoder, Mockito.times( 1 ) ).start();
+        Mockito.verifyZeroInteractions( sendPacketQueue );
+    }
 }
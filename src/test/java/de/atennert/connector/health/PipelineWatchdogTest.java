@@ -0,0 +1,141 @@
+package de.atennert.connector.health;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongSupplier;
+
+import de.atennert.connector.distribution.IEventListener;
+import de.atennert.connector.health.HealthStatus.Level;
+import de.atennert.connector.health.HealthStatus.Stage;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelineWatchdogTest {
+
+    private MetricsRegistry registry;
+    private PipelineMetrics metrics;
+    private long receiveQueueDepth;
+    private PipelineWatchdog watchdog;
+    private List< HealthStatus > events;
+
+    @Before
+    public void setup() {
+        registry = new MetricsRegistry();
+        metrics = new PipelineMetrics( registry, 0 );
+        receiveQueueDepth = 0;
+        registry.gauge( PipelineMetrics.RECEIVE_QUEUE_DEPTH, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return receiveQueueDepth;
+            }
+        } );
+        watchdog = PipelineWatchdog.builder()
+                .stallTimeout( 1000 )
+                .maxQueueDepth( Stage.DECODER, 100 )
+                .build( registry );
+        events = new ArrayList<>();
+        watchdog.addListener( new IEventListener< HealthStatus >() {
+            @Override
+            public void onEvent( HealthStatus event ) {
+                events.add( event );
+            }
+        } );
+    }
+
+    @Test
+    public void idlePipelineIsHealthy() {
+        Assert.assertTrue( watchdog.check( 0 ).isHealthy() );
+        Assert.assertTrue( watchdog.check( 60000 ).isHealthy() );
+        Assert.assertEquals( 1, events.size() );
+    }
+
+    @Test
+    public void decoderWithoutProgressStalls() {
+        watchdog.check( 0 );
+        receiveQueueDepth = 10;
+        Assert.assertEquals( Level.HEALTHY, watchdog.check( 999 ).getLevel() );
+
+        final HealthStatus status = watchdog.check( 1000 );
+        Assert.assertEquals( Level.STALLED, status.getLevel() );
+        Assert.assertEquals( Level.STALLED, status.getStage( Stage.DECODER ).getLevel() );
+        Assert.assertEquals( 10, status.getStage( Stage.DECODER ).getQueueDepth() );
+        Assert.assertEquals( 2, events.size() );
+
+        metrics.onBytesConsumed( 10 );
+        receiveQueueDepth = 0;
+        Assert.assertTrue( watchdog.check( 1500 ).isHealthy() );
+        Assert.assertEquals( 3, events.size() );
+    }
+
+    @Test
+    public void progressKeepsDecoderHealthy() {
+        receiveQueueDepth = 10;
+        watchdog.check( 0 );
+        metrics.onBytesConsumed( 5 );
+        watchdog.check( 900 );
+        Assert.assertTrue( watchdog.check( 1800 ).isHealthy() );
+    }
+
+    @Test
+    public void longQueueDegrades() {
+        receiveQueueDepth = 101;
+        final HealthStatus status = watchdog.check( 0 );
+        Assert.assertEquals( Level.DEGRADED, status.getLevel() );
+        Assert.assertEquals( Level.HEALTHY, status.getStage( Stage.READER ).getLevel() );
+    }
+
+    @Test
+    public void blockedListenerStallsDispatcher() {
+        metrics.onDispatchQueued();
+        metrics.onDispatchStarted( null );
+        watchdog.check( 0 );
+
+        Assert.assertEquals( Level.STALLED, watchdog.check( 1000 ).getStage( Stage.DISPATCHER ).getLevel() );
+
+        metrics.onDispatchCompleted( null );
+        Assert.assertTrue( watchdog.check( 1100 ).isHealthy() );
+    }
+
+    @Test
+    public void quietReaderDegrades() {
+        final PipelineWatchdog readerWatchdog = PipelineWatchdog.builder().readerIdleTimeout( 5000 ).build( registry );
+        readerWatchdog.check( 0 );
+        Assert.assertEquals( Level.DEGRADED, readerWatchdog.check( 5000 ).getStage( Stage.READER ).getLevel() );
+
+        metrics.onBytesRead( 1 );
+        Assert.assertTrue( readerWatchdog.check( 5001 ).isHealthy() );
+    }
+
+    @Test
+    public void addedListenerGetsCurrentStatus() {
+        watchdog.check( 0 );
+        final List< HealthStatus > late = new ArrayList<>();
+        watchdog.addListener( new IEventListener< HealthStatus >() {
+            @Override
+            public void onEvent( HealthStatus event ) {
+                late.add( event );
+            }
+        } );
+        Assert.assertEquals( 1, late.size() );
+        Assert.assertTrue( late.get( 0 ).isHealthy() );
+    }
+
+    @Test
+    public void sharedExecutorIsNotShutDown() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            watchdog.start( executor );
+            Assert.assertTrue( watchdog.isRunning() );
+            watchdog.stop();
+            Assert.assertFalse( watchdog.isRunning() );
+            Assert.assertFalse( executor.isShutdown() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
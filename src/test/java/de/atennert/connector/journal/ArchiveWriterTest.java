@@ -0,0 +1,145 @@
+package de.atennert.connector.journal;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.packets.enocean.ResponsePacket;
+import de.atennert.connector.reader.PacketEncoder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+public class ArchiveWriterTest {
+
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "archive" );
+    }
+
+    @After
+    public void teardown() throws IOException {
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Test
+    public void restoreFrames() throws IOException {
+        final List< byte[] > frames = new ArrayList<>();
+        final Random random = new Random( 1 );
+        for (int i = 0; i < 100; i++) {
+            frames.add( radio( 0x01800000 + i % 5, i % 3 == 0 ? 0x20 : i, 0x30 + random.nextInt( 20 ) ) );
+        }
+        frames.set( 10, PacketEncoder.encodePacket( new ResponsePacket( 0x00, new Date(), true ) ) );
+        // radio telegram with other lengths, a truncated frame and a wrong checksum
+        frames.set( 20, PacketEncoder.encodePacket( new RadioPacket( new int[] { 0xF6, 0x50, 0x01, 0x80, 0x00, 0x03,
+                0x30 }, new int[0], new Date(), true ) ) );
+        frames.set( 30, Arrays.copyOf( frames.get( 31 ), 12 ) );
+        frames.get( 40 )[frames.get( 40 ).length - 1] ^= 0x01;
+
+        for (final boolean deflate : new boolean[] { true, false }) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (ArchiveWriter writer = new ArchiveWriter( Channels.newChannel( output ), 7, deflate )) {
+                for (int i = 0; i < frames.size(); i++) {
+                    // out of order times and changing gateways
+                    writer.append( ByteBuffer.wrap( frames.get( i ) ), 1000000L * i + (i == 50 ? -5000000 : 0),
+                            i / 40 );
+                }
+                Assert.assertEquals( 100, writer.getRecordCount() );
+            }
+
+            final ArchiveReader reader = new ArchiveReader( Channels.newChannel( new ByteArrayInputStream( output
+                    .toByteArray() ) ) );
+            for (int i = 0; i < frames.size(); i++) {
+                Assert.assertTrue( reader.next() );
+                Assert.assertEquals( 1000000L * i + (i == 50 ? -5000000 : 0), reader.getReceiveNanos() );
+                Assert.assertEquals( i / 40, reader.getGateway() );
+                Assert.assertEquals( ByteBuffer.wrap( frames.get( i ) ), reader.getFrame() );
+            }
+            Assert.assertFalse( reader.next() );
+            reader.close();
+        }
+    }
+
+    @Test
+    public void compressSegment() throws IOException {
+        // 200 sensors, one telegram per minute with slowly changing values, receive times in milliseconds
+        final Random random = new Random( 7 );
+        final int[] values = new int[200];
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 1 << 20 ).build()) {
+            for (int i = 0; i < 20000; i++) {
+                final int sensor = i % 200;
+                if (random.nextInt( 10 ) == 0) {
+                    values[sensor] += random.nextInt( 3 ) - 1;
+                }
+                final long time = 1000000L * (60000L * (i / 200) + 300 * sensor + random.nextInt( 1000 ));
+                journal.append( ByteBuffer.wrap( radio( 0x01800000 + sensor, values[sensor] & 0xFF, 0x40
+                        + random.nextInt( 3 ) ) ), time, 1 );
+            }
+        }
+        final Path segment = directory.resolve( JournalFormat.segmentName( 0 ) );
+        final Path archive = directory.resolve( "telegrams.arc" );
+        Assert.assertEquals( 20000, ArchiveWriter.compressSegment( segment, archive ) );
+
+        // 40 bytes per record in the segment
+        Assert.assertTrue( Files.size( archive ) * 10 < 20000 * 40 );
+        final JournalReader journal = new JournalReader( directory );
+        try (ArchiveReader reader = new ArchiveReader( FileChannel.open( archive ) )) {
+            while (journal.next()) {
+                Assert.assertTrue( reader.next() );
+                Assert.assertEquals( journal.getReceiveNanos(), reader.getReceiveNanos() );
+                Assert.assertEquals( journal.getFrame(), reader.getFrame() );
+            }
+            Assert.assertFalse( reader.next() );
+        }
+    }
+
+    @Test( expected = EOFException.class )
+    public void truncatedArchive() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ArchiveWriter writer = new ArchiveWriter( Channels.newChannel( output ) )) {
+            writer.append( ByteBuffer.wrap( radio( 1, 2, 3 ) ), 0, 0 );
+        }
+        final byte[] bytes = output.toByteArray();
+        final ArchiveReader reader = new ArchiveReader( Channels.newChannel( new ByteArrayInputStream( Arrays
+                .copyOf( bytes, bytes.length - 2 ) ) ) );
+        reader.next();
+    }
+
+    @Test( expected = IOException.class )
+    public void noArchive() throws IOException {
+        new ArchiveReader( Channels.newChannel( new ByteArrayInputStream( new byte[] { 0x45, 0x4F, 0x4A, 0x31,
+                0x01 } ) ) );
+    }
+
+    /**
+     * @return a 4BS telegram with a value and a signal strength
+     */
+    private static byte[] radio( int sender, int value, int dBm ) {
+        final Packet packet = new RadioPacket( new int[] { 0xA5, 0x00, 0x00, value, 0x08, sender >>> 24,
+                sender >>> 16 & 0xFF, sender >>> 8 & 0xFF, sender & 0xFF, 0x00 }, new int[] { 0x01, 0xFF, 0xFF,
+                        0xFF, 0xFF, dBm, 0x00 }, new Date(), true );
+        return PacketEncoder.encodePacket( packet );
+    }
+}
@@ -0,0 +1,30 @@
+package de.atennert.connector.journal;
+
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.reader.PacketEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * Frames for the journal tests.
+ */
+final class JournalFrames {
+
+    /** length of the frames in bytes */
+    static final int LENGTH = 21;
+
+    private JournalFrames() {
+    }
+
+    /**
+     * @param sender the sender ID
+     * @return the frame of a 1BS radio telegram of the sender
+     */
+    static ByteBuffer radio( int sender ) {
+        final RadioPacket packet = new RadioPacket( new int[] { 0xF6, 0x50, sender >>> 24, sender >>> 16 & 0xFF,
+                sender >>> 8 & 0xFF, sender & 0xFF, 0x30 }, new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 },
+                new Date(), true );
+        return ByteBuffer.wrap( PacketEncoder.encodePacket( packet ) );
+    }
+}
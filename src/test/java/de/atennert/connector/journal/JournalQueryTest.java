@@ -0,0 +1,155 @@
+package de.atennert.connector.journal;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JournalQueryTest {
+
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "journal" );
+    }
+
+    @After
+    public void teardown() throws IOException {
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Test
+    public void queryBySenderAndTime() throws IOException {
+        // 31 records per segment, 4 segments
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 1024 ).build()) {
+            for (int i = 0; i < 100; i++) {
+                journal.append( frame( i % 4 ), i * 10, 0 );
+            }
+        }
+        Assert.assertTrue( Files.exists( directory.resolve( JournalFormat.indexName( 0 ) ) ) );
+        Assert.assertTrue( Files.exists( directory.resolve( JournalFormat.indexName( 3 ) ) ) );
+
+        final Recorder recorder = new Recorder();
+        final JournalQuery query = new JournalQuery( directory );
+        Assert.assertEquals( 10, query.query( 2, 205, 600, recorder ) );
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals( 220 + i * 40, recorder.times.get( i ).longValue() );
+            Assert.assertEquals( 2, recorder.senders.get( i ).intValue() );
+        }
+
+        recorder.times.clear();
+        Assert.assertEquals( 41, query.query( 200, 600, recorder ) );
+        Assert.assertEquals( 200, recorder.times.get( 0 ).longValue() );
+        Assert.assertEquals( 600, recorder.times.get( 40 ).longValue() );
+    }
+
+    @Test
+    public void skipSegments() throws IOException {
+        final int perSegment = (1024 - JournalFormat.SEGMENT_HEADER_LENGTH)
+                / (JournalFormat.RECORD_HEADER_LENGTH + JournalFrames.LENGTH);
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 1024 ).build()) {
+            // one sender per segment
+            for (int i = 0; i < 4 * perSegment; i++) {
+                journal.append( frame( 0x100 + i / perSegment ), i, 0 );
+            }
+        }
+        final Recorder recorder = new Recorder();
+        final JournalQuery query = new JournalQuery( directory );
+        Assert.assertEquals( perSegment, query.query( 0x102, 0, Long.MAX_VALUE, recorder ) );
+        Assert.assertEquals( 1, query.getSegmentsRead() );
+
+        Assert.assertEquals( 0, query.query( 0x100, perSegment, Long.MAX_VALUE, recorder ) );
+        Assert.assertEquals( 1, query.getSegmentsRead() );
+
+        Assert.assertEquals( 0, query.query( 0x999, 0, Long.MAX_VALUE, recorder ) );
+        Assert.assertEquals( 1, query.getSegmentsRead() );
+    }
+
+    @Test
+    public void queryCurrentSegment() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            journal.append( frame( 1 ), 1, 0 );
+            journal.append( frame( 2 ), 2, 5 );
+
+            final Recorder recorder = new Recorder();
+            Assert.assertEquals( 1, new JournalQuery( directory ).query( 2, 0, 10, recorder ) );
+            Assert.assertEquals( 2, recorder.times.get( 0 ).longValue() );
+            Assert.assertEquals( 5, recorder.gateways.get( 0 ).intValue() );
+        }
+    }
+
+    @Test
+    public void reopenRebuildsIndex() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            journal.append( frame( 1 ), 1, 0 );
+        }
+        Assert.assertTrue( Files.exists( directory.resolve( JournalFormat.indexName( 0 ) ) ) );
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            Assert.assertFalse( Files.exists( directory.resolve( JournalFormat.indexName( 0 ) ) ) );
+            journal.append( frame( 2 ), 2, 0 );
+        }
+        Assert.assertEquals( 1, new JournalQuery( directory ).query( 2, 0, 10, new Recorder() ) );
+    }
+
+    @Test
+    public void stopQuery() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            for (int i = 0; i < 10; i++) {
+                journal.append( frame( 1 ), i, 0 );
+            }
+        }
+        final IRecordVisitor firstOnly = new IRecordVisitor() {
+            @Override
+            public boolean visit( ByteBuffer frame, long receiveNanos, int gateway ) {
+                return false;
+            }
+        };
+        Assert.assertEquals( 1, new JournalQuery( directory ).query( 1, 0, 10, firstOnly ) );
+    }
+
+    @Test
+    public void unorderedRecords() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 16384 ).build()) {
+            for (int i = 0; i < 600; i++) {
+                journal.append( frame( 1 ), i, 0 );
+            }
+            journal.append( frame( 1 ), 5, 0 );
+        }
+        Assert.assertEquals( 2, new JournalQuery( directory ).query( 1, 5, 5, new Recorder() ) );
+    }
+
+    private static class Recorder implements IRecordVisitor {
+        final List< Long > times = new ArrayList<>();
+        final List< Integer > senders = new ArrayList<>();
+        final List< Integer > gateways = new ArrayList<>();
+
+        @Override
+        public boolean visit( ByteBuffer frame, long receiveNanos, int gateway ) {
+            times.add( receiveNanos );
+            senders.add( frame.getInt( frame.position() + 8 ) );
+            gateways.add( gateway );
+            return true;
+        }
+    }
+
+    /**
+     * @return a radio frame with the given sender ID
+     */
+    private static ByteBuffer frame( int sender ) {
+        return JournalFrames.radio( sender );
+    }
+}
@@ -0,0 +1,135 @@
+package de.atennert.connector.journal;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TelegramJournalTest {
+
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "journal" );
+    }
+
+    @After
+    public void teardown() throws IOException {
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Test
+    public void appendAndRead() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).gateway( 7 ).build()) {
+            journal.append( frame( 1 ), 1000000001L, 3 );
+            journal.receiveFrame( frame( 2 ), 1234 );
+            Assert.assertEquals( 2, journal.getRecordCount() );
+        }
+
+        final JournalReader reader = new JournalReader( directory );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1000000001L, reader.getReceiveNanos() );
+        Assert.assertEquals( 1000, reader.getTimestamp() );
+        Assert.assertEquals( 3, reader.getGateway() );
+        Assert.assertEquals( frame( 1 ), reader.getFrame() );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1234000000L, reader.getReceiveNanos() );
+        Assert.assertEquals( 7, reader.getGateway() );
+        Assert.assertEquals( frame( 2 ), reader.getFrame() );
+        Assert.assertTrue( reader.getFrame().isReadOnly() );
+        Assert.assertFalse( reader.next() );
+        reader.close();
+    }
+
+    @Test
+    public void frameListenersOfGateways() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).gateway( 7 ).build()) {
+            journal.frameListener( 1 ).receiveFrame( frame( 1 ), 1 );
+            journal.frameListener( 2 ).receiveFrame( frame( 2 ), 2, 2000123L );
+        }
+
+        final JournalReader reader = new JournalReader( directory );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1, reader.getGateway() );
+        Assert.assertEquals( 1000000L, reader.getReceiveNanos() );
+        Assert.assertEquals( frame( 1 ), reader.getFrame() );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 2, reader.getGateway() );
+        // the receive time of the decoder
+        Assert.assertEquals( 2000123L, reader.getReceiveNanos() );
+        Assert.assertEquals( frame( 2 ), reader.getFrame() );
+        Assert.assertFalse( reader.next() );
+        reader.close();
+    }
+
+    @Test
+    public void segmentsRollOver() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 1024 )
+                .syncPolicy( SyncPolicy.PERIODIC, 1 ).build()) {
+            // 16 bytes header + 21 bytes frame per record, 27 records per segment
+            for (int i = 0; i < 100; i++) {
+                journal.append( frame( i ), i, 0 );
+            }
+            Assert.assertEquals( 3, journal.getSegmentSequence() );
+        }
+        Assert.assertEquals( 4, JournalFormat.listSegments( directory ).size() );
+
+        final JournalReader reader = new JournalReader( directory );
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue( reader.next() );
+            Assert.assertEquals( i, reader.getReceiveNanos() );
+            Assert.assertEquals( frame( i ), reader.getFrame() );
+        }
+        Assert.assertFalse( reader.next() );
+    }
+
+    @Test
+    public void reopenContinuesJournal() throws IOException {
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            journal.append( frame( 1 ), 1, 0 );
+        }
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            journal.append( frame( 2 ), 2, 0 );
+            Assert.assertEquals( 0, journal.getSegmentSequence() );
+        }
+
+        final JournalReader reader = new JournalReader( directory );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1, reader.getReceiveNanos() );
+        final long sequence = reader.getSegmentSequence();
+        final int offset = reader.getOffset();
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 2, reader.getReceiveNanos() );
+        Assert.assertFalse( reader.next() );
+
+        reader.seek( sequence, offset );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1, reader.getReceiveNanos() );
+    }
+
+    @Test( expected = IOException.class )
+    public void appendAfterClose() throws IOException {
+        final TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build();
+        journal.close();
+        journal.append( frame( 1 ), 1, 0 );
+    }
+
+    /**
+     * @return a radio frame with a counter as sender ID
+     */
+    private static ByteBuffer frame( int counter ) {
+        return JournalFrames.radio( counter );
+    }
+}
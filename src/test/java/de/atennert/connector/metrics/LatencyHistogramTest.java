@@ -0,0 +1,53 @@
+package de.atennert.connector.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record( i );
+        }
+
+        Assert.assertEquals( 100, histogram.getCount() );
+        Assert.assertEquals( 50, histogram.getValueAtPercentile( 50 ) );
+        Assert.assertEquals( 99, histogram.getValueAtPercentile( 99 ) );
+        Assert.assertEquals( 100, histogram.getMax() );
+        Assert.assertEquals( 50, histogram.getMean() );
+    }
+
+    @Test
+    public void largeValuesWithinRelativeError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1000; value < 1000000000000L; value *= 3) {
+            histogram.reset();
+            histogram.record( value );
+            histogram.record( 2 * value );
+
+            final long p50 = histogram.getValueAtPercentile( 50 );
+            Assert.assertTrue( value + " -> " + p50, p50 >= value && p50 - value <= value / 64 );
+            Assert.assertEquals( 2 * value, histogram.getValueAtPercentile( 100 ) );
+        }
+    }
+
+    @Test
+    public void outOfRangeValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record( -5 );
+        histogram.record( Long.MAX_VALUE );
+
+        Assert.assertEquals( 0, histogram.getValueAtPercentile( 50 ) );
+        Assert.assertEquals( Long.MAX_VALUE, histogram.getValueAtPercentile( 100 ) );
+    }
+
+    @Test
+    public void emptyHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Assert.assertEquals( 0, histogram.getValueAtPercentile( 99 ) );
+        Assert.assertEquals( 0, histogram.getMean() );
+    }
+}
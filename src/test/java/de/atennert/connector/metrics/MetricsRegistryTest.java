@@ -0,0 +1,170 @@
+package de.atennert.connector.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+import java.util.SortedMap;
+import java.util.function.LongSupplier;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry registry;
+
+    @Before
+    public void setup() {
+        registry = new MetricsRegistry();
+    }
+
+    @Test
+    public void countersAreShared() {
+        registry.counter( "a" ).increment();
+        registry.counter( "a" ).add( 2 );
+
+        Assert.assertEquals( Long.valueOf( 3 ), registry.getValue( "a" ) );
+        Assert.assertNull( registry.getValue( "b" ) );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gaugeIsNoCounter() {
+        registry.gauge( "a", constant( 1 ) );
+        registry.counter( "a" );
+    }
+
+    @Test
+    public void removeMetrics() {
+        registry.counter( "a" ).increment();
+        registry.histogram( "b" ).record( 1000 );
+
+        registry.remove( "a" );
+        registry.remove( "b" );
+
+        Assert.assertTrue( registry.snapshot().isEmpty() );
+        Assert.assertNull( registry.getHistogram( "b" ) );
+        Assert.assertEquals( 0, registry.counter( "a" ).getAsLong() );
+    }
+
+    @Test
+    public void snapshotIsSorted() {
+        registry.gauge( "b", constant( 2 ) );
+        registry.counter( "a" ).increment();
+
+        final SortedMap< String, Long > snapshot = registry.snapshot();
+        Assert.assertEquals( "a", snapshot.firstKey() );
+        Assert.assertEquals( Long.valueOf( 2 ), snapshot.get( "b" ) );
+    }
+
+    @Test
+    public void pipelineMetrics() {
+        final PipelineMetrics metrics = new PipelineMetrics( registry );
+        metrics.onFrameDecoded( true );
+        metrics.onFrameDecoded( false );
+        metrics.onPacketCreated( 0x01 );
+        metrics.onDispatchQueued();
+
+        Assert.assertEquals( Long.valueOf( 2 ), registry.getValue( PipelineMetrics.FRAMES_DECODED ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( PipelineMetrics.PAYLOAD_CRC_FAILURES ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( PipelineMetrics.PACKETS_CREATED + "0x01" ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( PipelineMetrics.DISPATCH_QUEUE_DEPTH ) );
+
+        metrics.onDispatchStarted( null );
+        Assert.assertEquals( Long.valueOf( 0 ), registry.getValue( PipelineMetrics.DISPATCH_QUEUE_DEPTH ) );
+    }
+
+    @Test
+    public void traceSampledFrames() {
+        final PipelineMetrics metrics = new PipelineMetrics( registry, 2 );
+        metrics.onBytesQueued( 10 );
+        metrics.onBytesQueued( 10 );
+
+        Assert.assertNull( metrics.onFrameComplete( 0 ) );
+        final PacketTrace trace = metrics.onFrameComplete( 12 );
+        Assert.assertNotNull( trace );
+        Assert.assertTrue( trace.getReadTime() <= trace.getDecodedTime() );
+
+        metrics.onPacketBuilt( trace );
+        metrics.onDispatchQueued();
+        metrics.onDispatchStarted( trace );
+        metrics.listener( "l" ).onReturned( trace, System.nanoTime() );
+        metrics.onDispatchCompleted( trace );
+
+        for (final String name : new String[] { PipelineMetrics.DECODE_LATENCY, PipelineMetrics.FACTORY_LATENCY,
+                PipelineMetrics.DISPATCH_LATENCY, PipelineMetrics.TOTAL_LATENCY,
+                PipelineMetrics.LISTENER + "l.latency" }) {
+            Assert.assertEquals( name, Long.valueOf( 1 ), registry.getValue( name + ".count" ) );
+        }
+    }
+
+    @Test
+    public void noTraceForUnknownReadTime() {
+        final PipelineMetrics metrics = new PipelineMetrics( registry, 1 );
+        Assert.assertNull( metrics.onFrameComplete( 0 ) );
+
+        metrics.onBytesQueued( 10 );
+        Assert.assertNull( metrics.onFrameComplete( 10 ) );
+        Assert.assertNotNull( metrics.onFrameComplete( 9 ) );
+    }
+
+    @Test
+    public void traceAfterDiscardedBytes() {
+        final PipelineMetrics metrics = new PipelineMetrics( registry, 1 );
+        metrics.onBytesQueued( 10 );
+        // the decoder took 4 bytes, the other 6 are removed from the queue
+        metrics.onBytesDiscarded( 6 );
+        final long restart = System.nanoTime();
+        metrics.onBytesQueued( 10 );
+
+        final PacketTrace trace = metrics.onFrameComplete( 4 );
+        Assert.assertNotNull( trace );
+        Assert.assertTrue( trace.getReadTime() >= restart );
+        Assert.assertEquals( Long.valueOf( 6 ), registry.getValue( PipelineMetrics.BYTES_DISCARDED ) );
+    }
+
+    @Test
+    public void noTraceWithoutSampling() {
+        final PipelineMetrics metrics = new PipelineMetrics( registry, 0 );
+        metrics.onBytesQueued( 10 );
+
+        Assert.assertNull( metrics.onFrameComplete( 0 ) );
+    }
+
+    @Test
+    public void exportViaJmx() throws Exception {
+        final JmxMetricsExporter exporter = new JmxMetricsExporter( "test" );
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        registry.counter( "decoder.frames" ).add( 5 );
+
+        registry.addExporter( exporter );
+        try {
+            Assert.assertEquals( 5L, server.getAttribute( exporter.getObjectName(), "decoder.frames" ) );
+        } finally {
+            registry.removeExporter( exporter );
+        }
+        Assert.assertFalse( server.isRegistered( exporter.getObjectName() ) );
+    }
+
+    @Test
+    public void removeAllExporters() {
+        final JmxMetricsExporter first = new JmxMetricsExporter( "first" );
+        final JmxMetricsExporter second = new JmxMetricsExporter( "second" );
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        registry.addExporter( first );
+        registry.addExporter( second );
+
+        registry.removeExporters();
+
+        Assert.assertFalse( server.isRegistered( first.getObjectName() ) );
+        Assert.assertFalse( server.isRegistered( second.getObjectName() ) );
+    }
+
+    private static LongSupplier constant( final long value ) {
+        return new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return value;
+            }
+        };
+    }
+}
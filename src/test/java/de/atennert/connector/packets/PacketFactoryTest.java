@@ -0,0 +1,124 @@
+package de.atennert.connector.packets;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PacketFactoryTest {
+
+    private PacketFactory factory;
+
+    @Before
+    public void setup() {
+        factory = new PacketFactory();
+    }
+
+    @Test
+    public void standardTypes() {
+        Assert.assertTrue( create( IPacketConstants.TYPE_RADIO ) instanceof RadioPacket );
+        Assert.assertEquals( Packet.class, create( 0x80 ).getClass() );
+    }
+
+    @Test
+    public void extensionOnlyForDeclaredTypes() {
+        final CountingFactory extension = new CountingFactory( 0x80 );
+        Assert.assertTrue( factory.addFactory( extension ) );
+
+        Assert.assertTrue( create( 0x80 ) instanceof ExtensionPacket );
+        Assert.assertEquals( Packet.class, create( 0x81 ).getClass() );
+        Assert.assertEquals( 1, extension.calls );
+
+        Assert.assertTrue( factory.removeFactory( extension ) );
+        Assert.assertFalse( factory.removeFactory( extension ) );
+        Assert.assertEquals( Packet.class, create( 0x80 ).getClass() );
+    }
+
+    @Test
+    public void extensionsInOrderOfAddition() {
+        final CountingFactory any = new CountingFactory( IPacketConstants.TYPE_ANY );
+        final CountingFactory declared = new CountingFactory( 0x81 );
+        factory.addFactory( new IPacketFactory() {
+            @Override
+            public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+                return null;
+            }
+        } );
+        factory.addFactory( declared );
+        factory.addFactory( any );
+
+        Assert.assertTrue( create( 0x80 ) instanceof ExtensionPacket );
+        Assert.assertTrue( create( 0x81 ) instanceof ExtensionPacket );
+        Assert.assertEquals( 1, declared.calls );
+        Assert.assertEquals( 1, any.calls );
+
+        factory.clearFactories();
+        Assert.assertEquals( Packet.class, create( 0x80 ).getClass() );
+    }
+
+    @Test
+    public void typesAreReadWhenAdded() {
+        final CountingFactory changing = new CountingFactory( 0x80 );
+        final CountingFactory other = new CountingFactory( 0x81 );
+        factory.addFactory( changing );
+        factory.addFactory( other );
+
+        changing.types = null;
+        Assert.assertTrue( factory.removeFactory( other ) );
+
+        Assert.assertTrue( create( 0x80 ) instanceof ExtensionPacket );
+        Assert.assertEquals( Packet.class, create( 0x81 ).getClass() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void factoryWithoutTypes() {
+        final CountingFactory extension = new CountingFactory( 0x80 );
+        extension.types = null;
+
+        factory.addFactory( extension );
+    }
+
+    @Test
+    public void factoriesWithoutTypesAreSkipped() {
+        final CountingFactory extension = new CountingFactory( 0x80 );
+        final CountingFactory withoutTypes = new CountingFactory( 0x81 );
+        withoutTypes.types = null;
+
+        Assert.assertEquals( 1, factory.addFactories( Arrays.asList( withoutTypes, extension ) ) );
+        Assert.assertTrue( create( 0x80 ) instanceof ExtensionPacket );
+        Assert.assertEquals( Packet.class, create( 0x81 ).getClass() );
+    }
+
+    private Packet create( int type ) {
+        return factory.createPacket( type, new int[] { 0xF6, 0x50, 0, 0, 0, 1, 0x30 }, new int[0], new Date(), true );
+    }
+
+    private static class ExtensionPacket extends Packet {
+        private ExtensionPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+            super( type, data, optional, timestamp, isValid );
+        }
+    }
+
+    private static class CountingFactory implements IPacketFactory {
+        private int[] types;
+        private int calls = 0;
+
+        private CountingFactory( int type ) {
+            this.types = new int[] { type };
+        }
+
+        @Override
+        public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+            calls++;
+            return new ExtensionPacket( type, data, optional, timestamp, isValid );
+        }
+
+        @Override
+        public int[] getSupportedTypes() {
+            return types;
+        }
+    }
+}
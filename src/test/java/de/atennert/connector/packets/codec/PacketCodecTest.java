@@ -0,0 +1,125 @@
+package de.atennert.connector.packets.codec;
+
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.packets.enocean.ResponsePacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Date;
+
+public class PacketCodecTest {
+
+    private static final int[] RADIO_DATA = { 0xA5, 0x00, 0x7D, 0x80, 0x08, 0x01, 0x80, 0x00, 0x01, 0x00 };
+    private static final int[] RADIO_OPTIONAL = { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 };
+
+    private final PacketFactory factory = new PacketFactory();
+
+    @Test
+    public void encodeAndDecodeRecord() {
+        final Packet packet = new RadioPacket( RADIO_DATA, RADIO_OPTIONAL, new Date( 1500000000123L ), true );
+        final ByteBuffer buffer = ByteBuffer.allocate( 64 );
+        Assert.assertEquals( 1500000000123L, PacketCodec.encode( packet, 3, 0, buffer ) );
+        Assert.assertEquals( PacketCodec.encodedLength( packet, 3, 0 ), buffer.position() );
+        buffer.flip();
+
+        final PacketRecord record = new PacketRecord();
+        Assert.assertTrue( record.read( buffer, 0 ) );
+        Assert.assertFalse( buffer.hasRemaining() );
+        Assert.assertEquals( IPacketConstants.TYPE_RADIO, record.getType() );
+        Assert.assertEquals( 3, record.getGateway() );
+        Assert.assertEquals( 0x7D, record.getDataValue( 2 ) );
+        Assert.assertEquals( 0x44, record.getOptionalValue( 5 ) );
+
+        final Packet decoded = record.toPacket( factory );
+        Assert.assertTrue( decoded instanceof RadioPacket );
+        Assert.assertTrue( decoded.isValid );
+        Assert.assertEquals( packet.timestamp, decoded.timestamp );
+        Assert.assertArrayEquals( RADIO_DATA, decoded.getData() );
+        Assert.assertArrayEquals( RADIO_OPTIONAL, decoded.getOptional() );
+    }
+
+    @Test
+    public void incompleteRecord() {
+        final Packet packet = new RadioPacket( RADIO_DATA, RADIO_OPTIONAL, new Date(), false );
+        final ByteBuffer buffer = ByteBuffer.allocate( 64 );
+        PacketCodec.encode( packet, 0, 0, buffer );
+        buffer.flip();
+        buffer.limit( buffer.limit() - 1 );
+
+        Assert.assertFalse( new PacketRecord().read( buffer, 0 ) );
+        Assert.assertEquals( 0, buffer.position() );
+    }
+
+    @Test( expected = BufferOverflowException.class )
+    public void bufferTooSmall() {
+        final Packet packet = new RadioPacket( RADIO_DATA, RADIO_OPTIONAL, new Date(), true );
+        PacketCodec.encode( packet, 0, 0, ByteBuffer.allocate( 10 ) );
+    }
+
+    @Test
+    public void writeAndReadStream() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PacketWriter writer = new PacketWriter( Channels.newChannel( output ), 32 )) {
+            writer.write( new RadioPacket( RADIO_DATA, RADIO_OPTIONAL, new Date( 1000000 ), true ), 1 );
+            // earlier timestamp, negative gateway tag
+            writer.write( new ResponsePacket( 0x00, new Date( 999000 ), true ), -2 );
+            writer.write( new Packet( 0x42, new int[300], new int[0], null, false ), 5 );
+            writer.write( new RadioPacket( RADIO_DATA, RADIO_OPTIONAL, new Date( 1000001 ), false ), 1 );
+            Assert.assertEquals( 4, writer.getCount() );
+        }
+
+        final PacketReader reader = new PacketReader( Channels.newChannel( new ByteArrayInputStream( output
+                .toByteArray() ) ), 8 );
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1000000, reader.getRecord().getTimestamp() );
+        Assert.assertEquals( 1, reader.getRecord().getGateway() );
+
+        Assert.assertTrue( reader.next() );
+        final Packet response = reader.getRecord().toPacket( factory );
+        Assert.assertTrue( response instanceof ResponsePacket );
+        Assert.assertEquals( 999000, response.timestamp.getTime() );
+        Assert.assertEquals( -2, reader.getRecord().getGateway() );
+
+        Assert.assertTrue( reader.next() );
+        final Packet large = reader.getRecord().toPacket( factory );
+        Assert.assertEquals( 0x42, large.type );
+        Assert.assertNull( large.timestamp );
+        Assert.assertFalse( large.isValid );
+        Assert.assertEquals( 300, large.getDataLength() );
+
+        Assert.assertTrue( reader.next() );
+        Assert.assertEquals( 1000001, reader.getRecord().getTimestamp() );
+        Assert.assertFalse( reader.getRecord().isValid() );
+        Assert.assertFalse( reader.next() );
+        reader.close();
+    }
+
+    @Test( expected = EOFException.class )
+    public void truncatedStream() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PacketWriter writer = new PacketWriter( Channels.newChannel( output ) )) {
+            writer.write( new RadioPacket( RADIO_DATA, RADIO_OPTIONAL, new Date(), true ), 0 );
+        }
+        final byte[] bytes = output.toByteArray();
+        final PacketReader reader = new PacketReader( Channels.newChannel( new ByteArrayInputStream( Arrays.copyOf(
+                bytes, bytes.length - 3 ) ) ) );
+        reader.next();
+    }
+
+    @Test( expected = IOException.class )
+    public void noPacketStream() throws IOException {
+        new PacketReader( Channels.newChannel( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4, 5, 6 } ) ) )
+                .next();
+    }
+}
@@ -0,0 +1,124 @@
+package de.atennert.connector.packets.eep;
+
+import java.util.Date;
+
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EepProfileTest {
+
+    private static final int SENDER = 0x01802A3B;
+
+    private static Packet packet( int... userDataAndRorg ) {
+        final int[] data = new int[userDataAndRorg.length + 5];
+        System.arraycopy( userDataAndRorg, 0, data, 0, userDataAndRorg.length );
+        data[data.length - 5] = SENDER >>> 24;
+        data[data.length - 4] = (SENDER >>> 16) & 0xFF;
+        data[data.length - 3] = (SENDER >>> 8) & 0xFF;
+        data[data.length - 2] = SENDER & 0xFF;
+        data[data.length - 1] = 0x30;
+        return new RadioPacket( data, new Date(), true );
+    }
+
+    @Test
+    public void temperature() {
+        final double[] values = new double[2];
+        Assert.assertTrue( EepProfiles.A5_02_05.decode( packet( 0xA5, 0x00, 0x00, 0x00, 0x08 ), values ) );
+        Assert.assertEquals( 40, values[0], 1e-9 );
+        Assert.assertEquals( 1, values[1], 1e-9 );
+
+        EepProfiles.A5_02_05.decode( packet( 0xA5, 0x00, 0x00, 0xFF, 0x00 ), values );
+        Assert.assertEquals( 0, values[0], 1e-9 );
+        Assert.assertEquals( 0, values[1], 1e-9 );
+    }
+
+    @Test
+    public void temperatureWithTenBits() {
+        final EepProfile profile = EepProfiles.get( "a5-02-30" );
+        Assert.assertEquals( "A5-02-30", profile.getId() );
+        // raw value 0x3FF is -40 degrees, 0 is 62.3 degrees
+        Assert.assertEquals( -40, profile.decodeField( packet( 0xA5, 0x00, 0x03, 0xFF, 0x08 ), 0 ), 1e-9 );
+        Assert.assertEquals( 62.3, profile.decodeField( packet( 0xA5, 0x00, 0x00, 0x00, 0x08 ), 0 ), 1e-9 );
+    }
+
+    @Test
+    public void humidity() {
+        final EepProfile profile = EepProfiles.A5_04_01;
+        final double[] values = new double[profile.getFieldCount()];
+        Assert.assertTrue( profile.decode( packet( 0xA5, 0x00, 125, 250, 0x0A ), values ) );
+        Assert.assertEquals( 50, values[profile.indexOf( "HUM" )], 1e-9 );
+        Assert.assertEquals( 40, values[profile.indexOf( "TMP" )], 1e-9 );
+        Assert.assertEquals( 1, values[profile.indexOf( "TSN" )], 1e-9 );
+        Assert.assertEquals( "%", profile.getFields().get( profile.indexOf( "HUM" ) ).getUnit() );
+    }
+
+    @Test
+    public void rockerSwitch() {
+        final long[] values = new long[4];
+        // button B0 with the energy bow pressed
+        Assert.assertTrue( EepProfiles.F6_02_01.decodeRaw( packet( 0xF6, 0x50 ), values ) );
+        Assert.assertArrayEquals( new long[] { 2, 1, 0, 0 }, values );
+    }
+
+    @Test
+    public void contact() {
+        final double[] values = new double[2];
+        Assert.assertTrue( EepProfiles.D5_00_01.decode( packet( 0xD5, 0x09 ), values ) );
+        Assert.assertEquals( 1, values[0], 1e-9 );
+        Assert.assertEquals( 1, values[1], 1e-9 );
+    }
+
+    @Test
+    public void otherRorgIsRejected() {
+        Assert.assertFalse( EepProfiles.A5_02_05.decode( packet( 0xF6, 0x50 ), new double[2] ) );
+        Assert.assertTrue( Double.isNaN( EepProfiles.A5_02_05.decodeField( packet( 0xA5, 0x00 ), 0 ) ) );
+    }
+
+    @Test
+    public void fieldAcrossBytes() {
+        final EepProfile profile = new EepProfile( 0xA5, 0x3F, 0x7F, EepField.raw( "X", 5, 14 ) );
+        // bits 5 to 18 of 0b00000111 11111111 11100000
+        Assert.assertEquals( 0x3FFF, profile.decodeField( packet( 0xA5, 0x07, 0xFF, 0xE0, 0x00 ), 0 ), 0 );
+    }
+
+    @Test
+    public void decoderAppliesMappedProfile() {
+        final EepDecoder decoder = new EepDecoder();
+        final Packet packet = packet( 0xA5, 0x00, 0x00, 0x00, 0x08 );
+        Assert.assertEquals( SENDER, EepDecoder.getSenderId( packet ) );
+        Assert.assertNull( decoder.decode( packet, new double[2] ) );
+
+        decoder.map( SENDER + 1, EepProfiles.A5_04_01 );
+        decoder.map( SENDER, EepProfiles.A5_02_05 );
+        decoder.map( SENDER - 1, EepProfiles.F6_02_01 );
+        Assert.assertEquals( 3, decoder.size() );
+        final double[] values = new double[2];
+        Assert.assertSame( EepProfiles.A5_02_05, decoder.decode( packet, values ) );
+        Assert.assertEquals( 40, values[0], 1e-9 );
+
+        decoder.map( SENDER, EepProfiles.get( "A5-02-01" ) );
+        Assert.assertSame( EepProfiles.get( 0xA5, 0x02, 0x01 ), decoder.getProfile( SENDER ) );
+        Assert.assertTrue( decoder.unmap( SENDER ) );
+        Assert.assertFalse( decoder.unmap( SENDER ) );
+        Assert.assertNull( decoder.getProfile( packet ) );
+        Assert.assertSame( EepProfiles.F6_02_01, decoder.getProfile( SENDER - 1 ) );
+    }
+
+    @Test
+    public void valuesAreCachedInPacket() {
+        final EepDecoder decoder = new EepDecoder();
+        final Packet packet = packet( 0xA5, 0x00, 125, 250, 0x0A );
+        Assert.assertNull( packet.getEepValues( decoder ) );
+
+        decoder.map( SENDER, EepProfiles.A5_04_01 );
+        final EepValues values = packet.getEepValues( decoder );
+        Assert.assertEquals( 50, values.get( "HUM" ), 1e-9 );
+        Assert.assertTrue( Double.isNaN( values.get( "CO" ) ) );
+        Assert.assertSame( values, packet.getEepValues( decoder ) );
+
+        decoder.map( SENDER, EepProfiles.A5_04_02 );
+        Assert.assertEquals( 60, packet.getEepValues( decoder ).get( "TMP" ), 1e-9 );
+    }
+}
@@ -0,0 +1,140 @@
+package de.atennert.connector.reader;
+
+import de.atennert.connector.distribution.IEventListener;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.reader.ComConnector.ConnectionStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class ComConnectorTest {
+
+    private PortDiscovery discovery;
+    private ScriptedConnector connector;
+    private Thread thread;
+    private final BlockingQueue< ConnectionStatus > states = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setup() {
+        discovery = new PortDiscovery( Paths.get( "missing" ), 60000, new Supplier< List< String > >() {
+            @Override
+            public List< String > get() {
+                return Collections.singletonList( "port" );
+            }
+        } );
+        connector = new ScriptedConnector( discovery );
+        connector.setReconnectDelays( 20, 80 );
+        Assert.assertTrue( connector.setSerialPort( "port" ) );
+        connector.addListener( new IEventListener< ConnectionStatus >() {
+            @Override
+            public void onEvent( ConnectionStatus event ) {
+                states.add( event );
+            }
+        } );
+        Assert.assertEquals( ConnectionStatus.CLOSED, states.poll() );
+    }
+
+    @After
+    public void teardown() throws InterruptedException {
+        connector.stopThread();
+        if( thread != null ) {
+            thread.join( 5000 );
+        }
+        discovery.stop();
+    }
+
+    @Test
+    public void reconnectWithIncreasingDelay() throws InterruptedException {
+        // opened, then 4 failed attempts to reopen the port before it works again
+        connector.results.addAll( Arrays.asList( true, false, false, false, false, true ) );
+        start();
+        Assert.assertEquals( ConnectionStatus.OPENED, states.poll( 1, TimeUnit.SECONDS ) );
+
+        connector.onConnectionLost( "Test!" );
+
+        Assert.assertEquals( ConnectionStatus.RECONNECTING, states.poll( 1, TimeUnit.SECONDS ) );
+        Assert.assertEquals( ConnectionStatus.RESTORED, states.poll( 2, TimeUnit.SECONDS ) );
+        Assert.assertEquals( 6, connector.attempts.size() );
+        Assert.assertEquals( 1, connector.closed );
+
+        // the delay is doubled after every failed attempt up to the maximum
+        final long[] delays = { 20, 40, 80, 80 };
+        for (int i = 0; i < delays.length; i++) {
+            final long delay = connector.attempts.get( i + 2 ) - connector.attempts.get( i + 1 );
+            Assert.assertTrue( "attempt " + i + ": " + delay,
+                    delay >= TimeUnit.MILLISECONDS.toNanos( delays[i] ) );
+        }
+
+        connector.stopThread();
+        Assert.assertEquals( ConnectionStatus.CLOSED, states.poll( 2, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void stopWhileReconnecting() throws InterruptedException {
+        connector.results.add( true );
+        start();
+        Assert.assertEquals( ConnectionStatus.OPENED, states.poll( 1, TimeUnit.SECONDS ) );
+
+        connector.onConnectionLost( "Test!" );
+        Assert.assertEquals( ConnectionStatus.RECONNECTING, states.poll( 1, TimeUnit.SECONDS ) );
+        Thread.sleep( 100 );
+        connector.stopThread();
+
+        Assert.assertEquals( ConnectionStatus.CLOSED, states.poll( 2, TimeUnit.SECONDS ) );
+        thread.join( 2000 );
+        Assert.assertFalse( thread.isAlive() );
+    }
+
+    @Test
+    public void openFailed() throws InterruptedException {
+        connector.results.add( false );
+        start();
+
+        Assert.assertEquals( ConnectionStatus.OPEN_FAILED, states.poll( 1, TimeUnit.SECONDS ) );
+        Assert.assertEquals( 1, connector.attempts.size() );
+    }
+
+    private void start() {
+        thread = new Thread( connector );
+        thread.start();
+    }
+
+    /**
+     * Connector, that opens the port with the given results instead of RXTX
+     * and records the times of the attempts.
+     */
+    private static class ScriptedConnector extends ComConnector {
+        private final BlockingQueue< Boolean > results = new LinkedBlockingQueue<>();
+        private final List< Long > attempts = Collections.synchronizedList( new ArrayList< Long >() );
+        private volatile int closed = 0;
+
+        private ScriptedConnector( PortDiscovery discovery ) {
+            super( new LinkedBlockingQueue< Integer >(), new LinkedBlockingQueue< Packet >(), WaitStrategy.SLEEPING,
+                    10, discovery, new SendBuffer(), new PipelineMetrics() );
+        }
+
+        @Override
+        boolean openPort( String portName ) {
+            attempts.add( System.nanoTime() );
+            final Boolean result = results.poll();
+            return result != null && result;
+        }
+
+        @Override
+        void closePort() {
+            closed++;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package de.atennert.connector.reader;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.distribution.IRawFrameListener;
+import de.atennert.connector.distribution.PacketDistributor;
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.metrics.PipelineMetrics;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.PacketFactory;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.packets.enocean.ResponsePacket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PacketDecoderTest {
+
+    private MetricsRegistry registry;
+    private ExecutorService executor;
+    private BlockingQueue< Integer > queue;
+    private PacketDistributor distributor;
+    private PacketDecoder decoder;
+    private BlockingQueue< Packet > received;
+
+    @Before
+    public void setup() {
+        registry = new MetricsRegistry();
+        final PipelineMetrics metrics = new PipelineMetrics( registry, 0 );
+        queue = new LinkedBlockingQueue<>();
+        executor = Executors.newSingleThreadExecutor();
+        distributor = new PacketDistributor( executor, metrics );
+        decoder = new PacketDecoder( queue, distributor, new PacketFactory( metrics ), null, WaitStrategy.SLEEPING,
+                PacketDecoder.DEFAULT_WAIT_TIME, metrics );
+        received = new LinkedBlockingQueue<>();
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void unsubscribedFramesAreSkipped() throws InterruptedException {
+        subscribe( IPacketConstants.TYPE_RESPONSE );
+        feed( new Packet( IPacketConstants.TYPE_RADIO, new int[] { 0xF6, 0x50, 0x01, 0x80, 0x00, 0x01, 0x30 },
+                new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 }, new Date(), true ) );
+        feed( new Packet( IPacketConstants.TYPE_RESPONSE, new int[] { 0x00 }, new int[0], new Date(), true ) );
+
+        decoder.decodeAvailableData();
+
+        final Packet packet = received.poll( 1, TimeUnit.SECONDS );
+        Assert.assertTrue( packet instanceof ResponsePacket );
+        Assert.assertTrue( queue.isEmpty() );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( PipelineMetrics.FRAMES_DECODED ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( PipelineMetrics.FRAMES_UNSUBSCRIBED ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( PipelineMetrics.PACKETS_CREATED + "0x02" ) );
+        Assert.assertNull( registry.getValue( PipelineMetrics.PACKETS_CREATED + "0x01" ) );
+    }
+
+    @Test
+    public void subscribedFramesAreCreated() throws InterruptedException {
+        subscribe( IPacketConstants.TYPE_ANY );
+        feed( new Packet( IPacketConstants.TYPE_RADIO, new int[] { 0xF6, 0x50, 0x01, 0x80, 0x00, 0x01, 0x30 },
+                new int[0], new Date(), true ) );
+
+        decoder.decodeAvailableData();
+
+        Assert.assertTrue( received.poll( 1, TimeUnit.SECONDS ) instanceof RadioPacket );
+        Assert.assertEquals( Long.valueOf( 0 ), registry.getValue( PipelineMetrics.FRAMES_UNSUBSCRIBED ) );
+    }
+
+    @Test
+    public void longFramesRoundTrip() throws InterruptedException {
+        subscribe( IPacketConstants.TYPE_ANY );
+        // data length 0x01A0: more than 255 bytes and a low length byte with the sign bit
+        final int[] data = new int[0x01A0];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i & 0xFF;
+        }
+        final Packet packet = new Packet( 0x0A, data, new int[] { 0x01, 0x02 }, new Date(), true );
+        final byte[] frame = PacketEncoder.encodePacket( packet );
+        Assert.assertEquals( 0x01, frame[1] );
+        Assert.assertEquals( (byte) 0xA0, frame[2] );
+        feed( packet );
+
+        decoder.decodeAvailableData();
+
+        final Packet decoded = received.poll( 1, TimeUnit.SECONDS );
+        Assert.assertNotNull( decoded );
+        Assert.assertTrue( decoded.isValid );
+        Assert.assertArrayEquals( data, decoded.getData() );
+        Assert.assertArrayEquals( new int[] { 0x01, 0x02 }, decoded.getOptional() );
+        Assert.assertArrayEquals( frame, PacketEncoder.encodePacket( decoded ) );
+        Assert.assertTrue( queue.isEmpty() );
+    }
+
+    @Test
+    public void rawFramesWithoutPackets() {
+        final List< byte[] > frames = new ArrayList<>();
+        decoder.addRawFrameListener( new IRawFrameListener() {
+            @Override
+            public void receiveFrame( ByteBuffer frame, long timestamp ) {
+                Assert.assertTrue( frame.isReadOnly() );
+                final byte[] copy = new byte[frame.remaining()];
+                frame.get( copy );
+                frames.add( copy );
+            }
+        } );
+        final Packet radio = new Packet( IPacketConstants.TYPE_RADIO, new int[] { 0xA5, 0, 0, 0x7F, 0x08, 0x01, 0x80,
+                0x00, 0x01, 0x00 }, new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 }, new Date(), true );
+        final byte[] invalid = PacketEncoder.encodePacket( radio );
+        invalid[invalid.length - 1] ^= 0x01;
+        feed( radio );
+        for (final byte value : invalid) {
+            queue.add( value & 0xFF );
+        }
+        feed( radio );
+
+        decoder.decodeAvailableData();
+
+        Assert.assertEquals( 2, frames.size() );
+        Assert.assertArrayEquals( PacketEncoder.encodePacket( radio ), frames.get( 0 ) );
+        Assert.assertArrayEquals( PacketEncoder.encodePacket( radio ), frames.get( 1 ) );
+        Assert.assertEquals( Long.valueOf( 3 ), registry.getValue( PipelineMetrics.FRAMES_DECODED ) );
+        Assert.assertEquals( Long.valueOf( 0 ), registry.getValue( PipelineMetrics.FRAMES_UNSUBSCRIBED ) );
+        Assert.assertNull( registry.getValue( PipelineMetrics.PACKETS_CREATED + "0x01" ) );
+    }
+
+    @Test
+    public void receiveTimesOfTheClock() throws InterruptedException {
+        subscribe( IPacketConstants.TYPE_ANY );
+        final List< Long > times = new ArrayList<>();
+        decoder.addRawFrameListener( new IRawFrameListener() {
+            @Override
+            public void receiveFrame( ByteBuffer frame, long timestamp ) {
+                Assert.fail( "The decoder must pass the receive time in nanoseconds!" );
+            }
+
+            @Override
+            public void receiveFrame( ByteBuffer frame, long timestamp, long receiveNanos ) {
+                times.add( timestamp );
+                times.add( receiveNanos );
+            }
+        } );
+        decoder.setReceiveClock( new IReceiveClock() {
+            @Override
+            public long getReceiveNanos( long frameStart ) {
+                return 1234567891L;
+            }
+        } );
+        feed( new Packet( IPacketConstants.TYPE_RESPONSE, new int[] { 0x00 }, new int[0], new Date(), true ) );
+
+        decoder.decodeAvailableData();
+
+        Assert.assertEquals( 1234, received.poll( 1, TimeUnit.SECONDS ).timestamp.getTime() );
+        Assert.assertEquals( 1234L, (long) times.get( 0 ) );
+        Assert.assertEquals( 1234567891L, (long) times.get( 1 ) );
+    }
+
+    private void subscribe( final int type ) {
+        distributor.addListener( "test", new IPacketListener() {
+            @Override
+            public void receivePacket( Packet packet ) {
+                received.add( packet );
+            }
+
+            @Override
+            public int[] getSupportedPackets() {
+                return new int[] { type };
+            }
+        } );
+    }
+
+    private void feed( Packet packet ) {
+        for (final byte value : PacketEncoder.encodePacket( packet )) {
+            queue.add( value & 0xFF );
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.atennert.connector.reader;
+
+import de.atennert.connector.distribution.IEventListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class PortDiscoveryTest {
+
+    private Path directory;
+    private PortDiscovery discovery;
+    private volatile List< String > ports = Collections.singletonList( "ttyUSB0" );
+    private final BlockingQueue< List< String > > events = new LinkedBlockingQueue<>();
+    private final Supplier< List< String > > enumeration = new Supplier< List< String > >() {
+        @Override
+        public List< String > get() {
+            return ports;
+        }
+    };
+    private final IEventListener< List< String > > listener = new IEventListener< List< String > >() {
+        @Override
+        public void onEvent( List< String > event ) {
+            events.add( event );
+        }
+    };
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "dev" );
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if( discovery != null ) {
+            discovery.stop();
+        }
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Test
+    public void watchDeviceDirectory() throws IOException, InterruptedException {
+        discovery = new PortDiscovery( directory, 60000, enumeration );
+        discovery.addListener( listener );
+        Assert.assertEquals( Collections.emptyList(), events.poll() );
+
+        discovery.start();
+        Assert.assertEquals( ports, events.poll( 1, TimeUnit.SECONDS ) );
+
+        // a device entry without a new serial port
+        Files.createFile( directory.resolve( "tty0" ) );
+        Assert.assertNull( events.poll( 500, TimeUnit.MILLISECONDS ) );
+
+        ports = Arrays.asList( "ttyUSB0", "ttyUSB1" );
+        final long created = System.nanoTime();
+        Files.createFile( directory.resolve( "ttyUSB1" ) );
+        Assert.assertEquals( ports, events.poll( 5, TimeUnit.SECONDS ) );
+        // the discovery waits for related entries before enumerating
+        Assert.assertTrue( System.nanoTime() - created >= TimeUnit.MILLISECONDS.toNanos( 50 ) );
+        Assert.assertEquals( ports, discovery.getPorts() );
+
+        ports = Collections.singletonList( "ttyUSB1" );
+        Files.delete( directory.resolve( "ttyUSB1" ) );
+        Assert.assertEquals( ports, events.poll( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void pollWithoutDeviceDirectory() throws InterruptedException {
+        discovery = new PortDiscovery( directory.resolve( "missing" ), 20, enumeration );
+        discovery.addListener( listener );
+        Assert.assertEquals( Collections.emptyList(), events.poll() );
+        discovery.start();
+        Assert.assertEquals( ports, events.poll( 1, TimeUnit.SECONDS ) );
+
+        ports = Arrays.asList( "ttyUSB0", "ttyUSB1" );
+        Assert.assertEquals( ports, events.poll( 1, TimeUnit.SECONDS ) );
+
+        // unchanged ports are not sent again
+        Assert.assertNull( events.poll( 200, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void refreshSendsChanges() {
+        discovery = new PortDiscovery( directory, 60000, enumeration );
+        discovery.addListener( listener );
+        events.clear();
+
+        Assert.assertEquals( ports, discovery.refresh() );
+        Assert.assertEquals( ports, events.poll() );
+        Assert.assertEquals( ports, discovery.refresh() );
+        Assert.assertNull( events.poll() );
+    }
+}
@@ -0,0 +1,61 @@
+package de.atennert.connector.reader;
+
+import de.atennert.connector.packets.Packet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+public class SendBufferTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    @Test
+    public void keepOrderOfPackets() {
+        final SendBuffer buffer = new SendBuffer( 3, 1000 );
+        final Packet first = packet(), second = packet();
+        buffer.add( first, 0 );
+        buffer.add( second, 0 );
+
+        Assert.assertSame( first, buffer.peek( 0 ) );
+        buffer.remove();
+        Assert.assertSame( second, buffer.peek( 0 ) );
+        buffer.remove();
+        Assert.assertTrue( buffer.isEmpty() );
+    }
+
+    @Test
+    public void dropOldestPacketWhenFull() {
+        final SendBuffer buffer = new SendBuffer( 2, 1000 );
+        final Packet second = packet();
+        buffer.add( packet(), 0 );
+        buffer.add( second, 0 );
+        buffer.add( packet(), 0 );
+
+        Assert.assertEquals( 2, buffer.size() );
+        Assert.assertSame( second, buffer.peek( 0 ) );
+    }
+
+    @Test
+    public void dropExpiredPackets() {
+        final SendBuffer buffer = new SendBuffer( 3, 1000 );
+        final Packet valid = packet();
+        buffer.add( packet(), 0 );
+        buffer.add( valid, SECOND );
+
+        Assert.assertSame( valid, buffer.peek( 2 * SECOND ) );
+        Assert.assertEquals( 1, buffer.size() );
+        Assert.assertNull( buffer.peek( 3 * SECOND ) );
+        Assert.assertTrue( buffer.isEmpty() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidCapacity() {
+        new SendBuffer( 0, 1000 );
+    }
+
+    private static Packet packet() {
+        return new Packet( 0x01, new int[0], new int[0], new Date(), true );
+    }
+}
@@ -0,0 +1,158 @@
+package de.atennert.connector.security;
+
+import de.atennert.connector.metrics.MetricsRegistry;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.PacketFactory;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+public class SecureTelegramFactoryTest {
+
+    private static final int SENDER = 0x01802A3B;
+    private static final byte[] KEY = { 0x2B, 0x7E, 0x15, 0x16, 0x28, (byte) 0xAE, (byte) 0xD2, (byte) 0xA6,
+            (byte) 0xAB, (byte) 0xF7, 0x15, (byte) 0x88, 0x09, (byte) 0xCF, 0x4F, 0x3C };
+    /** 4BS telegram of the sender */
+    private static final int[] DATA = { 0xA5, 0x00, 0x00, 0x7D, 0x08, 0x01, 0x80, 0x2A, 0x3B, 0x00 };
+    private static final int[] OPTIONAL = { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 };
+
+    private MetricsRegistry registry;
+    private SecurityKeyStore keys;
+    private SecureTelegramFactory factory;
+
+    @Before
+    public void setup() {
+        registry = new MetricsRegistry();
+        keys = new SecurityKeyStore( 16 );
+        factory = new SecureTelegramFactory( new PacketFactory(), keys, registry );
+    }
+
+    @Test
+    public void cmacTestVectors() {
+        // RFC 4493, example 1, 2 and 3
+        final SecureDevice device = new SecureDevice( KEY, SecurityKeyStore.SLF_RLC_16 | SecurityKeyStore.SLF_MAC_4,
+                0, 1 );
+        Assert.assertEquals( "bb1d6929e95937287fa37d129b756746", hex( device.mac( new byte[0] ) ) );
+        final byte[] message = bytes( "6bc1bee22e409f96e93d7e117393172aae2d8a571e03ac9c9eb76fac45af8e51"
+                + "30c81c46a35ce411" );
+        Assert.assertEquals( "070a16b46b4d4144f79bdd9dd04a287c", hex( device.mac( Arrays.copyOf( message, 16 ) ) ) );
+        Assert.assertEquals( "dfa66747de9ae63030ca32611497c827", hex( device.mac( message ) ) );
+    }
+
+    @Test
+    public void decryptTelegram() {
+        final int slf = SecurityKeyStore.SLF_RLC_24 | SecurityKeyStore.SLF_RLC_TX | SecurityKeyStore.SLF_MAC_4
+                | SecurityKeyStore.SLF_ENC_VAES;
+        keys.addDevice( SENDER, KEY, slf, 100 );
+        final int[] secure = sender( slf ).encode( DATA, 101, true );
+        Assert.assertEquals( DATA.length + 1 + 3 + 4, secure.length );
+        Assert.assertFalse( Arrays.equals( Arrays.copyOf( DATA, 5 ), Arrays.copyOfRange( secure, 1, 6 ) ) );
+
+        final RadioPacket packet = create( secure );
+        Assert.assertTrue( packet.isValid );
+        Assert.assertArrayEquals( DATA, packet.getData() );
+        Assert.assertEquals( SecureTelegramFactory.SECURITY_DECRYPTED_AUTHENTICATED, packet.getSecurityLevel() );
+        Assert.assertEquals( 101, keys.getRollingCode( SENDER ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( SecureTelegramFactory.DECRYPTED ) );
+    }
+
+    @Test
+    public void findRollingCode() {
+        final int slf = SecurityKeyStore.SLF_RLC_16 | SecurityKeyStore.SLF_MAC_3 | SecurityKeyStore.SLF_ENC_VAES;
+        keys.addDevice( SENDER, KEY, slf, 0xFFFE );
+        final SecureDevice sender = sender( slf );
+
+        // the rolling code wraps around, some telegrams are lost
+        RadioPacket packet = create( sender.encode( DATA, 0xFFFF, false ) );
+        Assert.assertTrue( packet.isValid );
+        Assert.assertEquals( SecureTelegramFactory.RORG_SECD, packet.getData()[0] );
+        Assert.assertArrayEquals( Arrays.copyOfRange( DATA, 1, DATA.length ), Arrays.copyOfRange( packet.getData(),
+                1, DATA.length ) );
+        packet = create( sender.encode( DATA, 0x0005, false ) );
+        Assert.assertTrue( packet.isValid );
+        Assert.assertEquals( 5, keys.getRollingCode( SENDER ) );
+
+        // too far ahead
+        packet = create( sender.encode( DATA, 0x0016, false ) );
+        Assert.assertFalse( packet.isValid );
+        Assert.assertEquals( 5, keys.getRollingCode( SENDER ) );
+    }
+
+    @Test
+    public void rejectReplay() {
+        final int slf = SecurityKeyStore.SLF_RLC_32 | SecurityKeyStore.SLF_RLC_TX | SecurityKeyStore.SLF_MAC_3;
+        keys.addDevice( SENDER, KEY, slf, 7 );
+        final int[] secure = sender( slf ).encode( DATA, 8, true );
+        final RadioPacket packet = create( secure );
+        Assert.assertTrue( packet.isValid );
+        Assert.assertArrayEquals( DATA, packet.getData() );
+        Assert.assertEquals( SecureTelegramFactory.SECURITY_AUTHENTICATED, packet.getSecurityLevel() );
+
+        final RadioPacket replayed = create( secure );
+        Assert.assertFalse( replayed.isValid );
+        Assert.assertArrayEquals( secure, replayed.getData() );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( SecureTelegramFactory.REPLAYED ) );
+    }
+
+    @Test
+    public void rejectWrongCmac() {
+        final int slf = SecurityKeyStore.SLF_RLC_24 | SecurityKeyStore.SLF_RLC_TX | SecurityKeyStore.SLF_MAC_4
+                | SecurityKeyStore.SLF_ENC_VAES;
+        keys.addDevice( SENDER, KEY, slf, 0 );
+        final int[] secure = sender( slf ).encode( DATA, 1, true );
+        secure[2] ^= 0x01;
+        Assert.assertFalse( create( secure ).isValid );
+        Assert.assertEquals( 0, keys.getRollingCode( SENDER ) );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( SecureTelegramFactory.NOT_AUTHENTIC ) );
+
+        // a wrong key
+        final byte[] otherKey = KEY.clone();
+        otherKey[0]++;
+        Assert.assertFalse( create( new SecureDevice( otherKey, slf, 0, 1 ).encode( DATA, 1, true ) ).isValid );
+    }
+
+    @Test
+    public void keepOtherTelegrams() {
+        final int[] secure = sender( SecurityKeyStore.SLF_RLC_16 | SecurityKeyStore.SLF_MAC_3 ).encode( DATA, 1,
+                true );
+        final RadioPacket packet = create( secure );
+        Assert.assertTrue( packet.isValid );
+        Assert.assertArrayEquals( secure, packet.getData() );
+        Assert.assertEquals( Long.valueOf( 1 ), registry.getValue( SecureTelegramFactory.UNKNOWN_SENDERS ) );
+        Assert.assertArrayEquals( DATA, create( DATA ).getData() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void unsupportedEncryption() {
+        keys.addDevice( SENDER, KEY, SecurityKeyStore.SLF_RLC_16 | SecurityKeyStore.SLF_MAC_3 | 0x04, 0 );
+    }
+
+    private RadioPacket create( int[] data ) {
+        return (RadioPacket) factory.createPacket( IPacketConstants.TYPE_RADIO, data, OPTIONAL.clone(), new Date(),
+                true );
+    }
+
+    private static SecureDevice sender( int slf ) {
+        return new SecureDevice( KEY, slf, 0, 1 );
+    }
+
+    private static byte[] bytes( String hex ) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt( hex.substring( 2 * i, 2 * i + 2 ), 16 );
+        }
+        return bytes;
+    }
+
+    private static String hex( byte[] bytes ) {
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b : bytes) {
+            builder.append( String.format( "%02x", b ) );
+        }
+        return builder.toString();
+    }
+}
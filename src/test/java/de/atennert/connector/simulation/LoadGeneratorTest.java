@@ -0,0 +1,71 @@
+package de.atennert.connector.simulation;
+
+import de.atennert.connector.metrics.PipelineMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void decodeAllTelegrams() throws InterruptedException {
+        final DeviceFarm farm = DeviceFarm.builder()
+                .switches( 10 )
+                .contacts( 10 )
+                .temperatureSensors( 10 )
+                .repeatRate( 0.5 )
+                .realTime( false )
+                .build();
+
+        final LoadReport report = new LoadGenerator().run( farm, 200 );
+
+        Assert.assertTrue( report.getTelegrams() > 0 );
+        Assert.assertEquals( report.getTelegrams(), report.getFramesDecoded() );
+        Assert.assertEquals( report.getFramesDecoded(), report.getPacketsDelivered() );
+        Assert.assertEquals( 0, report.getBytesDropped() );
+        Assert.assertEquals( Long.valueOf( 0 ), report.getMetrics().getValue( PipelineMetrics.PAYLOAD_CRC_FAILURES ) );
+    }
+
+    @Test
+    public void reportChecksumErrors() throws InterruptedException {
+        final DeviceFarm farm = DeviceFarm.builder()
+                .contacts( 10 )
+                .crcErrorRate( 0.2 )
+                .seed( 42 )
+                .realTime( false )
+                .build();
+
+        final LoadReport report = new LoadGenerator().run( farm, 200 );
+
+        final long invalid = report.getMetrics().getValue( PipelineMetrics.PAYLOAD_CRC_FAILURES );
+        final long headerFailures = report.getMetrics().getValue( PipelineMetrics.HEADER_CRC_FAILURES );
+        Assert.assertTrue( invalid > 0 );
+        Assert.assertTrue( headerFailures > 0 );
+        Assert.assertTrue( report.getExpectedFrames() < report.getTelegrams() );
+        // the decoder may lose a frame while it searches the next sync byte
+        // after an invalid header
+        Assert.assertTrue( report.getFramesDecoded() <= report.getExpectedFrames() );
+        Assert.assertTrue( report.getFrameDropRate() < 0.05 );
+    }
+
+    @Test
+    public void feedInRealTime() throws InterruptedException {
+        final DeviceFarm farm = DeviceFarm.builder()
+                .switches( 100 )
+                .telegramRate( 10 )
+                .timing( DeviceFarm.Timing.BURST, 20 )
+                .build();
+
+        final LoadReport report = new LoadGenerator().run( farm, 500 );
+
+        // 1000 telegrams per second in bursts of 20
+        Assert.assertTrue( report.getTelegrams() > 100 && report.getTelegrams() < 2000 );
+        Assert.assertEquals( 0, report.getBytesDropped() );
+        Assert.assertEquals( 0, report.getFrameDropRate(), 0 );
+        Assert.assertTrue( report.getPacketsPerSecond() < 2000 );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void farmWithoutDevices() {
+        DeviceFarm.builder().build();
+    }
+}
@@ -0,0 +1,146 @@
+package de.atennert.connector.simulation;
+
+import de.atennert.connector.distribution.IPacketListener;
+import de.atennert.connector.journal.JournalReader;
+import de.atennert.connector.journal.TelegramJournal;
+import de.atennert.connector.packets.IPacketConstants;
+import de.atennert.connector.packets.IPacketFactory;
+import de.atennert.connector.packets.Packet;
+import de.atennert.connector.packets.enocean.RadioPacket;
+import de.atennert.connector.reader.PacketEncoder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+public class ReplayEngineTest {
+
+    /** 2020-01-01 00:00:00 UTC in nanoseconds */
+    private static final long START = 1577836800000L * 1000000L;
+    private static final long MILLI = 1000000L;
+
+    private Path directory;
+    private final List< Packet > packets = Collections.synchronizedList( new ArrayList< Packet >() );
+    private final IPacketListener listener = new IPacketListener() {
+        @Override
+        public void receivePacket( Packet packet ) {
+            packets.add( packet );
+        }
+
+        @Override
+        public int[] getSupportedPackets() {
+            return new int[] { IPacketConstants.TYPE_RADIO };
+        }
+    };
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory( "journal" );
+        try (TelegramJournal journal = TelegramJournal.builder( directory ).segmentSize( 4096 ).build()) {
+            for (int i = 0; i < 5; i++) {
+                journal.append( frame( i ), START + i * 50 * MILLI, 0 );
+            }
+        }
+    }
+
+    @After
+    public void teardown() throws IOException {
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( directory )) {
+            for (final Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Test
+    public void replayInRealTime() throws IOException, InterruptedException {
+        final ReplayEngine engine = new ReplayEngine();
+        engine.addListener( "test", listener );
+
+        final ReplayReport report = engine.run( new JournalReader( directory ), ReplayEngine.REAL_TIME );
+
+        Assert.assertEquals( 5, report.getRecords() );
+        Assert.assertEquals( 5, report.getFramesDecoded() );
+        Assert.assertEquals( 200 * MILLI, report.getRecordedNanos() );
+        Assert.assertTrue( report.getFeedNanos() >= 200 * MILLI );
+        Assert.assertEquals( 5, packets.size() );
+        for (int i = 0; i < 5; i++) {
+            // the receive times of the recording
+            Assert.assertEquals( START / MILLI + i * 50, packets.get( i ).timestamp.getTime() );
+            Assert.assertEquals( i, packets.get( i ).getDataValue( 4 ) );
+        }
+        Assert.assertTrue( report.getListenerLags().containsKey( "test" ) );
+        Assert.assertEquals( 5, report.getListenerLatency( "test" ).getCount() );
+    }
+
+    @Test
+    public void replayFaster() throws IOException, InterruptedException {
+        final ReplayEngine engine = new ReplayEngine();
+        engine.addListener( "test", listener );
+
+        final ReplayReport report = engine.run( new JournalReader( directory ), 10 );
+
+        Assert.assertEquals( 5, packets.size() );
+        Assert.assertTrue( report.getFeedNanos() >= 20 * MILLI );
+        Assert.assertTrue( report.getFeedNanos() < 200 * MILLI );
+        Assert.assertEquals( START / MILLI + 200, packets.get( 4 ).timestamp.getTime() );
+    }
+
+    @Test
+    public void replayAtMaxSpeed() throws IOException, InterruptedException {
+        final ReplayEngine engine = new ReplayEngine( 16, 1 );
+        engine.addListener( "test", listener );
+
+        final ReplayReport report = engine.run( new JournalReader( directory ), ReplayEngine.MAX_SPEED );
+
+        Assert.assertEquals( 5, report.getFramesFed() );
+        Assert.assertEquals( 0, report.getFramesDropped() );
+        Assert.assertEquals( 5, packets.size() );
+        Assert.assertTrue( report.getSpeed() > 1 );
+        Assert.assertEquals( START / MILLI + 100, packets.get( 2 ).timestamp.getTime() );
+    }
+
+    @Test
+    public void replayWithPacketFactory() throws IOException, InterruptedException {
+        final ReplayEngine engine = new ReplayEngine();
+        engine.addListener( "test", listener );
+        // like a SecureTelegramFactory, that rejects the telegrams
+        engine.setPacketFactory( new IPacketFactory() {
+            @Override
+            public Packet createPacket( int type, int[] data, int[] optional, Date timestamp, boolean isValid ) {
+                return new Packet( type, data, optional, timestamp, false );
+            }
+        } );
+
+        engine.run( new JournalReader( directory ), ReplayEngine.MAX_SPEED );
+
+        Assert.assertEquals( 5, packets.size() );
+        for (final Packet packet : packets) {
+            // created by the given factory
+            Assert.assertFalse( packet instanceof RadioPacket );
+            Assert.assertFalse( packet.isValid );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void invalidSpeed() throws IOException, InterruptedException {
+        new ReplayEngine().run( new JournalReader( directory ), 0 );
+    }
+
+    private static ByteBuffer frame( int counter ) {
+        final Packet packet = new RadioPacket( new int[] { 0xA5, 0x00, 0x7D, 0x80, counter, 0x01, 0x80, 0x00, 0x01,
+                0x00 }, new int[] { 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x44, 0x00 }, new Date(), true );
+        return ByteBuffer.wrap( PacketEncoder.encodePacket( packet ) );
+    }
+}